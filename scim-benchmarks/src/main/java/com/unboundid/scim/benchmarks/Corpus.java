@@ -0,0 +1,346 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.benchmarks;
+
+import com.unboundid.scim.data.Address;
+import com.unboundid.scim.data.Entry;
+import com.unboundid.scim.data.GroupResource;
+import com.unboundid.scim.data.Meta;
+import com.unboundid.scim.data.Name;
+import com.unboundid.scim.data.UserResource;
+import com.unboundid.scim.marshal.Marshaller;
+import com.unboundid.scim.marshal.StreamMarshaller;
+import com.unboundid.scim.marshal.Unmarshaller;
+import com.unboundid.scim.marshal.json.JsonMarshaller;
+import com.unboundid.scim.marshal.json.JsonStreamMarshaller;
+import com.unboundid.scim.marshal.json.JsonUnmarshaller;
+import com.unboundid.scim.marshal.xml.XmlMarshaller;
+import com.unboundid.scim.marshal.xml.XmlStreamMarshaller;
+import com.unboundid.scim.marshal.xml.XmlUnmarshaller;
+import com.unboundid.scim.schema.CoreSchema;
+import com.unboundid.scim.sdk.BulkOperation;
+import com.unboundid.scim.sdk.SCIMException;
+
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+
+
+/**
+ * This class generates the SCIM resources used by the benchmarks. The
+ * resources are generated from a fixed seed, so that every run of a benchmark
+ * processes the same content. The size of a user is the number of values of
+ * each of its multi-valued attributes, so that a user of size 1 resembles a
+ * typical provisioned account and a user of size 50 resembles one that is a
+ * member of many groups.
+ */
+public final class Corpus
+{
+  /**
+   * The seed for the random number generator.
+   */
+  private static final long SEED = 0x5C1A11L;
+
+  /**
+   * The given names from which users are generated.
+   */
+  private static final String[] GIVEN_NAMES =
+      { "Barbara", "James", "Mary", "John", "Patricia", "Robert", "Jennifer",
+        "Michael", "Linda", "William", "Elizabeth", "David", "Susan",
+        "Richard", "Jessica", "Joseph" };
+
+  /**
+   * The family names from which users are generated.
+   */
+  private static final String[] FAMILY_NAMES =
+      { "Jensen", "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia",
+        "Miller", "Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez",
+        "Gonzalez", "Wilson", "Anderson" };
+
+  /**
+   * The cities from which addresses are generated.
+   */
+  private static final String[] CITIES =
+      { "Austin", "Boston", "Chicago", "Denver", "Houston", "Portland",
+        "Seattle", "Phoenix" };
+
+  /**
+   * The types used for multi-valued attribute values.
+   */
+  private static final String[] TYPES = { "work", "home", "other" };
+
+
+
+  /**
+   * Prevent this class from being instantiated.
+   */
+  private Corpus()
+  {
+    // No implementation required.
+  }
+
+
+
+  /**
+   * Generate a list of users.
+   *
+   * @param count  The number of users to generate.
+   * @param size   The number of values of each multi-valued attribute.
+   *
+   * @return  The generated users.
+   */
+  public static List<UserResource> createUsers(final int count, final int size)
+  {
+    final Random random = new Random(SEED);
+    final List<UserResource> users = new ArrayList<UserResource>(count);
+    for (int i = 0; i < count; i++)
+    {
+      users.add(createUser(random, i, size));
+    }
+    return users;
+  }
+
+
+
+  /**
+   * Generate a single user.
+   *
+   * @param size  The number of values of each multi-valued attribute.
+   *
+   * @return  The generated user.
+   */
+  public static UserResource createUser(final int size)
+  {
+    return createUser(new Random(SEED), 0, size);
+  }
+
+
+
+  /**
+   * Generate a group.
+   *
+   * @param index    The index of the group, which determines its ID and name.
+   * @param members  The number of members of the group.
+   *
+   * @return  The generated group.
+   */
+  public static GroupResource createGroup(final int index, final int members)
+  {
+    final GroupResource group =
+        new GroupResource(CoreSchema.GROUP_DESCRIPTOR);
+    group.setId(String.format("group.%08d", index));
+    group.setDisplayName("Group " + index);
+    group.setMeta(createMeta("Groups", group.getId()));
+
+    final List<Entry<String>> memberEntries =
+        new ArrayList<Entry<String>>(members);
+    for (int i = 0; i < members; i++)
+    {
+      memberEntries.add(new Entry<String>(String.format("user.%08d", i),
+          "User", false, "User " + i));
+    }
+    group.setMembers(memberEntries);
+    return group;
+  }
+
+
+
+  /**
+   * Generate bulk operations that create users.
+   *
+   * @param count  The number of bulk operations to generate.
+   * @param size   The number of values of each multi-valued attribute of the
+   *               created users.
+   *
+   * @return  The generated bulk operations.
+   */
+  public static List<BulkOperation> createBulkOperations(final int count,
+                                                         final int size)
+  {
+    final List<BulkOperation> operations =
+        new ArrayList<BulkOperation>(count);
+    for (final UserResource user : createUsers(count, size))
+    {
+      user.setId(null);
+      user.setMeta(null);
+      operations.add(BulkOperation.createRequest(
+          BulkOperation.Method.POST, "bulk" + operations.size(), null,
+          "/Users", user));
+    }
+    return operations;
+  }
+
+
+
+  /**
+   * Retrieve the marshaller for a format.
+   *
+   * @param format  The format, either "json" or "xml".
+   *
+   * @return  The marshaller for the format.
+   */
+  public static Marshaller getMarshaller(final String format)
+  {
+    return isJson(format) ? new JsonMarshaller() : new XmlMarshaller();
+  }
+
+
+
+  /**
+   * Create a stream marshaller for a format.
+   *
+   * @param format        The format, either "json" or "xml".
+   * @param outputStream  The output stream to which content is written.
+   *
+   * @return  The stream marshaller for the format.
+   *
+   * @throws SCIMException  If the stream marshaller could not be created.
+   */
+  public static StreamMarshaller getStreamMarshaller(
+      final String format, final OutputStream outputStream)
+      throws SCIMException
+  {
+    return isJson(format) ? new JsonStreamMarshaller(outputStream) :
+        new XmlStreamMarshaller(outputStream);
+  }
+
+
+
+  /**
+   * Retrieve the unmarshaller for a format.
+   *
+   * @param format  The format, either "json" or "xml".
+   *
+   * @return  The unmarshaller for the format.
+   */
+  public static Unmarshaller getUnmarshaller(final String format)
+  {
+    return isJson(format) ? new JsonUnmarshaller() : new XmlUnmarshaller();
+  }
+
+
+
+  /**
+   * Generate a single user.
+   *
+   * @param random  The random number generator.
+   * @param index   The index of the user, which determines its ID.
+   * @param size    The number of values of each multi-valued attribute.
+   *
+   * @return  The generated user.
+   */
+  private static UserResource createUser(final Random random, final int index,
+                                         final int size)
+  {
+    final String givenName = pick(random, GIVEN_NAMES);
+    final String familyName = pick(random, FAMILY_NAMES);
+    final String userName =
+        givenName.toLowerCase() + "." + familyName.toLowerCase() + index;
+
+    final UserResource user = new UserResource(CoreSchema.USER_DESCRIPTOR);
+    user.setId(String.format("user.%08d", index));
+    user.setExternalId(Long.toHexString(random.nextLong()));
+    user.setUserName(userName);
+    user.setName(new Name(givenName + " " + familyName, familyName, null,
+        givenName, null, null));
+    user.setDisplayName(givenName + " " + familyName);
+    user.setTitle("Engineer " + (1 + random.nextInt(4)));
+    user.setUserType("Employee");
+    user.setPreferredLanguage("en-US");
+    user.setActive(Boolean.TRUE);
+
+    final Collection<Entry<String>> emails = new ArrayList<Entry<String>>();
+    final Collection<Entry<String>> phoneNumbers =
+        new ArrayList<Entry<String>>();
+    final Collection<Address> addresses = new ArrayList<Address>();
+    final Collection<Entry<String>> groups = new ArrayList<Entry<String>>();
+    for (int i = 0; i < size; i++)
+    {
+      final String type = TYPES[i % TYPES.length];
+      emails.add(new Entry<String>(
+          userName + "+" + i + "@example.com", type, i == 0));
+      phoneNumbers.add(new Entry<String>(
+          String.format("+1 512 555 %04d", random.nextInt(10000)), type,
+          i == 0));
+      final String city = pick(random, CITIES);
+      final String street = (100 + random.nextInt(9900)) + " Main Street";
+      addresses.add(new Address(street + "\n" + city + ", TX 78701 USA",
+          street, city, "TX", "78701", "US", type, i == 0));
+      final int group = random.nextInt(1000);
+      groups.add(new Entry<String>(String.format("group.%08d", group),
+          "direct", false, "Group " + group));
+    }
+    user.setEmails(emails);
+    user.setPhoneNumbers(phoneNumbers);
+    user.setAddresses(addresses);
+    user.setGroups(groups);
+    user.setMeta(createMeta("Users", user.getId()));
+    return user;
+  }
+
+
+
+  /**
+   * Create the meta attribute of a resource.
+   *
+   * @param endpoint  The endpoint of the resource.
+   * @param id        The ID of the resource.
+   *
+   * @return  The meta attribute.
+   */
+  private static Meta createMeta(final String endpoint, final String id)
+  {
+    final Date date = new Date(1480000000000L);
+    return new Meta(date, date,
+        URI.create("https://example.com/v1/" + endpoint + "/" + id), null);
+  }
+
+
+
+  /**
+   * Pick a random element of an array.
+   *
+   * @param random  The random number generator.
+   * @param values  The array.
+   *
+   * @return  A random element of the array.
+   */
+  private static String pick(final Random random, final String[] values)
+  {
+    return values[random.nextInt(values.length)];
+  }
+
+
+
+  /**
+   * Determines whether a format is JSON.
+   *
+   * @param format  The format, either "json" or "xml".
+   *
+   * @return  {@code true} if the format is JSON, {@code false} if it is XML.
+   */
+  private static boolean isJson(final String format)
+  {
+    return "json".equals(format);
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+package com.unboundid.scim.benchmarks;
+
+import com.unboundid.scim.data.Entry;
+import com.unboundid.scim.data.UserResource;
+import com.unboundid.scim.sdk.Diff;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * This class benchmarks generating the differences between two versions of a
+ * user and applying them, as is done when a replaced resource is converted
+ * into a modification.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiffBenchmark
+{
+  /**
+   * The number of values of each multi-valued attribute of the user.
+   */
+  @Param({ "1", "10", "50" })
+  private int size;
+
+  // The original version of the user.
+  private UserResource source;
+
+  // The modified version of the user.
+  private UserResource target;
+
+  // The differences between the two versions.
+  private Diff<UserResource> diff;
+
+
+
+  /**
+   * Generate the two versions of the user. The modified version has a new
+   * title, one fewer group and one more email address.
+   */
+  @Setup
+  public void setUp()
+  {
+    source = Corpus.createUser(size);
+    target = Corpus.createUser(size);
+    target.setTitle("Manager");
+
+    final List<Entry<String>> groups =
+        new ArrayList<Entry<String>>(target.getGroups());
+    groups.remove(groups.size() - 1);
+    target.setGroups(groups);
+
+    final List<Entry<String>> emails =
+        new ArrayList<Entry<String>>(target.getEmails());
+    emails.add(new Entry<String>("new@example.com", "other"));
+    target.setEmails(emails);
+
+    diff = Diff.generate(source, target);
+  }
+
+
+
+  /**
+   * Benchmark generating the differences between the two versions.
+   *
+   * @return  The differences.
+   */
+  @Benchmark
+  public Diff<UserResource> generate()
+  {
+    return Diff.generate(source, target);
+  }
+
+
+
+  /**
+   * Benchmark applying the differences to the original version.
+   *
+   * @return  The modified user.
+   */
+  @Benchmark
+  public UserResource apply()
+  {
+    return diff.apply(source, UserResource.USER_RESOURCE_FACTORY);
+  }
+}
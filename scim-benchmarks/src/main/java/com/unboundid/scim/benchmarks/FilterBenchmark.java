@@ -0,0 +1,117 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+package com.unboundid.scim.benchmarks;
+
+import com.unboundid.scim.sdk.SCIMException;
+import com.unboundid.scim.sdk.SCIMFilter;
+import com.unboundid.scim.sdk.SCIMObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * This class benchmarks parsing SCIM filters and evaluating them against a
+ * resource.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark
+{
+  /**
+   * The filter to be parsed and evaluated.
+   */
+  @Param({
+      "userName eq \"barbara.jensen0\"",
+      "name.familyName sw \"J\" and emails.value co \"example.com\"",
+      "(title pr and active eq true) or " +
+          "(userType eq \"Contractor\" and meta.lastModified gt " +
+          "\"2016-01-01T00:00:00Z\")"
+  })
+  private String filter;
+
+  /**
+   * The number of values of each multi-valued attribute of the resource.
+   */
+  @Param({ "1", "10" })
+  private int size;
+
+  // The parsed filter.
+  private SCIMFilter parsedFilter;
+
+  // The resource against which the filter is evaluated.
+  private SCIMObject resource;
+
+
+
+  /**
+   * Parse the filter and generate the resource.
+   *
+   * @throws SCIMException  If the filter could not be parsed.
+   */
+  @Setup
+  public void setUp()
+      throws SCIMException
+  {
+    parsedFilter = SCIMFilter.parse(filter);
+    resource = Corpus.createUser(size).getScimObject();
+  }
+
+
+
+  /**
+   * Benchmark parsing the filter.
+   *
+   * @return  The parsed filter.
+   *
+   * @throws SCIMException  If the filter could not be parsed.
+   */
+  @Benchmark
+  public SCIMFilter parse()
+      throws SCIMException
+  {
+    return SCIMFilter.parse(filter);
+  }
+
+
+
+  /**
+   * Benchmark evaluating the parsed filter against the resource.
+   *
+   * @return  Whether the resource matches the filter.
+   */
+  @Benchmark
+  public boolean matchesFilter()
+  {
+    return resource.matchesFilter(parsedFilter);
+  }
+}
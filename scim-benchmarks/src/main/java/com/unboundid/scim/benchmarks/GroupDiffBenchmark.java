@@ -0,0 +1,140 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.benchmarks;
+
+import com.unboundid.scim.data.Entry;
+import com.unboundid.scim.data.GroupResource;
+import com.unboundid.scim.schema.CoreSchema;
+import com.unboundid.scim.sdk.Diff;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * This class benchmarks generating and applying the differences between two
+ * versions of a large group, as is done when synchronizing group membership.
+ * A tenth of the members of the modified version have been replaced, so the
+ * time taken should grow linearly with the number of members.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroupDiffBenchmark
+{
+  /**
+   * The number of members of the group.
+   */
+  @Param({ "1000", "10000", "50000" })
+  private int members;
+
+  // The original version of the group.
+  private GroupResource source;
+
+  // The modified version of the group.
+  private GroupResource target;
+
+  // The differences between the two versions.
+  private Diff<GroupResource> diff;
+
+
+
+  /**
+   * Generate the two versions of the group.
+   */
+  @Setup
+  public void setUp()
+  {
+    final List<Entry<String>> sourceMembers =
+        new ArrayList<Entry<String>>(members);
+    final List<Entry<String>> targetMembers =
+        new ArrayList<Entry<String>>(members);
+    for (int i = 0; i < members; i++)
+    {
+      sourceMembers.add(createMember("user." + i));
+      targetMembers.add(createMember(
+          i % 10 == 0 ? "new-user." + i : "user." + i));
+    }
+
+    source = new GroupResource(CoreSchema.GROUP_DESCRIPTOR);
+    source.setDisplayName("Group");
+    source.setMembers(sourceMembers);
+
+    target = new GroupResource(CoreSchema.GROUP_DESCRIPTOR);
+    target.setDisplayName("Group");
+    target.setMembers(targetMembers);
+
+    diff = Diff.generate(source, target);
+  }
+
+
+
+  /**
+   * Benchmark generating the differences between the two versions.
+   *
+   * @return  The differences.
+   */
+  @Benchmark
+  public Diff<GroupResource> generate()
+  {
+    return Diff.generate(source, target);
+  }
+
+
+
+  /**
+   * Benchmark applying the differences to the original version.
+   *
+   * @return  The modified group.
+   */
+  @Benchmark
+  public GroupResource apply()
+  {
+    return diff.apply(source, GroupResource.GROUP_RESOURCE_FACTORY);
+  }
+
+
+
+  /**
+   * Create a group member.
+   *
+   * @param id  The ID of the member.
+   *
+   * @return  The group member.
+   */
+  private static Entry<String> createMember(final String id)
+  {
+    return new Entry<String>(id, null, false);
+  }
+}
@@ -0,0 +1,410 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+package com.unboundid.scim.benchmarks;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.SearchResult;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.SearchScope;
+import com.unboundid.scim.ldap.LDAPBackend;
+import com.unboundid.scim.ldap.LDAPRequestInterface;
+import com.unboundid.scim.ldap.ResourceMapper;
+import com.unboundid.scim.schema.ResourceDescriptor;
+import com.unboundid.scim.sdk.SCIMException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+
+/**
+ * This class provides an in-memory directory server loaded with a synthetic
+ * DIT, and an LDAP backend that uses it with the resource mappings from the
+ * default resources.xml. The DIT contains users under ou=people and groups
+ * under ou=groups. Each user is a direct member of one group, and the groups
+ * are arranged in chains in which each group is a member of the previous
+ * group, so that a user is an indirect member of every group before its own in
+ * the chain. The directory server does not provide the isMemberOf attribute,
+ * but it may be emulated by storing the values that a server would compute in
+ * each user entry.
+ */
+public final class InMemoryDirectory
+{
+  /**
+   * The base DN of the DIT.
+   */
+  private static final String BASE_DN = "dc=example,dc=com";
+
+  /**
+   * The base DN of the user entries.
+   */
+  private static final String PEOPLE_DN = "ou=people," + BASE_DN;
+
+  /**
+   * The base DN of the group entries.
+   */
+  private static final String GROUPS_DN = "ou=groups," + BASE_DN;
+
+  // The directory server.
+  private final InMemoryDirectoryServer ds;
+
+  // The LDAP backend.
+  private final LDAPBackend backend;
+
+  // The resource descriptors of the backend, keyed by resource name.
+  private final Map<String, ResourceDescriptor> resourceDescriptors;
+
+  // The resource IDs of the users.
+  private final List<String> userIDs;
+
+
+
+  /**
+   * Start a directory server, load it with a synthetic DIT and create an
+   * LDAP backend for it.
+   *
+   * @param users       The number of users.
+   * @param groups      The number of groups.
+   * @param depth       The number of groups of which each group is a nested
+   *                    member, at most.
+   * @param isMemberOf  Indicates whether the isMemberOf attribute should be
+   *                    emulated and used to derive the groups of a user.
+   *
+   * @throws Exception  If the directory server could not be started or the
+   *                    resource mappings could not be read.
+   */
+  public InMemoryDirectory(final int users, final int groups, final int depth,
+                           final boolean isMemberOf)
+      throws Exception
+  {
+    final InMemoryDirectoryServerConfig config =
+        new InMemoryDirectoryServerConfig(BASE_DN);
+    config.setSchema(null);
+    ds = new InMemoryDirectoryServer(config);
+    ds.addEntries(createEntries(users, groups, depth, isMemberOf));
+
+    final List<ResourceMapper> mappers =
+        ResourceMapper.parse(createResourcesFile(isMemberOf));
+    final Map<ResourceDescriptor, ResourceMapper> mapperMap =
+        new HashMap<ResourceDescriptor, ResourceMapper>();
+    resourceDescriptors = new HashMap<String, ResourceDescriptor>();
+    for (final ResourceMapper mapper : mappers)
+    {
+      mapperMap.put(mapper.getResourceDescriptor(), mapper);
+      resourceDescriptors.put(mapper.getResourceDescriptor().getName(),
+          mapper.getResourceDescriptor());
+    }
+    backend = new InMemoryLDAPBackend(mapperMap, ds);
+
+    userIDs = new ArrayList<String>(users);
+    final SearchResult result = ds.search(PEOPLE_DN, SearchScope.ONE,
+        "(objectClass=inetOrgPerson)", "entryUUID");
+    for (final SearchResultEntry entry : result.getSearchEntries())
+    {
+      userIDs.add(entry.getAttributeValue("entryUUID"));
+    }
+  }
+
+
+
+  /**
+   * Retrieve the LDAP backend.
+   *
+   * @return  The LDAP backend.
+   */
+  public LDAPBackend getBackend()
+  {
+    return backend;
+  }
+
+
+
+  /**
+   * Retrieve the resource descriptor for a resource.
+   *
+   * @param name  The name of the resource, such as "User".
+   *
+   * @return  The resource descriptor, or {@code null} if there is no such
+   *          resource.
+   */
+  public ResourceDescriptor getResourceDescriptor(final String name)
+  {
+    return resourceDescriptors.get(name);
+  }
+
+
+
+  /**
+   * Retrieve the resource IDs of the users.
+   *
+   * @return  The resource IDs of the users.
+   */
+  public List<String> getUserIDs()
+  {
+    return userIDs;
+  }
+
+
+
+  /**
+   * Shut down the backend and the directory server.
+   */
+  public void shutDown()
+  {
+    backend.finalizeBackend();
+    ds.shutDown(true);
+  }
+
+
+
+  /**
+   * Create the entries of the synthetic DIT.
+   *
+   * @param users       The number of users.
+   * @param groups      The number of groups.
+   * @param depth       The number of groups of which each group is a nested
+   *                    member, at most.
+   * @param isMemberOf  Indicates whether the isMemberOf attribute should be
+   *                    stored in user entries.
+   *
+   * @return  The entries of the DIT, with each parent before its children.
+   */
+  private static List<Entry> createEntries(final int users, final int groups,
+                                           final int depth,
+                                           final boolean isMemberOf)
+  {
+    final List<Entry> entries = new ArrayList<Entry>(users + groups + 3);
+    entries.add(new Entry(BASE_DN,
+        new Attribute("objectClass", "top", "domain"),
+        new Attribute("dc", "example")));
+    entries.add(new Entry(PEOPLE_DN,
+        new Attribute("objectClass", "top", "organizationalUnit"),
+        new Attribute("ou", "people")));
+    entries.add(new Entry(GROUPS_DN,
+        new Attribute("objectClass", "top", "organizationalUnit"),
+        new Attribute("ou", "groups")));
+
+    final List<List<String>> groupMembers = new ArrayList<List<String>>();
+    for (int g = 0; g < groups; g++)
+    {
+      final List<String> members = new ArrayList<String>();
+      if (g % (depth + 1) < depth && g + 1 < groups)
+      {
+        members.add(getGroupDN(g + 1));
+      }
+      groupMembers.add(members);
+    }
+
+    for (int u = 0; u < users; u++)
+    {
+      final String userDN = getUserDN(u);
+      final Entry entry = new Entry(userDN,
+          new Attribute("objectClass", "top", "person",
+              "organizationalPerson", "inetOrgPerson"),
+          new Attribute("uid", "user." + u),
+          new Attribute("cn", "User " + u),
+          new Attribute("sn", "User"),
+          new Attribute("givenName", "Number" + u),
+          new Attribute("displayName", "User " + u),
+          new Attribute("title", "Engineer"),
+          new Attribute("mail", "user." + u + "@example.com"),
+          new Attribute("telephoneNumber", "+1 512 555 " + (1000 + u % 9000)),
+          new Attribute("postalAddress",
+              u + " Main Street, TX 78701"));
+
+      if (groups > 0)
+      {
+        final int group = u % groups;
+        groupMembers.get(group).add(userDN);
+        if (isMemberOf)
+        {
+          // The group itself and every group before it in its chain.
+          final List<String> memberOf = new ArrayList<String>();
+          for (int g = group; g >= 0; g--)
+          {
+            memberOf.add(getGroupDN(g));
+            if (g % (depth + 1) == 0)
+            {
+              break;
+            }
+          }
+          entry.addAttribute("isMemberOf", memberOf);
+        }
+      }
+      entries.add(entry);
+    }
+
+    for (int g = 0; g < groups; g++)
+    {
+      final Entry entry = new Entry(getGroupDN(g),
+          new Attribute("objectClass", "top", "groupOfNames"),
+          new Attribute("cn", "group." + g),
+          new Attribute("description", "Group " + g));
+      if (!groupMembers.get(g).isEmpty())
+      {
+        entry.addAttribute("member", groupMembers.get(g));
+      }
+      entries.add(entry);
+    }
+
+    return entries;
+  }
+
+
+
+  /**
+   * Create a copy of the default resource mappings, configured to use or not
+   * use the isMemberOf attribute.
+   *
+   * @param isMemberOf  Indicates whether the isMemberOf attribute should be
+   *                    used to derive the groups of a user.
+   *
+   * @return  The resource mappings file, which is deleted on exit.
+   *
+   * @throws IOException  If the file could not be written.
+   */
+  private static File createResourcesFile(final boolean isMemberOf)
+      throws IOException
+  {
+    final InputStream inputStream =
+        InMemoryDirectory.class.getResourceAsStream("resources.xml");
+    if (inputStream == null)
+    {
+      throw new IOException("resources.xml was not found");
+    }
+
+    final StringBuilder buffer = new StringBuilder();
+    try
+    {
+      final byte[] bytes = new byte[8192];
+      int length;
+      while ((length = inputStream.read(bytes)) > 0)
+      {
+        buffer.append(new String(bytes, 0, length, "UTF-8"));
+      }
+    }
+    finally
+    {
+      inputStream.close();
+    }
+
+    String resources = buffer.toString();
+    if (isMemberOf)
+    {
+      resources = resources.replace("<haveIsMemberOf>false</haveIsMemberOf>",
+          "<haveIsMemberOf>true</haveIsMemberOf>");
+    }
+
+    final File file = File.createTempFile("scim-benchmark-", ".xml");
+    file.deleteOnExit();
+    final OutputStream outputStream = new FileOutputStream(file);
+    try
+    {
+      outputStream.write(resources.getBytes("UTF-8"));
+    }
+    finally
+    {
+      outputStream.close();
+    }
+    return file;
+  }
+
+
+
+  /**
+   * Retrieve the DN of a user entry.
+   *
+   * @param index  The index of the user.
+   *
+   * @return  The DN of the user entry.
+   */
+  private static String getUserDN(final int index)
+  {
+    return "uid=user." + index + "," + PEOPLE_DN;
+  }
+
+
+
+  /**
+   * Retrieve the DN of a group entry.
+   *
+   * @param index  The index of the group.
+   *
+   * @return  The DN of the group entry.
+   */
+  private static String getGroupDN(final int index)
+  {
+    return "cn=group." + index + "," + GROUPS_DN;
+  }
+
+
+
+  /**
+   * An LDAP backend that processes every request with the in-memory
+   * directory server, ignoring the authenticated user.
+   */
+  private static final class InMemoryLDAPBackend
+      extends LDAPBackend
+  {
+    // The LDAP interface used for every request.
+    private final LDAPRequestInterface ldapInterface;
+
+
+
+    /**
+     * Create a new LDAP backend for an in-memory directory server.
+     *
+     * @param resourceMappers  The resource mappers.
+     * @param ds               The in-memory directory server.
+     */
+    private InMemoryLDAPBackend(
+        final Map<ResourceDescriptor, ResourceMapper> resourceMappers,
+        final InMemoryDirectoryServer ds)
+    {
+      super(resourceMappers);
+      this.ldapInterface = new LDAPRequestInterface(ds);
+    }
+
+
+
+    @Override
+    protected LDAPRequestInterface getLDAPRequestInterface(
+        final String userID)
+        throws SCIMException
+    {
+      return ldapInterface;
+    }
+
+
+
+    @Override
+    public void finalizeBackend()
+    {
+      // No implementation required.
+    }
+  }
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+package com.unboundid.scim.benchmarks;
+
+import com.unboundid.scim.data.BaseResource;
+import com.unboundid.scim.data.UserResource;
+import com.unboundid.scim.ldap.LDAPOperationTotals;
+import com.unboundid.scim.schema.ResourceDescriptor;
+import com.unboundid.scim.sdk.GetResourceRequest;
+import com.unboundid.scim.sdk.GetResourcesRequest;
+import com.unboundid.scim.sdk.PageParameters;
+import com.unboundid.scim.sdk.PatchResourceRequest;
+import com.unboundid.scim.sdk.PutResourceRequest;
+import com.unboundid.scim.sdk.Resources;
+import com.unboundid.scim.sdk.SCIMException;
+import com.unboundid.scim.sdk.SCIMFilter;
+import com.unboundid.scim.sdk.SCIMObject;
+import com.unboundid.scim.sdk.SCIMQueryAttributes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * This class benchmarks the LDAP backend and the default resource mappings
+ * against an in-memory directory server, so that the cost of mapping and of
+ * deriving attributes such as groups may be measured without an external
+ * directory server. Each benchmark picks a random user. The number of LDAP
+ * operations per SCIM request of each type is printed at the end of each
+ * trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LDAPBackendBenchmark
+{
+  /**
+   * The base URL of the SCIM service.
+   */
+  private static final URI BASE_URL = URI.create("https://localhost/v1/");
+
+  /**
+   * The number of users in the directory.
+   */
+  @Param({ "1000" })
+  private int users;
+
+  /**
+   * The number of groups in the directory.
+   */
+  @Param({ "100" })
+  private int groups;
+
+  /**
+   * The number of groups of which each group is a nested member, at most.
+   */
+  @Param({ "0", "3" })
+  private int depth;
+
+  /**
+   * Indicates whether the isMemberOf attribute is emulated and used to
+   * derive the groups of a user.
+   */
+  @Param({ "false", "true" })
+  private boolean isMemberOf;
+
+  // The directory server and backend.
+  private InMemoryDirectory directory;
+
+  // The User resource descriptor.
+  private ResourceDescriptor userDescriptor;
+
+  // All attributes of a user.
+  private SCIMQueryAttributes allAttributes;
+
+  // The attributes of a user that are not derived.
+  private SCIMQueryAttributes basicAttributes;
+
+  // The resource IDs of the users.
+  private List<String> userIDs;
+
+  // The replaceable attributes of each user, in the order of the IDs.
+  private List<SCIMObject> userObjects;
+
+  // The request, LDAP operation and entry counts for each type of request
+  // when setup completed.
+  private Map<String, long[]> initialTotals;
+
+
+
+  /**
+   * The per-thread state of the benchmarks.
+   */
+  @State(Scope.Thread)
+  public static class ThreadState
+  {
+    // The random number generator used to pick users.
+    private final Random random = new Random();
+
+    // The number of updates made by this thread.
+    private int updates;
+  }
+
+
+
+  /**
+   * Start the directory server and read the replaceable attributes of every
+   * user.
+   *
+   * @throws Exception  If the directory server could not be started.
+   */
+  @Setup
+  public void setUp()
+      throws Exception
+  {
+    directory = new InMemoryDirectory(users, groups, depth, isMemberOf);
+    userDescriptor = directory.getResourceDescriptor("User");
+    allAttributes = new SCIMQueryAttributes(userDescriptor, null);
+    basicAttributes = new SCIMQueryAttributes(userDescriptor,
+        "userName,name,emails,phoneNumbers,addresses,title");
+    userIDs = directory.getUserIDs();
+
+    userObjects = new ArrayList<SCIMObject>(userIDs.size());
+    for (final String id : userIDs)
+    {
+      final BaseResource resource = directory.getBackend().getResource(
+          new GetResourceRequest(BASE_URL, null, userDescriptor, id,
+              basicAttributes));
+      userObjects.add(resource.getScimObject());
+    }
+
+    initialTotals = new HashMap<String, long[]>();
+    for (final Map.Entry<String, LDAPOperationTotals> e :
+        directory.getBackend().getLDAPOperationTotals().entrySet())
+    {
+      final LDAPOperationTotals totals = e.getValue();
+      initialTotals.put(e.getKey(), new long[] { totals.getRequestCount(),
+          totals.getOperationCount(), totals.getEntriesReturned() });
+    }
+  }
+
+
+
+  /**
+   * Print the LDAP operations per SCIM request and stop the directory server.
+   */
+  @TearDown
+  public void tearDown()
+  {
+    for (final Map.Entry<String, LDAPOperationTotals> e :
+        directory.getBackend().getLDAPOperationTotals().entrySet())
+    {
+      final LDAPOperationTotals totals = e.getValue();
+      final long[] initial = initialTotals.get(e.getKey());
+      final long requests = totals.getRequestCount() - initial[0];
+      if (requests > 0)
+      {
+        System.out.printf("%n%s: %.2f LDAP operations and %.2f entries per " +
+            "SCIM request%n", e.getKey(),
+            (double) (totals.getOperationCount() - initial[1]) / requests,
+            (double) (totals.getEntriesReturned() - initial[2]) / requests);
+      }
+    }
+    directory.shutDown();
+  }
+
+
+
+  /**
+   * Benchmark retrieving all attributes of a user, including groups.
+   *
+   * @param state  The per-thread state.
+   *
+   * @return  The user.
+   *
+   * @throws SCIMException  If the request fails.
+   */
+  @Benchmark
+  public BaseResource getUser(final ThreadState state)
+      throws SCIMException
+  {
+    return directory.getBackend().getResource(new GetResourceRequest(
+        BASE_URL, null, userDescriptor, pickUser(state), allAttributes));
+  }
+
+
+
+  /**
+   * Benchmark retrieving the attributes of a user that are not derived.
+   *
+   * @param state  The per-thread state.
+   *
+   * @return  The user.
+   *
+   * @throws SCIMException  If the request fails.
+   */
+  @Benchmark
+  public BaseResource getUserBasicAttributes(final ThreadState state)
+      throws SCIMException
+  {
+    return directory.getBackend().getResource(new GetResourceRequest(
+        BASE_URL, null, userDescriptor, pickUser(state), basicAttributes));
+  }
+
+
+
+  /**
+   * Benchmark querying for a user by user name.
+   *
+   * @param state  The per-thread state.
+   *
+   * @return  The query results.
+   *
+   * @throws SCIMException  If the request fails.
+   */
+  @Benchmark
+  public Resources<?> queryUserByUserName(final ThreadState state)
+      throws SCIMException
+  {
+    final SCIMFilter filter = SCIMFilter.parse(
+        "userName eq \"user." + state.random.nextInt(users) + "\"");
+    return directory.getBackend().getResources(new GetResourcesRequest(
+        BASE_URL, null, userDescriptor, filter, null, null, null, null,
+        allAttributes));
+  }
+
+
+
+  /**
+   * Benchmark querying for a page of users.
+   *
+   * @return  The query results.
+   *
+   * @throws SCIMException  If the request fails.
+   */
+  @Benchmark
+  public Resources<?> queryUsersPage()
+      throws SCIMException
+  {
+    return directory.getBackend().getResources(new GetResourcesRequest(
+        BASE_URL, null, userDescriptor,
+        SCIMFilter.parse("title eq \"Engineer\""), null, null, null,
+        new PageParameters(1, 100), allAttributes));
+  }
+
+
+
+  /**
+   * Benchmark replacing a user with a new title.
+   *
+   * @param state  The per-thread state.
+   *
+   * @return  The replaced user.
+   *
+   * @throws SCIMException  If the request fails.
+   */
+  @Benchmark
+  public BaseResource putUser(final ThreadState state)
+      throws SCIMException
+  {
+    final int index = state.random.nextInt(userIDs.size());
+    final UserResource user = new UserResource(userDescriptor,
+        new SCIMObject(userObjects.get(index)));
+    user.setTitle(nextTitle(state));
+    return directory.getBackend().putResource(new PutResourceRequest(
+        BASE_URL, null, userDescriptor, userIDs.get(index),
+        user.getScimObject(), allAttributes));
+  }
+
+
+
+  /**
+   * Benchmark modifying the title of a user.
+   *
+   * @param state  The per-thread state.
+   *
+   * @return  The modified user.
+   *
+   * @throws SCIMException  If the request fails.
+   */
+  @Benchmark
+  public BaseResource patchUser(final ThreadState state)
+      throws SCIMException
+  {
+    final UserResource user = new UserResource(userDescriptor);
+    user.setTitle(nextTitle(state));
+    return directory.getBackend().patchResource(new PatchResourceRequest(
+        BASE_URL, null, userDescriptor, pickUser(state),
+        user.getScimObject(), allAttributes));
+  }
+
+
+
+  /**
+   * Pick a random user.
+   *
+   * @param state  The per-thread state.
+   *
+   * @return  The resource ID of the user.
+   */
+  private String pickUser(final ThreadState state)
+  {
+    return userIDs.get(state.random.nextInt(userIDs.size()));
+  }
+
+
+
+  /**
+   * Retrieve the title for the next update, which alternates so that every
+   * update changes the entry.
+   *
+   * @param state  The per-thread state.
+   *
+   * @return  The title.
+   */
+  private static String nextTitle(final ThreadState state)
+  {
+    return (state.updates++ % 2 == 0) ? "Manager" : "Engineer";
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+package com.unboundid.scim.benchmarks;
+
+import com.unboundid.scim.data.UserResource;
+import com.unboundid.scim.marshal.StreamMarshaller;
+import com.unboundid.scim.sdk.BulkOperation;
+import com.unboundid.scim.sdk.Resources;
+import com.unboundid.scim.sdk.SCIMException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * This class benchmarks writing a single user, a list of users and a bulk
+ * request with the stream marshallers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarshalBenchmark
+{
+  /**
+   * The number of users in the list and operations in the bulk request.
+   */
+  private static final int COUNT = 100;
+
+  /**
+   * The format to be written.
+   */
+  @Param({ "json", "xml" })
+  private String format;
+
+  /**
+   * The number of values of each multi-valued attribute of each user.
+   */
+  @Param({ "1", "10" })
+  private int size;
+
+  // The single user.
+  private UserResource user;
+
+  // The list of users.
+  private Resources<UserResource> users;
+
+  // The bulk operations.
+  private List<BulkOperation> operations;
+
+  // The buffer to which content is written, reused by each invocation.
+  private ByteArrayOutputStream outputStream;
+
+
+
+  /**
+   * Generate the content to be written.
+   */
+  @Setup
+  public void setUp()
+  {
+    user = Corpus.createUser(size);
+    users = new Resources<UserResource>(Corpus.createUsers(COUNT, size));
+    operations = Corpus.createBulkOperations(COUNT, size);
+    outputStream = new ByteArrayOutputStream(1024 * 1024);
+  }
+
+
+
+  /**
+   * Benchmark writing a single user.
+   *
+   * @return  The number of bytes written.
+   *
+   * @throws SCIMException  If the user could not be written.
+   */
+  @Benchmark
+  public int marshalResource()
+      throws SCIMException
+  {
+    final StreamMarshaller marshaller = createMarshaller();
+    marshaller.marshal(user);
+    marshaller.close();
+    return outputStream.size();
+  }
+
+
+
+  /**
+   * Benchmark writing a list of users.
+   *
+   * @return  The number of bytes written.
+   *
+   * @throws SCIMException  If the users could not be written.
+   */
+  @Benchmark
+  public int marshalResources()
+      throws SCIMException
+  {
+    final StreamMarshaller marshaller = createMarshaller();
+    marshaller.marshal(users);
+    marshaller.close();
+    return outputStream.size();
+  }
+
+
+
+  /**
+   * Benchmark writing a bulk request.
+   *
+   * @return  The number of bytes written.
+   *
+   * @throws SCIMException  If the bulk request could not be written.
+   */
+  @Benchmark
+  public int marshalBulk()
+      throws SCIMException
+  {
+    final StreamMarshaller marshaller = createMarshaller();
+    marshaller.bulkMarshal(-1, operations);
+    marshaller.close();
+    return outputStream.size();
+  }
+
+
+
+  /**
+   * Create a stream marshaller that writes to the reused buffer.
+   *
+   * @return  The stream marshaller.
+   *
+   * @throws SCIMException  If the stream marshaller could not be created.
+   */
+  private StreamMarshaller createMarshaller()
+      throws SCIMException
+  {
+    outputStream.reset();
+    return Corpus.getStreamMarshaller(format, outputStream);
+  }
+}
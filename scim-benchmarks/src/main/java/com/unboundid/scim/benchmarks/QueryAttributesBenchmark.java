@@ -0,0 +1,98 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+package com.unboundid.scim.benchmarks;
+
+import com.unboundid.scim.schema.CoreSchema;
+import com.unboundid.scim.sdk.InvalidResourceException;
+import com.unboundid.scim.sdk.SCIMObject;
+import com.unboundid.scim.sdk.SCIMQueryAttributes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * This class benchmarks paring a user down to the attributes requested by
+ * the attributes query parameter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryAttributesBenchmark
+{
+  /**
+   * The value of the attributes query parameter.
+   */
+  @Param({ "userName", "userName,name.givenName,emails",
+           "id,userName,name,emails,phoneNumbers,addresses,groups,meta" })
+  private String attributes;
+
+  /**
+   * The number of values of each multi-valued attribute of the user.
+   */
+  @Param({ "1", "10" })
+  private int size;
+
+  // The requested attributes.
+  private SCIMQueryAttributes queryAttributes;
+
+  // The user to be pared down.
+  private SCIMObject resource;
+
+
+
+  /**
+   * Parse the requested attributes and generate the user.
+   *
+   * @throws InvalidResourceException  If the attributes are not valid.
+   */
+  @Setup
+  public void setUp()
+      throws InvalidResourceException
+  {
+    queryAttributes =
+        new SCIMQueryAttributes(CoreSchema.USER_DESCRIPTOR, attributes);
+    resource = Corpus.createUser(size).getScimObject();
+  }
+
+
+
+  /**
+   * Benchmark paring down the user.
+   *
+   * @return  The pared down user.
+   */
+  @Benchmark
+  public SCIMObject pareObject()
+  {
+    return queryAttributes.pareObject(resource);
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+package com.unboundid.scim.benchmarks;
+
+import com.unboundid.scim.data.BulkConfig;
+import com.unboundid.scim.data.UserResource;
+import com.unboundid.scim.marshal.Marshaller;
+import com.unboundid.scim.marshal.Unmarshaller;
+import com.unboundid.scim.schema.CoreSchema;
+import com.unboundid.scim.schema.ResourceDescriptor;
+import com.unboundid.scim.sdk.BulkContentHandler;
+import com.unboundid.scim.sdk.BulkOperation;
+import com.unboundid.scim.sdk.Resources;
+import com.unboundid.scim.sdk.SCIMException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * This class benchmarks reading a single user, a list of users and a bulk
+ * request with the unmarshallers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnmarshalBenchmark
+{
+  /**
+   * The number of users in the list and operations in the bulk request.
+   */
+  private static final int COUNT = 100;
+
+  /**
+   * The bulk configuration, which places no practical limit on the content.
+   */
+  private static final BulkConfig BULK_CONFIG =
+      new BulkConfig(true, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+  /**
+   * The format to be read.
+   */
+  @Param({ "json", "xml" })
+  private String format;
+
+  /**
+   * The number of values of each multi-valued attribute of each user.
+   */
+  @Param({ "1", "10" })
+  private int size;
+
+  // The unmarshaller for the format.
+  private Unmarshaller unmarshaller;
+
+  // The encoded single user.
+  private byte[] userBytes;
+
+  // The encoded list of users.
+  private byte[] usersBytes;
+
+  // The encoded bulk request.
+  private byte[] bulkBytes;
+
+
+
+  /**
+   * Generate and encode the content to be read.
+   *
+   * @throws SCIMException  If the content could not be encoded.
+   */
+  @Setup
+  public void setUp()
+      throws SCIMException
+  {
+    final Marshaller marshaller = Corpus.getMarshaller(format);
+    unmarshaller = Corpus.getUnmarshaller(format);
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    marshaller.marshal(Corpus.createUser(size), outputStream);
+    userBytes = outputStream.toByteArray();
+
+    outputStream = new ByteArrayOutputStream();
+    marshaller.marshal(
+        new Resources<UserResource>(Corpus.createUsers(COUNT, size)),
+        outputStream);
+    usersBytes = outputStream.toByteArray();
+
+    outputStream = new ByteArrayOutputStream();
+    marshaller.bulkMarshal(outputStream, -1,
+        Corpus.createBulkOperations(COUNT, size));
+    bulkBytes = outputStream.toByteArray();
+  }
+
+
+
+  /**
+   * Benchmark reading a single user.
+   *
+   * @return  The user that was read.
+   *
+   * @throws SCIMException  If the user could not be read.
+   */
+  @Benchmark
+  public UserResource unmarshalResource()
+      throws SCIMException
+  {
+    return unmarshaller.unmarshal(new ByteArrayInputStream(userBytes),
+        CoreSchema.USER_DESCRIPTOR, UserResource.USER_RESOURCE_FACTORY);
+  }
+
+
+
+  /**
+   * Benchmark reading a list of users.
+   *
+   * @return  The users that were read.
+   *
+   * @throws SCIMException  If the users could not be read.
+   */
+  @Benchmark
+  public Resources<UserResource> unmarshalResources()
+      throws SCIMException
+  {
+    return unmarshaller.unmarshalResources(
+        new ByteArrayInputStream(usersBytes), CoreSchema.USER_DESCRIPTOR,
+        UserResource.USER_RESOURCE_FACTORY);
+  }
+
+
+
+  /**
+   * Benchmark reading a bulk request.
+   *
+   * @return  The number of operations that were read.
+   *
+   * @throws SCIMException  If the bulk request could not be read.
+   */
+  @Benchmark
+  public int bulkUnmarshal()
+      throws SCIMException
+  {
+    final int[] operationCount = new int[1];
+    unmarshaller.bulkUnmarshal(new ByteArrayInputStream(bulkBytes),
+        BULK_CONFIG, new BulkContentHandler()
+        {
+          @Override
+          public void handleOperation(final int opIndex,
+                                      final BulkOperation bulkOperation)
+          {
+            operationCount[0]++;
+          }
+
+          @Override
+          public ResourceDescriptor getResourceDescriptor(
+              final String endpoint)
+          {
+            return CoreSchema.USER_DESCRIPTOR;
+          }
+        });
+    return operationCount[0];
+  }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+/**
+ * This package contains JMH benchmarks for the most frequently executed
+ * parts of the SCIM SDK: filter parsing and evaluation, marshalling and
+ * unmarshalling, resource differences and attribute paring, along with
+ * benchmarks of the LDAP backend against an in-memory directory server. The
+ * benchmarks are built only when the benchmarks profile is active:
+ * <pre>
+ *   mvn -Pbenchmarks -pl scim-benchmarks -am package -DskipTests
+ *   java -jar scim-benchmarks/target/benchmarks.jar -prof gc
+ * </pre>
+ * The {@code -prof gc} option reports the bytes allocated per operation
+ * alongside the time taken. A subset of the benchmarks may be selected with a
+ * regular expression, such as {@code java -jar benchmarks.jar Filter}.
+ */
+package com.unboundid.scim.benchmarks;
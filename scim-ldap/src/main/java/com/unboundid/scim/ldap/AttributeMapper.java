@@ -117,6 +117,27 @@ public abstract class AttributeMapper
 
 
 
+  /**
+   * Indicates whether the LDAP filter produced by {@link #toLDAPFilter} for
+   * the provided SCIM filter matches exactly the entries whose mapped SCIM
+   * attribute matches the SCIM filter, rather than a superset of them. This
+   * implementation returns {@code false}.
+   *
+   * @param filter  The SCIM filter, which identifies the SCIM attribute that
+   *                is mapped by this attribute mapper, or one of its
+   *                sub-attributes.
+   *
+   * @return  {@code true} if the LDAP filter is an exact translation of the
+   *          SCIM filter, or {@code false} if the LDAP search results must
+   *          be filtered again using the SCIM filter.
+   */
+  public boolean isExactLDAPFilter(final SCIMFilter filter)
+  {
+    return false;
+  }
+
+
+
   /**
    * Map the provided SCIM attribute to LDAP attributes.
    *
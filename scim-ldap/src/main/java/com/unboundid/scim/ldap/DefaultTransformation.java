@@ -92,4 +92,15 @@ public class DefaultTransformation extends Transformation
   {
     return scimFilterValue;
   }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isExactFilterValue()
+  {
+    return true;
+  }
 }
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.ldap;
+
+import javax.ws.rs.core.EntityTag;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+
+
+/**
+ * This class provides a bounded cache of the most recently read entity tag of
+ * each resource, so that a conditional GET request for a resource that has not
+ * changed may be answered without reading the resource from the directory.
+ * <p>
+ * An entity tag is only returned to a user who has read the resource with
+ * that entity tag, so that the cache does not reveal anything about a
+ * resource that the user would not otherwise be able to read. Entries expire
+ * after a fixed time so that changes made to the directory by other clients
+ * are eventually noticed, and are removed whenever the resource is modified
+ * through the LDAP backend.
+ * <p>
+ * The cache is divided into stripes by the hash of the resource key, each
+ * with its own lock, so that concurrent requests for different resources
+ * rarely contend. Each stripe holds an equal share of the maximum number of
+ * resources and evicts its least recently used resource when it is full.
+ * <p>
+ * A read of a resource may race with a modification, so that the entity tag
+ * read before the modification would be cached after the modification has
+ * removed it. To prevent this, each removal advances a generation counter
+ * for the stripe of the resource. A reader obtains the generation with
+ * {@link #getGeneration} before it reads the resource, and its entity tag is
+ * not cached if the generation has changed by the time it is put. The
+ * counters are shared by the resources in a stripe, so that their number is
+ * bounded, at the cost of occasionally not caching an entity tag.
+ */
+final class EntityTagCache
+{
+  /**
+   * The number of stripes, which is a power of two.
+   */
+  static final int STRIPES = 64;
+
+  // The time in milliseconds for which an entity tag remains valid.
+  private final long timeToLiveMillis;
+
+  // The stripes holding the cached entity tags.
+  private final Stripe[] stripes = new Stripe[STRIPES];
+
+
+
+  /**
+   * Create a new entity tag cache.
+   *
+   * @param maxEntries        The maximum number of resources in the cache,
+   *                          which is rounded up to a multiple of the number
+   *                          of stripes.
+   * @param timeToLiveMillis  The time in milliseconds for which an entity tag
+   *                          remains valid.
+   */
+  EntityTagCache(final int maxEntries, final long timeToLiveMillis)
+  {
+    this.timeToLiveMillis = timeToLiveMillis;
+
+    final int maxStripeEntries =
+        Math.max(1, (int) ((maxEntries + STRIPES - 1L) / STRIPES));
+    for (int i = 0; i < STRIPES; i++)
+    {
+      stripes[i] = new Stripe(maxStripeEntries);
+    }
+  }
+
+
+
+  /**
+   * Retrieve the cached entity tag of a resource.
+   *
+   * @param resourceKey  The key identifying the resource.
+   * @param userID       The authenticated user ID for the request.
+   *
+   * @return  The cached entity tag, or {@code null} if there is no valid
+   *          entity tag that has been read by the user.
+   */
+  EntityTag get(final String resourceKey, final String userID)
+  {
+    final Stripe stripe = stripes[getStripe(resourceKey)];
+    synchronized (stripe)
+    {
+      final CachedEntityTag cached = stripe.entries.get(resourceKey);
+      if (cached == null)
+      {
+        return null;
+      }
+
+      if (System.currentTimeMillis() >= cached.expiryTime)
+      {
+        stripe.entries.remove(resourceKey);
+        return null;
+      }
+
+      return cached.userIDs.contains(userID) ? cached.entityTag : null;
+    }
+  }
+
+
+
+  /**
+   * Retrieve the current generation of a resource, which must be obtained
+   * before the resource is read and provided when its entity tag is put.
+   *
+   * @param resourceKey  The key identifying the resource.
+   *
+   * @return  The current generation of the resource.
+   */
+  long getGeneration(final String resourceKey)
+  {
+    final Stripe stripe = stripes[getStripe(resourceKey)];
+    synchronized (stripe)
+    {
+      return stripe.generation;
+    }
+  }
+
+
+
+  /**
+   * Record the entity tag of a resource that has been read by a user, unless
+   * the resource has been removed from the cache since the read began.
+   *
+   * @param resourceKey  The key identifying the resource.
+   * @param userID       The authenticated user ID for the request.
+   * @param entityTag    The entity tag that was read.
+   * @param generation   The generation of the resource obtained before it
+   *                     was read.
+   */
+  void put(final String resourceKey, final String userID,
+           final EntityTag entityTag, final long generation)
+  {
+    final Stripe stripe = stripes[getStripe(resourceKey)];
+    synchronized (stripe)
+    {
+      if (stripe.generation != generation)
+      {
+        return;
+      }
+
+      CachedEntityTag cached = stripe.entries.get(resourceKey);
+      if (cached == null || !cached.entityTag.equals(entityTag) ||
+          System.currentTimeMillis() >= cached.expiryTime)
+      {
+        cached = new CachedEntityTag(entityTag,
+            System.currentTimeMillis() + timeToLiveMillis);
+        stripe.entries.put(resourceKey, cached);
+      }
+      cached.userIDs.add(userID);
+    }
+  }
+
+
+
+  /**
+   * Remove the entity tag of a resource, which must be done whenever the
+   * resource is modified.
+   *
+   * @param resourceKey  The key identifying the resource.
+   */
+  void remove(final String resourceKey)
+  {
+    final Stripe stripe = stripes[getStripe(resourceKey)];
+    synchronized (stripe)
+    {
+      stripe.entries.remove(resourceKey);
+      stripe.generation++;
+    }
+  }
+
+
+
+  /**
+   * Retrieve the number of resources in the cache.
+   *
+   * @return  The number of resources in the cache.
+   */
+  int size()
+  {
+    int size = 0;
+    for (final Stripe stripe : stripes)
+    {
+      synchronized (stripe)
+      {
+        size += stripe.entries.size();
+      }
+    }
+    return size;
+  }
+
+
+
+  /**
+   * Retrieve the index of the stripe holding a resource.
+   *
+   * @param resourceKey  The key identifying the resource.
+   *
+   * @return  The index of the stripe holding the resource.
+   */
+  static int getStripe(final String resourceKey)
+  {
+    return resourceKey.hashCode() & (STRIPES - 1);
+  }
+
+
+
+  /**
+   * A stripe of the cache. Its fields are guarded by its own lock.
+   */
+  private static final class Stripe
+  {
+    // The cached entity tags, keyed by resource, in least recently used
+    // order.
+    private final LinkedHashMap<String, CachedEntityTag> entries;
+
+    // The number of removals of the resources in this stripe.
+    private long generation;
+
+
+
+    /**
+     * Create a new stripe.
+     *
+     * @param maxEntries  The maximum number of resources in the stripe.
+     */
+    private Stripe(final int maxEntries)
+    {
+      entries = new LinkedHashMap<String, CachedEntityTag>(16, 0.75f, true)
+      {
+        private static final long serialVersionUID = 2416427539474563106L;
+
+        @Override
+        protected boolean removeEldestEntry(
+            final Map.Entry<String, CachedEntityTag> eldest)
+        {
+          return size() > maxEntries;
+        }
+      };
+    }
+  }
+
+
+
+  /**
+   * An entity tag and the users who have read it.
+   */
+  private static final class CachedEntityTag
+  {
+    // The entity tag.
+    private final EntityTag entityTag;
+
+    // The time at which the entity tag expires.
+    private final long expiryTime;
+
+    // The IDs of the users who have read the entity tag. A null user ID
+    // represents an unauthenticated request.
+    private final Set<String> userIDs = new HashSet<String>(2);
+
+
+
+    /**
+     * Create a new cached entity tag.
+     *
+     * @param entityTag   The entity tag.
+     * @param expiryTime  The time at which the entity tag expires.
+     */
+    private CachedEntityTag(final EntityTag entityTag, final long expiryTime)
+    {
+      this.entityTag = entityTag;
+      this.expiryTime = expiryTime;
+    }
+  }
+}
@@ -39,6 +39,7 @@ import com.unboundid.scim.sdk.SCIMException;
 import com.unboundid.scim.sdk.SCIMFilter;
 import com.unboundid.scim.sdk.SCIMFilterType;
 import com.unboundid.scim.sdk.SCIMObject;
+import com.unboundid.scim.sdk.StripedCounter;
 import com.unboundid.util.StaticUtils;
 
 import java.util.ArrayList;
@@ -164,6 +165,16 @@ public class GroupsDerivedAttribute extends DerivedAttribute
   private static final ThreadLocal<Map<DN, SearchResultEntry>> GROUP_CACHES =
       new ThreadLocal<Map<DN, SearchResultEntry>>();
 
+  /**
+   * The number of groups found in the per-request caches.
+   */
+  private static final StripedCounter CACHE_HITS = new StripedCounter();
+
+  /**
+   * The number of groups not found in the per-request caches.
+   */
+  private static final StripedCounter CACHE_MISSES = new StripedCounter();
+
   /**
    * The attribute descriptor for the derived attribute.
    */
@@ -230,27 +241,41 @@ public class GroupsDerivedAttribute extends DerivedAttribute
           final String[] attrsToGet =
               attrList.toArray(new String[attrList.size()]);
 
+          // Retrieve the group entries that are not cached together, so that
+          // the searches may overlap.
+          Map<DN, SearchResultEntry> groupCache = null;
+          if (groupsToCachePerRequest > 0)
+          {
+            groupCache = GROUP_CACHES.get();
+            if (groupCache == null)
+            {
+              groupCache = new LinkedHashMap<DN, SearchResultEntry>();
+              GROUP_CACHES.set(groupCache);
+            }
+          }
+
+          final List<String> groupDNs = new ArrayList<String>();
+          final List<SearchResultEntry> groupEntries =
+              new ArrayList<SearchResultEntry>();
+          final List<SearchRequest> searchRequests =
+              new ArrayList<SearchRequest>();
           for (final String dnString :
               entry.getAttributeValues(ATTR_IS_MEMBER_OF))
           {
             // Make sure the group is scoped within the base DN.
             if (groupResolver.isDnInScope(dnString))
             {
-              SearchRequest searchRequest;
               SearchResultEntry groupEntry = null;
-              Map<DN, SearchResultEntry> groupCache =
-                  GROUP_CACHES.get();
-              DN groupDN = new DN(dnString);
-              if (groupsToCachePerRequest > 0)
+              if (groupCache != null)
               {
-                if (groupCache == null)
+                groupEntry = groupCache.get(new DN(dnString));
+                if (groupEntry == null)
                 {
-                  groupCache = new LinkedHashMap<DN, SearchResultEntry>();
-                  GROUP_CACHES.set(groupCache);
+                  CACHE_MISSES.increment();
                 }
                 else
                 {
-                  groupEntry = groupCache.get(groupDN);
+                  CACHE_HITS.increment();
                 }
               }
 
@@ -258,61 +283,74 @@ public class GroupsDerivedAttribute extends DerivedAttribute
               {
                 // Retrieve the group entry and pass in the search param filter
                 // if available.
-                searchRequest =
+                final SearchRequest searchRequest =
                     new SearchRequest(dnString, SearchScope.BASE,
                         groupResolver.getFilterString(),
                         attrsToGet);
                 searchRequest.setSizeLimit(1);
-                groupEntry = ldapInterface.searchForEntry(searchRequest);
+                searchRequests.add(searchRequest);
+              }
+              groupDNs.add(dnString);
+              groupEntries.add(groupEntry);
+            }
+          }
 
-                if (groupEntry != null && groupCache != null)
+          final Iterator<SearchResultEntry> retrievedEntries =
+              ldapInterface.searchForEntries(searchRequests, false).iterator();
+          for (int i = 0; i < groupDNs.size(); i++)
+          {
+            final String dnString = groupDNs.get(i);
+            SearchResultEntry groupEntry = groupEntries.get(i);
+            if (groupEntry == null)
+            {
+              groupEntry = retrievedEntries.next();
+              if (groupEntry != null && groupCache != null)
+              {
+                groupCache.put(new DN(dnString), groupEntry);
+
+                if (groupCache.size() > groupsToCachePerRequest)
                 {
-                  groupCache.put(groupDN, groupEntry);
-
-                  if (groupCache.size() > groupsToCachePerRequest)
-                  {
-                    // We have cached too many groups for this request, so we
-                    // remove the oldest group from the cache.
-                    Iterator<DN> it = groupCache.keySet().iterator();
-                    it.next();
-                    it.remove();
-                  }
+                  // We have cached too many groups for this request, so we
+                  // remove the oldest group from the cache.
+                  Iterator<DN> it = groupCache.keySet().iterator();
+                  it.next();
+                  it.remove();
                 }
               }
+            }
 
-              if (groupEntry != null)
+            if (groupEntry != null)
+            {
+              // This group is considered direct iff it is a non-virtual
+              // static group and the entry is listed as a member or
+              // uniqueMember of this group (i.e. it's not nested).
+              boolean isDirect = false;
+              if (haveIsDirectMemberOf)
               {
-                // This group is considered direct iff it is a non-virtual
-                // static group and the entry is listed as a member or
-                // uniqueMember of this group (i.e. it's not nested).
-                boolean isDirect = false;
-                if (haveIsDirectMemberOf)
-                {
-                  isDirect = entry.hasAttributeValue(
-                      ATTR_IS_DIRECT_MEMBER_OF, dnString);
-                }
-                else
+                isDirect = entry.hasAttributeValue(
+                    ATTR_IS_DIRECT_MEMBER_OF, dnString);
+              }
+              else
+              {
+                if(!groupEntry.hasObjectClass(OC_GROUP_OF_URLS) &&
+                   !groupEntry.hasObjectClass(OC_VIRTUAL_STATIC_GROUP))
                 {
-                  if(!groupEntry.hasObjectClass(OC_GROUP_OF_URLS) &&
-                     !groupEntry.hasObjectClass(OC_VIRTUAL_STATIC_GROUP))
-                  {
-                    // Make sure the entry DN is listed as a member or
-                    // uniqueMember.
-                    searchRequest =
-                        new SearchRequest(dnString, SearchScope.BASE,
-                            groupsFilter(entry.getDN(), false),
-                            "1.1");
-                    searchRequest.setSizeLimit(1);
-                    isDirect =
-                        ldapInterface.searchForEntry(searchRequest) != null;
-                  }
+                  // Make sure the entry DN is listed as a member or
+                  // uniqueMember.
+                  final SearchRequest searchRequest =
+                      new SearchRequest(dnString, SearchScope.BASE,
+                          groupsFilter(entry.getDN(), false),
+                          "1.1");
+                  searchRequest.setSizeLimit(1);
+                  isDirect =
+                      ldapInterface.searchForEntry(searchRequest) != null;
                 }
-                final String resourceID =
-                    groupResolver.getIdFromEntry(groupEntry);
-                values.add(createGroupValue(
-                    resourceID,
-                    groupEntry.getAttributeValue(ATTR_CN), isDirect));
               }
+              final String resourceID =
+                  groupResolver.getIdFromEntry(groupEntry);
+              values.add(createGroupValue(
+                  resourceID,
+                  groupEntry.getAttributeValue(ATTR_CN), isDirect));
             }
           }
         }
@@ -675,4 +713,25 @@ public class GroupsDerivedAttribute extends DerivedAttribute
   {
     GROUP_CACHES.remove();
   }
+
+  /**
+   * Retrieve the number of groups found in the per-request caches.
+   *
+   * @return  The number of groups found in the per-request caches.
+   */
+  static long getCacheHits()
+  {
+    return CACHE_HITS.sum();
+  }
+
+  /**
+   * Retrieve the number of groups that were looked up in the per-request
+   * caches but not found.
+   *
+   * @return  The number of groups not found in the per-request caches.
+   */
+  static long getCacheMisses()
+  {
+    return CACHE_MISSES.sum();
+  }
 }
@@ -55,6 +55,7 @@ import com.unboundid.scim.sdk.Debug;
 import com.unboundid.scim.sdk.DebugType;
 import com.unboundid.scim.sdk.Diff;
 import com.unboundid.scim.sdk.InvalidResourceException;
+import com.unboundid.scim.sdk.MetricFamily;
 import com.unboundid.scim.sdk.PatchResourceRequest;
 import com.unboundid.scim.sdk.ResourceNotFoundException;
 import com.unboundid.scim.sdk.Resources;
@@ -80,6 +81,7 @@ import com.unboundid.scim.sdk.UnsupportedOperationException;
 import com.unboundid.util.StaticUtils;
 import com.unboundid.util.Validator;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.UriBuilder;
 
@@ -87,13 +89,18 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import static com.unboundid.scim.sdk.SCIMConstants.SCHEMA_URI_CORE;
 
@@ -117,6 +124,18 @@ public abstract class LDAPBackend
   private static final String MODIFY_TIMESTAMP_ATTR = "modifyTimestamp";
   private static final String DS_UPDATE_TIME_ATTR = "ds-update-time";
 
+  /**
+   * The name of the logger to which slow requests are written.
+   */
+  public static final String SLOW_REQUEST_LOGGER_NAME =
+      "com.unboundid.scim.ldap.slow-requests";
+
+  /**
+   * The logger to which slow requests are written.
+   */
+  private static final Logger SLOW_REQUEST_LOGGER =
+      Logger.getLogger(SLOW_REQUEST_LOGGER_NAME);
+
   /**
    * The resource mappers configured for SCIM resource end-points.
    */
@@ -151,6 +170,36 @@ public abstract class LDAPBackend
    */
   private String entityTagAttribute = null;
 
+  /**
+   * Flag to indicate whether the response to a create request may be built
+   * from the submitted entry rather than by reading back the added entry.
+   */
+  private boolean fastCreate = false;
+
+  /**
+   * Flag to indicate whether query results may be returned without
+   * evaluating the SCIM filter when the LDAP filter is an exact translation.
+   */
+  private boolean trustExactFilters = false;
+
+  /**
+   * The cache of entity tags used to answer conditional GET requests, or
+   * {@code null} if entity tags are not cached.
+   */
+  private volatile EntityTagCache entityTagCache = null;
+
+  /**
+   * The processing time in milliseconds at or above which a request is
+   * written to the slow request log, or a negative value if slow requests are
+   * not logged.
+   */
+  private volatile long slowRequestThresholdMillis = -1L;
+
+  /**
+   * The LDAP operations processed for each type of SCIM request.
+   */
+  private final Map<String, LDAPOperationTotals> ldapOperationTotals;
+
   static
   {
     HashSet<String> attrs = new HashSet<String>(4);
@@ -173,6 +222,15 @@ public abstract class LDAPBackend
       final Map<ResourceDescriptor, ResourceMapper> resourceMappers)
   {
     this.resourceMappers = resourceMappers;
+
+    final Map<String, LDAPOperationTotals> totals =
+        new LinkedHashMap<String, LDAPOperationTotals>();
+    for (final String operation :
+        new String[] { "get", "query", "post", "put", "patch", "delete" })
+    {
+      totals.put(operation, new LDAPOperationTotals());
+    }
+    this.ldapOperationTotals = Collections.unmodifiableMap(totals);
   }
 
 
@@ -190,6 +248,18 @@ public abstract class LDAPBackend
 
 
 
+  /**
+   * Retrieves the resource mappers configured for SCIM resource end-points.
+   *
+   * @return  The resource mappers configured for SCIM resource end-points.
+   */
+  Map<ResourceDescriptor, ResourceMapper> getResourceMappers()
+  {
+    return resourceMappers;
+  }
+
+
+
   /**
    * Configures this LDAPBackend to use or not use the PostReadRequestControl.
    *
@@ -292,6 +362,148 @@ public abstract class LDAPBackend
 
 
 
+  /**
+   * Configures this LDAPBackend to build the response to a create request
+   * from the submitted entry, rather than reading back the added entry, when
+   * the PostReadRequestControl is not supported. The read-back is still
+   * performed if versioning is enabled or if the resource ID maps to an
+   * attribute that is not in the submitted entry. The create and modify
+   * timestamps are assumed to be the current time, any values that the
+   * directory server would have generated or normalized are not reflected in
+   * the response, and derived attributes such as groups are only returned if
+   * they are explicitly requested.
+   *
+   * @param fastCreate {@code true} if the added entry should not be read back,
+   *                   {@code false} if it should.
+   */
+  public void setFastCreate(final boolean fastCreate)
+  {
+    this.fastCreate = fastCreate;
+  }
+
+
+
+  /**
+   * Determines if this LDAPBackend builds the response to a create request
+   * from the submitted entry.
+   *
+   * @return {@code true} if the added entry is not read back, {@code false}
+   *         otherwise.
+   */
+  public boolean isFastCreate()
+  {
+    return this.fastCreate;
+  }
+
+
+
+  /**
+   * Configures this LDAPBackend to return query results without evaluating
+   * the SCIM filter against each of them, and without retrieving the LDAP
+   * attributes referenced only by the filter, when the resource mappers report
+   * that the LDAP filter is an exact translation of the SCIM filter. This is
+   * only correct if the LDAP attributes used in such filters have matching
+   * rules consistent with the SCIM attributes and hold a single value, since
+   * otherwise the directory server may return entries that the SCIM filter
+   * would not have matched.
+   *
+   * @param trustExactFilters {@code true} if exact LDAP filters should not be
+   *                          evaluated again, {@code false} if the SCIM
+   *                          filter should always be evaluated.
+   */
+  public void setTrustExactFilters(final boolean trustExactFilters)
+  {
+    this.trustExactFilters = trustExactFilters;
+  }
+
+
+
+  /**
+   * Determines if this LDAPBackend returns query results without evaluating
+   * the SCIM filter when the LDAP filter is an exact translation.
+   *
+   * @return {@code true} if exact LDAP filters are not evaluated again,
+   *         {@code false} otherwise.
+   */
+  public boolean isTrustExactFilters()
+  {
+    return this.trustExactFilters;
+  }
+
+
+
+  /**
+   * Determines whether the results of a query need not be filtered using the
+   * SCIM filter after the LDAP search.
+   *
+   * @param resourceMapper  The resource mapper for the queried resources.
+   * @param filter          The SCIM filter, or {@code null} if the query has
+   *                        no filter.
+   *
+   * @return  {@code true} if the LDAP search results are exactly the results
+   *          of the query.
+   *
+   * @throws SCIMException  If the filter references an undefined attribute.
+   */
+  boolean isExactFilter(final ResourceMapper resourceMapper,
+                        final SCIMFilter filter)
+      throws SCIMException
+  {
+    return filter == null ||
+        (trustExactFilters && resourceMapper.isExactLDAPFilter(filter));
+  }
+
+
+
+  /**
+   * Specifies the processing time at or above which a request is written to
+   * the slow request log, along with a description of each LDAP operation
+   * processed for the request. The descriptions name the attributes of each
+   * operation but do not include their values, and search filters are
+   * written with their assertion values replaced by a question mark. The
+   * query parameters of the request are named, but their values are not
+   * written. Slow requests are logged at
+   * the INFO level to the logger named by {@link #SLOW_REQUEST_LOGGER_NAME}.
+   *
+   * @param slowRequestThresholdMillis  The threshold in milliseconds, or a
+   *                                    negative value if slow requests should
+   *                                    not be logged.
+   */
+  public void setSlowRequestThresholdMillis(
+      final long slowRequestThresholdMillis)
+  {
+    this.slowRequestThresholdMillis = slowRequestThresholdMillis;
+  }
+
+
+
+  /**
+   * Retrieve the processing time at or above which a request is written to
+   * the slow request log.
+   *
+   * @return  The threshold in milliseconds, or a negative value if slow
+   *          requests are not logged.
+   */
+  public long getSlowRequestThresholdMillis()
+  {
+    return slowRequestThresholdMillis;
+  }
+
+
+
+  /**
+   * Retrieve the LDAP operations processed for each type of SCIM request. The
+   * keys are "get", "query", "post", "put", "patch" and "delete".
+   *
+   * @return  The LDAP operations processed for each type of SCIM request.
+   */
+  public Map<String, LDAPOperationTotals> getLDAPOperationTotals()
+  {
+    return ldapOperationTotals;
+  }
+
+
+
   /**
    * Retrieves the attribute whose value to use as the entity tag.
    *
@@ -321,6 +533,37 @@ public abstract class LDAPBackend
 
 
 
+  /**
+   * Configures this LDAPBackend to cache the entity tag of recently read
+   * resources, so that a conditional GET request for a resource that has not
+   * changed may be answered without reading the resource from the directory.
+   * A cached entity tag is only used for a user who has read the resource
+   * with that entity tag, and is discarded when the resource is modified
+   * through this backend. Changes made to the directory by other clients are
+   * not noticed until the entity tag expires, so the time to live should be
+   * no longer than clients may tolerate a stale resource. Entity tags are
+   * only cached if entity tag support is enabled.
+   *
+   * @param maxEntries        The maximum number of resources whose entity
+   *                          tag is cached, or zero to disable the cache.
+   * @param timeToLiveMillis  The time in milliseconds for which a cached entity
+   *                          tag remains valid.
+   */
+  public void setEntityTagCache(final int maxEntries,
+                                final long timeToLiveMillis)
+  {
+    if (maxEntries > 0 && timeToLiveMillis > 0)
+    {
+      entityTagCache = new EntityTagCache(maxEntries, timeToLiveMillis);
+    }
+    else
+    {
+      entityTagCache = null;
+    }
+  }
+
+
+
   /**
    * {@inheritDoc}
    */
@@ -330,6 +573,224 @@ public abstract class LDAPBackend
     return entityTagAttribute != null;
   }
 
+
+
+  /**
+   * Retrieves the metrics of this backend, which are the LDAP operations
+   * processed for each type of SCIM request and the use of the per-request
+   * caches of the groups and members derived attributes.
+   *
+   * @return  The metrics of this backend.
+   */
+  @Override
+  public Collection<MetricFamily> getMetrics()
+  {
+    final MetricFamily requests = new MetricFamily("scim_ldap_requests",
+        MetricFamily.Type.COUNTER,
+        "SCIM requests processed by the LDAP backend, by request type.");
+    final MetricFamily operations = new MetricFamily("scim_ldap_operations",
+        MetricFamily.Type.COUNTER,
+        "LDAP operations processed for SCIM requests, by request type.");
+    final MetricFamily seconds = new MetricFamily(
+        "scim_ldap_operation_seconds", MetricFamily.Type.COUNTER,
+        "Time taken by LDAP operations for SCIM requests, by request type.");
+    final MetricFamily entries = new MetricFamily("scim_ldap_entries_returned",
+        MetricFamily.Type.COUNTER,
+        "Entries returned by LDAP searches for SCIM requests, by request " +
+        "type.");
+    for (final Map.Entry<String, LDAPOperationTotals> e :
+        ldapOperationTotals.entrySet())
+    {
+      final LDAPOperationTotals totals = e.getValue();
+      requests.addSample(totals.getRequestCount(), "request", e.getKey());
+      operations.addSample(totals.getOperationCount(), "request", e.getKey());
+      seconds.addSample(totals.getElapsedNanos() / 1.0e9d,
+                        "request", e.getKey());
+      entries.addSample(totals.getEntriesReturned(), "request", e.getKey());
+    }
+
+    final MetricFamily cacheLookups = new MetricFamily(
+        "scim_ldap_derived_attribute_cache_lookups",
+        MetricFamily.Type.COUNTER,
+        "Lookups in the per-request caches of derived attributes, by " +
+        "attribute and outcome.");
+    cacheLookups.addSample(GroupsDerivedAttribute.getCacheHits(),
+                           "attribute", "groups", "outcome", "hit");
+    cacheLookups.addSample(GroupsDerivedAttribute.getCacheMisses(),
+                           "attribute", "groups", "outcome", "miss");
+    cacheLookups.addSample(MembersDerivedAttribute.getCacheHits(),
+                           "attribute", "members", "outcome", "hit");
+    cacheLookups.addSample(MembersDerivedAttribute.getCacheMisses(),
+                           "attribute", "members", "outcome", "miss");
+
+    final List<MetricFamily> metrics = new ArrayList<MetricFamily>();
+    metrics.add(requests);
+    metrics.add(operations);
+    metrics.add(seconds);
+    metrics.add(entries);
+    metrics.add(cacheLookups);
+    return metrics;
+  }
+
+  /**
+   * Evaluate the preconditions of a conditional GET request using only the
+   * entity tag of the resource, which is taken from the entity tag cache if
+   * possible and otherwise read from the directory without any of the other
+   * attributes of the entry.
+   *
+   * @param mapper         The resource mapper for the requested resource.
+   * @param ldapInterface  The LDAP interface to use to read the entry.
+   * @param request        The request.
+   * @param generation     The generation of the resource in the entity tag
+   *                       cache, obtained before the entry is read.
+   *
+   * @throws SCIMException  If the preconditions have not been met, which will
+   *                        be a NotModifiedException if the resource has not
+   *                        changed, or if the entry could not be read.
+   */
+  private void checkEntityTag(final ResourceMapper mapper,
+                              final LDAPRequestInterface ldapInterface,
+                              final GetResourceRequest request,
+                              final long generation)
+      throws SCIMException
+  {
+    final EntityTagCache cache = entityTagCache;
+    if (cache != null)
+    {
+      final EntityTag cachedEtag = cache.get(
+          getEntityTagCacheKey(request.getResourceDescriptor(),
+              request.getResourceID()),
+          request.getAuthenticatedUserID());
+      if (cachedEtag != null)
+      {
+        // A cached entity tag that does not match means the resource has
+        // changed since the client read it, so the whole entry is needed.
+        request.checkPreconditions(cachedEtag);
+        return;
+      }
+    }
+
+    final Entry entry;
+    try
+    {
+      entry = mapper.getEntry(ldapInterface, request.getResourceID(),
+          entityTagAttribute);
+    }
+    catch (ResourceNotFoundException e)
+    {
+      uncacheEntityTag(request.getResourceDescriptor(),
+          request.getResourceID());
+      request.checkPreconditions(e);
+      throw e;
+    }
+
+    final EntityTag currentEtag = getEntityTagValue(entry);
+    cacheEntityTag(request, currentEtag, generation);
+    request.checkPreconditions(currentEtag);
+  }
+
+
+
+  /**
+   * Retrieve the generation of a resource in the entity tag cache, which must
+   * be obtained before the resource is read so that an entity tag read
+   * before a concurrent modification is not cached.
+   *
+   * @param request  The request that is to read the resource.
+   *
+   * @return  The generation of the resource, or zero if entity tags are not
+   *          being cached.
+   */
+  private long getEntityTagGeneration(final GetResourceRequest request)
+  {
+    final EntityTagCache cache = entityTagCache;
+    if (cache == null)
+    {
+      return 0L;
+    }
+
+    return cache.getGeneration(getEntityTagCacheKey(
+        request.getResourceDescriptor(), request.getResourceID()));
+  }
+
+
+
+  /**
+   * Record the entity tag of a resource that has been read, if entity tags
+   * are being cached and the resource has not been modified through this
+   * backend since it was read.
+   *
+   * @param request     The request that read the resource.
+   * @param entityTag   The entity tag of the resource.
+   * @param generation  The generation of the resource obtained before it was
+   *                    read.
+   */
+  private void cacheEntityTag(final GetResourceRequest request,
+                              final EntityTag entityTag,
+                              final long generation)
+  {
+    final EntityTagCache cache = entityTagCache;
+    if (cache != null)
+    {
+      cache.put(getEntityTagCacheKey(request.getResourceDescriptor(),
+                                     request.getResourceID()),
+                request.getAuthenticatedUserID(), entityTag, generation);
+    }
+  }
+
+
+
+  /**
+   * Discard the cached entity tag of a resource that has been modified or
+   * removed, if entity tags are being cached.
+   *
+   * @param resourceDescriptor  The resource descriptor of the resource.
+   * @param resourceID          The ID of the resource.
+   */
+  private void uncacheEntityTag(final ResourceDescriptor resourceDescriptor,
+                                final String resourceID)
+  {
+    final EntityTagCache cache = entityTagCache;
+    if (cache != null)
+    {
+      cache.remove(getEntityTagCacheKey(resourceDescriptor, resourceID));
+    }
+  }
+
+
+
+  /**
+   * Retrieve the key identifying a resource in the entity tag cache. When
+   * resource IDs map to DNs, the ID is normalized, so that every spelling of
+   * the DN of an entry identifies the same resource.
+   *
+   * @param resourceDescriptor  The resource descriptor of the resource.
+   * @param resourceID          The ID of the resource.
+   *
+   * @return  The key identifying the resource.
+   */
+  private String getEntityTagCacheKey(
+      final ResourceDescriptor resourceDescriptor, final String resourceID)
+  {
+    String id = resourceID;
+    final ResourceMapper mapper = resourceMappers.get(resourceDescriptor);
+    if (mapper != null && mapper.idMapsToDn())
+    {
+      try
+      {
+        id = new DN(resourceID).toNormalizedString();
+      }
+      catch (LDAPException e)
+      {
+        // The resource cannot exist, so its ID is used as it is.
+        Debug.debugException(e);
+      }
+    }
+    return resourceDescriptor.getName() + '/' + id;
+  }
+
+
+
   /**
    * Retrieve an LDAP interface that may be used to interact with the LDAP
    * server.
@@ -391,8 +852,33 @@ public abstract class LDAPBackend
 
 
   @Override
-  public BaseResource getResource(
-      final GetResourceRequest request) throws SCIMException
+  public BaseResource getResource(final GetResourceRequest request)
+      throws SCIMException
+  {
+    final LDAPRequestStats stats = startRequest();
+    try
+    {
+      return doGetResource(request);
+    }
+    finally
+    {
+      completeRequest("get", request, request.getResourceID(), stats);
+    }
+  }
+
+
+
+  /**
+   * Implementation of {@link #getResource}.
+   *
+   * @param request  The request.
+   *
+   * @return  The resource.
+   *
+   * @throws SCIMException  If the request could not be processed.
+   */
+  private BaseResource doGetResource(final GetResourceRequest request)
+      throws SCIMException
   {
     try
     {
@@ -414,6 +900,14 @@ public abstract class LDAPBackend
 
       final LDAPRequestInterface ldapInterface =
           getLDAPRequestInterface(request.getAuthenticatedUserID());
+      final long generation = getEntityTagGeneration(request);
+
+      // A conditional request is likely to find the resource unchanged, so
+      // check its entity tag before reading and mapping the whole entry.
+      if (supportsVersioning() && request.getIfNoneMatchHeaderValue() != null)
+      {
+        checkEntityTag(mapper, ldapInterface, request, generation);
+      }
 
       final SearchResultEntry entry;
       try
@@ -426,6 +920,8 @@ public abstract class LDAPBackend
       {
         if (supportsVersioning())
         {
+          uncacheEntityTag(request.getResourceDescriptor(),
+              request.getResourceID());
           request.checkPreconditions(e);
         }
         throw e;
@@ -438,6 +934,7 @@ public abstract class LDAPBackend
       if (supportsVersioning())
       {
         currentEtag = getEntityTagValue(entry);
+        cacheEntityTag(request, currentEtag, generation);
         request.checkPreconditions(currentEtag);
       }
 
@@ -464,6 +961,31 @@ public abstract class LDAPBackend
   @Override
   public Resources<?> getResources(final GetResourcesRequest request)
       throws SCIMException
+  {
+    final LDAPRequestStats stats = startRequest();
+    try
+    {
+      return doGetResources(request);
+    }
+    finally
+    {
+      completeRequest("query", request, null, stats);
+    }
+  }
+
+
+
+  /**
+   * Implementation of {@link #getResources}.
+   *
+   * @param request  The request.
+   *
+   * @return  The resources.
+   *
+   * @throws SCIMException  If the request could not be processed.
+   */
+  private Resources<?> doGetResources(final GetResourcesRequest request)
+      throws SCIMException
   {
     try
     {
@@ -492,6 +1014,20 @@ public abstract class LDAPBackend
             new ResourceSearchResultListener(this, request, ldapInterface,
                 maxResults);
 
+        // Several IDs that map to DNs are looked up directly, which also
+        // returns the resources in the order they were requested.
+        final List<String> lookupDNs =
+            getOptimizedIdSearchValues(scimFilter, resourceMapper);
+        if (lookupDNs != null && request.getBaseID() == null &&
+            request.getSortParameters() == null)
+        {
+          final String[] requestAttributes =
+              new String[requestAttributeSet.size()];
+          requestAttributeSet.toArray(requestAttributes);
+          return getResourcesByDN(request, resourceMapper, ldapInterface,
+              resultListener, lookupDNs, requestAttributes, maxResults);
+        }
+
         Set<DN> searchBaseDNs = getSearchBaseDNs(request,
             resourceMapper, ldapInterface);
 
@@ -531,9 +1067,13 @@ public abstract class LDAPBackend
             return new Resources<BaseResource>(emptyList);
           }
 
-          // The LDAP filter results will still need to be filtered using the
-          // SCIM filter, so we need to request all the filter attributes.
-          addFilterAttributes(requestAttributeSet, filter);
+          // Unless the LDAP filter is exact, its results will still need to
+          // be filtered using the SCIM filter, so we need to request all the
+          // filter attributes.
+          if (!isExactFilter(resourceMapper, scimFilter))
+          {
+            addFilterAttributes(requestAttributeSet, filter);
+          }
 
           requestAttributes = new String[requestAttributeSet.size()];
           requestAttributeSet.toArray(requestAttributes);
@@ -668,6 +1208,10 @@ public abstract class LDAPBackend
 
         // Prepare the response.
         List<BaseResource> scimObjects = resultListener.getResources();
+        if (request.getSortParameters() == null)
+        {
+          sortByLookupOrder(scimObjects, scimFilter);
+        }
 
         int toIdx = Math.min(scimObjects.size(), totalToReturn);
         scimObjects = scimObjects.subList(0, toIdx);
@@ -716,8 +1260,33 @@ public abstract class LDAPBackend
    * {@inheritDoc}
    */
   @Override
-  public BaseResource postResource(
-      final PostResourceRequest request) throws SCIMException
+  public BaseResource postResource(final PostResourceRequest request)
+      throws SCIMException
+  {
+    final LDAPRequestStats stats = startRequest();
+    try
+    {
+      return doPostResource(request);
+    }
+    finally
+    {
+      completeRequest("post", request, null, stats);
+    }
+  }
+
+
+
+  /**
+   * Implementation of {@link #postResource}.
+   *
+   * @param request  The request.
+   *
+   * @return  The resource.
+   *
+   * @throws SCIMException  If the request could not be processed.
+   */
+  private BaseResource doPostResource(final PostResourceRequest request)
+      throws SCIMException
   {
     try
     {
@@ -761,6 +1330,7 @@ public abstract class LDAPBackend
 
         final LDAPRequestInterface ldapInterface =
             getLDAPRequestInterface(request.getAuthenticatedUserID());
+        ldapInterface.setUpdateIntent();
         final Entry entry =
             mapper.toLDAPEntry(request.getResourceObject(), ldapInterface);
 
@@ -775,10 +1345,32 @@ public abstract class LDAPBackend
 
         final PostReadResponseControl c = getPostReadResponseControl(addResult);
         Entry addedEntry = entry;
+        LDAPRequestInterface derivedInterface = ldapInterface;
         if (c != null)
         {
           addedEntry = c.getEntry();
         }
+        else if (fastCreate && !supportsVersioning() &&
+                 (mapper.idMapsToDn() ||
+                  entry.hasAttribute(mapper.getIdAttribute())))
+        {
+          // Assume the timestamps rather than reading back the entry, and
+          // only derive attributes that were explicitly requested.
+          addedEntry = entry.duplicate();
+          final String now = StaticUtils.encodeGeneralizedTime(new Date());
+          if (!addedEntry.hasAttribute(CREATE_TIMESTAMP_ATTR))
+          {
+            addedEntry.addAttribute(CREATE_TIMESTAMP_ATTR, now);
+          }
+          if (!addedEntry.hasAttribute(MODIFY_TIMESTAMP_ATTR))
+          {
+            addedEntry.addAttribute(MODIFY_TIMESTAMP_ATTR, now);
+          }
+          if (request.getAttributes().allAttributesRequested())
+          {
+            derivedInterface = null;
+          }
+        }
         else
         {
           final SearchRequest r = new SearchRequest(entry.getDN(),
@@ -799,7 +1391,7 @@ public abstract class LDAPBackend
 
         final List<SCIMAttribute> scimAttributes = mapper.toSCIMAttributes(
             new SearchResultEntry(addedEntry), request.getAttributes(),
-            ldapInterface);
+            derivedInterface);
         for (final SCIMAttribute a : scimAttributes)
         {
           Validator.ensureTrue(resource.getScimObject().addAttribute(a));
@@ -827,6 +1419,31 @@ public abstract class LDAPBackend
   @Override
   public void deleteResource(final DeleteResourceRequest request)
       throws SCIMException
+  {
+    final LDAPRequestStats stats = startRequest();
+    try
+    {
+      doDeleteResource(request);
+    }
+    finally
+    {
+      uncacheEntityTag(request.getResourceDescriptor(),
+          request.getResourceID());
+      completeRequest("delete", request, request.getResourceID(), stats);
+    }
+  }
+
+
+
+  /**
+   * Implementation of {@link #deleteResource}.
+   *
+   * @param request  The request.
+   *
+   * @throws SCIMException  If the request could not be processed.
+   */
+  private void doDeleteResource(final DeleteResourceRequest request)
+      throws SCIMException
   {
     final ResourceMapper mapper =
         getResourceMapper(request.getResourceDescriptor());
@@ -835,6 +1452,7 @@ public abstract class LDAPBackend
     {
       final LDAPRequestInterface ldapInterface =
           getLDAPRequestInterface(request.getAuthenticatedUserID());
+      ldapInterface.setUpdateIntent();
 
       final Entry entry;
       try
@@ -910,6 +1528,33 @@ public abstract class LDAPBackend
   @Override
   public BaseResource putResource(final PutResourceRequest request)
       throws SCIMException
+  {
+    final LDAPRequestStats stats = startRequest();
+    try
+    {
+      return doPutResource(request);
+    }
+    finally
+    {
+      uncacheEntityTag(request.getResourceDescriptor(),
+          request.getResourceID());
+      completeRequest("put", request, request.getResourceID(), stats);
+    }
+  }
+
+
+
+  /**
+   * Implementation of {@link #putResource}.
+   *
+   * @param request  The request.
+   *
+   * @return  The resource.
+   *
+   * @throws SCIMException  If the request could not be processed.
+   */
+  private BaseResource doPutResource(final PutResourceRequest request)
+      throws SCIMException
   {
     try
     {
@@ -950,6 +1595,7 @@ public abstract class LDAPBackend
       {
         final LDAPRequestInterface ldapInterface =
             getLDAPRequestInterface(request.getAuthenticatedUserID());
+        ldapInterface.setUpdateIntent();
         final SearchResultEntry currentEntry;
         try
         {
@@ -1163,7 +1809,34 @@ public abstract class LDAPBackend
    */
   @Override
   public BaseResource patchResource(final PatchResourceRequest request)
-          throws SCIMException
+      throws SCIMException
+  {
+    final LDAPRequestStats stats = startRequest();
+    try
+    {
+      return doPatchResource(request);
+    }
+    finally
+    {
+      uncacheEntityTag(request.getResourceDescriptor(),
+          request.getResourceID());
+      completeRequest("patch", request, request.getResourceID(), stats);
+    }
+  }
+
+
+
+  /**
+   * Implementation of {@link #patchResource}.
+   *
+   * @param request  The request.
+   *
+   * @return  The resource.
+   *
+   * @throws SCIMException  If the request could not be processed.
+   */
+  private BaseResource doPatchResource(final PatchResourceRequest request)
+      throws SCIMException
   {
     try
     {
@@ -1193,6 +1866,7 @@ public abstract class LDAPBackend
       {
         final LDAPRequestInterface ldapInterface =
             getLDAPRequestInterface(request.getAuthenticatedUserID());
+        ldapInterface.setUpdateIntent();
         final SearchResultEntry currentEntry;
         try
         {
@@ -1923,6 +2597,350 @@ public abstract class LDAPBackend
   }
 
 
+  /**
+   * Determine whether a query is for several resources identified by their
+   * IDs, which map to DNs, so that the entries may be read directly rather
+   * than searched for. The filter must be an OR filter whose components are
+   * all equality filters on the ID attribute.
+   *
+   * @param scimFilter      The SCIM filter for the query request.
+   * @param resourceMapper  The resource mapper in use.
+   *
+   * @return  The distinct IDs in the order they appear in the filter, or
+   *          {@code null} if the query is not of this form.
+   */
+  protected List<String> getOptimizedIdSearchValues(
+      final SCIMFilter scimFilter,
+      final ResourceMapper resourceMapper)
+  {
+    if (scimFilter == null ||
+        scimFilter.getFilterType() != SCIMFilterType.OR ||
+        !resourceMapper.idMapsToDn())
+    {
+      return null;
+    }
+
+    return getLookupValues(scimFilter, "id");
+  }
+
+
+
+  /**
+   * Retrieve the values of a query for resources identified by the values of
+   * a single core attribute, such as "id eq A or id eq B".
+   *
+   * @param scimFilter     The SCIM filter for the query request.
+   * @param attributeName  The name of the core attribute.
+   *
+   * @return  The distinct values in the order they appear in the filter, or
+   *          {@code null} if the filter is not of this form.
+   */
+  private static List<String> getLookupValues(final SCIMFilter scimFilter,
+                                              final String attributeName)
+  {
+    final Set<String> values = new LinkedHashSet<String>();
+    return addLookupValues(scimFilter, attributeName, values) ?
+        new ArrayList<String>(values) : null;
+  }
+
+
+
+  /**
+   * Add the values of a query for resources identified by the values of a
+   * single core attribute to the provided set.
+   *
+   * @param scimFilter     The SCIM filter or filter component.
+   * @param attributeName  The name of the core attribute.
+   * @param values         The set to which the values are added.
+   *
+   * @return  {@code true} if the filter is of the expected form.
+   */
+  private static boolean addLookupValues(final SCIMFilter scimFilter,
+                                         final String attributeName,
+                                         final Set<String> values)
+  {
+    switch (scimFilter.getFilterType())
+    {
+      case OR:
+        for (final SCIMFilter f : scimFilter.getFilterComponents())
+        {
+          if (!addLookupValues(f, attributeName, values))
+          {
+            return false;
+          }
+        }
+        return true;
+
+      case EQUALITY:
+        final AttributePath path = scimFilter.getFilterAttribute();
+        if (path.getAttributeSchema().equalsIgnoreCase(SCHEMA_URI_CORE) &&
+            path.getAttributeName().equalsIgnoreCase(attributeName) &&
+            path.getSubAttributeName() == null)
+        {
+          values.add(scimFilter.getFilterValue());
+          return true;
+        }
+        return false;
+
+      default:
+        return false;
+    }
+  }
+
+
+
+  /**
+   * Sort the results of a query for resources identified by their ID or
+   * external ID into the order in which they were requested. Resources that
+   * do not match any requested value keep their order at the end.
+   *
+   * @param resources   The results of the query.
+   * @param scimFilter  The SCIM filter for the query request.
+   */
+  private static void sortByLookupOrder(final List<BaseResource> resources,
+                                        final SCIMFilter scimFilter)
+  {
+    if (scimFilter == null || resources.size() < 2)
+    {
+      return;
+    }
+
+    List<String> values = getLookupValues(scimFilter, "id");
+    final boolean byId = values != null;
+    if (!byId)
+    {
+      values = getLookupValues(scimFilter, "externalId");
+      if (values == null)
+      {
+        return;
+      }
+    }
+
+    final Map<String, Integer> positions =
+        new HashMap<String, Integer>(values.size() * 2);
+    for (final String value : values)
+    {
+      positions.put(value, positions.size());
+    }
+
+    final Integer last = values.size();
+    Collections.sort(resources, new Comparator<BaseResource>()
+    {
+      @Override
+      public int compare(final BaseResource r1, final BaseResource r2)
+      {
+        return getPosition(r1).compareTo(getPosition(r2));
+      }
+
+      /**
+       * Retrieve the position of a resource in the requested order.
+       *
+       * @param resource  The resource.
+       *
+       * @return  The position of the resource.
+       */
+      private Integer getPosition(final BaseResource resource)
+      {
+        final Integer position = positions.get(
+            byId ? resource.getId() : resource.getExternalId());
+        return position == null ? last : position;
+      }
+    });
+  }
+
+
+
+  /**
+   * Read the entries for a query for resources identified by their IDs,
+   * which map to DNs. Each entry is read with a base search, and the searches
+   * are pipelined where the LDAP interface allows it. IDs that are not within
+   * the scope of the resource mapper are not searched for, and IDs that do
+   * not identify an entry are ignored. When only a page of the matching
+   * resources is requested, the entries are first read without any
+   * attributes to find those that match, and then only the entries in the
+   * requested page are read with the requested attributes and mapped to
+   * resources.
+   *
+   * @param request            The query request.
+   * @param resourceMapper     The resource mapper in use.
+   * @param ldapInterface      The LDAPRequestInterface in use.
+   * @param resultListener     The listener that maps the entries.
+   * @param dns                The requested IDs.
+   * @param requestAttributes  The LDAP attributes to be retrieved.
+   * @param maxResults         The maximum number of resources that may be
+   *                           returned.
+   *
+   * @return  The resources in the requested page, in the order in which they
+   *          were requested.
+   *
+   * @throws SCIMException  If a SCIM error occurs.
+   * @throws LDAPException  If an LDAP error occurs.
+   */
+  private Resources<?> getResourcesByDN(
+      final GetResourcesRequest request,
+      final ResourceMapper resourceMapper,
+      final LDAPRequestInterface ldapInterface,
+      final ResourceSearchResultListener resultListener,
+      final List<String> dns,
+      final String[] requestAttributes,
+      final int maxResults)
+      throws SCIMException, LDAPException
+  {
+    int startIndex = 1;
+    int totalToReturn = maxResults;
+    final PageParameters pageParameters = request.getPageParameters();
+    if (pageParameters != null)
+    {
+      startIndex = Math.max(1, pageParameters.getStartIndex());
+      if (pageParameters.getCount() > 0)
+      {
+        totalToReturn = Math.min(pageParameters.getCount(), maxResults);
+      }
+    }
+
+    // Apply the resource type filter, if any, to each entry.
+    Filter filter = resourceMapper.toLDAPFilter(null, ldapInterface);
+    if (filter == null)
+    {
+      filter = Filter.createPresenceFilter("objectclass");
+    }
+
+    // Entries outside the scope of the resource mapper can never be
+    // returned, so they are not searched for. This also keeps the total
+    // from revealing whether they exist.
+    final List<String> candidateDNs = new ArrayList<String>(dns.size());
+    for (final String dn : dns)
+    {
+      if (DN.isValidDN(dn) && resourceMapper.isDnInScope(dn))
+      {
+        candidateDNs.add(dn);
+      }
+    }
+
+    List<String> matchingDNs = candidateDNs;
+    if (startIndex > 1 || totalToReturn < candidateDNs.size())
+    {
+      // Find the matching entries without retrieving any attributes, so
+      // that the requested page can be selected.
+      matchingDNs = new ArrayList<String>(candidateDNs.size());
+      final Set<String> ids = new HashSet<String>();
+      for (final SearchResultEntry entry : ldapInterface.searchForEntries(
+          createBaseSearches(candidateDNs, filter,
+              new String[] { SearchRequest.NO_ATTRIBUTES }, null), false))
+      {
+        if (entry != null &&
+            isLookupMatch(request, resourceMapper, entry, ids))
+        {
+          matchingDNs.add(entry.getDN());
+        }
+      }
+    }
+
+    final int pageStart = Math.min(startIndex - 1, matchingDNs.size());
+    final int pageEnd =
+        (int) Math.min((long) pageStart + totalToReturn, matchingDNs.size());
+    final List<String> pageDNs = matchingDNs.subList(pageStart, pageEnd);
+
+    final List<Control> controls = new ArrayList<Control>();
+    resourceMapper.addSearchControls(controls, request.getAttributes());
+
+    // The listener decides which entries of the page are returned, and
+    // counts them. An entry requested with several spellings of its DN is
+    // only returned once.
+    final Set<String> ids = new HashSet<String>();
+    for (final SearchResultEntry entry : ldapInterface.searchForEntries(
+        createBaseSearches(pageDNs, filter, requestAttributes, controls),
+        false))
+    {
+      if (entry != null && ids.add(resourceMapper.getIdFromEntry(entry)))
+      {
+        resultListener.searchEntryReturned(entry);
+      }
+    }
+
+    final int totalResults = matchingDNs.size() - pageDNs.size() +
+        resultListener.getTotalResults();
+    return new Resources<BaseResource>(resultListener.getResources(),
+        totalResults, startIndex);
+  }
+
+
+
+  /**
+   * Create base searches for a set of entries.
+   *
+   * @param dns         The DNs of the entries.
+   * @param filter      The filter that the entries must match.
+   * @param attributes  The LDAP attributes to be retrieved.
+   * @param controls    The controls to be included in each search, or
+   *                    {@code null} if there are none.
+   *
+   * @return  The search requests, in the order of the DNs.
+   */
+  private static List<SearchRequest> createBaseSearches(
+      final List<String> dns, final Filter filter, final String[] attributes,
+      final List<Control> controls)
+  {
+    final List<SearchRequest> searchRequests =
+        new ArrayList<SearchRequest>(dns.size());
+    for (final String dn : dns)
+    {
+      final SearchRequest searchRequest =
+          new SearchRequest(dn, SearchScope.BASE, filter, attributes);
+      if (controls != null)
+      {
+        searchRequest.addControls(
+            controls.toArray(new Control[controls.size()]));
+      }
+      searchRequests.add(searchRequest);
+    }
+    return searchRequests;
+  }
+
+
+
+  /**
+   * Determines whether an entry read for a query for resources identified by
+   * their IDs would be returned by the query, in the same way as the result
+   * listener that maps the entries. The entry is not returned if its ID
+   * does not match the query filter, or if an entry with the same ID has
+   * already been returned.
+   *
+   * @param request         The query request.
+   * @param resourceMapper  The resource mapper in use.
+   * @param entry           The entry, which is within the scope of the
+   *                        resource mapper.
+   * @param ids             The IDs of the entries already returned, to which
+   *                        the ID of this entry is added if it is returned.
+   *
+   * @return  {@code true} if the entry would be returned by the query.
+   *
+   * @throws SCIMException  If a SCIM error occurs.
+   */
+  private boolean isLookupMatch(final GetResourcesRequest request,
+                                final ResourceMapper resourceMapper,
+                                final Entry entry,
+                                final Set<String> ids)
+      throws SCIMException
+  {
+    final String id = resourceMapper.getIdFromEntry(entry);
+    if (!isExactFilter(resourceMapper, request.getFilter()))
+    {
+      // The filter only references the ID, so an object holding the ID is
+      // enough to evaluate it.
+      final SCIMObject scimObject = new SCIMObject();
+      scimObject.setAttribute(SCIMAttribute.create(CoreSchema.ID_DESCRIPTOR,
+          SCIMAttributeValue.createStringValue(id)));
+      if (!scimObject.matchesFilter(request.getFilter()))
+      {
+        return false;
+      }
+    }
+    return ids.add(id);
+  }
+
+
+
   /**
    * Get the search base DNs for the specified search request and
    * resource mapper.
@@ -2024,6 +3042,120 @@ public abstract class LDAPBackend
   }
 
 
+  /**
+   * Begin recording the LDAP operations processed for a SCIM request.
+   *
+   * @return  The statistics for the request, or {@code null} if this request
+   *          is nested within another request whose operations are already
+   *          being recorded.
+   */
+  private LDAPRequestStats startRequest()
+  {
+    return LDAPRequestStats.start(slowRequestThresholdMillis >= 0L);
+  }
+
+
+
+  /**
+   * Stop recording the LDAP operations processed for a SCIM request, add them
+   * to the totals for the type of request and to the count for the access
+   * log, and log the request if it was slow.
+   *
+   * @param operation   The type of SCIM request.
+   * @param request     The SCIM request.
+   * @param resourceID  The ID of the target resource, or {@code null} if there
+   *                    is none.
+   * @param stats       The statistics returned by {@link #startRequest}.
+   */
+  private void completeRequest(final String operation,
+                               final SCIMRequest request,
+                               final String resourceID,
+                               final LDAPRequestStats stats)
+  {
+    if (stats == null)
+    {
+      return;
+    }
+    LDAPRequestStats.end(stats);
+    ldapOperationTotals.get(operation).add(stats);
+    request.addBackendOperationCount(stats.getOperationCount());
+
+    final long thresholdMillis = slowRequestThresholdMillis;
+    final long elapsedMillis = stats.getRequestElapsedNanos() / 1000000L;
+    if (thresholdMillis < 0L || elapsedMillis < thresholdMillis ||
+        !SLOW_REQUEST_LOGGER.isLoggable(Level.INFO))
+    {
+      return;
+    }
+
+    final StringBuilder buffer = new StringBuilder();
+    buffer.append("Slow SCIM request ");
+    final HttpServletRequest httpRequest = request.getHttpServletRequest();
+    if (httpRequest != null)
+    {
+      buffer.append(httpRequest.getMethod());
+      buffer.append(' ');
+      buffer.append(httpRequest.getRequestURI());
+      if (httpRequest.getQueryString() != null)
+      {
+        // The query parameters are named but their values, such as the
+        // filter, are not written to the log.
+        buffer.append('?');
+        appendParameterNames(buffer, httpRequest.getQueryString());
+      }
+    }
+    else
+    {
+      buffer.append(operation);
+      buffer.append(' ');
+      buffer.append(request.getResourceDescriptor().getEndpoint());
+      if (resourceID != null)
+      {
+        buffer.append('/');
+        buffer.append(resourceID);
+      }
+    }
+    buffer.append(" millis=");
+    buffer.append(elapsedMillis);
+    buffer.append(' ');
+    stats.toString(buffer);
+
+    SLOW_REQUEST_LOGGER.info(buffer.toString());
+  }
+
+
+
+  /**
+   * Append the names of the parameters in a query string to the provided
+   * buffer, without their values.
+   *
+   * @param buffer       The buffer to which the names are to be appended.
+   * @param queryString  The query string of a request.
+   */
+  static void appendParameterNames(final StringBuilder buffer,
+                                   final String queryString)
+  {
+    boolean first = true;
+    for (final String parameter : queryString.split("&"))
+    {
+      if (parameter.length() == 0)
+      {
+        continue;
+      }
+      if (!first)
+      {
+        buffer.append('&');
+      }
+      first = false;
+
+      final int equalPos = parameter.indexOf('=');
+      buffer.append(equalPos < 0 ? parameter :
+          parameter.substring(0, equalPos));
+    }
+  }
+
+
+
   /**
    * Clears the per-request ThreadLocal caches.
    */
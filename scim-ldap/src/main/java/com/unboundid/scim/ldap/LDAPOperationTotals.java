@@ -0,0 +1,119 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.ldap;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * This class accumulates the LDAP operations processed for all SCIM requests
+ * of one type, such as all queries, so that the number of LDAP operations per
+ * SCIM request may be monitored.
+ */
+public final class LDAPOperationTotals
+{
+  // The number of SCIM requests.
+  private final AtomicLong requestCount = new AtomicLong();
+
+  // The number of LDAP operations.
+  private final AtomicLong operationCount = new AtomicLong();
+
+  // The total time taken by the LDAP operations, in nanoseconds.
+  private final AtomicLong elapsedNanos = new AtomicLong();
+
+  // The total number of entries returned by searches.
+  private final AtomicLong entriesReturned = new AtomicLong();
+
+
+
+  /**
+   * Add the LDAP operations processed for a SCIM request.
+   *
+   * @param stats  The statistics for the SCIM request.
+   */
+  void add(final LDAPRequestStats stats)
+  {
+    requestCount.incrementAndGet();
+    operationCount.addAndGet(stats.getOperationCount());
+    elapsedNanos.addAndGet(stats.getElapsedNanos());
+    entriesReturned.addAndGet(stats.getEntriesReturned());
+  }
+
+
+
+  /**
+   * Retrieve the number of SCIM requests.
+   *
+   * @return  The number of SCIM requests.
+   */
+  public long getRequestCount()
+  {
+    return requestCount.get();
+  }
+
+
+
+  /**
+   * Retrieve the number of LDAP operations.
+   *
+   * @return  The number of LDAP operations.
+   */
+  public long getOperationCount()
+  {
+    return operationCount.get();
+  }
+
+
+
+  /**
+   * Retrieve the total time taken by the LDAP operations.
+   *
+   * @return  The total time taken by the LDAP operations, in nanoseconds.
+   */
+  public long getElapsedNanos()
+  {
+    return elapsedNanos.get();
+  }
+
+
+
+  /**
+   * Retrieve the total number of entries returned by searches.
+   *
+   * @return  The total number of entries returned by searches.
+   */
+  public long getEntriesReturned()
+  {
+    return entriesReturned.get();
+  }
+
+
+
+  /**
+   * Retrieve the average number of LDAP operations per SCIM request.
+   *
+   * @return  The average number of LDAP operations per SCIM request, or zero
+   *          if there have been no requests.
+   */
+  public double getAverageOperationsPerRequest()
+  {
+    final long requests = requestCount.get();
+    return requests == 0 ? 0.0d : (double) operationCount.get() / requests;
+  }
+}
@@ -18,30 +18,60 @@
 package com.unboundid.scim.ldap;
 
 import com.unboundid.ldap.sdk.AddRequest;
+import com.unboundid.ldap.sdk.AsyncRequestID;
+import com.unboundid.ldap.sdk.AsyncSearchResultListener;
 import com.unboundid.ldap.sdk.Control;
 import com.unboundid.ldap.sdk.DeleteRequest;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPConnectionPool;
 import com.unboundid.ldap.sdk.LDAPException;
 import com.unboundid.ldap.sdk.LDAPInterface;
+import com.unboundid.ldap.sdk.LDAPRequest;
 import com.unboundid.ldap.sdk.LDAPResult;
 import com.unboundid.ldap.sdk.LDAPSearchException;
 import com.unboundid.ldap.sdk.ModifyDNRequest;
 import com.unboundid.ldap.sdk.ModifyRequest;
+import com.unboundid.ldap.sdk.ResultCode;
 import com.unboundid.ldap.sdk.SearchRequest;
 import com.unboundid.ldap.sdk.SearchResult;
 import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.SearchResultReference;
 import com.unboundid.ldap.sdk.UpdatableLDAPRequest;
+import com.unboundid.scim.sdk.Debug;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 
 
 /**
  * This class wraps an LDAP interface to allow controls to be inserted into
- * requests.
+ * requests. Each operation is recorded in the {@link LDAPRequestStats} for the
+ * SCIM request being processed by the current thread, if any.
+ * <BR><BR>
+ * Searches may be sent to a separate LDAP interface, such as a connection
+ * pool for read-only replicas. Once an update has been processed, or
+ * {@link #setUpdateIntent} has been called, searches are sent to the LDAP
+ * interface used for updates, so that a request always reads its own updates
+ * and an update is never based on a stale read.
  */
 public class LDAPRequestInterface
 {
+  /**
+   * The maximum number of searches that {@link #searchForEntries} has
+   * outstanding on a connection at any time.
+   */
+  public static final int MAX_OUTSTANDING_SEARCHES = 16;
+
   private final LDAPInterface ldapInterface;
+  private final LDAPInterface readInterface;
   private final Control[] controls;
 
+  // Indicates whether an update has been, or will be, processed through this
+  // interface.
+  private volatile boolean updated;
+
 
   /**
    * Create a new instance of this LDAP request interface.
@@ -51,13 +81,57 @@ public class LDAPRequestInterface
    */
   public LDAPRequestInterface(final LDAPInterface ldapInterface,
                               final Control... controls)
+  {
+    this(ldapInterface, ldapInterface, controls);
+  }
+
+
+
+  /**
+   * Create a new instance of this LDAP request interface that sends searches
+   * and updates to different LDAP interfaces.
+   *
+   * @param ldapInterface  The LDAP interface to be wrapped, to which updates
+   *                       are sent.
+   * @param readInterface  The LDAP interface to which searches are sent until
+   *                       an update has been processed.
+   * @param controls       A set of controls to be inserted into each request.
+   */
+  public LDAPRequestInterface(final LDAPInterface ldapInterface,
+                              final LDAPInterface readInterface,
+                              final Control... controls)
   {
     this.ldapInterface = ldapInterface;
+    this.readInterface = readInterface;
     this.controls      = controls;
   }
 
 
 
+  /**
+   * Indicates that this interface is used for a request that updates the
+   * directory, so that all of its searches, including those made before the
+   * first update, are sent to the LDAP interface used for updates.
+   */
+  public void setUpdateIntent()
+  {
+    updated = true;
+  }
+
+
+
+  /**
+   * Retrieve the LDAP interface to which searches are sent.
+   *
+   * @return  The LDAP interface to which searches are sent.
+   */
+  private LDAPInterface getReadInterface()
+  {
+    return updated ? ldapInterface : readInterface;
+  }
+
+
+
   /**
    * Add any common controls that may be required for LDAP requests.
    *
@@ -103,7 +177,150 @@ public class LDAPRequestInterface
        throws LDAPSearchException
   {
     addControls(searchRequest);
-    return ldapInterface.searchForEntry(searchRequest);
+    final long startTime = System.nanoTime();
+    SearchResultEntry entry = null;
+    try
+    {
+      entry = getReadInterface().searchForEntry(searchRequest);
+      return entry;
+    }
+    finally
+    {
+      operationCompleted(searchRequest, startTime, entry == null ? 0 : 1);
+    }
+  }
+
+
+
+  /**
+   * Processes a set of independent search requests, each of which is
+   * expected to return at most one entry, such as base searches for a set of
+   * DNs. When searches are sent to an LDAP connection or connection pool, up
+   * to {@link #MAX_OUTSTANDING_SEARCHES} of them are sent on one connection
+   * without waiting for the previous results, so that their round trips
+   * overlap. Otherwise, including when the connection operates in synchronous
+   * mode, the searches are processed one after another.
+   *
+   * @param  searchRequests  The search requests to be processed.  They must
+   *                         not be configured with a search result listener.
+   * @param  ignoreFailures  Indicates whether a search that fails should be
+   *                         treated as returning no entry, rather than causing
+   *                         an exception to be thrown.
+   *
+   * @return  The entries returned, in the order of the search requests.  An
+   *          element is {@code null} if its search returned no entry, if the
+   *          base entry does not exist, or if the search failed and failures
+   *          are ignored.
+   *
+   * @throws  LDAPSearchException  If a search fails and failures are not
+   *                               ignored, or if a problem is encountered
+   *                               while sending the requests or reading the
+   *                               responses.
+   */
+  public List<SearchResultEntry> searchForEntries(
+      final List<SearchRequest> searchRequests, final boolean ignoreFailures)
+       throws LDAPSearchException
+  {
+    final LDAPInterface searchInterface = getReadInterface();
+    if (searchRequests.size() > 1)
+    {
+      if (searchInterface instanceof LDAPConnection)
+      {
+        final LDAPConnection connection = (LDAPConnection) searchInterface;
+        if (!connection.synchronousMode())
+        {
+          try
+          {
+            final List<SearchResultEntry> entries =
+                pipelineSearches(connection, searchRequests, ignoreFailures);
+            if (entries != null)
+            {
+              return entries;
+            }
+          }
+          catch (LDAPSearchException e)
+          {
+            if (!isRetryable(e))
+            {
+              throw e;
+            }
+            Debug.debugException(e);
+          }
+        }
+      }
+      else if (searchInterface instanceof LDAPConnectionPool)
+      {
+        final LDAPConnectionPool pool = (LDAPConnectionPool) searchInterface;
+        final LDAPConnection connection;
+        try
+        {
+          connection = pool.getConnection();
+        }
+        catch (LDAPException e)
+        {
+          Debug.debugException(e);
+          throw new LDAPSearchException(e);
+        }
+
+        List<SearchResultEntry> entries = null;
+        boolean connectionUsable = true;
+        try
+        {
+          if (!connection.synchronousMode())
+          {
+            entries = pipelineSearches(connection, searchRequests,
+                ignoreFailures);
+          }
+        }
+        catch (LDAPSearchException e)
+        {
+          connectionUsable = ResultCode.isConnectionUsable(e.getResultCode());
+          if (!isRetryable(e))
+          {
+            throw e;
+          }
+          Debug.debugException(e);
+        }
+        finally
+        {
+          if (connectionUsable)
+          {
+            pool.releaseConnection(connection);
+          }
+          else
+          {
+            pool.releaseDefunctConnection(connection);
+          }
+        }
+
+        if (entries != null)
+        {
+          return entries;
+        }
+      }
+    }
+
+    // Process the searches one after another, which is also how they are
+    // retried if the connection they were pipelined on was lost.
+    final List<SearchResultEntry> entries =
+        new ArrayList<SearchResultEntry>(searchRequests.size());
+    for (final SearchRequest searchRequest : searchRequests)
+    {
+      try
+      {
+        entries.add(searchForEntry(searchRequest));
+      }
+      catch (LDAPSearchException e)
+      {
+        if (!ignoreFailures)
+        {
+          throw e;
+        }
+        Debug.debugException(e);
+        entries.add(null);
+      }
+    }
+    return entries;
   }
 
 
@@ -126,7 +343,24 @@ public class LDAPRequestInterface
        throws LDAPSearchException
   {
     addControls(searchRequest);
-    return ldapInterface.search(searchRequest);
+    final long startTime = System.nanoTime();
+    int entriesReturned = 0;
+    try
+    {
+      final SearchResult searchResult =
+          getReadInterface().search(searchRequest);
+      entriesReturned = searchResult.getEntryCount();
+      return searchResult;
+    }
+    catch (LDAPSearchException e)
+    {
+      entriesReturned = e.getEntryCount();
+      throw e;
+    }
+    finally
+    {
+      operationCompleted(searchRequest, startTime, entriesReturned);
+    }
   }
 
 
@@ -147,7 +381,16 @@ public class LDAPRequestInterface
        throws LDAPException
   {
     addControls(modifyRequest);
-    return ldapInterface.modify(modifyRequest);
+    final long startTime = System.nanoTime();
+    updated = true;
+    try
+    {
+      return ldapInterface.modify(modifyRequest);
+    }
+    finally
+    {
+      operationCompleted(modifyRequest, startTime, 0);
+    }
   }
 
 
@@ -168,7 +411,16 @@ public class LDAPRequestInterface
        throws LDAPException
   {
     addControls(modifyDNRequest);
-    return ldapInterface.modifyDN(modifyDNRequest);
+    final long startTime = System.nanoTime();
+    updated = true;
+    try
+    {
+      return ldapInterface.modifyDN(modifyDNRequest);
+    }
+    finally
+    {
+      operationCompleted(modifyDNRequest, startTime, 0);
+    }
   }
 
 
@@ -189,7 +441,16 @@ public class LDAPRequestInterface
        throws LDAPException
   {
     addControls(addRequest);
-    return ldapInterface.add(addRequest);
+    final long startTime = System.nanoTime();
+    updated = true;
+    try
+    {
+      return ldapInterface.add(addRequest);
+    }
+    finally
+    {
+      operationCompleted(addRequest, startTime, 0);
+    }
   }
 
 
@@ -210,6 +471,321 @@ public class LDAPRequestInterface
        throws LDAPException
   {
     addControls(deleteRequest);
-    return ldapInterface.delete(deleteRequest);
+    final long startTime = System.nanoTime();
+    updated = true;
+    try
+    {
+      return ldapInterface.delete(deleteRequest);
+    }
+    finally
+    {
+      operationCompleted(deleteRequest, startTime, 0);
+    }
+  }
+
+
+
+  /**
+   * Sends a set of search requests on one connection, with up to
+   * {@link #MAX_OUTSTANDING_SEARCHES} of them outstanding at any time. The
+   * searches are recorded in the request statistics unless they should be
+   * processed again one after another.
+   *
+   * @param connection      The connection on which the searches are sent.
+   * @param searchRequests  The search requests to be processed.
+   * @param ignoreFailures  Indicates whether a search that fails should be
+   *                        treated as returning no entry.
+   *
+   * @return  The entries returned, in the order of the search requests, or
+   *          {@code null} if a search could not be sent on a connection that
+   *          is still usable, in which case the searches should be processed
+   *          one after another.
+   *
+   * @throws LDAPSearchException  If the connection is no longer usable, in
+   *                              which case the result code is one for which
+   *                              {@code ResultCode.isConnectionUsable}
+   *                              returns {@code false} and the searches
+   *                              should be processed again on another
+   *                              connection. Also thrown if a search fails
+   *                              and failures are not ignored, or if the
+   *                              thread is interrupted while waiting for the
+   *                              results.
+   */
+  private List<SearchResultEntry> pipelineSearches(
+      final LDAPConnection connection, final List<SearchRequest> searchRequests,
+      final boolean ignoreFailures)
+      throws LDAPSearchException
+  {
+    final int count = searchRequests.size();
+    final SearchResultEntry[] entries = new SearchResultEntry[count];
+    final SingleEntryListener[] listeners = new SingleEntryListener[count];
+    final AsyncRequestID[] requestIDs = new AsyncRequestID[count];
+    final long[] startTimes = new long[count];
+    final long[] elapsedTimes = new long[count];
+    LDAPSearchException connectionFailure = null;
+    boolean sendFailed = false;
+    LDAPSearchException failure = null;
+
+    int sent = 0;
+    int received = 0;
+    while (received < count)
+    {
+      if (sent < count && sent - received < MAX_OUTSTANDING_SEARCHES &&
+          connectionFailure == null && !sendFailed && failure == null)
+      {
+        final SearchRequest r = searchRequests.get(sent);
+        listeners[sent] = new SingleEntryListener();
+        final SearchRequest asyncRequest = new SearchRequest(listeners[sent],
+            r.getControls(), r.getBaseDN(), r.getScope(),
+            r.getDereferencePolicy(), r.getSizeLimit(),
+            r.getTimeLimitSeconds(), r.typesOnly(), r.getFilter(),
+            r.getAttributes());
+        addControls(asyncRequest);
+        startTimes[sent] = System.nanoTime();
+        try
+        {
+          requestIDs[sent] = connection.asyncSearch(asyncRequest);
+          sent++;
+        }
+        catch (LDAPException e)
+        {
+          Debug.debugException(e);
+          if (ResultCode.isConnectionUsable(e.getResultCode()))
+          {
+            // The search could not be sent, but the connection is still
+            // usable, so the searches are processed one after another.
+            sendFailed = true;
+          }
+          else
+          {
+            connectionFailure = new LDAPSearchException(e);
+          }
+        }
+        continue;
+      }
+
+      if (received == sent)
+      {
+        // No more searches will be sent.
+        break;
+      }
+
+      final LDAPResult result;
+      try
+      {
+        result = requestIDs[received].get();
+      }
+      catch (InterruptedException e)
+      {
+        Debug.debugException(e);
+        Thread.currentThread().interrupt();
+        searchesCompleted(searchRequests, elapsedTimes, listeners, received);
+        throw new LDAPSearchException(ResultCode.LOCAL_ERROR,
+            "Interrupted while waiting for search results", e);
+      }
+
+      final SingleEntryListener listener = listeners[received];
+      final SearchRequest searchRequest = searchRequests.get(received);
+      elapsedTimes[received] = System.nanoTime() - startTimes[received];
+
+      final ResultCode resultCode = result.getResultCode();
+      if (resultCode.equals(ResultCode.SUCCESS) &&
+          listener.getEntryCount() <= 1)
+      {
+        entries[received] = listener.getEntry();
+      }
+      else if (!resultCode.equals(ResultCode.NO_SUCH_OBJECT))
+      {
+        if (!ResultCode.isConnectionUsable(resultCode))
+        {
+          if (connectionFailure == null)
+          {
+            connectionFailure =
+                new LDAPSearchException(new LDAPException(result));
+          }
+        }
+        else if (!ignoreFailures && failure == null)
+        {
+          failure = resultCode.equals(ResultCode.SUCCESS) ?
+              new LDAPSearchException(ResultCode.SIZE_LIMIT_EXCEEDED,
+                  "The search for '" + searchRequest.getBaseDN() +
+                  "' returned more than one entry") :
+              new LDAPSearchException(new LDAPException(result));
+        }
+      }
+      received++;
+    }
+
+    // The searches are only recorded in the statistics if they will not be
+    // processed again one after another, so that each is counted once.
+    if (connectionFailure != null)
+    {
+      if (!isRetryable(connectionFailure))
+      {
+        searchesCompleted(searchRequests, elapsedTimes, listeners, received);
+      }
+      throw connectionFailure;
+    }
+    if (sendFailed)
+    {
+      return null;
+    }
+    searchesCompleted(searchRequests, elapsedTimes, listeners, received);
+    if (failure != null)
+    {
+      throw failure;
+    }
+    return Arrays.asList(entries);
+  }
+
+
+
+  /**
+   * Record the pipelined searches whose results have been received in the
+   * statistics for the SCIM request being processed by the current thread,
+   * if any.
+   *
+   * @param searchRequests  The search requests that were pipelined.
+   * @param elapsedTimes    The time in nanoseconds taken by each search.
+   * @param listeners       The listeners that received the entries returned
+   *                        by each search.
+   * @param received        The number of searches whose results have been
+   *                        received.
+   */
+  private static void searchesCompleted(
+      final List<SearchRequest> searchRequests, final long[] elapsedTimes,
+      final SingleEntryListener[] listeners, final int received)
+  {
+    final LDAPRequestStats stats = LDAPRequestStats.current();
+    if (stats != null)
+    {
+      for (int i = 0; i < received; i++)
+      {
+        stats.operationCompleted(searchRequests.get(i), elapsedTimes[i],
+                                 listeners[i].getEntryCount());
+      }
+    }
+  }
+
+
+
+  /**
+   * Indicates whether searches that failed when pipelined should be processed
+   * again one after another, which is the case when the connection they were
+   * sent on is no longer usable and the thread has not been interrupted.
+   *
+   * @param e  The exception thrown by {@link #pipelineSearches}.
+   *
+   * @return  {@code true} if the searches should be processed again.
+   */
+  private static boolean isRetryable(final LDAPSearchException e)
+  {
+    return !ResultCode.isConnectionUsable(e.getResultCode()) &&
+        !Thread.currentThread().isInterrupted();
+  }
+
+
+
+  /**
+   * Record a completed operation in the statistics for the SCIM request being
+   * processed by the current thread, if any.
+   *
+   * @param request          The LDAP request that was processed.
+   * @param startTime        The time the operation started, from
+   *                         {@code System.nanoTime()}.
+   * @param entriesReturned  The number of entries returned by the operation.
+   */
+  private static void operationCompleted(final LDAPRequest request,
+                                         final long startTime,
+                                         final int entriesReturned)
+  {
+    final LDAPRequestStats stats = LDAPRequestStats.current();
+    if (stats != null)
+    {
+      stats.operationCompleted(request, System.nanoTime() - startTime,
+                               entriesReturned);
+    }
+  }
+
+
+
+  /**
+   * A search result listener that keeps the first entry returned by an
+   * asynchronous search.
+   */
+  private static final class SingleEntryListener
+      implements AsyncSearchResultListener
+  {
+    /**
+     * The serial version UID required for this serializable class.
+     */
+    private static final long serialVersionUID = 1L;
+
+    // The first entry returned, or null if none has been returned.
+    private volatile SearchResultEntry entry;
+
+    // The number of entries returned.
+    private volatile int entryCount;
+
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void searchEntryReturned(final SearchResultEntry searchEntry)
+    {
+      if (entry == null)
+      {
+        entry = searchEntry;
+      }
+      entryCount++;
+    }
+
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void searchReferenceReturned(
+        final SearchResultReference searchReference)
+    {
+      // Search references are not followed.
+    }
+
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void searchResultReceived(final AsyncRequestID requestID,
+                                     final SearchResult searchResult)
+    {
+      // The result is obtained from the request ID.
+    }
+
+
+
+    /**
+     * Retrieve the first entry returned.
+     *
+     * @return  The first entry returned, or {@code null} if none was
+     *          returned.
+     */
+    private SearchResultEntry getEntry()
+    {
+      return entry;
+    }
+
+
+
+    /**
+     * Retrieve the number of entries returned.
+     *
+     * @return  The number of entries returned.
+     */
+    private int getEntryCount()
+    {
+      return entryCount;
+    }
   }
 }
@@ -0,0 +1,479 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.ldap;
+
+import com.unboundid.ldap.sdk.AddRequest;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.CompareRequest;
+import com.unboundid.ldap.sdk.DeleteRequest;
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.LDAPRequest;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModifyDNRequest;
+import com.unboundid.ldap.sdk.ModifyRequest;
+import com.unboundid.ldap.sdk.SearchRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+
+/**
+ * This class records the LDAP operations that are processed on behalf of a
+ * single SCIM request. The statistics for the request being processed by the
+ * current thread are available from {@link #current()}, and are updated by
+ * {@link LDAPRequestInterface} as each LDAP operation completes. Instances of
+ * this class are not thread-safe.
+ */
+public final class LDAPRequestStats
+{
+  /**
+   * The statistics for the SCIM request being processed by each thread.
+   */
+  private static final ThreadLocal<LDAPRequestStats> CURRENT =
+      new ThreadLocal<LDAPRequestStats>();
+
+  // The time the SCIM request started, from System.nanoTime().
+  private final long startTime;
+
+  // The LDAP operations processed, or null if they are not being kept.
+  private final List<Operation> operations;
+
+  // The number of LDAP operations processed.
+  private int operationCount;
+
+  // The total time taken by the LDAP operations, in nanoseconds.
+  private long elapsedNanos;
+
+  // The total number of entries returned by searches.
+  private long entriesReturned;
+
+  // The slowest LDAP operation processed.
+  private Operation slowestOperation;
+
+
+
+  /**
+   * Create a new instance of the statistics for a SCIM request.
+   *
+   * @param keepOperations  Indicates whether each LDAP operation should be
+   *                        kept so that the operations may be described
+   *                        individually.
+   */
+  private LDAPRequestStats(final boolean keepOperations)
+  {
+    this.startTime = System.nanoTime();
+    this.operations = keepOperations ? new ArrayList<Operation>() : null;
+  }
+
+
+
+  /**
+   * Begin recording the LDAP operations processed by the current thread, if
+   * they are not already being recorded for an enclosing request.
+   *
+   * @param keepOperations  Indicates whether each LDAP operation should be
+   *                        kept so that the operations may be described
+   *                        individually.
+   *
+   * @return  The statistics for the new request, or {@code null} if the
+   *          operations are already being recorded. A non-null value must be
+   *          passed to {@link #end} when the request completes.
+   */
+  static LDAPRequestStats start(final boolean keepOperations)
+  {
+    if (CURRENT.get() != null)
+    {
+      return null;
+    }
+
+    final LDAPRequestStats stats = new LDAPRequestStats(keepOperations);
+    CURRENT.set(stats);
+    return stats;
+  }
+
+
+
+  /**
+   * Stop recording the LDAP operations processed by the current thread.
+   *
+   * @param stats  The statistics returned by {@link #start}.
+   */
+  static void end(final LDAPRequestStats stats)
+  {
+    if (CURRENT.get() == stats)
+    {
+      CURRENT.remove();
+    }
+  }
+
+
+
+  /**
+   * Retrieve the statistics for the SCIM request being processed by the
+   * current thread.
+   *
+   * @return  The statistics for the current request, or {@code null} if LDAP
+   *          operations are not being recorded for the current thread.
+   */
+  public static LDAPRequestStats current()
+  {
+    return CURRENT.get();
+  }
+
+
+
+  /**
+   * Record a completed LDAP operation.
+   *
+   * @param request          The LDAP request that was processed.
+   * @param nanos            The time taken by the operation, in nanoseconds.
+   * @param entriesReturned  The number of entries returned by the operation.
+   */
+  void operationCompleted(final LDAPRequest request, final long nanos,
+                          final int entriesReturned)
+  {
+    final Operation operation = new Operation(request, nanos, entriesReturned);
+    if (operations != null)
+    {
+      operations.add(operation);
+    }
+
+    operationCount++;
+    elapsedNanos += nanos;
+    this.entriesReturned += entriesReturned;
+    if (slowestOperation == null || nanos > slowestOperation.nanos)
+    {
+      slowestOperation = operation;
+    }
+  }
+
+
+
+  /**
+   * Retrieve the time elapsed since the SCIM request started.
+   *
+   * @return  The time elapsed since the SCIM request started, in nanoseconds.
+   */
+  public long getRequestElapsedNanos()
+  {
+    return System.nanoTime() - startTime;
+  }
+
+
+
+  /**
+   * Retrieve the number of LDAP operations processed.
+   *
+   * @return  The number of LDAP operations processed.
+   */
+  public int getOperationCount()
+  {
+    return operationCount;
+  }
+
+
+
+  /**
+   * Retrieve the total time taken by the LDAP operations.
+   *
+   * @return  The total time taken by the LDAP operations, in nanoseconds.
+   */
+  public long getElapsedNanos()
+  {
+    return elapsedNanos;
+  }
+
+
+
+  /**
+   * Retrieve the total number of entries returned by searches.
+   *
+   * @return  The total number of entries returned by searches.
+   */
+  public long getEntriesReturned()
+  {
+    return entriesReturned;
+  }
+
+
+
+  /**
+   * Retrieve the time taken by the slowest LDAP operation.
+   *
+   * @return  The time taken by the slowest LDAP operation, in nanoseconds, or
+   *          zero if no operations have been processed.
+   */
+  public long getSlowestOperationNanos()
+  {
+    return slowestOperation == null ? 0L : slowestOperation.nanos;
+  }
+
+
+
+  /**
+   * Retrieve a description of the slowest LDAP operation.
+   *
+   * @return  A description of the slowest LDAP operation, or {@code null} if
+   *          no operations have been processed.
+   */
+  public String getSlowestOperation()
+  {
+    return slowestOperation == null ? null : slowestOperation.toString();
+  }
+
+
+
+  /**
+   * Append a description of the LDAP operations to the provided buffer. Each
+   * operation is listed if the operations are being kept, otherwise only the
+   * slowest operation is described.
+   *
+   * @param buffer  The buffer to which the description is to be appended.
+   */
+  public void toString(final StringBuilder buffer)
+  {
+    buffer.append("ldapOperations=");
+    buffer.append(operationCount);
+    buffer.append(" ldapMillis=");
+    buffer.append(elapsedNanos / 1000000L);
+    buffer.append(" entriesReturned=");
+    buffer.append(entriesReturned);
+    if (operations != null)
+    {
+      for (final Operation operation : operations)
+      {
+        buffer.append("\n  ");
+        buffer.append(operation);
+      }
+    }
+    else if (slowestOperation != null)
+    {
+      buffer.append(" slowest=");
+      buffer.append(slowestOperation);
+    }
+  }
+
+
+
+  @Override
+  public String toString()
+  {
+    final StringBuilder buffer = new StringBuilder();
+    toString(buffer);
+    return buffer.toString();
+  }
+
+
+
+  /**
+   * A completed LDAP operation. The description of an operation names the
+   * type of operation, the target DN, the scope and filter of a search and
+   * the attributes involved, but never the attribute values or credentials
+   * in the request, so that it may be written to a log. The assertion values
+   * of a search filter are replaced with a question mark.
+   */
+  private static final class Operation
+  {
+    // The LDAP request that was processed.
+    private final LDAPRequest request;
+
+    // The time taken by the operation, in nanoseconds.
+    private final long nanos;
+
+    // The number of entries returned by the operation.
+    private final int entriesReturned;
+
+
+
+    /**
+     * Create a new completed LDAP operation.
+     *
+     * @param request          The LDAP request that was processed.
+     * @param nanos            The time taken by the operation, in
+     *                         nanoseconds.
+     * @param entriesReturned  The number of entries returned by the
+     *                         operation.
+     */
+    private Operation(final LDAPRequest request, final long nanos,
+                      final int entriesReturned)
+    {
+      this.request = request;
+      this.nanos = nanos;
+      this.entriesReturned = entriesReturned;
+    }
+
+
+
+    @Override
+    public String toString()
+    {
+      final StringBuilder buffer = new StringBuilder();
+      buffer.append(request.getOperationType());
+      if (request instanceof SearchRequest)
+      {
+        final SearchRequest r = (SearchRequest) request;
+        buffer.append(" base=\"").append(r.getBaseDN());
+        buffer.append("\" scope=").append(r.getScope().getName());
+        buffer.append(" filter=\"");
+        appendFilter(buffer, r.getFilter());
+        buffer.append('"');
+        buffer.append(" attributes=");
+        appendNames(buffer, r.getAttributes());
+      }
+      else if (request instanceof AddRequest)
+      {
+        final AddRequest r = (AddRequest) request;
+        buffer.append(" dn=\"").append(r.getDN()).append('"');
+        final List<String> names = new ArrayList<String>();
+        for (final Attribute a : r.getAttributes())
+        {
+          names.add(a.getName());
+        }
+        buffer.append(" attributes=");
+        appendNames(buffer, names.toArray(new String[names.size()]));
+      }
+      else if (request instanceof ModifyRequest)
+      {
+        final ModifyRequest r = (ModifyRequest) request;
+        buffer.append(" dn=\"").append(r.getDN()).append('"');
+        final List<String> names = new ArrayList<String>();
+        for (final Modification m : r.getModifications())
+        {
+          names.add(m.getAttributeName());
+        }
+        buffer.append(" attributes=");
+        appendNames(buffer, names.toArray(new String[names.size()]));
+      }
+      else if (request instanceof DeleteRequest)
+      {
+        buffer.append(" dn=\"").append(
+            ((DeleteRequest) request).getDN()).append('"');
+      }
+      else if (request instanceof ModifyDNRequest)
+      {
+        buffer.append(" dn=\"").append(
+            ((ModifyDNRequest) request).getDN()).append('"');
+      }
+      else if (request instanceof CompareRequest)
+      {
+        final CompareRequest r = (CompareRequest) request;
+        buffer.append(" dn=\"").append(r.getDN());
+        buffer.append("\" attributes=");
+        appendNames(buffer, new String[] { r.getAttributeName() });
+      }
+
+      buffer.append(" entries=").append(entriesReturned);
+      buffer.append(" micros=").append(nanos / 1000L);
+      return buffer.toString();
+    }
+
+
+
+    /**
+     * Append the string representation of a search filter to the provided
+     * buffer, with each assertion value replaced by a question mark.
+     *
+     * @param buffer  The buffer to which the filter is to be appended.
+     * @param filter  The filter.
+     */
+    private static void appendFilter(final StringBuilder buffer,
+                                     final Filter filter)
+    {
+      buffer.append('(');
+      switch (filter.getFilterType())
+      {
+        case Filter.FILTER_TYPE_AND:
+        case Filter.FILTER_TYPE_OR:
+          buffer.append(filter.getFilterType() == Filter.FILTER_TYPE_AND ?
+              '&' : '|');
+          for (final Filter component : filter.getComponents())
+          {
+            appendFilter(buffer, component);
+          }
+          break;
+
+        case Filter.FILTER_TYPE_NOT:
+          buffer.append('!');
+          appendFilter(buffer, filter.getNOTComponent());
+          break;
+
+        case Filter.FILTER_TYPE_PRESENCE:
+          buffer.append(filter.getAttributeName()).append("=*");
+          break;
+
+        case Filter.FILTER_TYPE_GREATER_OR_EQUAL:
+          buffer.append(filter.getAttributeName()).append(">=?");
+          break;
+
+        case Filter.FILTER_TYPE_LESS_OR_EQUAL:
+          buffer.append(filter.getAttributeName()).append("<=?");
+          break;
+
+        case Filter.FILTER_TYPE_APPROXIMATE_MATCH:
+          buffer.append(filter.getAttributeName()).append("~=?");
+          break;
+
+        case Filter.FILTER_TYPE_EXTENSIBLE_MATCH:
+          if (filter.getAttributeName() != null)
+          {
+            buffer.append(filter.getAttributeName());
+          }
+          if (filter.getDNAttributes())
+          {
+            buffer.append(":dn");
+          }
+          if (filter.getMatchingRuleID() != null)
+          {
+            buffer.append(':').append(filter.getMatchingRuleID());
+          }
+          buffer.append(":=?");
+          break;
+
+        default:
+          // Equality and substring filters.
+          buffer.append(filter.getAttributeName()).append("=?");
+          break;
+      }
+      buffer.append(')');
+    }
+
+
+
+    /**
+     * Append a list of attribute names to the provided buffer.
+     *
+     * @param buffer  The buffer to which the names are to be appended.
+     * @param names   The attribute names.
+     */
+    private static void appendNames(final StringBuilder buffer,
+                                    final String[] names)
+    {
+      buffer.append('{');
+      for (int i = 0; i < names.length; i++)
+      {
+        if (i > 0)
+        {
+          buffer.append(',');
+        }
+        buffer.append(names[i]);
+      }
+      buffer.append('}');
+    }
+  }
+}
@@ -40,6 +40,7 @@ import com.unboundid.scim.sdk.SCIMException;
 import com.unboundid.scim.sdk.SCIMFilter;
 import com.unboundid.scim.sdk.SCIMFilterType;
 import com.unboundid.scim.sdk.SCIMObject;
+import com.unboundid.scim.sdk.StripedCounter;
 import com.unboundid.util.StaticUtils;
 
 import java.util.ArrayList;
@@ -82,6 +83,16 @@ public class MembersDerivedAttribute extends DerivedAttribute
   private static final ThreadLocal<Map<DN, SCIMAttributeValue>> MEMBER_CACHES =
       new ThreadLocal<Map<DN, SCIMAttributeValue>>();
 
+  /**
+   * The number of members found in the per-request caches.
+   */
+  private static final StripedCounter CACHE_HITS = new StripedCounter();
+
+  /**
+   * The number of members not found in the per-request caches.
+   */
+  private static final StripedCounter CACHE_MISSES = new StripedCounter();
+
   /**
    * The name of the LDAP member attribute.
    */
@@ -254,6 +265,14 @@ public class MembersDerivedAttribute extends DerivedAttribute
             MEMBER_CACHES.set(memberCache);
           }
         }
+
+        // Look up the members that are not cached together, so that the
+        // searches may overlap.
+        final List<SCIMAttributeValue> memberValues =
+            new ArrayList<SCIMAttributeValue>(members.length);
+        final List<DN> memberDNs = new ArrayList<DN>(members.length);
+        final List<SearchRequest> searchRequests =
+            new ArrayList<SearchRequest>();
         for (final String memberDNString : members)
         {
           if ((userResolver != null &&
@@ -261,54 +280,61 @@ public class MembersDerivedAttribute extends DerivedAttribute
               groupResolver.isDnInScope(memberDNString))
           {
             DN memberDN = new DN(memberDNString);
+            SCIMAttributeValue cacheValue = null;
             if (memberCache != null)
             {
-              SCIMAttributeValue cacheValue = memberCache.get(memberDN);
-              if (cacheValue != null)
+              cacheValue = memberCache.get(memberDN);
+              if (cacheValue == null)
               {
-                values.add(cacheValue);
-                continue;
+                CACHE_MISSES.increment();
+              }
+              else
+              {
+                CACHE_HITS.increment();
               }
             }
+            if (cacheValue == null)
+            {
+              searchRequests.add(
+                  new SearchRequest(memberDNString, SearchScope.BASE,
+                      OBJECTCLASS_PRESENCE_FILTER, attrsToGet));
+            }
+            memberValues.add(cacheValue);
+            memberDNs.add(memberDN);
+          }
+        }
 
-            final SearchRequest searchRequest =
-                new SearchRequest(memberDNString, SearchScope.BASE,
-                    OBJECTCLASS_PRESENCE_FILTER, attrsToGet);
-            final SearchResult searchResult;
-            try
+        final Iterator<SearchResultEntry> memberEntries =
+            ldapInterface.searchForEntries(searchRequests, true).iterator();
+        for (int i = 0; i < memberValues.size(); i++)
+        {
+          SCIMAttributeValue v = memberValues.get(i);
+          if (v == null)
+          {
+            final SearchResultEntry rEntry = memberEntries.next();
+            if (rEntry == null)
             {
-              searchResult = ldapInterface.search(searchRequest);
+              continue;
             }
-            catch (final LDAPSearchException lse)
+            v = createMemberValue(groupResolver, rEntry);
+            if (v == null)
             {
-              Debug.debugException(lse);
               continue;
             }
-
-            if (searchResult.getEntryCount() == 1)
+            if (memberCache != null)
             {
-              final SearchResultEntry rEntry =
-                  searchResult.getSearchEntries().get(0);
-              final SCIMAttributeValue v =
-                  createMemberValue(groupResolver, rEntry);
-              if (v != null)
+              memberCache.put(memberDNs.get(i), v);
+              if (memberCache.size() > membersToCachePerRequest)
               {
-                if (memberCache != null)
-                {
-                  memberCache.put(memberDN, v);
-                  if (memberCache.size() > membersToCachePerRequest)
-                  {
-                    // We have cached too many members for this request, so we
-                    // remove the oldest member from the cache.
-                    Iterator<DN> it = memberCache.keySet().iterator();
-                    it.next();
-                    it.remove();
-                  }
-                }
-                values.add(v);
+                // We have cached too many members for this request, so we
+                // remove the oldest member from the cache.
+                Iterator<DN> it = memberCache.keySet().iterator();
+                it.next();
+                it.remove();
               }
             }
           }
+          values.add(v);
         }
       }
     }
@@ -604,4 +630,25 @@ public class MembersDerivedAttribute extends DerivedAttribute
   {
     MEMBER_CACHES.remove();
   }
+
+  /**
+   * Retrieve the number of members found in the per-request caches.
+   *
+   * @return  The number of members found in the per-request caches.
+   */
+  static long getCacheHits()
+  {
+    return CACHE_HITS.sum();
+  }
+
+  /**
+   * Retrieve the number of members that were looked up in the per-request
+   * caches but not found.
+   *
+   * @return  The number of members not found in the per-request caches.
+   */
+  static long getCacheMisses()
+  {
+    return CACHE_MISSES.sum();
+  }
 }
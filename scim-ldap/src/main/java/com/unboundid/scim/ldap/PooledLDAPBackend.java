@@ -0,0 +1,363 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.ldap;
+
+import com.unboundid.ldap.sdk.BindRequest;
+import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.GetEntryLDAPConnectionPoolHealthCheck;
+import com.unboundid.ldap.sdk.LDAPConnectionPool;
+import com.unboundid.ldap.sdk.LDAPConnectionPoolStatistics;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.OperationType;
+import com.unboundid.ldap.sdk.ServerSet;
+import com.unboundid.ldap.sdk.controls.ProxiedAuthorizationV2RequestControl;
+import com.unboundid.scim.schema.ResourceDescriptor;
+import com.unboundid.scim.sdk.MetricFamily;
+import com.unboundid.scim.sdk.SCIMException;
+import com.unboundid.scim.sdk.UnauthorizedException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+
+
+/**
+ * This class provides an LDAP backend that processes requests using LDAP
+ * connection pools. Updates are sent to a pool of connections to the primary
+ * directory server, and searches may be sent to a separate pool of
+ * connections to read-only replicas. A request that updates a resource sends
+ * all of its searches to the primary pool, so that the update is not based on
+ * a replica that has not yet received a previous update, and so that the
+ * request reads its own updates.
+ * <BR><BR>
+ * The pool connections are authenticated once, as the SCIM server. When
+ * proxied authorization is enabled, each LDAP request carries a proxied
+ * authorization v2 control naming the authenticated user, rather than
+ * authenticating a connection for each user. The authorization ID is
+ * provided by {@link #getAuthorizationID}, which may be overridden. A request
+ * for which there is no authorization ID is rejected, so requests are only
+ * processed with the privileges of the SCIM server when proxied authorization
+ * is disabled.
+ * <BR><BR>
+ * Pools may be created with {@link #createConnectionPool}, which enables
+ * health checking of the pooled connections. The statistics of the pools are
+ * available from {@link #getConnectionPoolStatistics} and
+ * {@link #getReadConnectionPoolStatistics}, and are included in the metrics
+ * of the backend.
+ */
+public class PooledLDAPBackend
+    extends LDAPBackend
+{
+  /**
+   * The maximum time in milliseconds allowed for the health check of a
+   * pooled connection.
+   */
+  private static final long HEALTH_CHECK_MAX_RESPONSE_TIME_MILLIS = 10000L;
+
+  // The connection pool to which updates are sent.
+  private final LDAPConnectionPool connectionPool;
+
+  // The connection pool to which searches are sent.
+  private final LDAPConnectionPool readConnectionPool;
+
+  // Indicates whether requests are sent with a proxied authorization control.
+  private final boolean useProxiedAuthorization;
+
+
+
+  /**
+   * Create a new pooled LDAP backend that sends all requests to one
+   * connection pool, with proxied authorization enabled.
+   *
+   * @param resourceMappers  The resource mappers configured for SCIM resource
+   *                         end-points.
+   * @param connectionPool   The connection pool to which requests are sent.
+   */
+  public PooledLDAPBackend(
+      final Map<ResourceDescriptor, ResourceMapper> resourceMappers,
+      final LDAPConnectionPool connectionPool)
+  {
+    this(resourceMappers, connectionPool, null, true);
+  }
+
+
+
+  /**
+   * Create a new pooled LDAP backend.
+   *
+   * @param resourceMappers          The resource mappers configured for SCIM
+   *                                 resource end-points.
+   * @param connectionPool           The connection pool to which updates are
+   *                                 sent.
+   * @param readConnectionPool       The connection pool to which searches are
+   *                                 sent, or {@code null} if searches should
+   *                                 also be sent to the connection pool for
+   *                                 updates.
+   * @param useProxiedAuthorization  Indicates whether each LDAP request should
+   *                                 carry a proxied authorization control for
+   *                                 the authenticated user.
+   */
+  public PooledLDAPBackend(
+      final Map<ResourceDescriptor, ResourceMapper> resourceMappers,
+      final LDAPConnectionPool connectionPool,
+      final LDAPConnectionPool readConnectionPool,
+      final boolean useProxiedAuthorization)
+  {
+    super(resourceMappers);
+    this.connectionPool = connectionPool;
+    this.readConnectionPool =
+        readConnectionPool == null ? connectionPool : readConnectionPool;
+    this.useProxiedAuthorization = useProxiedAuthorization;
+  }
+
+
+
+  /**
+   * Create a connection pool suitable for use with this backend. The pooled
+   * connections are checked periodically, and when they are released after a
+   * failure, by retrieving the root DSE. A search that fails because its
+   * connection is no longer valid is retried on a new connection.
+   *
+   * @param serverSet                  The server set used to establish
+   *                                   connections.
+   * @param bindRequest                The bind request used to authenticate
+   *                                   the connections, or {@code null} if they
+   *                                   should not be authenticated.
+   * @param initialConnections         The number of connections to establish
+   *                                   when the pool is created.
+   * @param maxConnections             The maximum number of connections in
+   *                                   the pool.
+   * @param healthCheckIntervalMillis  The time in milliseconds between
+   *                                   background health checks.
+   *
+   * @return  The connection pool.
+   *
+   * @throws LDAPException  If the initial connections could not be
+   *                        established.
+   */
+  public static LDAPConnectionPool createConnectionPool(
+      final ServerSet serverSet, final BindRequest bindRequest,
+      final int initialConnections, final int maxConnections,
+      final long healthCheckIntervalMillis)
+      throws LDAPException
+  {
+    final LDAPConnectionPool pool = new LDAPConnectionPool(serverSet,
+        bindRequest, initialConnections, maxConnections);
+    pool.setHealthCheck(new GetEntryLDAPConnectionPoolHealthCheck(null,
+        HEALTH_CHECK_MAX_RESPONSE_TIME_MILLIS, false, false, false, true,
+        true));
+    pool.setHealthCheckIntervalMillis(healthCheckIntervalMillis);
+    pool.setRetryFailedOperationsDueToInvalidConnections(
+        EnumSet.of(OperationType.SEARCH));
+    return pool;
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   * <BR><BR>
+   * When proxied authorization is enabled, a request without an authorization
+   * ID for the user is rejected, rather than being processed with the
+   * privileges of the SCIM server.
+   */
+  @Override
+  protected LDAPRequestInterface getLDAPRequestInterface(final String userID)
+      throws SCIMException
+  {
+    if (!useProxiedAuthorization)
+    {
+      return new LDAPRequestInterface(connectionPool, readConnectionPool);
+    }
+
+    final String authzID = getAuthorizationID(userID);
+    if (authzID == null)
+    {
+      throw new UnauthorizedException(
+          "The request could not be authorized because there is no " +
+          "authorization ID for the user");
+    }
+
+    return new LDAPRequestInterface(connectionPool, readConnectionPool,
+        new ProxiedAuthorizationV2RequestControl(authzID));
+  }
+
+
+
+  /**
+   * Retrieve the authorization ID to be used in the proxied authorization
+   * control for the provided authenticated user ID. A user ID that is a DN
+   * is mapped to a "dn:" authorization ID, and any other user ID is mapped
+   * to a "u:" authorization ID.
+   *
+   * @param userID  The authenticated user ID for the request being processed.
+   *
+   * @return  The authorization ID, or {@code null} if the user cannot be
+   *          authorized, in which case the request is rejected.
+   */
+  protected String getAuthorizationID(final String userID)
+  {
+    if (userID == null)
+    {
+      return null;
+    }
+
+    if (DN.isValidDN(userID))
+    {
+      return "dn:" + userID;
+    }
+    return "u:" + userID;
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void finalizeBackend()
+  {
+    connectionPool.close();
+    if (readConnectionPool != connectionPool)
+    {
+      readConnectionPool.close();
+    }
+  }
+
+
+
+  /**
+   * Retrieves the statistics of the connection pool to which updates are
+   * sent, including the number of available connections, the number of
+   * checkouts that had to wait for a connection, and the number of failed
+   * checkouts and connection attempts.
+   *
+   * @return  The statistics of the connection pool to which updates are sent.
+   */
+  public LDAPConnectionPoolStatistics getConnectionPoolStatistics()
+  {
+    return connectionPool.getConnectionPoolStatistics();
+  }
+
+
+
+  /**
+   * Retrieves the statistics of the connection pool to which searches are
+   * sent. This is the same as {@link #getConnectionPoolStatistics} if there
+   * is no separate connection pool for searches.
+   *
+   * @return  The statistics of the connection pool to which searches are
+   *          sent.
+   */
+  public LDAPConnectionPoolStatistics getReadConnectionPoolStatistics()
+  {
+    return readConnectionPool.getConnectionPoolStatistics();
+  }
+
+
+
+  /**
+   * Retrieves the metrics of this backend, which include the checkouts,
+   * failures and available connections of its connection pools. The pools
+   * are labelled "primary" and, if searches are sent to a separate pool,
+   * "read".
+   *
+   * @return  The metrics of this backend.
+   */
+  @Override
+  public Collection<MetricFamily> getMetrics()
+  {
+    final MetricFamily checkouts = new MetricFamily("scim_ldap_pool_checkouts",
+        MetricFamily.Type.COUNTER,
+        "Connection checkouts from the LDAP connection pools, by pool and " +
+        "outcome.");
+    final MetricFamily connectionFailures = new MetricFamily(
+        "scim_ldap_pool_failed_connection_attempts", MetricFamily.Type.COUNTER,
+        "Failed attempts to create connections for the LDAP connection " +
+        "pools, by pool.");
+    final MetricFamily defunct = new MetricFamily(
+        "scim_ldap_pool_connections_closed_defunct", MetricFamily.Type.COUNTER,
+        "Connections closed by the LDAP connection pools because they were " +
+        "no longer usable, by pool.");
+    final MetricFamily available = new MetricFamily(
+        "scim_ldap_pool_available_connections", MetricFamily.Type.GAUGE,
+        "Connections available for checkout from the LDAP connection pools, " +
+        "by pool.");
+    final MetricFamily maxAvailable = new MetricFamily(
+        "scim_ldap_pool_max_available_connections", MetricFamily.Type.GAUGE,
+        "Maximum number of connections available for checkout from the LDAP " +
+        "connection pools, by pool.");
+
+    addPoolSamples(getConnectionPoolStatistics(), "primary", checkouts,
+        connectionFailures, defunct, available, maxAvailable);
+    if (readConnectionPool != connectionPool)
+    {
+      addPoolSamples(getReadConnectionPoolStatistics(), "read", checkouts,
+          connectionFailures, defunct, available, maxAvailable);
+    }
+
+    final List<MetricFamily> metrics =
+        new ArrayList<MetricFamily>(super.getMetrics());
+    metrics.add(checkouts);
+    metrics.add(connectionFailures);
+    metrics.add(defunct);
+    metrics.add(available);
+    metrics.add(maxAvailable);
+    return metrics;
+  }
+
+
+
+  /**
+   * Adds the samples for a connection pool to the connection pool metrics.
+   *
+   * @param stats               The statistics of the connection pool.
+   * @param pool                The label value identifying the pool.
+   * @param checkouts           The connection checkouts metric.
+   * @param connectionFailures  The failed connection attempts metric.
+   * @param defunct             The connections closed as defunct metric.
+   * @param available           The available connections metric.
+   * @param maxAvailable        The maximum available connections metric.
+   */
+  private static void addPoolSamples(final LDAPConnectionPoolStatistics stats,
+                                     final String pool,
+                                     final MetricFamily checkouts,
+                                     final MetricFamily connectionFailures,
+                                     final MetricFamily defunct,
+                                     final MetricFamily available,
+                                     final MetricFamily maxAvailable)
+  {
+    checkouts.addSample(stats.getNumSuccessfulCheckoutsWithoutWaiting(),
+                        "pool", pool, "outcome", "immediate");
+    checkouts.addSample(stats.getNumSuccessfulCheckoutsAfterWaiting(),
+                        "pool", pool, "outcome", "waited");
+    checkouts.addSample(stats.getNumSuccessfulCheckoutsNewConnection(),
+                        "pool", pool, "outcome", "new_connection");
+    checkouts.addSample(stats.getNumFailedCheckouts(),
+                        "pool", pool, "outcome", "failed");
+    connectionFailures.addSample(stats.getNumFailedConnectionAttempts(),
+                                 "pool", pool);
+    defunct.addSample(stats.getNumConnectionsClosedDefunct(), "pool", pool);
+    available.addSample(stats.getNumAvailableConnections(), "pool", pool);
+    maxAvailable.addSample(stats.getMaximumAvailableConnections(),
+                           "pool", pool);
+  }
+}
@@ -117,6 +117,16 @@ import static javax.xml.XMLConstants.W3C_XML_SCHEMA_NS_URI;
  */
 public class ResourceMapper
 {
+  /**
+   * The JAXB context for resource mapping files, created when first needed.
+   */
+  private static JAXBContext jaxbContext;
+
+  /**
+   * The XML schema for resource mapping files, compiled when first needed.
+   */
+  private static Schema resourcesSchema;
+
   /**
    * The ResourceDescriptor of the SCIM resource handled by this resource
    * mapper.
@@ -184,6 +194,57 @@ public class ResourceMapper
 
 
 
+  /**
+   * Retrieve the JAXB context for resource mapping files. Creating the context
+   * is expensive, so it is created once and shared, which is safe because a
+   * JAXB context is thread-safe.
+   *
+   * @return  The JAXB context for resource mapping files.
+   *
+   * @throws JAXBException  If the context cannot be created.
+   */
+  private static synchronized JAXBContext getJAXBContext()
+      throws JAXBException
+  {
+    if (jaxbContext == null)
+    {
+      final ObjectFactory factory = new ObjectFactory();
+      final String packageName = factory.getClass().getPackage().getName();
+      // Use the class loader that loaded this class to find the JAXB classes.
+      jaxbContext = JAXBContext.newInstance(packageName,
+          ResourceMapper.class.getClassLoader());
+    }
+    return jaxbContext;
+  }
+
+
+
+  /**
+   * Retrieve the XML schema for resource mapping files, which is compiled once
+   * and shared.
+   *
+   * @return  The XML schema for resource mapping files, or {@code null} if it
+   *          is not available.
+   *
+   * @throws SAXException  If the XML schema cannot be instantiated.
+   */
+  private static synchronized Schema getResourcesSchema()
+      throws SAXException
+  {
+    if (resourcesSchema == null)
+    {
+      final URL url = ResourcesDefinition.class.getResource("resources.xsd");
+      if (url != null) {
+        final SchemaFactory sf =
+            SchemaFactory.newInstance(W3C_XML_SCHEMA_NS_URI);
+        resourcesSchema = sf.newSchema(url);
+      }
+    }
+    return resourcesSchema;
+  }
+
+
+
   /**
    * Parse an XML file defining a set of resource mappings. The LDAP attribute
    * mappings are not validated against an LDAP schema.
@@ -223,17 +284,9 @@ public class ResourceMapper
       final com.unboundid.ldap.sdk.schema.Schema ldapSchema)
       throws JAXBException, SAXException, SCIMException
   {
-    final ObjectFactory factory = new ObjectFactory();
-    final String packageName = factory.getClass().getPackage().getName();
-    // Use the class loader that loaded this class to find the JAXB classes.
-    final JAXBContext context = JAXBContext.newInstance(packageName,
-        ResourceMapper.class.getClassLoader());
-
-    final Unmarshaller unmarshaller = context.createUnmarshaller();
-    final URL url = ResourcesDefinition.class.getResource("resources.xsd");
-    if (url != null) {
-      final SchemaFactory sf = SchemaFactory.newInstance(W3C_XML_SCHEMA_NS_URI);
-      final Schema schema = sf.newSchema(url);
+    final Unmarshaller unmarshaller = getJAXBContext().createUnmarshaller();
+    final Schema schema = getResourcesSchema();
+    if (schema != null) {
       unmarshaller.setSchema(schema);
     }
 
@@ -1580,29 +1633,10 @@ public class ResourceMapper
         return Filter.createORFilter(orFilterComponents);
 
       default:
-        final AttributePath filterAttribute = filter.getFilterAttribute();
         final AttributeDescriptor attributeDescriptor =
-            resourceDescriptor.getAttribute(
-                filterAttribute.getAttributeSchema(),
-                filterAttribute.getAttributeName());
-
-        AttributeMapper attributeMapper;
-
-        if (attributeDescriptor.equals(
-            metaAttributeMapper.getAttributeDescriptor()))
-        {
-          attributeMapper = metaAttributeMapper;
-        }
-        else if (idAttributeMapper != null &&
-                 attributeDescriptor.equals(
-                     idAttributeMapper.getAttributeDescriptor()))
-        {
-          attributeMapper = idAttributeMapper;
-        }
-        else
-        {
-          attributeMapper = attributeMappers.get(attributeDescriptor);
-        }
+            getFilterAttributeDescriptor(filter);
+        final AttributeMapper attributeMapper =
+            getFilterAttributeMapper(attributeDescriptor);
 
         DerivedAttribute derivedAttribute =
             derivedAttributes.get(attributeDescriptor);
@@ -1630,6 +1664,114 @@ public class ResourceMapper
     }
   }
 
+  /**
+   * Determines whether the LDAP filter produced by {@link #toLDAPFilter} for
+   * the provided SCIM filter matches exactly the entries whose SCIM resource
+   * matches the SCIM filter, so that the LDAP search results need not be
+   * filtered again and the LDAP attributes referenced by the filter need not
+   * be retrieved. Filter components on derived attributes are never exact.
+   *
+   * @param filter  The SCIM filter, or {@code null} if no filter parameters
+   *                were provided.
+   *
+   * @return  {@code true} if the LDAP filter is an exact translation of the
+   *          SCIM filter, or {@code false} if it may match additional
+   *          entries.
+   *
+   * @throws SCIMException  If the filter references an undefined attribute.
+   */
+  public boolean isExactLDAPFilter(final SCIMFilter filter)
+      throws SCIMException
+  {
+    if (filter == null)
+    {
+      return true;
+    }
+
+    switch (filter.getFilterType())
+    {
+      case AND:
+      case OR:
+        for (final SCIMFilter f : filter.getFilterComponents())
+        {
+          if (!isExactLDAPFilter(f))
+          {
+            return false;
+          }
+        }
+        return true;
+
+      default:
+        final AttributeDescriptor attributeDescriptor =
+            getFilterAttributeDescriptor(filter);
+        if (derivedAttributes.containsKey(attributeDescriptor))
+        {
+          return false;
+        }
+
+        // A component that is not mapped matches nothing either way.
+        final AttributeMapper attributeMapper =
+            getFilterAttributeMapper(attributeDescriptor);
+        return attributeMapper == null ||
+            attributeMapper.isExactLDAPFilter(filter);
+    }
+  }
+
+
+
+  /**
+   * Retrieve the descriptor of the attribute referenced by a SCIM filter
+   * component.
+   *
+   * @param filter  The SCIM filter component, which must not be an AND or OR
+   *                filter.
+   *
+   * @return  The descriptor of the referenced attribute.
+   *
+   * @throws SCIMException  If the filter references an undefined attribute.
+   */
+  private AttributeDescriptor getFilterAttributeDescriptor(
+      final SCIMFilter filter)
+      throws SCIMException
+  {
+    final AttributePath filterAttribute = filter.getFilterAttribute();
+    return resourceDescriptor.getAttribute(
+        filterAttribute.getAttributeSchema(),
+        filterAttribute.getAttributeName());
+  }
+
+
+
+  /**
+   * Retrieve the attribute mapper used to map filters on an attribute.
+   *
+   * @param attributeDescriptor  The descriptor of the attribute.
+   *
+   * @return  The attribute mapper, or {@code null} if the attribute is not
+   *          mapped by an attribute mapper.
+   */
+  private AttributeMapper getFilterAttributeMapper(
+      final AttributeDescriptor attributeDescriptor)
+  {
+    if (attributeDescriptor.equals(
+        metaAttributeMapper.getAttributeDescriptor()))
+    {
+      return metaAttributeMapper;
+    }
+    else if (idAttributeMapper != null &&
+             attributeDescriptor.equals(
+                 idAttributeMapper.getAttributeDescriptor()))
+    {
+      return idAttributeMapper;
+    }
+    else
+    {
+      return attributeMappers.get(attributeDescriptor);
+    }
+  }
+
+
+
   /**
    * Gets an AttributeMapper for the SCIM Meta object (part of the core schema).
    *
@@ -0,0 +1,472 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.ldap;
+
+import com.unboundid.scim.schema.AttributeDescriptor;
+import com.unboundid.scim.schema.ResourceDescriptor;
+import com.unboundid.scim.sdk.Debug;
+import com.unboundid.scim.sdk.DebugType;
+import com.unboundid.scim.sdk.SCIMException;
+import com.unboundid.scim.sdk.ServerErrorException;
+import org.xml.sax.SAXException;
+
+import javax.xml.bind.JAXBException;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+
+
+/**
+ * This class reloads the resource mappings of an LDAP backend from an XML
+ * file when the file changes, without restarting the backend. The new
+ * resource mappers are parsed, validated and initialized before they replace
+ * the current resource mappers, so requests are never processed against a
+ * partially loaded set of mappings. If the file cannot be parsed, the current
+ * resource mappers remain in use and the failure is logged.
+ * <BR><BR>
+ * A reload may change how resources are mapped to LDAP, but not which
+ * resources and attributes are served, because those were registered with
+ * the SCIM application when it was created. A file that adds, removes or
+ * changes a resource or any of its attributes is rejected like a file that
+ * cannot be parsed, and the server must be restarted to apply it.
+ * <BR><BR>
+ * Requests that are already in progress when the resource mappers are
+ * replaced complete with the mappers they started with. The replaced mappers
+ * are finalized once a grace period has passed since they were replaced,
+ * which must be longer than any request takes, or when this reloader is
+ * stopped.
+ */
+public class ResourceMappingReloader
+{
+  /**
+   * The default time in milliseconds for which replaced resource mappers are
+   * kept before they are finalized.
+   */
+  public static final long DEFAULT_GRACE_PERIOD_MILLIS = 300000L;
+
+  // The LDAP backend whose resource mappers are reloaded.
+  private final LDAPBackend backend;
+
+  // The XML file defining the resource mappings.
+  private final File file;
+
+  // An LDAP schema to validate the LDAP attribute mappings, or null if they
+  // are not validated.
+  private final com.unboundid.ldap.sdk.schema.Schema ldapSchema;
+
+  // The number of times the resource mappings have been reloaded.
+  private final AtomicLong reloadCount = new AtomicLong();
+
+  // The number of times the resource mappings could not be reloaded.
+  private final AtomicLong failureCount = new AtomicLong();
+
+  // The last modification time of the file when it was last read.
+  private long lastModified;
+
+  // The length of the file when it was last read.
+  private long lastLength;
+
+  // The time in milliseconds for which replaced resource mappers are kept
+  // before they are finalized.
+  private volatile long gracePeriodMillis = DEFAULT_GRACE_PERIOD_MILLIS;
+
+  // The resource mappers replaced by reloads that have not been finalized,
+  // in the order in which they were replaced.
+  private final List<RetiredMappers> retiredMappers =
+      new ArrayList<RetiredMappers>();
+
+  // The thread that checks the file for changes, or null if it is not running.
+  private Thread thread;
+
+  // Indicates whether the thread checking the file should stop.
+  private volatile boolean stopRequested;
+
+
+
+  /**
+   * Create a new resource mapping reloader. The backend is assumed to be
+   * using the resource mappings currently defined in the file.
+   *
+   * @param backend     The LDAP backend whose resource mappers are reloaded.
+   * @param file        The XML file defining the resource mappings.
+   * @param ldapSchema  An LDAP schema to validate the LDAP attribute mappings,
+   *                    or {@code null} if they should not be validated.
+   */
+  public ResourceMappingReloader(
+      final LDAPBackend backend, final File file,
+      final com.unboundid.ldap.sdk.schema.Schema ldapSchema)
+  {
+    this.backend = backend;
+    this.file = file;
+    this.ldapSchema = ldapSchema;
+    this.lastModified = file.lastModified();
+    this.lastLength = file.length();
+  }
+
+
+
+  /**
+   * Specifies the time for which the resource mappers replaced by a reload
+   * are kept before they are finalized. It must be longer than any request
+   * takes, so that requests that started with the replaced mappers complete
+   * before they are finalized.
+   *
+   * @param gracePeriodMillis  The time in milliseconds for which replaced
+   *                           resource mappers are kept.
+   */
+  public void setGracePeriodMillis(final long gracePeriodMillis)
+  {
+    this.gracePeriodMillis = gracePeriodMillis;
+  }
+
+
+
+  /**
+   * Start a background thread that checks the file for changes at the
+   * specified interval, and reloads the resource mappings when it changes.
+   *
+   * @param intervalMillis  The time in milliseconds between checks.
+   */
+  public synchronized void start(final long intervalMillis)
+  {
+    if (thread != null)
+    {
+      return;
+    }
+
+    stopRequested = false;
+    thread = new Thread(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        while (!stopRequested)
+        {
+          try
+          {
+            Thread.sleep(intervalMillis);
+          }
+          catch (InterruptedException e)
+          {
+            continue;
+          }
+          checkForChanges();
+        }
+      }
+    }, "SCIM Resource Mapping Reloader");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+
+
+  /**
+   * Stop the background thread, if it is running, and finalize the resource
+   * mappers replaced by reloads. This should only be done when no more
+   * requests will be processed by the backend.
+   */
+  public void stop()
+  {
+    final Thread t;
+    synchronized (this)
+    {
+      t = thread;
+      thread = null;
+    }
+
+    if (t != null)
+    {
+      stopRequested = true;
+      t.interrupt();
+      try
+      {
+        t.join();
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    synchronized (this)
+    {
+      finalizeRetiredMappers(true);
+    }
+  }
+
+
+
+  /**
+   * Reload the resource mappings if the file has changed since it was last
+   * read. A failure to reload the resource mappings is logged rather than
+   * thrown, and the file is not read again until it changes again. Replaced
+   * resource mappers whose grace period has passed are also finalized.
+   *
+   * @return  {@code true} if the resource mappings were reloaded.
+   */
+  public synchronized boolean checkForChanges()
+  {
+    finalizeRetiredMappers(false);
+    if (file.lastModified() == lastModified && file.length() == lastLength)
+    {
+      return false;
+    }
+
+    try
+    {
+      reload();
+      return true;
+    }
+    catch (Exception e)
+    {
+      Debug.debugException(e);
+      failureCount.incrementAndGet();
+      Debug.debug(Level.WARNING, DebugType.OTHER,
+          "Unable to reload the resource mappings from " + file + ": " +
+              e.getMessage() + ". The previous resource mappings are " +
+              "still in use.");
+      return false;
+    }
+  }
+
+
+
+  /**
+   * Reload the resource mappings from the file and replace the resource
+   * mappers of the backend. The file must define the same resources and
+   * attributes as the current resource mappings.
+   *
+   * @throws JAXBException  If an error occurs during the parsing.
+   * @throws SAXException   If the XML schema cannot be instantiated.
+   * @throws SCIMException  If some other error occurs.
+   */
+  public synchronized void reload()
+      throws JAXBException, SAXException, SCIMException
+  {
+    // Note the state of the file before it is read, so that a change made
+    // while it is being read is detected by the next check.
+    lastModified = file.lastModified();
+    lastLength = file.length();
+
+    final List<ResourceMapper> mappers = ResourceMapper.parse(file, ldapSchema);
+    final Map<ResourceDescriptor, ResourceMapper> mapperMap =
+        new HashMap<ResourceDescriptor, ResourceMapper>(mappers.size());
+    for (final ResourceMapper mapper : mappers)
+    {
+      if (mapperMap.put(mapper.getResourceDescriptor(), mapper) != null)
+      {
+        for (final ResourceMapper m : mappers)
+        {
+          m.finalizeMapper();
+        }
+        throw new ServerErrorException(
+            "The resource '" + mapper.getResourceDescriptor().getName() +
+            "' is defined more than once in " + file);
+      }
+    }
+
+    final Map<ResourceDescriptor, ResourceMapper> previous =
+        backend.getResourceMappers();
+    if (previous != null &&
+        !getSignatures(previous.keySet()).equals(
+            getSignatures(mapperMap.keySet())))
+    {
+      for (final ResourceMapper m : mappers)
+      {
+        m.finalizeMapper();
+      }
+      throw new ServerErrorException(
+          "The resources or attributes defined in " + file + " differ " +
+          "from those being served. The server must be restarted to " +
+          "change them");
+    }
+
+    backend.setResourceMappers(mapperMap);
+    reloadCount.incrementAndGet();
+
+    if (previous != null)
+    {
+      retiredMappers.add(new RetiredMappers(previous.values()));
+    }
+    finalizeRetiredMappers(false);
+  }
+
+
+
+  /**
+   * Retrieves the number of times the resource mappings have been reloaded.
+   *
+   * @return  The number of times the resource mappings have been reloaded.
+   */
+  public long getReloadCount()
+  {
+    return reloadCount.get();
+  }
+
+
+
+  /**
+   * Retrieves the number of times the resource mappings could not be
+   * reloaded because of an error.
+   *
+   * @return  The number of times the resource mappings could not be reloaded.
+   */
+  public long getFailureCount()
+  {
+    return failureCount.get();
+  }
+
+
+
+  /**
+   * Retrieves the number of reloads whose replaced resource mappers have not
+   * yet been finalized.
+   *
+   * @return  The number of reloads whose replaced resource mappers have not
+   *          yet been finalized.
+   */
+  synchronized int getRetiredMappersCount()
+  {
+    return retiredMappers.size();
+  }
+
+
+
+  /**
+   * Finalize the resource mappers replaced by reloads.
+   *
+   * @param all  Indicates whether all of the replaced resource mappers should
+   *             be finalized, rather than only those whose grace period has
+   *             passed.
+   */
+  private void finalizeRetiredMappers(final boolean all)
+  {
+    final long now = System.nanoTime();
+    final long gracePeriodNanos =
+        TimeUnit.MILLISECONDS.toNanos(gracePeriodMillis);
+    while (!retiredMappers.isEmpty())
+    {
+      final RetiredMappers retired = retiredMappers.get(0);
+      if (!all && now - retired.retiredTime < gracePeriodNanos)
+      {
+        break;
+      }
+
+      for (final ResourceMapper mapper : retired.mappers)
+      {
+        mapper.finalizeMapper();
+      }
+      retiredMappers.remove(0);
+    }
+  }
+
+
+
+  /**
+   * Describe the resources and attributes defined by a set of resource
+   * descriptors, so that two sets may be compared.
+   *
+   * @param descriptors  The resource descriptors.
+   *
+   * @return  A description of each resource and attribute.
+   */
+  private static Set<String> getSignatures(
+      final Collection<ResourceDescriptor> descriptors)
+  {
+    final Set<String> signatures = new TreeSet<String>();
+    for (final ResourceDescriptor descriptor : descriptors)
+    {
+      final String prefix = descriptor.getSchema() + ':' +
+          descriptor.getName() + '@' + descriptor.getEndpoint();
+      signatures.add(prefix);
+      addSignatures(signatures, prefix, descriptor.getAttributes());
+    }
+    return signatures;
+  }
+
+
+
+  /**
+   * Add a description of each of a set of attributes, and of their
+   * sub-attributes, to the provided set.
+   *
+   * @param signatures  The set to which the descriptions are added.
+   * @param prefix      The description of the containing resource or
+   *                    attribute.
+   * @param attributes  The attribute descriptors, or {@code null} if there
+   *                    are none.
+   */
+  private static void addSignatures(
+      final Set<String> signatures, final String prefix,
+      final Collection<AttributeDescriptor> attributes)
+  {
+    if (attributes == null)
+    {
+      return;
+    }
+
+    for (final AttributeDescriptor attribute : attributes)
+    {
+      final String signature = prefix + '/' + attribute.getSchema() + ':' +
+          attribute.getName();
+      signatures.add(signature + ' ' + attribute.getDataType() +
+          (attribute.isMultiValued() ? " multiValued" : "") +
+          (attribute.isReadOnly() ? " readOnly" : "") +
+          (attribute.isRequired() ? " required" : "") +
+          (attribute.isCaseExact() ? " caseExact" : ""));
+      addSignatures(signatures, signature,
+          attribute.getDeclaredSubAttributes());
+    }
+  }
+
+
+
+  /**
+   * Resource mappers replaced by a reload.
+   */
+  private static final class RetiredMappers
+  {
+    // The replaced resource mappers.
+    private final Collection<ResourceMapper> mappers;
+
+    // The time at which they were replaced, from System.nanoTime().
+    private final long retiredTime;
+
+
+
+    /**
+     * Create a new record of resource mappers replaced by a reload.
+     *
+     * @param mappers  The replaced resource mappers.
+     */
+    private RetiredMappers(final Collection<ResourceMapper> mappers)
+    {
+      this.mappers = new ArrayList<ResourceMapper>(mappers);
+      this.retiredTime = System.nanoTime();
+    }
+  }
+}
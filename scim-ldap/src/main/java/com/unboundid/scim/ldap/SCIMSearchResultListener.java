@@ -65,10 +65,16 @@ public abstract class SCIMSearchResultListener {
   private final LDAPRequestInterface ldapInterface;
 
   /**
-   * The requested attributes plus the filter attributes.
+   * The requested attributes plus the filter attributes, if the filter is to
+   * be evaluated.
    */
   private final SCIMQueryAttributes attributes;
 
+  /**
+   * Indicates whether the SCIM filter is to be evaluated against each entry.
+   */
+  private final boolean evaluateFilter;
+
 
   /**
    * The LDAPBackend that is processing the SCIM request.
@@ -85,7 +91,8 @@ public abstract class SCIMSearchResultListener {
    * @param ldapInterface  An LDAP interface that can be used to
    *                       derive attributes from other entries.
    *
-   * @throws com.unboundid.scim.sdk.SCIMException  Should never be thrown.
+   * @throws SCIMException  If the request filter references an undefined
+   *                        attribute.
    */
   public SCIMSearchResultListener(final LDAPBackend backend,
                                   final GetResourcesRequest request,
@@ -97,7 +104,16 @@ public abstract class SCIMSearchResultListener {
         backend.getResourceMapper(request.getResourceDescriptor());
     this.request        = request;
     this.ldapInterface  = ldapInterface;
-    this.attributes     = getFilterAttributes().merge(request.getAttributes());
+    this.evaluateFilter =
+        !backend.isExactFilter(resourceMapper, request.getFilter());
+    if (evaluateFilter)
+    {
+      this.attributes = getFilterAttributes().merge(request.getAttributes());
+    }
+    else
+    {
+      this.attributes = request.getAttributes();
+    }
   }
 
 
@@ -231,15 +247,17 @@ public abstract class SCIMSearchResultListener {
     ldapBackend.setIdAndMetaAttributes(resourceMapper, resource, request,
         searchEntry, null);
 
-    if (request.getFilter() == null ||
-        scimObject.matchesFilter(request.getFilter()))
+    if (!evaluateFilter || scimObject.matchesFilter(request.getFilter()))
     {
-      if (request.getAttributes().allAttributesRequested() ||
+      if (!evaluateFilter ||
+          request.getAttributes().allAttributesRequested() ||
           resourceMapper.getDefaultSchemaURI().equals(
               SCHEMA_URI_UBID_LDAP))
       {
         //If we are using the Identity Access API, the paring was already
         //done inside the LDAPResourceMapper.toSCIMAttributes() method.
+        //Otherwise if no filter attributes were mapped, the resource mapper
+        //has already pared each attribute.
         return resource;
       }
       else
@@ -247,6 +265,10 @@ public abstract class SCIMSearchResultListener {
         // Keep only the requested attributes.
         final SCIMObject paredObject =
             request.getAttributes().pareObject(scimObject);
+        if (paredObject == scimObject)
+        {
+          return resource;
+        }
         return new BaseResource(request.getResourceDescriptor(), paredObject);
       }
     }
@@ -161,6 +161,41 @@ public class SimpleAttributeMapper extends AttributeMapper
 
 
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Equality, substring and presence filters on case-insensitive string
+   * attributes that are not transformed are exact, provided the LDAP
+   * attribute has case-insensitive matching rules and holds a single value.
+   * Ordering filters are not exact since the LDAP ordering may differ from
+   * the ordering of the SCIM values.
+   */
+  @Override
+  public boolean isExactLDAPFilter(final SCIMFilter filter)
+  {
+    if (getAttributeDescriptor().getDataType() !=
+        AttributeDescriptor.DataType.STRING ||
+        getAttributeDescriptor().isCaseExact() ||
+        !attributeTransformation.getTransformation().isExactFilterValue())
+    {
+      return false;
+    }
+
+    switch (filter.getFilterType())
+    {
+      case EQUALITY:
+      case CONTAINS:
+      case STARTS_WITH:
+      case PRESENCE:
+        return true;
+
+      default:
+        return false;
+    }
+  }
+
+
+
   @Override
   public Set<String> toLDAPAttributeTypes(final AttributePath scimAttribute)
       throws InvalidResourceException
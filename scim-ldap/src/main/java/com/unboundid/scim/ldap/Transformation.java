@@ -160,6 +160,22 @@ public abstract class Transformation
    */
   public abstract String toLDAPFilterValue(final String scimFilterValue);
 
+  /**
+   * Indicates whether an LDAP filter using a value from
+   * {@link #toLDAPFilterValue} matches exactly the same values as the SCIM
+   * filter matches on the values produced by {@link #toSCIMValue}, so that
+   * the LDAP search results need not be filtered again. This implementation
+   * returns {@code false}, and transformations that alter values should not
+   * override it.
+   *
+   * @return  {@code true} if LDAP filter values match exactly, or
+   *          {@code false} if they may match additional values.
+   */
+  public boolean isExactFilterValue()
+  {
+    return false;
+  }
+
   /**
    * Returns the arguments map for this Transformation. The arguments map is
    * constructed from the child elements of the <mapping> element.
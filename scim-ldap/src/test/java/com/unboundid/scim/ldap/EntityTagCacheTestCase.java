@@ -0,0 +1,161 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.ldap;
+
+import com.unboundid.scim.SCIMTestCase;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.core.EntityTag;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+
+
+/**
+ * This class provides test coverage for the {@code EntityTagCache} class.
+ */
+@Test
+public class EntityTagCacheTestCase
+    extends SCIMTestCase
+{
+  /**
+   * Tests that cached entity tags are only returned to users who have read
+   * them, and that they are discarded when the resource changes, when they
+   * expire and when their stripe of the cache is full.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testCache()
+      throws Exception
+  {
+    final EntityTag v1 = new EntityTag("1");
+    final EntityTag v2 = new EntityTag("2");
+
+    final EntityTagCache cache = new EntityTagCache(2, 60000L);
+    cache.put("Users/a", "alice", v1, cache.getGeneration("Users/a"));
+    assertEquals(cache.get("Users/a", "alice"), v1);
+    assertNull(cache.get("Users/a", "bob"));
+    assertNull(cache.get("Users/a", null));
+
+    cache.put("Users/a", "bob", v1, cache.getGeneration("Users/a"));
+    assertEquals(cache.get("Users/a", "bob"), v1);
+
+    // A new version is only returned to the users who have read it.
+    cache.put("Users/a", "bob", v2, cache.getGeneration("Users/a"));
+    assertEquals(cache.get("Users/a", "bob"), v2);
+    assertNull(cache.get("Users/a", "alice"));
+
+    cache.remove("Users/a");
+    assertNull(cache.get("Users/a", "bob"));
+
+    // The least recently used resource of a full stripe is evicted. Each
+    // stripe of this cache holds one resource.
+    final String a = "Users/a";
+    final String b = getKeyInStripe(EntityTagCache.getStripe(a), a);
+    final String c = getKeyInStripe(EntityTagCache.getStripe(a), b);
+    final EntityTagCache lruCache =
+        new EntityTagCache(2 * EntityTagCache.STRIPES, 60000L);
+    lruCache.put(a, null, v1, lruCache.getGeneration(a));
+    lruCache.put(b, null, v1, lruCache.getGeneration(b));
+    lruCache.get(a, null);
+    lruCache.put(c, null, v1, lruCache.getGeneration(c));
+    assertEquals(lruCache.size(), 2);
+    assertEquals(lruCache.get(a, null), v1);
+    assertNull(lruCache.get(b, null));
+
+    // Resources in other stripes are not evicted.
+    lruCache.put("Users/d", null, v1, lruCache.getGeneration("Users/d"));
+    assertEquals(lruCache.size(), 3);
+
+    final EntityTagCache expiringCache = new EntityTagCache(2, 1L);
+    expiringCache.put("Users/a", null, v1,
+        expiringCache.getGeneration("Users/a"));
+    Thread.sleep(10L);
+    assertNull(expiringCache.get("Users/a", null));
+    assertEquals(expiringCache.size(), 0);
+  }
+
+
+
+  /**
+   * Tests that an entity tag read before a concurrent modification is not
+   * cached after the modification has removed the resource from the cache.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testReadRacingModification()
+      throws Exception
+  {
+    final EntityTag v1 = new EntityTag("1");
+    final EntityTag v2 = new EntityTag("2");
+    final EntityTagCache cache = new EntityTagCache(10, 60000L);
+
+    // A GET obtains the generation and reads version 1. Before it caches the
+    // entity tag, a PUT writes version 2 and removes the resource.
+    final long getGeneration = cache.getGeneration("Users/a");
+    cache.remove("Users/a");
+    cache.put("Users/a", null, v1, getGeneration);
+    assertNull(cache.get("Users/a", null));
+
+    // A GET that starts after the PUT caches version 2.
+    cache.put("Users/a", null, v2, cache.getGeneration("Users/a"));
+    assertEquals(cache.get("Users/a", null), v2);
+
+    // A GET that read version 2 and then raced with a PUT of version 3 and
+    // a later removal does not replace the cached entity tag either.
+    final long staleGeneration = cache.getGeneration("Users/a");
+    cache.remove("Users/a");
+    final EntityTag v3 = new EntityTag("3");
+    cache.put("Users/a", null, v3, cache.getGeneration("Users/a"));
+    cache.put("Users/a", null, v2, staleGeneration);
+    assertEquals(cache.get("Users/a", null), v3);
+
+    // Removing another resource, whose key hashes to a different generation
+    // counter, does not prevent caching.
+    final long generation = cache.getGeneration("Users/b");
+    cache.remove("Users/c");
+    cache.put("Users/b", null, v1, generation);
+    assertEquals(cache.get("Users/b", null), v1);
+  }
+
+
+
+  /**
+   * Find a resource key that is held in the specified stripe.
+   *
+   * @param stripe  The index of the stripe.
+   * @param after   A key that must not be returned.
+   *
+   * @return  A resource key held in the stripe.
+   */
+  private static String getKeyInStripe(final int stripe, final String after)
+  {
+    for (int i = 0; ; i++)
+    {
+      final String key = "Users/" + i;
+      if (EntityTagCache.getStripe(key) == stripe && !key.equals(after) &&
+          !key.equals("Users/a"))
+      {
+        return key;
+      }
+    }
+  }
+}
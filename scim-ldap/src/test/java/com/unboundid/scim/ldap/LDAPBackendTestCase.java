@@ -0,0 +1,745 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.ldap;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.scim.SCIMTestCase;
+import com.unboundid.scim.data.BaseResource;
+import com.unboundid.scim.data.Name;
+import com.unboundid.scim.data.UserResource;
+import com.unboundid.scim.schema.ResourceDescriptor;
+import com.unboundid.scim.sdk.GetResourceRequest;
+import com.unboundid.scim.sdk.GetResourcesRequest;
+import com.unboundid.scim.sdk.MetricFamily;
+import com.unboundid.scim.sdk.PageParameters;
+import com.unboundid.scim.sdk.PatchResourceRequest;
+import com.unboundid.scim.sdk.PostResourceRequest;
+import com.unboundid.scim.sdk.Resources;
+import com.unboundid.scim.sdk.SCIMException;
+import com.unboundid.scim.sdk.SCIMFilter;
+import com.unboundid.scim.sdk.SCIMConstants;
+import com.unboundid.scim.sdk.SCIMObject;
+import com.unboundid.scim.sdk.SCIMQueryAttributes;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.HttpHeaders;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+
+
+/**
+ * This class provides test coverage for queries processed by the
+ * {@code LDAPBackend} class against an in-memory directory server.
+ */
+@Test
+public class LDAPBackendTestCase
+    extends SCIMTestCase
+{
+  /**
+   * The base URL used in requests.
+   */
+  private static final URI BASE_URL = URI.create("http://localhost/");
+
+  /**
+   * The in-memory directory server.
+   */
+  private InMemoryDirectoryServer ds;
+
+
+
+  /**
+   * Starts the in-memory directory server and adds some users.
+   *
+   * @throws Exception  If the server could not be started.
+   */
+  @BeforeClass
+  public void setUp()
+      throws Exception
+  {
+    final InMemoryDirectoryServerConfig config =
+        new InMemoryDirectoryServerConfig("dc=example,dc=com");
+    config.setSchema(null);
+    ds = new InMemoryDirectoryServer(config);
+    ds.add("dn: dc=example,dc=com",
+           "objectClass: domain",
+           "dc: example");
+    ds.add("dn: ou=people,dc=example,dc=com",
+           "objectClass: organizationalUnit",
+           "ou: people");
+    for (int i = 0; i < 5; i++)
+    {
+      ds.add("dn: " + getUserDN(i),
+             "objectClass: inetOrgPerson",
+             "uid: user." + i,
+             "cn: User " + i,
+             "sn: User",
+             "employeeNumber: " + i);
+    }
+  }
+
+
+
+  /**
+   * Shuts down the in-memory directory server.
+   */
+  @AfterClass
+  public void tearDown()
+  {
+    ds.shutDown(true);
+  }
+
+
+
+  /**
+   * Tests that a query for several IDs that map to DNs reads each entry
+   * directly, ignores unknown IDs and returns the resources in the order in
+   * which they were requested.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testMultipleIdsMappedToDNs()
+      throws Exception
+  {
+    final LDAPBackend backend = createBackend(true);
+    final ResourceDescriptor users = getUserDescriptor(backend);
+
+    final Resources<?> resources = backend.getResources(
+        createRequest(users, "id eq \"" + getUserDN(3) + "\" or " +
+            "id eq \"uid=missing,ou=people,dc=example,dc=com\" or " +
+            "id eq \"not a DN\" or id eq \"" + getUserDN(1) + "\""));
+    assertEquals(getIDs(resources), list(getUserDN(3), getUserDN(1)));
+    assertEquals(resources.getTotalResults(), 2);
+
+    // One base search for each valid DN rather than a subtree search.
+    final LDAPOperationTotals totals =
+        backend.getLDAPOperationTotals().get("query");
+    assertEquals(totals.getOperationCount(), 3L);
+  }
+
+
+
+  /**
+   * Tests that the LDAP operations processed for each type of SCIM request
+   * and the derived attribute cache lookups are reported as metrics.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testMetrics()
+      throws Exception
+  {
+    final LDAPBackend backend = createBackend(true);
+    final ResourceDescriptor users = getUserDescriptor(backend);
+    backend.getResources(createRequest(users,
+        "id eq \"" + getUserDN(1) + "\" or id eq \"" + getUserDN(2) + "\""));
+
+    final Map<String, MetricFamily> families =
+        new HashMap<String, MetricFamily>();
+    for (final MetricFamily family : backend.getMetrics())
+    {
+      families.put(family.getName(), family);
+    }
+
+    final MetricFamily operations = families.get("scim_ldap_operations");
+    assertEquals(operations.getType(), MetricFamily.Type.COUNTER);
+    assertEquals(operations.getSamples().size(), 6);
+    for (final MetricFamily.Sample sample : operations.getSamples())
+    {
+      final String request = sample.getLabels().get("request");
+      assertEquals(sample.getValue().longValue(),
+          backend.getLDAPOperationTotals().get(request).getOperationCount());
+    }
+    assertEquals(operations.getSamples().get(1).getLabels().get("request"),
+                 "query");
+    assertEquals(operations.getSamples().get(1).getValue().longValue(), 2L);
+    assertEquals(families.get("scim_ldap_requests").getSamples().get(1)
+        .getValue().longValue(), 1L);
+
+    assertTrue(families.containsKey("scim_ldap_operation_seconds"));
+    assertTrue(families.containsKey("scim_ldap_entries_returned"));
+    assertEquals(families.get("scim_ldap_derived_attribute_cache_lookups")
+        .getSamples().size(), 4);
+  }
+
+
+
+  /**
+   * Tests that a query for several IDs that map to DNs returns the requested
+   * page of resources, and the total number of matching resources.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testMultipleIdsMappedToDNsPaged()
+      throws Exception
+  {
+    final LDAPBackend backend = createBackend(true);
+    final ResourceDescriptor users = getUserDescriptor(backend);
+    final String filter = "id eq \"" + getUserDN(4) + "\" or " +
+        "id eq \"uid=missing,ou=people,dc=example,dc=com\" or " +
+        "id eq \"" + getUserDN(0) + "\" or id eq \"" + getUserDN(2) +
+        "\" or id eq \"" + getUserDN(1) + "\"";
+
+    Resources<?> resources = backend.getResources(
+        createRequest(users, filter, new PageParameters(2, 2)));
+    assertEquals(getIDs(resources), list(getUserDN(0), getUserDN(2)));
+    assertEquals(resources.getTotalResults(), 4);
+    assertEquals(resources.getStartIndex(), 2L);
+
+    resources = backend.getResources(
+        createRequest(users, filter, new PageParameters(4, 2)));
+    assertEquals(getIDs(resources), list(getUserDN(1)));
+    assertEquals(resources.getTotalResults(), 4);
+
+    resources = backend.getResources(
+        createRequest(users, filter, new PageParameters(1, 3)));
+    assertEquals(getIDs(resources),
+                 list(getUserDN(4), getUserDN(0), getUserDN(2)));
+    assertEquals(resources.getTotalResults(), 4);
+
+    // A start index beyond the matching resources returns an empty page.
+    resources = backend.getResources(
+        createRequest(users, filter, new PageParameters(6, 2)));
+    assertEquals(getIDs(resources), list());
+    assertEquals(resources.getTotalResults(), 4);
+  }
+
+
+
+  /**
+   * Tests that a query for several IDs that map to DNs neither returns nor
+   * counts entries outside the scope of the resource mapper, and counts an
+   * entry requested with several spellings of its DN only once.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testMultipleIdsMappedToDNsOutOfScope()
+      throws Exception
+  {
+    final String outsideDN = "uid=outside,dc=example,dc=com";
+    ds.add("dn: " + outsideDN,
+           "objectClass: inetOrgPerson",
+           "uid: outside",
+           "cn: Outside",
+           "sn: Outside");
+    try
+    {
+      final LDAPBackend backend = createBackend(true);
+      final ResourceDescriptor users = getUserDescriptor(backend);
+      final String filter = "id eq \"" + outsideDN + "\" or " +
+          "id eq \"" + getUserDN(1).toUpperCase() + "\" or " +
+          "id eq \"" + getUserDN(1) + "\" or id eq \"" + getUserDN(3) +
+          "\"";
+
+      Resources<?> resources =
+          backend.getResources(createRequest(users, filter));
+      assertEquals(getIDs(resources), list(getUserDN(1), getUserDN(3)));
+      assertEquals(resources.getTotalResults(), 2);
+
+      resources = backend.getResources(
+          createRequest(users, filter, new PageParameters(2, 1)));
+      assertEquals(getIDs(resources), list(getUserDN(3)));
+      assertEquals(resources.getTotalResults(), 2);
+
+      // The entry outside the scope is never searched for.
+      assertEquals(backend.getLDAPOperationTotals().get("query")
+          .getOperationCount(), 3L + 3L + 1L);
+    }
+    finally
+    {
+      ds.delete(outsideDN);
+    }
+  }
+
+
+
+  /**
+   * Tests that a query for several IDs that do not map to DNs returns the
+   * resources in the order in which they were requested.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testMultipleIdsMappedToAttribute()
+      throws Exception
+  {
+    final LDAPBackend backend = createBackend(false);
+    final ResourceDescriptor users = getUserDescriptor(backend);
+
+    final List<String> ids = getIDs(backend.getResources(
+        createRequest(users, "userName pr")));
+    assertEquals(ids.size(), 5);
+
+    final Resources<?> resources = backend.getResources(createRequest(users,
+        "id eq \"" + ids.get(4) + "\" or id eq \"" + ids.get(0) +
+            "\" or id eq \"" + ids.get(2) + "\""));
+    assertEquals(getIDs(resources), list(ids.get(4), ids.get(0), ids.get(2)));
+  }
+
+
+
+  /**
+   * Tests that a fast create returns the same resource as a create that
+   * reads back the added entry, without reading it back.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testFastCreate()
+      throws Exception
+  {
+    final LDAPBackend readBackBackend = createBackend(true);
+    final LDAPBackend fastBackend = createBackend(true);
+    fastBackend.setFastCreate(true);
+
+    final BaseResource expected = post(readBackBackend, "fast.0");
+    ds.delete(expected.getId());
+    final BaseResource actual = post(fastBackend, "fast.0");
+    ds.delete(actual.getId());
+
+    assertEquals(actual.getId(), getUserDN("fast.0"));
+    assertNotNull(actual.getMeta().getCreated());
+    assertNotNull(actual.getMeta().getLastModified());
+    assertEquals(actual.getMeta().getLocation(),
+                 expected.getMeta().getLocation());
+    assertNull(actual.getMeta().getVersion());
+    assertEquals(withoutMeta(actual), withoutMeta(expected));
+
+    // The read-back adds a search for the entry and a search for its groups.
+    assertEquals(getPostOperationCount(readBackBackend), 3L);
+    assertEquals(getPostOperationCount(fastBackend), 1L);
+  }
+
+
+
+  /**
+   * Tests that a fast create still reads back the added entry when
+   * versioning is enabled, so that the response carries the entity tag
+   * assigned by the directory server.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testFastCreateWithVersioning()
+      throws Exception
+  {
+    final LDAPBackend backend = createBackend(true);
+    backend.setFastCreate(true);
+    backend.setEntityTagAttribute("entryUUID");
+
+    final BaseResource resource = post(backend, "fast.1");
+    final String entryUUID =
+        ds.getEntry(resource.getId()).getAttributeValue("entryUUID");
+    ds.delete(resource.getId());
+
+    assertNotNull(entryUUID);
+    assertTrue(resource.getMeta().getVersion().contains(entryUUID));
+    assertEquals(getPostOperationCount(backend), 3L);
+  }
+
+
+
+  /**
+   * Tests that a fast create still reads back the added entry when the
+   * resource ID maps to an attribute generated by the directory server.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testFastCreateWithGeneratedID()
+      throws Exception
+  {
+    final LDAPBackend backend = createBackend(false);
+    backend.setFastCreate(true);
+
+    final BaseResource resource = post(backend, "fast.2");
+    final String dn = getUserDN("fast.2");
+    final String entryUUID =
+        ds.getEntry(dn).getAttributeValue("entryUUID");
+    ds.delete(dn);
+
+    assertNotNull(entryUUID);
+    assertEquals(resource.getId(), entryUUID);
+    assertEquals(getPostOperationCount(backend), 3L);
+  }
+
+
+
+  /**
+   * Tests that a modification of a resource through one spelling of its DN
+   * discards the entity tag cached for another spelling.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testEntityTagCacheKeyNormalized()
+      throws Exception
+  {
+    final String dn = getUserDN("etag.0");
+    ds.add("dn: " + dn,
+           "objectClass: inetOrgPerson",
+           "uid: etag.0",
+           "cn: Etag User",
+           "sn: User",
+           "displayName: Version 1");
+    try
+    {
+      final LDAPBackend backend = createBackend(true);
+      backend.setEntityTagAttribute("displayName");
+      backend.setEntityTagCache(100, 60000L);
+      final ResourceDescriptor users = getUserDescriptor(backend);
+      final String otherSpelling = dn.toUpperCase();
+
+      final String version = backend.getResource(new GetResourceRequest(
+          BASE_URL, null, users, otherSpelling,
+          new SCIMQueryAttributes(users, null))).getMeta().getVersion();
+
+      final UserResource user = new UserResource(users);
+      user.setDisplayName("Version 2");
+      backend.patchResource(new PatchResourceRequest(BASE_URL, null, users,
+          dn, user.getScimObject(), new SCIMQueryAttributes(users, null)));
+
+      // The cached entity tag of the other spelling is no longer valid, so
+      // the modified resource is returned.
+      final BaseResource resource = backend.getResource(
+          new GetResourceRequest(BASE_URL, null, users, otherSpelling,
+              new SCIMQueryAttributes(users, null),
+              createHttpRequest(HttpHeaders.IF_NONE_MATCH, version)));
+      assertEquals(new UserResource(users, resource.getScimObject())
+          .getDisplayName(), "Version 2");
+    }
+    finally
+    {
+      ds.delete(dn);
+    }
+  }
+
+
+
+  /**
+   * Create an HTTP request that has a single header.
+   *
+   * @param name   The name of the header.
+   * @param value  The value of the header.
+   *
+   * @return  The HTTP request.
+   */
+  private static HttpServletRequest createHttpRequest(final String name,
+                                                      final String value)
+  {
+    return (HttpServletRequest) Proxy.newProxyInstance(
+        HttpServletRequest.class.getClassLoader(),
+        new Class<?>[] { HttpServletRequest.class },
+        new InvocationHandler()
+        {
+          public Object invoke(final Object proxy, final Method method,
+                               final Object[] args)
+          {
+            if (method.getName().equals("getHeader") &&
+                ((String) args[0]).equalsIgnoreCase(name))
+            {
+              return value;
+            }
+            return null;
+          }
+        });
+  }
+
+
+
+  /**
+   * Retrieve the DN of a test user.
+   *
+   * @param index  The index of the user.
+   *
+   * @return  The DN of the user.
+   */
+  private static String getUserDN(final int index)
+  {
+    return "uid=user." + index + ",ou=people,dc=example,dc=com";
+  }
+
+
+
+  /**
+   * Retrieve the DN of a user created by a test.
+   *
+   * @param userName  The user name of the user.
+   *
+   * @return  The DN of the user.
+   */
+  private static String getUserDN(final String userName)
+  {
+    return "uid=" + userName + ",ou=people,dc=example,dc=com";
+  }
+
+
+
+  /**
+   * Create a user through an LDAP backend, requesting all attributes.
+   *
+   * @param backend   The LDAP backend.
+   * @param userName  The user name of the new user.
+   *
+   * @return  The created resource returned by the backend.
+   *
+   * @throws Exception  If the user could not be created.
+   */
+  private static BaseResource post(final LDAPBackend backend,
+                                   final String userName)
+      throws Exception
+  {
+    final ResourceDescriptor users = getUserDescriptor(backend);
+    final UserResource user = new UserResource(users);
+    user.setUserName(userName);
+    user.setName(new Name("Fast User", "User", null, "Fast", null, null));
+    user.setDisplayName("Fast User");
+    user.setTitle("Tester");
+    return backend.postResource(new PostResourceRequest(BASE_URL, null,
+        users, user.getScimObject(), new SCIMQueryAttributes(users, null)));
+  }
+
+
+
+  /**
+   * Retrieve a copy of the SCIM object of a resource without its meta
+   * attribute.
+   *
+   * @param resource  The resource.
+   *
+   * @return  A copy of the SCIM object without the meta attribute.
+   */
+  private static SCIMObject withoutMeta(final BaseResource resource)
+  {
+    final SCIMObject object = new SCIMObject(resource.getScimObject());
+    object.removeAttribute(SCIMConstants.SCHEMA_URI_CORE, "meta");
+    return object;
+  }
+
+
+
+  /**
+   * Retrieve the number of LDAP operations processed by create requests.
+   *
+   * @param backend  The LDAP backend.
+   *
+   * @return  The number of LDAP operations processed by create requests.
+   */
+  private static long getPostOperationCount(final LDAPBackend backend)
+  {
+    return backend.getLDAPOperationTotals().get("post").getOperationCount();
+  }
+
+
+
+  /**
+   * Create an LDAP backend using the default resource mappings.
+   *
+   * @param idMapsToDN  Indicates whether resource IDs should map to DNs
+   *                    rather than to entryUUID.
+   *
+   * @return  The LDAP backend.
+   *
+   * @throws Exception  If the backend could not be created.
+   */
+  private LDAPBackend createBackend(final boolean idMapsToDN)
+      throws Exception
+  {
+    File resourcesFile =
+        getResourceFile("/com/unboundid/scim/ldap/resources.xml");
+    if (idMapsToDN)
+    {
+      final Scanner scanner = new Scanner(resourcesFile, "UTF-8");
+      final String content;
+      try
+      {
+        content = scanner.useDelimiter("\\A").next();
+      }
+      finally
+      {
+        scanner.close();
+      }
+
+      resourcesFile = File.createTempFile("resources-", ".xml");
+      resourcesFile.deleteOnExit();
+      final Writer writer = new OutputStreamWriter(
+          new FileOutputStream(resourcesFile), "UTF-8");
+      try
+      {
+        writer.write(content.replace(
+            "<resourceIDMapping ldapAttribute=\"entryUUID\" " +
+                "createdBy=\"directory\"/>", ""));
+      }
+      finally
+      {
+        writer.close();
+      }
+    }
+
+    final Map<ResourceDescriptor, ResourceMapper> mappers =
+        new HashMap<ResourceDescriptor, ResourceMapper>();
+    for (final ResourceMapper mapper : ResourceMapper.parse(resourcesFile))
+    {
+      mappers.put(mapper.getResourceDescriptor(), mapper);
+    }
+
+    final LDAPRequestInterface ldapInterface = new LDAPRequestInterface(ds);
+    return new LDAPBackend(mappers)
+    {
+      @Override
+      protected LDAPRequestInterface getLDAPRequestInterface(
+          final String userID)
+          throws SCIMException
+      {
+        return ldapInterface;
+      }
+
+      @Override
+      public void finalizeBackend()
+      {
+        // No implementation required.
+      }
+    };
+  }
+
+
+
+  /**
+   * Retrieve the descriptor of the User resource.
+   *
+   * @param backend  The LDAP backend.
+   *
+   * @return  The descriptor of the User resource.
+   */
+  private static ResourceDescriptor getUserDescriptor(
+      final LDAPBackend backend)
+  {
+    for (final ResourceDescriptor descriptor : backend.getResourceDescriptors())
+    {
+      if (descriptor.getName().equals("User"))
+      {
+        return descriptor;
+      }
+    }
+    throw new AssertionError("No User resource");
+  }
+
+
+
+  /**
+   * Create a query request for users.
+   *
+   * @param users   The descriptor of the User resource.
+   * @param filter  The query filter.
+   *
+   * @return  The query request.
+   *
+   * @throws Exception  If the filter could not be parsed.
+   */
+  private static GetResourcesRequest createRequest(
+      final ResourceDescriptor users, final String filter)
+      throws Exception
+  {
+    return createRequest(users, filter, null);
+  }
+
+
+
+  /**
+   * Create a query request for a page of users.
+   *
+   * @param users           The descriptor of the User resource.
+   * @param filter          The query filter.
+   * @param pageParameters  The requested page, or {@code null} for all
+   *                        matching users.
+   *
+   * @return  The query request.
+   *
+   * @throws Exception  If the filter could not be parsed.
+   */
+  private static GetResourcesRequest createRequest(
+      final ResourceDescriptor users, final String filter,
+      final PageParameters pageParameters)
+      throws Exception
+  {
+    return new GetResourcesRequest(BASE_URL, null, users,
+        SCIMFilter.parse(filter), null, null, null, pageParameters,
+        new SCIMQueryAttributes(users, "userName"));
+  }
+
+
+
+  /**
+   * Retrieve the IDs of the resources returned by a query.
+   *
+   * @param resources  The resources returned by the query.
+   *
+   * @return  The IDs of the resources, in order.
+   */
+  private static List<String> getIDs(final Resources<?> resources)
+  {
+    final List<String> ids = new ArrayList<String>();
+    for (final BaseResource resource : resources)
+    {
+      ids.add(resource.getId());
+    }
+    return ids;
+  }
+
+
+
+  /**
+   * Create a list of strings.
+   *
+   * @param values  The strings.
+   *
+   * @return  The list of strings.
+   */
+  private static List<String> list(final String... values)
+  {
+    final List<String> list = new ArrayList<String>();
+    for (final String value : values)
+    {
+      list.add(value);
+    }
+    return list;
+  }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.ldap;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSearchRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryOperationInterceptor;
+import com.unboundid.ldap.sdk.AddRequest;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModificationType;
+import com.unboundid.ldap.sdk.ModifyRequest;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.SearchRequest;
+import com.unboundid.ldap.sdk.SearchScope;
+import com.unboundid.scim.SCIMTestCase;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+
+
+/**
+ * This class provides test coverage for the {@code LDAPRequestStats} class.
+ */
+@Test
+public class LDAPRequestStatsTestCase
+    extends SCIMTestCase
+{
+  /**
+   * Tests that the operations processed through an LDAP request interface are
+   * recorded in the statistics for the current request.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testOperationsRecorded()
+      throws Exception
+  {
+    final InMemoryDirectoryServerConfig config =
+        new InMemoryDirectoryServerConfig("dc=example,dc=com");
+    config.setSchema(null);
+    final InMemoryDirectoryServer ds = new InMemoryDirectoryServer(config);
+    try
+    {
+      final LDAPRequestInterface ldapInterface = new LDAPRequestInterface(ds);
+
+      // Operations outside a request are not recorded.
+      ldapInterface.add(new AddRequest(
+          "dn: dc=example,dc=com",
+          "objectClass: top",
+          "objectClass: domain",
+          "dc: example"));
+      assertNull(LDAPRequestStats.current());
+
+      final LDAPRequestStats stats = LDAPRequestStats.start(true);
+      try
+      {
+        assertNull(LDAPRequestStats.start(false));
+        assertTrue(LDAPRequestStats.current() == stats);
+
+        ldapInterface.add(new AddRequest(
+            "dn: ou=People,dc=example,dc=com",
+            "objectClass: top",
+            "objectClass: organizationalUnit",
+            "ou: People"));
+        ldapInterface.search(new SearchRequest("dc=example,dc=com",
+            SearchScope.SUB, "(objectClass=*)"));
+        ldapInterface.searchForEntry(new SearchRequest(
+            "ou=People,dc=example,dc=com", SearchScope.BASE,
+            "(objectClass=*)"));
+      }
+      finally
+      {
+        LDAPRequestStats.end(stats);
+      }
+
+      assertNull(LDAPRequestStats.current());
+      assertEquals(stats.getOperationCount(), 3);
+      assertEquals(stats.getEntriesReturned(), 3L);
+      assertTrue(stats.getElapsedNanos() >= stats.getSlowestOperationNanos());
+      assertTrue(stats.getSlowestOperation() != null);
+      assertEquals(stats.toString().split("\n").length, 4);
+
+      final LDAPOperationTotals totals = new LDAPOperationTotals();
+      totals.add(stats);
+      totals.add(stats);
+      assertEquals(totals.getRequestCount(), 2L);
+      assertEquals(totals.getOperationCount(), 6L);
+      assertEquals(totals.getEntriesReturned(), 6L);
+      assertEquals(totals.getAverageOperationsPerRequest(), 3.0d);
+    }
+    finally
+    {
+      ds.shutDown(true);
+    }
+  }
+
+
+
+  /**
+   * Tests that the description of the operations names the attributes of
+   * adds, modifies and search filters but does not include their values.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testValuesNotDescribed()
+      throws Exception
+  {
+    final InMemoryDirectoryServerConfig config =
+        new InMemoryDirectoryServerConfig("dc=example,dc=com");
+    config.setSchema(null);
+    final InMemoryDirectoryServer ds = new InMemoryDirectoryServer(config);
+    try
+    {
+      final LDAPRequestInterface ldapInterface = new LDAPRequestInterface(ds);
+      ldapInterface.add(new AddRequest(
+          "dn: dc=example,dc=com",
+          "objectClass: top",
+          "objectClass: domain",
+          "dc: example"));
+
+      final LDAPRequestStats stats = LDAPRequestStats.start(true);
+      try
+      {
+        ldapInterface.add(new AddRequest(
+            "dn: uid=test,dc=example,dc=com",
+            "objectClass: inetOrgPerson",
+            "uid: test",
+            "userPassword: addSecret"));
+        ldapInterface.modify(new ModifyRequest(
+            "uid=test,dc=example,dc=com",
+            new Modification(ModificationType.REPLACE, "userPassword",
+                             "modifySecret")));
+        ldapInterface.search(new SearchRequest("dc=example,dc=com",
+            SearchScope.SUB, "(uid=test)", "uid"));
+        ldapInterface.search(new SearchRequest("dc=example,dc=com",
+            SearchScope.SUB,
+            "(&(|(uid=te*)(userPassword=searchSecret))(!(cn>=Secret))" +
+                "(sn=*)(cn:caseExactMatch:=Secret))", "uid"));
+      }
+      finally
+      {
+        LDAPRequestStats.end(stats);
+      }
+
+      final String description = stats.toString();
+      assertFalse(description.contains("Secret"), description);
+      assertFalse(stats.getSlowestOperation().contains("Secret"));
+      assertTrue(description.contains(
+          "ADD dn=\"uid=test,dc=example,dc=com\" " +
+              "attributes={objectClass,uid,userPassword}"), description);
+      assertTrue(description.contains(
+          "MODIFY dn=\"uid=test,dc=example,dc=com\" " +
+              "attributes={userPassword}"), description);
+      assertTrue(description.contains(
+          "SEARCH base=\"dc=example,dc=com\" scope=SUB " +
+              "filter=\"(uid=?)\" attributes={uid} entries=1"),
+          description);
+      assertTrue(description.contains(
+          "filter=\"(&(|(uid=?)(userPassword=?))(!(cn>=?))(sn=*)" +
+              "(cn:caseExactMatch:=?))\""), description);
+    }
+    finally
+    {
+      ds.shutDown(true);
+    }
+  }
+
+
+
+  /**
+   * Tests that only the names of the query parameters of a slow request are
+   * logged.
+   */
+  @Test
+  public void testParameterNames()
+  {
+    final StringBuilder buffer = new StringBuilder();
+    LDAPBackend.appendParameterNames(buffer,
+        "filter=userName%20eq%20%22secret%22&&attributes=id&flag");
+    assertEquals(buffer.toString(), "filter&attributes&flag");
+  }
+
+
+
+
+  /**
+   * Tests that searches pipelined on a connection that was lost are counted
+   * once when they are processed again one after another.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testPipelinedSearchesRetried()
+      throws Exception
+  {
+    // The first search is answered as if the connection had been lost.
+    final AtomicBoolean failed = new AtomicBoolean();
+    final InMemoryDirectoryServerConfig config =
+        new InMemoryDirectoryServerConfig("dc=example,dc=com");
+    config.setSchema(null);
+    config.addInMemoryOperationInterceptor(new InMemoryOperationInterceptor()
+    {
+      @Override
+      public void processSearchRequest(
+          final InMemoryInterceptedSearchRequest request)
+          throws LDAPException
+      {
+        if (failed.compareAndSet(false, true))
+        {
+          throw new LDAPException(ResultCode.SERVER_DOWN,
+                                  "The connection was lost");
+        }
+      }
+    });
+    final InMemoryDirectoryServer ds = new InMemoryDirectoryServer(config);
+    ds.startListening();
+    final LDAPConnection connection = ds.getConnection();
+    try
+    {
+      ds.add("dn: dc=example,dc=com",
+             "objectClass: domain",
+             "dc: example");
+
+      final List<SearchRequest> searchRequests = new ArrayList<SearchRequest>();
+      for (int i = 0; i < 3; i++)
+      {
+        searchRequests.add(new SearchRequest("dc=example,dc=com",
+            SearchScope.BASE, "(objectClass=*)"));
+      }
+
+      final LDAPRequestStats stats = LDAPRequestStats.start(false);
+      try
+      {
+        assertEquals(new LDAPRequestInterface(connection).searchForEntries(
+            searchRequests, false).size(), 3);
+      }
+      finally
+      {
+        LDAPRequestStats.end(stats);
+      }
+
+      assertTrue(failed.get());
+      assertEquals(stats.getOperationCount(), 3);
+      assertEquals(stats.getEntriesReturned(), 3L);
+    }
+    finally
+    {
+      connection.close();
+      ds.shutDown(true);
+    }
+  }
+}
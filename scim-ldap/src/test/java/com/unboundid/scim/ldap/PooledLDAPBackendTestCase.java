@@ -0,0 +1,506 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.ldap;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.sdk.AddRequest;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPConnectionOptions;
+import com.unboundid.ldap.sdk.LDAPConnectionPool;
+import com.unboundid.ldap.sdk.LDAPConnectionPoolStatistics;
+import com.unboundid.ldap.sdk.LDAPInterface;
+import com.unboundid.ldap.sdk.SearchRequest;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.SearchScope;
+import com.unboundid.ldap.sdk.SingleServerSet;
+import com.unboundid.scim.SCIMTestCase;
+import com.unboundid.scim.data.UserResource;
+import com.unboundid.scim.schema.ResourceDescriptor;
+import com.unboundid.scim.sdk.DeleteResourceRequest;
+import com.unboundid.scim.sdk.GetResourcesRequest;
+import com.unboundid.scim.sdk.MetricFamily;
+import com.unboundid.scim.sdk.PatchResourceRequest;
+import com.unboundid.scim.sdk.SCIMFilter;
+import com.unboundid.scim.sdk.SCIMQueryAttributes;
+import com.unboundid.scim.sdk.UnauthorizedException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+
+
+/**
+ * This class provides test coverage for the {@code PooledLDAPBackend} class.
+ */
+@Test
+public class PooledLDAPBackendTestCase
+    extends SCIMTestCase
+{
+  /**
+   * The in-memory directory server acting as the primary server.
+   */
+  private InMemoryDirectoryServer primary;
+
+  /**
+   * The in-memory directory server acting as a read-only replica.
+   */
+  private InMemoryDirectoryServer replica;
+
+
+
+  /**
+   * Starts the in-memory directory servers. Only the replica holds users, so
+   * that the tests can tell which server processed a search.
+   *
+   * @throws Exception  If the servers could not be started.
+   */
+  @BeforeClass
+  public void setUp()
+      throws Exception
+  {
+    primary = startServer();
+    replica = startServer();
+    replica.add("dn: uid=user.0,ou=people,dc=example,dc=com",
+                "objectClass: inetOrgPerson",
+                "uid: user.0",
+                "cn: User 0",
+                "sn: User");
+  }
+
+
+
+  /**
+   * Shuts down the in-memory directory servers.
+   */
+  @AfterClass
+  public void tearDown()
+  {
+    primary.shutDown(true);
+    replica.shutDown(true);
+  }
+
+
+
+  /**
+   * Tests that searches are sent to the read connection pool until a request
+   * has processed an update, and that updates are sent to the primary
+   * connection pool. Proxied authorization is disabled, so requests without
+   * an authenticated user are processed.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testReadWriteRouting()
+      throws Exception
+  {
+    final PooledLDAPBackend backend = createBackend();
+    try
+    {
+      final ResourceDescriptor users = getUserDescriptor(backend);
+      final GetResourcesRequest request = new GetResourcesRequest(
+          URI.create("http://localhost/"), null, users,
+          SCIMFilter.parse("userName eq \"user.0\""), null, null, null, null,
+          new SCIMQueryAttributes(users, "userName"));
+      assertEquals(backend.getResources(request).getTotalResults(), 1);
+
+      final LDAPRequestInterface ldapInterface =
+          backend.getLDAPRequestInterface(null);
+      final SearchRequest searchRequest = new SearchRequest(
+          "uid=user.1,ou=people,dc=example,dc=com", SearchScope.BASE,
+          "(objectClass=*)");
+      assertNull(ldapInterface.searchForEntry(searchRequest));
+
+      ldapInterface.add(new AddRequest(
+          "dn: uid=user.1,ou=people,dc=example,dc=com",
+          "objectClass: inetOrgPerson",
+          "uid: user.1",
+          "cn: User 1",
+          "sn: User"));
+      assertNotNull(primary.getEntry(
+          "uid=user.1,ou=people,dc=example,dc=com"));
+      assertNotNull(ldapInterface.searchForEntry(searchRequest));
+
+      assertTrue(backend.getConnectionPoolStatistics()
+          .getNumSuccessfulCheckouts() > 0);
+      assertTrue(backend.getReadConnectionPoolStatistics()
+          .getNumSuccessfulCheckouts() > 0);
+    }
+    finally
+    {
+      backend.finalizeBackend();
+    }
+  }
+
+
+
+  /**
+   * Tests that the statistics of both connection pools are included in the
+   * metrics of the backend, along with the LDAP backend metrics.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testMetrics()
+      throws Exception
+  {
+    final PooledLDAPBackend backend = createBackend();
+    try
+    {
+      final LDAPRequestInterface ldapInterface =
+          backend.getLDAPRequestInterface(null);
+      ldapInterface.searchForEntry(new SearchRequest(
+          "ou=people,dc=example,dc=com", SearchScope.BASE, "(objectClass=*)"));
+
+      final Map<String, MetricFamily> families =
+          new HashMap<String, MetricFamily>();
+      for (final MetricFamily family : backend.getMetrics())
+      {
+        families.put(family.getName(), family);
+      }
+      assertTrue(families.containsKey("scim_ldap_operations"));
+
+      final LDAPConnectionPoolStatistics readStats =
+          backend.getReadConnectionPoolStatistics();
+      long readCheckouts = 0L;
+      final List<String> pools = new ArrayList<String>();
+      for (final MetricFamily.Sample sample :
+          families.get("scim_ldap_pool_checkouts").getSamples())
+      {
+        final String pool = sample.getLabels().get("pool");
+        if (!pools.contains(pool))
+        {
+          pools.add(pool);
+        }
+        if (pool.equals("read") &&
+            !sample.getLabels().get("outcome").equals("failed"))
+        {
+          readCheckouts += sample.getValue().longValue();
+        }
+      }
+      assertEquals(pools.size(), 2);
+      assertEquals(pools.get(0), "primary");
+      assertEquals(readCheckouts, readStats.getNumSuccessfulCheckouts());
+      assertTrue(readCheckouts > 0);
+
+      for (final String name : new String[] {
+          "scim_ldap_pool_failed_connection_attempts",
+          "scim_ldap_pool_connections_closed_defunct",
+          "scim_ldap_pool_available_connections",
+          "scim_ldap_pool_max_available_connections" })
+      {
+        assertEquals(families.get(name).getSamples().size(), 2, name);
+      }
+      assertEquals(families.get("scim_ldap_pool_max_available_connections")
+          .getSamples().get(1).getValue().intValue(),
+          readStats.getMaximumAvailableConnections());
+    }
+    finally
+    {
+      backend.finalizeBackend();
+    }
+  }
+
+
+
+  /**
+   * Tests that the searches of a request that updates a resource are sent to
+   * the primary connection pool, so that the update does not depend on a
+   * replica that has not yet received the resource.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testUpdateReadsFromPrimary()
+      throws Exception
+  {
+    // The user is only on the primary, as if the replica were lagging.
+    final String dn = "uid=user.2,ou=people,dc=example,dc=com";
+    primary.add("dn: " + dn,
+                "objectClass: inetOrgPerson",
+                "uid: user.2",
+                "cn: User 2",
+                "sn: User");
+    final String id = primary.getEntry(dn).getAttributeValue("entryUUID");
+    assertNotNull(id);
+
+    final PooledLDAPBackend backend = createBackend();
+    try
+    {
+      final ResourceDescriptor users = getUserDescriptor(backend);
+      final URI baseURL = URI.create("http://localhost/");
+
+      final UserResource user = new UserResource(users);
+      user.setDisplayName("User Two");
+      backend.patchResource(new PatchResourceRequest(baseURL, null, users, id,
+          user.getScimObject(), new SCIMQueryAttributes(users, "userName")));
+      assertEquals(primary.getEntry(dn).getAttributeValue("displayName"),
+                   "User Two");
+
+      backend.deleteResource(
+          new DeleteResourceRequest(baseURL, null, users, id));
+      assertNull(primary.getEntry(dn));
+    }
+    finally
+    {
+      backend.finalizeBackend();
+    }
+  }
+
+
+
+  /**
+   * Tests that searches pipelined on a pooled connection, or on a single
+   * connection, return their entries in the order of the requests.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testSearchForEntries()
+      throws Exception
+  {
+    final List<SearchRequest> searchRequests = new ArrayList<SearchRequest>();
+    for (int i = 0; i < 3 * LDAPRequestInterface.MAX_OUTSTANDING_SEARCHES; i++)
+    {
+      searchRequests.add(new SearchRequest(
+          "uid=user." + (i % 3) + ",ou=people,dc=example,dc=com",
+          SearchScope.BASE, "(objectClass=*)"));
+    }
+
+    final LDAPConnectionPool pool = createPool(replica);
+    final LDAPConnection connection = replica.getConnection();
+    try
+    {
+      for (final LDAPInterface ldapInterface :
+          new LDAPInterface[] { pool, connection })
+      {
+        final List<SearchResultEntry> entries =
+            new LDAPRequestInterface(ldapInterface).searchForEntries(
+                searchRequests, false);
+        assertEquals(entries.size(), searchRequests.size());
+        for (int i = 0; i < entries.size(); i++)
+        {
+          if (i % 3 == 0)
+          {
+            assertEquals(entries.get(i).getDN(),
+                         searchRequests.get(i).getBaseDN());
+          }
+          else
+          {
+            assertNull(entries.get(i));
+          }
+        }
+      }
+      assertEquals(pool.getConnectionPoolStatistics()
+          .getNumSuccessfulCheckouts(), 1L);
+    }
+    finally
+    {
+      connection.close();
+      pool.close();
+    }
+  }
+
+
+
+  /**
+   * Tests that searches are processed one after another on a connection that
+   * operates in synchronous mode, without the pooled connection being treated
+   * as defunct.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testSearchForEntriesSynchronousMode()
+      throws Exception
+  {
+    final List<SearchRequest> searchRequests = new ArrayList<SearchRequest>();
+    for (int i = 0; i < 3; i++)
+    {
+      searchRequests.add(new SearchRequest(
+          "uid=user." + i + ",ou=people,dc=example,dc=com",
+          SearchScope.BASE, "(objectClass=*)"));
+    }
+
+    final LDAPConnectionOptions options = new LDAPConnectionOptions();
+    options.setUseSynchronousMode(true);
+    final LDAPConnection connection = new LDAPConnection(options,
+        "localhost", replica.getListenPort());
+    final LDAPConnectionPool pool = new LDAPConnectionPool(connection, 1);
+    try
+    {
+      final List<SearchResultEntry> entries =
+          new LDAPRequestInterface(pool).searchForEntries(searchRequests,
+              false);
+      assertEquals(entries.size(), 3);
+      assertEquals(entries.get(0).getDN(), searchRequests.get(0).getBaseDN());
+      assertNull(entries.get(1));
+      assertNull(entries.get(2));
+
+      final LDAPConnectionPoolStatistics statistics =
+          pool.getConnectionPoolStatistics();
+      assertEquals(statistics.getNumConnectionsClosedDefunct(), 0L);
+      assertTrue(connection.isConnected());
+    }
+    finally
+    {
+      pool.close();
+    }
+  }
+
+
+
+  /**
+   * Tests the mapping of authenticated user IDs to authorization IDs, and
+   * that a request without an authorization ID is rejected when proxied
+   * authorization is enabled.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testAuthorizationID()
+      throws Exception
+  {
+    final PooledLDAPBackend backend = new PooledLDAPBackend(
+        new HashMap<ResourceDescriptor, ResourceMapper>(), null);
+    assertNull(backend.getAuthorizationID(null));
+    assertEquals(backend.getAuthorizationID("uid=test,dc=example,dc=com"),
+                 "dn:uid=test,dc=example,dc=com");
+    assertEquals(backend.getAuthorizationID("test"), "u:test");
+
+    assertNotNull(backend.getLDAPRequestInterface("test"));
+    try
+    {
+      backend.getLDAPRequestInterface(null);
+      fail("Expected a request without a user to be rejected");
+    }
+    catch (UnauthorizedException e)
+    {
+      // Expected.
+    }
+  }
+
+
+
+  /**
+   * Create a backend with the test resource mappings that sends updates to
+   * the primary server and searches to the replica, without proxied
+   * authorization.
+   *
+   * @return  The backend.
+   *
+   * @throws Exception  If the backend could not be created.
+   */
+  private PooledLDAPBackend createBackend()
+      throws Exception
+  {
+    final Map<ResourceDescriptor, ResourceMapper> mappers =
+        new HashMap<ResourceDescriptor, ResourceMapper>();
+    for (final ResourceMapper mapper : ResourceMapper.parse(
+        getResourceFile("/com/unboundid/scim/ldap/resources.xml")))
+    {
+      mappers.put(mapper.getResourceDescriptor(), mapper);
+    }
+
+    return new PooledLDAPBackend(mappers, createPool(primary),
+        createPool(replica), false);
+  }
+
+
+
+  /**
+   * Retrieve the descriptor of the User resource of a backend.
+   *
+   * @param backend  The backend.
+   *
+   * @return  The descriptor of the User resource.
+   */
+  private static ResourceDescriptor getUserDescriptor(
+      final PooledLDAPBackend backend)
+  {
+    ResourceDescriptor users = null;
+    for (final ResourceDescriptor descriptor :
+        backend.getResourceDescriptors())
+    {
+      if (descriptor.getName().equals("User"))
+      {
+        users = descriptor;
+      }
+    }
+    assertNotNull(users);
+    return users;
+  }
+
+
+
+  /**
+   * Start an in-memory directory server with the base entries.
+   *
+   * @return  The in-memory directory server.
+   *
+   * @throws Exception  If the server could not be started.
+   */
+  private static InMemoryDirectoryServer startServer()
+      throws Exception
+  {
+    final InMemoryDirectoryServerConfig config =
+        new InMemoryDirectoryServerConfig("dc=example,dc=com");
+    config.setSchema(null);
+    final InMemoryDirectoryServer ds = new InMemoryDirectoryServer(config);
+    ds.startListening();
+    ds.add("dn: dc=example,dc=com",
+           "objectClass: domain",
+           "dc: example");
+    ds.add("dn: ou=people,dc=example,dc=com",
+           "objectClass: organizationalUnit",
+           "ou: people");
+    return ds;
+  }
+
+
+
+  /**
+   * Create a connection pool for an in-memory directory server.
+   *
+   * @param ds  The in-memory directory server.
+   *
+   * @return  The connection pool.
+   *
+   * @throws Exception  If the pool could not be created.
+   */
+  private static LDAPConnectionPool createPool(
+      final InMemoryDirectoryServer ds)
+      throws Exception
+  {
+    return PooledLDAPBackend.createConnectionPool(
+        new SingleServerSet("localhost", ds.getListenPort()), null, 1, 2,
+        60000L);
+  }
+}
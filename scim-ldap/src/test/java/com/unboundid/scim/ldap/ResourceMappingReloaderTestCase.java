@@ -0,0 +1,283 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.ldap;
+
+import com.unboundid.scim.SCIMTestCase;
+import com.unboundid.scim.schema.ResourceDescriptor;
+import com.unboundid.scim.sdk.SCIMException;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+
+
+/**
+ * This class provides test coverage for the {@code ResourceMappingReloader}
+ * class.
+ */
+@Test
+public class ResourceMappingReloaderTestCase
+    extends SCIMTestCase
+{
+  /**
+   * Tests that the resource mappers are replaced when the file changes, and
+   * kept when the changed file cannot be parsed.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testReload()
+      throws Exception
+  {
+    final String content = read(
+        getResourceFile("/com/unboundid/scim/ldap/resources.xml"));
+    final File file = File.createTempFile("resources-", ".xml");
+    file.deleteOnExit();
+    write(file, content);
+
+    final Map<ResourceDescriptor, ResourceMapper> mappers = parse(file);
+    final LDAPBackend backend = createBackend(mappers);
+    final ResourceMappingReloader reloader =
+        new ResourceMappingReloader(backend, file, null);
+    assertFalse(reloader.checkForChanges());
+
+    // A file that cannot be parsed leaves the current mappers in place.
+    write(file, content.substring(0, content.length() / 2));
+    assertFalse(reloader.checkForChanges());
+    assertEquals(reloader.getFailureCount(), 1L);
+    assertSame(backend.getResourceMappers(), mappers);
+
+    // The next valid change replaces them.
+    write(file, content);
+    file.setLastModified(file.lastModified() + 1000L);
+    assertTrue(reloader.checkForChanges());
+    assertEquals(reloader.getReloadCount(), 1L);
+
+    final Map<ResourceDescriptor, ResourceMapper> reloaded =
+        backend.getResourceMappers();
+    assertEquals(reloaded.keySet(), mappers.keySet());
+    for (final ResourceDescriptor descriptor : mappers.keySet())
+    {
+      assertNotSame(reloaded.get(descriptor), mappers.get(descriptor));
+    }
+
+    reloader.stop();
+  }
+
+
+  /**
+   * Tests that a file that changes the resources or attributes being served
+   * is rejected.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testReloadChangedResources()
+      throws Exception
+  {
+    final String content = read(
+        getResourceFile("/com/unboundid/scim/ldap/resources.xml"));
+    final File file = File.createTempFile("resources-", ".xml");
+    file.deleteOnExit();
+    write(file, content);
+
+    final Map<ResourceDescriptor, ResourceMapper> mappers = parse(file);
+    final LDAPBackend backend = createBackend(mappers);
+    final ResourceMappingReloader reloader =
+        new ResourceMappingReloader(backend, file, null);
+
+    final String[][] changes =
+        {
+            { "<resource name=\"User\"", "<resource name=\"Person\"" },
+            { "<attribute name=\"displayName\"",
+              "<attribute name=\"displayLabel\"" },
+            { "<subAttribute name=\"displayName\" dataType=\"string\" " +
+              "readOnly=\"true\"",
+              "<subAttribute name=\"displayName\" dataType=\"string\" " +
+              "readOnly=\"false\"" },
+        };
+    long failureCount = 0L;
+    for (final String[] change : changes)
+    {
+      assertTrue(content.contains(change[0]));
+      write(file, content.replaceFirst(change[0], change[1]));
+      file.setLastModified(file.lastModified() + 1000L * (failureCount + 1));
+      assertFalse(reloader.checkForChanges());
+      assertEquals(reloader.getFailureCount(), ++failureCount);
+      assertSame(backend.getResourceMappers(), mappers);
+    }
+
+    reloader.stop();
+  }
+
+
+
+  /**
+   * Tests that replaced resource mappers are kept until their grace period
+   * has passed.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testGracePeriod()
+      throws Exception
+  {
+    final String content = read(
+        getResourceFile("/com/unboundid/scim/ldap/resources.xml"));
+    final File file = File.createTempFile("resources-", ".xml");
+    file.deleteOnExit();
+    write(file, content);
+
+    final LDAPBackend backend = createBackend(parse(file));
+    final ResourceMappingReloader reloader =
+        new ResourceMappingReloader(backend, file, null);
+    reloader.setGracePeriodMillis(3600000L);
+
+    reloader.reload();
+    reloader.reload();
+    assertEquals(reloader.getReloadCount(), 2L);
+    assertEquals(reloader.getRetiredMappersCount(), 2);
+
+    reloader.setGracePeriodMillis(0L);
+    assertFalse(reloader.checkForChanges());
+    assertEquals(reloader.getRetiredMappersCount(), 0);
+
+    reloader.setGracePeriodMillis(3600000L);
+    reloader.reload();
+    assertEquals(reloader.getRetiredMappersCount(), 1);
+    reloader.stop();
+    assertEquals(reloader.getRetiredMappersCount(), 0);
+  }
+
+
+
+  /**
+   * Parse the resource mappings in a file.
+   *
+   * @param file  The file to be parsed.
+   *
+   * @return  The resource mappers keyed by their resource descriptors.
+   *
+   * @throws Exception  If the file could not be parsed.
+   */
+  private static Map<ResourceDescriptor, ResourceMapper> parse(
+      final File file)
+      throws Exception
+  {
+    final Map<ResourceDescriptor, ResourceMapper> mappers =
+        new HashMap<ResourceDescriptor, ResourceMapper>();
+    for (final ResourceMapper mapper : ResourceMapper.parse(file))
+    {
+      mappers.put(mapper.getResourceDescriptor(), mapper);
+    }
+    return mappers;
+  }
+
+
+
+  /**
+   * Create a backend that uses the provided resource mappers and does not
+   * process any requests.
+   *
+   * @param mappers  The resource mappers keyed by their resource descriptors.
+   *
+   * @return  The backend.
+   */
+  private static LDAPBackend createBackend(
+      final Map<ResourceDescriptor, ResourceMapper> mappers)
+  {
+    return new LDAPBackend(mappers)
+    {
+      @Override
+      protected LDAPRequestInterface getLDAPRequestInterface(
+          final String userID)
+          throws SCIMException
+      {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void finalizeBackend()
+      {
+        // No implementation required.
+      }
+    };
+  }
+
+
+
+  /**
+   * Read the content of a file.
+   *
+   * @param file  The file to be read.
+   *
+   * @return  The content of the file.
+   *
+   * @throws Exception  If the file could not be read.
+   */
+  private static String read(final File file)
+      throws Exception
+  {
+    final Scanner scanner = new Scanner(file, "UTF-8");
+    try
+    {
+      return scanner.useDelimiter("\\A").next();
+    }
+    finally
+    {
+      scanner.close();
+    }
+  }
+
+
+
+  /**
+   * Replace the content of a file.
+   *
+   * @param file     The file to be written.
+   * @param content  The new content of the file.
+   *
+   * @throws Exception  If the file could not be written.
+   */
+  private static void write(final File file, final String content)
+      throws Exception
+  {
+    final Writer writer =
+        new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+    try
+    {
+      writer.write(content);
+    }
+    finally
+    {
+      writer.close();
+    }
+  }
+}
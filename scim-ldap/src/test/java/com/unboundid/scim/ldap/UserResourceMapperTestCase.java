@@ -489,6 +489,37 @@ public class UserResourceMapperTestCase
     assertEquals(filter.getComponents().length, 1);
   }
 
+  /**
+   * Verify that only filters whose LDAP translation matches exactly the same
+   * resources are reported as exact.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testExactFilterDetection()
+      throws Exception
+  {
+    final ResourceMapper mapper = getUserResourceMapper();
+
+    assertTrue(mapper.isExactLDAPFilter(null));
+    assertTrue(mapper.isExactLDAPFilter(
+        SCIMFilter.parse("userName eq \"test\"")));
+    assertTrue(mapper.isExactLDAPFilter(
+        SCIMFilter.parse("userName sw \"te\" and displayName co \"es\"")));
+    assertTrue(mapper.isExactLDAPFilter(
+        SCIMFilter.parse("userName pr or displayName eq \"test\"")));
+
+    // Ordering, complex, multi-valued and derived attributes are not exact.
+    assertFalse(mapper.isExactLDAPFilter(
+        SCIMFilter.parse("userName gt \"test\"")));
+    assertFalse(mapper.isExactLDAPFilter(
+        SCIMFilter.parse("userName eq \"test\" and name.familyName eq \"x\"")));
+    assertFalse(mapper.isExactLDAPFilter(
+        SCIMFilter.parse("emails eq \"test@example.com\"")));
+    assertFalse(mapper.isExactLDAPFilter(
+        SCIMFilter.parse("userName eq \"test\" or groups eq \"x\"")));
+  }
+
   /**
    * Performs an assert on filter component attribute name and assertion value.
    *
@@ -0,0 +1,572 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.marshal.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+
+/**
+ * This class writes JSON text as UTF-8 bytes directly to an output stream,
+ * through a buffer that is reused for the lifetime of the generator. The
+ * output is the same as that of {@code org.json.JSONWriter}, including the
+ * escaping performed by {@code JSONObject.quote} and the formatting of
+ * decimal numbers by {@code JSONObject.numberToString}. The encoded form of
+ * object keys is cached, since the same attribute names are written over and
+ * over again. The caller is responsible for writing well-formed JSON.
+ */
+final class JsonGenerator
+{
+  /**
+   * The maximum number of encoded keys to cache.
+   */
+  private static final int MAX_CACHED_KEYS = 1000;
+
+  /**
+   * The cached encoded keys, including the quotes and the trailing colon.
+   */
+  private static final ConcurrentHashMap<String,byte[]> ENCODED_KEYS =
+      new ConcurrentHashMap<String,byte[]>();
+
+  /**
+   * The hexadecimal digits used in unicode escapes.
+   */
+  private static final byte[] HEX_DIGITS =
+      { '0', '1', '2', '3', '4', '5', '6', '7',
+        '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
+
+  /**
+   * The encoding of the JSON null literal.
+   */
+  private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+
+  /**
+   * The encoding of the JSON true literal.
+   */
+  private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+
+  /**
+   * The encoding of the JSON false literal.
+   */
+  private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+
+  // The output stream to write to.
+  private final OutputStream outputStream;
+
+  // The buffer holding bytes not yet written to the output stream.
+  private final byte[] buffer;
+
+  // The number of bytes in the buffer.
+  private int count;
+
+  // Indicates whether a comma is needed before the next key or value.
+  private boolean comma;
+
+
+
+  /**
+   * Create a new generator that writes to the provided output stream.
+   *
+   * @param outputStream  The output stream to write to.
+   */
+  JsonGenerator(final OutputStream outputStream)
+  {
+    this(outputStream, 8192);
+  }
+
+
+
+  /**
+   * Create a new generator that writes to the provided output stream using
+   * a buffer of the given size.
+   *
+   * @param outputStream  The output stream to write to.
+   * @param bufferSize    The size of the buffer, which must be at least 20.
+   */
+  private JsonGenerator(final OutputStream outputStream, final int bufferSize)
+  {
+    this.outputStream = outputStream;
+    this.buffer = new byte[bufferSize];
+  }
+
+
+
+  /**
+   * Begin a JSON object.
+   *
+   * @throws IOException  If an error occurs while writing.
+   */
+  void startObject()
+      throws IOException
+  {
+    separate();
+    writeByte('{');
+    comma = false;
+  }
+
+
+
+  /**
+   * End a JSON object.
+   *
+   * @throws IOException  If an error occurs while writing.
+   */
+  void endObject()
+      throws IOException
+  {
+    writeByte('}');
+    comma = true;
+  }
+
+
+
+  /**
+   * Begin a JSON array.
+   *
+   * @throws IOException  If an error occurs while writing.
+   */
+  void startArray()
+      throws IOException
+  {
+    separate();
+    writeByte('[');
+    comma = false;
+  }
+
+
+
+  /**
+   * End a JSON array.
+   *
+   * @throws IOException  If an error occurs while writing.
+   */
+  void endArray()
+      throws IOException
+  {
+    writeByte(']');
+    comma = true;
+  }
+
+
+
+  /**
+   * Write the key of an object member.
+   *
+   * @param key  The key to write.
+   *
+   * @throws IOException  If an error occurs while writing.
+   */
+  void writeKey(final String key)
+      throws IOException
+  {
+    separate();
+    byte[] encodedKey = ENCODED_KEYS.get(key);
+    if (encodedKey == null)
+    {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      final JsonGenerator generator = new JsonGenerator(bytes, 64);
+      generator.writeString(key);
+      generator.writeByte(':');
+      generator.flushBuffer();
+      encodedKey = bytes.toByteArray();
+      if (ENCODED_KEYS.size() < MAX_CACHED_KEYS)
+      {
+        ENCODED_KEYS.put(key, encodedKey);
+      }
+    }
+    writeBytes(encodedKey);
+    comma = false;
+  }
+
+
+
+  /**
+   * Write a string value, or null.
+   *
+   * @param value  The string value to write, or {@code null}.
+   *
+   * @throws IOException  If an error occurs while writing.
+   */
+  void writeValue(final String value)
+      throws IOException
+  {
+    separate();
+    if (value == null)
+    {
+      writeBytes(NULL);
+    }
+    else
+    {
+      writeString(value);
+    }
+    comma = true;
+  }
+
+
+
+  /**
+   * Write a boolean value.
+   *
+   * @param value  The boolean value to write.
+   *
+   * @throws IOException  If an error occurs while writing.
+   */
+  void writeValue(final boolean value)
+      throws IOException
+  {
+    separate();
+    writeBytes(value ? TRUE : FALSE);
+    comma = true;
+  }
+
+
+
+  /**
+   * Write an integer value.
+   *
+   * @param value  The integer value to write.
+   *
+   * @throws IOException  If an error occurs while writing.
+   */
+  void writeValue(final long value)
+      throws IOException
+  {
+    separate();
+    writeLong(value);
+    comma = true;
+  }
+
+
+
+  /**
+   * Write a decimal value. Trailing zeros in the fractional part are
+   * removed, as they are by {@code JSONObject.numberToString}.
+   *
+   * @param value  The decimal value to write.
+   *
+   * @throws IOException  If an error occurs while writing, or if the value
+   *                      is not finite.
+   */
+  void writeValue(final double value)
+      throws IOException
+  {
+    if (Double.isInfinite(value) || Double.isNaN(value))
+    {
+      throw new IOException("JSON does not allow non-finite numbers.");
+    }
+
+    separate();
+    final String s = Double.toString(value);
+    int length = s.length();
+    if (s.indexOf('.') > 0 && s.indexOf('e') < 0 && s.indexOf('E') < 0)
+    {
+      while (s.charAt(length - 1) == '0')
+      {
+        length--;
+      }
+      if (s.charAt(length - 1) == '.')
+      {
+        length--;
+      }
+    }
+
+    ensureCapacity(length);
+    for (int i = 0; i < length; i++)
+    {
+      buffer[count++] = (byte) s.charAt(i);
+    }
+    comma = true;
+  }
+
+
+
+  /**
+   * Write any buffered bytes and close the output stream.
+   *
+   * @throws IOException  If an error occurs while writing or closing.
+   */
+  void close()
+      throws IOException
+  {
+    try
+    {
+      flushBuffer();
+    }
+    finally
+    {
+      outputStream.close();
+    }
+  }
+
+
+
+  /**
+   * Write a comma if one is needed before the next key or value.
+   *
+   * @throws IOException  If an error occurs while writing.
+   */
+  private void separate()
+      throws IOException
+  {
+    if (comma)
+    {
+      writeByte(',');
+    }
+  }
+
+
+
+  /**
+   * Write a quoted and escaped string as UTF-8. The escaping is the same as
+   * that performed by {@code JSONObject.quote}, and unpaired surrogates are
+   * replaced by a question mark as they are by the UTF-8 charset encoder.
+   *
+   * @param s  The string to write.
+   *
+   * @throws IOException  If an error occurs while writing.
+   */
+  private void writeString(final String s)
+      throws IOException
+  {
+    final int length = s.length();
+    // Each character needs at most six bytes, and so do the quotes.
+    ensureCapacity(Math.min(length * 6 + 2, buffer.length));
+    buffer[count++] = '"';
+
+    char previous = 0;
+    for (int i = 0; i < length; i++)
+    {
+      if (buffer.length - count < 6)
+      {
+        flushBuffer();
+      }
+
+      final char c = s.charAt(i);
+      switch (c)
+      {
+        case '"':
+        case '\\':
+          buffer[count++] = '\\';
+          buffer[count++] = (byte) c;
+          break;
+
+        case '/':
+          if (previous == '<')
+          {
+            buffer[count++] = '\\';
+          }
+          buffer[count++] = '/';
+          break;
+
+        case '\b':
+          buffer[count++] = '\\';
+          buffer[count++] = 'b';
+          break;
+
+        case '\t':
+          buffer[count++] = '\\';
+          buffer[count++] = 't';
+          break;
+
+        case '\n':
+          buffer[count++] = '\\';
+          buffer[count++] = 'n';
+          break;
+
+        case '\f':
+          buffer[count++] = '\\';
+          buffer[count++] = 'f';
+          break;
+
+        case '\r':
+          buffer[count++] = '\\';
+          buffer[count++] = 'r';
+          break;
+
+        default:
+          if (c < 0x20 || (c >= 0x80 && c < 0xA0) ||
+              (c >= 0x2000 && c < 0x2100))
+          {
+            buffer[count++] = '\\';
+            buffer[count++] = 'u';
+            buffer[count++] = HEX_DIGITS[(c >> 12) & 0xF];
+            buffer[count++] = HEX_DIGITS[(c >> 8) & 0xF];
+            buffer[count++] = HEX_DIGITS[(c >> 4) & 0xF];
+            buffer[count++] = HEX_DIGITS[c & 0xF];
+          }
+          else if (c < 0x80)
+          {
+            buffer[count++] = (byte) c;
+          }
+          else if (c < 0x800)
+          {
+            buffer[count++] = (byte) (0xC0 | (c >> 6));
+            buffer[count++] = (byte) (0x80 | (c & 0x3F));
+          }
+          else if (Character.isHighSurrogate(c) && i + 1 < length &&
+                   Character.isLowSurrogate(s.charAt(i + 1)))
+          {
+            final int codePoint = Character.toCodePoint(c, s.charAt(++i));
+            buffer[count++] = (byte) (0xF0 | (codePoint >> 18));
+            buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            buffer[count++] = (byte) (0x80 | (codePoint & 0x3F));
+          }
+          else if (c >= Character.MIN_SURROGATE &&
+                   c <= Character.MAX_SURROGATE)
+          {
+            buffer[count++] = '?';
+          }
+          else
+          {
+            buffer[count++] = (byte) (0xE0 | (c >> 12));
+            buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[count++] = (byte) (0x80 | (c & 0x3F));
+          }
+          break;
+      }
+      previous = c;
+    }
+
+    writeByte('"');
+  }
+
+
+
+  /**
+   * Write the decimal digits of a long value without creating a string.
+   *
+   * @param value  The value to write.
+   *
+   * @throws IOException  If an error occurs while writing.
+   */
+  private void writeLong(final long value)
+      throws IOException
+  {
+    if (value == Long.MIN_VALUE)
+    {
+      writeBytes(Long.toString(value).getBytes("US-ASCII"));
+      return;
+    }
+
+    ensureCapacity(20);
+    long v = value;
+    if (v < 0)
+    {
+      buffer[count++] = '-';
+      v = -v;
+    }
+
+    int digits = 1;
+    for (long t = v / 10; t > 0; t /= 10)
+    {
+      digits++;
+    }
+
+    int pos = count + digits;
+    count = pos;
+    do
+    {
+      buffer[--pos] = (byte) ('0' + (int) (v % 10));
+      v /= 10;
+    }
+    while (v > 0);
+  }
+
+
+
+  /**
+   * Write a single byte.
+   *
+   * @param b  The byte to write.
+   *
+   * @throws IOException  If an error occurs while writing.
+   */
+  private void writeByte(final int b)
+      throws IOException
+  {
+    if (count == buffer.length)
+    {
+      flushBuffer();
+    }
+    buffer[count++] = (byte) b;
+  }
+
+
+
+  /**
+   * Write an array of bytes.
+   *
+   * @param bytes  The bytes to write.
+   *
+   * @throws IOException  If an error occurs while writing.
+   */
+  private void writeBytes(final byte[] bytes)
+      throws IOException
+  {
+    if (bytes.length > buffer.length)
+    {
+      flushBuffer();
+      outputStream.write(bytes);
+      return;
+    }
+
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, buffer, count, bytes.length);
+    count += bytes.length;
+  }
+
+
+
+  /**
+   * Make sure the buffer has room for the given number of bytes, flushing it
+   * if necessary. The number of bytes must not exceed the buffer size.
+   *
+   * @param length  The number of bytes required.
+   *
+   * @throws IOException  If an error occurs while writing.
+   */
+  private void ensureCapacity(final int length)
+      throws IOException
+  {
+    if (buffer.length - count < length)
+    {
+      flushBuffer();
+    }
+  }
+
+
+
+  /**
+   * Write the contents of the buffer to the output stream.
+   *
+   * @throws IOException  If an error occurs while writing.
+   */
+  private void flushBuffer()
+      throws IOException
+  {
+    if (count > 0)
+    {
+      outputStream.write(buffer, 0, count);
+      count = 0;
+    }
+  }
+}
@@ -45,12 +45,9 @@ import com.unboundid.scim.sdk.SCIMAttributeValue;
 import com.unboundid.scim.sdk.SCIMConstants;
 import com.unboundid.scim.sdk.SCIMException;
 import com.unboundid.scim.sdk.ServerErrorException;
-import org.json.JSONException;
-import org.json.JSONWriter;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -64,8 +61,11 @@ import java.util.Set;
  */
 public class JsonStreamMarshaller implements StreamMarshaller
 {
-  private final OutputStreamWriter outputStreamWriter;
-  private final JSONWriter jsonWriter;
+  private final JsonGenerator generator;
+
+  // The resource descriptor of the last resource written, and its schemas.
+  private ResourceDescriptor lastResourceDescriptor;
+  private String[] lastSchemas;
 
 
 
@@ -80,17 +80,7 @@ public class JsonStreamMarshaller implements StreamMarshaller
   public JsonStreamMarshaller(final OutputStream outputStream)
       throws SCIMException
   {
-    try
-    {
-      outputStreamWriter = new OutputStreamWriter(outputStream);
-      jsonWriter = new JSONWriter(outputStreamWriter);
-    }
-    catch (Exception e)
-    {
-      Debug.debugException(e);
-      throw new ServerErrorException(
-          "Cannot create JSON marshaller: " + e.getMessage());
-    }
+    generator = new JsonGenerator(outputStream);
   }
 
 
@@ -104,7 +94,7 @@ public class JsonStreamMarshaller implements StreamMarshaller
   {
     try
     {
-      outputStreamWriter.close();
+      generator.close();
     }
     catch (IOException e)
     {
@@ -127,7 +117,7 @@ public class JsonStreamMarshaller implements StreamMarshaller
     {
       marshal(resource, includeSchemas);
     }
-    catch (JSONException e)
+    catch (IOException e)
     {
       Debug.debugException(e);
       throw new ServerErrorException(
@@ -143,26 +133,25 @@ public class JsonStreamMarshaller implements StreamMarshaller
    * @param resource   The SCIM resource to be written.
    * @param includeSchemas  Indicates whether the schemas should be written
    *                        at the start of the object.
-   * @throws org.json.JSONException Thrown if error writing to output.
+   * @throws IOException Thrown if error writing to output.
    */
   private void marshal(final BaseResource resource,
                        final boolean includeSchemas)
-      throws JSONException
+      throws IOException
   {
-    jsonWriter.object();
+    generator.startObject();
 
-    final Set<String> schemas = new HashSet<String>(
-        resource.getResourceDescriptor().getAttributeSchemas());
+    final String[] schemas = getSchemas(resource.getResourceDescriptor());
     if (includeSchemas)
     {
       // Write out the schemas for this object.
-      jsonWriter.key(SCIMConstants.SCHEMAS_ATTRIBUTE_NAME);
-      jsonWriter.array();
+      generator.writeKey(SCIMConstants.SCHEMAS_ATTRIBUTE_NAME);
+      generator.startArray();
       for (final String schema : schemas)
       {
-        jsonWriter.value(schema);
+        generator.writeValue(schema);
       }
-      jsonWriter.endArray();
+      generator.endArray();
     }
 
     // first write out core schema, then if any extensions write them
@@ -173,11 +162,11 @@ public class JsonStreamMarshaller implements StreamMarshaller
     {
       if (attribute.getAttributeDescriptor().isMultiValued())
       {
-        this.writeMultiValuedAttribute(attribute, jsonWriter);
+        writeMultiValuedAttribute(attribute);
       }
       else
       {
-        this.writeSingularAttribute(attribute, jsonWriter);
+        writeSingularAttribute(attribute);
       }
     }
 
@@ -190,24 +179,24 @@ public class JsonStreamMarshaller implements StreamMarshaller
             resource.getScimObject().getAttributes(schema);
         if(!attributes.isEmpty())
         {
-          jsonWriter.key(schema);
-          jsonWriter.object();
+          generator.writeKey(schema);
+          generator.startObject();
           for (SCIMAttribute attribute : attributes)
           {
             if (attribute.getAttributeDescriptor().isMultiValued())
             {
-              this.writeMultiValuedAttribute(attribute, jsonWriter);
+              writeMultiValuedAttribute(attribute);
             }
             else
             {
-              this.writeSingularAttribute(attribute, jsonWriter);
+              writeSingularAttribute(attribute);
             }
           }
-          jsonWriter.endObject();
+          generator.endObject();
         }
       }
     }
-    jsonWriter.endObject();
+    generator.endObject();
   }
 
   /**
@@ -218,15 +207,15 @@ public class JsonStreamMarshaller implements StreamMarshaller
   {
     try
     {
-      jsonWriter.object();
-      jsonWriter.key("totalResults");
-      jsonWriter.value(response.getTotalResults());
+      generator.startObject();
+      generator.writeKey("totalResults");
+      generator.writeValue(response.getTotalResults());
 
-      jsonWriter.key("itemsPerPage");
-      jsonWriter.value(response.getItemsPerPage());
+      generator.writeKey("itemsPerPage");
+      generator.writeValue(response.getItemsPerPage());
 
-      jsonWriter.key("startIndex");
-      jsonWriter.value(response.getStartIndex());
+      generator.writeKey("startIndex");
+      generator.writeValue(response.getStartIndex());
 
       // Figure out what schemas are referenced by the resources.
       final Set<String> schemaURIs = new HashSet<String>();
@@ -237,26 +226,26 @@ public class JsonStreamMarshaller implements StreamMarshaller
       }
 
       // Write the schemas.
-      jsonWriter.key(SCIMConstants.SCHEMAS_ATTRIBUTE_NAME);
-      jsonWriter.array();
+      generator.writeKey(SCIMConstants.SCHEMAS_ATTRIBUTE_NAME);
+      generator.startArray();
       for (final String schemaURI : schemaURIs)
       {
-        jsonWriter.value(schemaURI);
+        generator.writeValue(schemaURI);
       }
-      jsonWriter.endArray();
+      generator.endArray();
 
       // Write the resources.
-      jsonWriter.key("Resources");
-      jsonWriter.array();
+      generator.writeKey("Resources");
+      generator.startArray();
       for (final BaseResource resource : response)
       {
         marshal(resource, false);
       }
-      jsonWriter.endArray();
+      generator.endArray();
 
-      jsonWriter.endObject();
+      generator.endObject();
     }
-    catch (JSONException e)
+    catch (IOException e)
     {
       Debug.debugException(e);
       throw new ServerErrorException(
@@ -273,29 +262,29 @@ public class JsonStreamMarshaller implements StreamMarshaller
   {
     try
     {
-      jsonWriter.object();
-      jsonWriter.key("Errors");
-      jsonWriter.array();
+      generator.startObject();
+      generator.writeKey("Errors");
+      generator.startArray();
 
-      jsonWriter.object();
+      generator.startObject();
 
-      jsonWriter.key("code");
-      jsonWriter.value(String.valueOf(response.getStatusCode()));
+      generator.writeKey("code");
+      generator.writeValue(String.valueOf(response.getStatusCode()));
 
       final String description = response.getMessage();
       if (description != null)
       {
-        jsonWriter.key("description");
-        jsonWriter.value(description);
+        generator.writeKey("description");
+        generator.writeValue(description);
       }
 
-      jsonWriter.endObject();
+      generator.endObject();
 
-      jsonWriter.endArray();
+      generator.endArray();
 
-      jsonWriter.endObject();
+      generator.endObject();
     }
-    catch (JSONException e)
+    catch (IOException e)
     {
       Debug.debugException(e);
       throw new ServerErrorException(
@@ -314,28 +303,28 @@ public class JsonStreamMarshaller implements StreamMarshaller
   {
     try
     {
-      jsonWriter.object();
+      generator.startObject();
 
       if (failOnErrors >= 0)
       {
-        jsonWriter.key("failOnErrors");
-        jsonWriter.value(failOnErrors);
+        generator.writeKey("failOnErrors");
+        generator.writeValue(failOnErrors);
       }
 
       // Write the schemas.
-      jsonWriter.key(SCIMConstants.SCHEMAS_ATTRIBUTE_NAME);
-      jsonWriter.array();
+      generator.writeKey(SCIMConstants.SCHEMAS_ATTRIBUTE_NAME);
+      generator.startArray();
       for (final String schemaURI : schemaURIs)
       {
-        jsonWriter.value(schemaURI);
+        generator.writeValue(schemaURI);
       }
-      jsonWriter.endArray();
+      generator.endArray();
 
       // Write the operations.
-      jsonWriter.key("Operations");
-      jsonWriter.array();
+      generator.writeKey("Operations");
+      generator.startArray();
     }
-    catch (JSONException e)
+    catch (IOException e)
     {
       Debug.debugException(e);
       throw new ServerErrorException(
@@ -353,53 +342,53 @@ public class JsonStreamMarshaller implements StreamMarshaller
   {
     try
     {
-      jsonWriter.object();
+      generator.startObject();
       if (o.getMethod() != null)
       {
-        jsonWriter.key("method");
-        jsonWriter.value(o.getMethod());
+        generator.writeKey("method");
+        generator.writeValue(o.getMethod().toString());
       }
       if (o.getBulkId() != null)
       {
-        jsonWriter.key("bulkId");
-        jsonWriter.value(o.getBulkId());
+        generator.writeKey("bulkId");
+        generator.writeValue(o.getBulkId());
       }
       if (o.getVersion() != null)
       {
-        jsonWriter.key("version");
-        jsonWriter.value(o.getVersion());
+        generator.writeKey("version");
+        generator.writeValue(o.getVersion());
       }
       if (o.getPath() != null)
       {
-        jsonWriter.key("path");
-        jsonWriter.value(o.getPath());
+        generator.writeKey("path");
+        generator.writeValue(o.getPath());
       }
       if (o.getLocation() != null)
       {
-        jsonWriter.key("location");
-        jsonWriter.value(o.getLocation());
+        generator.writeKey("location");
+        generator.writeValue(o.getLocation());
       }
       if (o.getData() != null)
       {
-        jsonWriter.key("data");
+        generator.writeKey("data");
         marshal(o.getData(), true);
       }
       if (o.getStatus() != null)
       {
-        jsonWriter.key("status");
-        jsonWriter.object();
-        jsonWriter.key("code");
-        jsonWriter.value(o.getStatus().getCode());
+        generator.writeKey("status");
+        generator.startObject();
+        generator.writeKey("code");
+        generator.writeValue(o.getStatus().getCode());
         if (o.getStatus().getDescription() != null)
         {
-          jsonWriter.key("description");
-          jsonWriter.value(o.getStatus().getDescription());
+          generator.writeKey("description");
+          generator.writeValue(o.getStatus().getDescription());
         }
-        jsonWriter.endObject();
+        generator.endObject();
       }
-      jsonWriter.endObject();
+      generator.endObject();
     }
-    catch (JSONException e)
+    catch (IOException e)
     {
       Debug.debugException(e);
       throw new ServerErrorException(
@@ -416,10 +405,10 @@ public class JsonStreamMarshaller implements StreamMarshaller
   {
     try
     {
-      jsonWriter.endArray();
-      jsonWriter.endObject();
+      generator.endArray();
+      generator.endObject();
     }
-    catch (JSONException e)
+    catch (IOException e)
     {
       Debug.debugException(e);
       throw new ServerErrorException(
@@ -458,22 +447,43 @@ public class JsonStreamMarshaller implements StreamMarshaller
 
 
 
+  /**
+   * Retrieves the schemas of a resource descriptor, in the order they are
+   * to be written. The schemas of the last descriptor are remembered, since
+   * a list response usually contains resources of a single type.
+   *
+   * @param resourceDescriptor  The resource descriptor.
+   *
+   * @return  The schemas of the resource descriptor.
+   */
+  private String[] getSchemas(final ResourceDescriptor resourceDescriptor)
+  {
+    if (resourceDescriptor != lastResourceDescriptor)
+    {
+      final Set<String> schemas = new HashSet<String>(
+          resourceDescriptor.getAttributeSchemas());
+      lastSchemas = schemas.toArray(new String[schemas.size()]);
+      lastResourceDescriptor = resourceDescriptor;
+    }
+    return lastSchemas;
+  }
+
+
+
   /**
    * Write a multi-valued attribute to an XML stream.
    *
    * @param scimAttribute The attribute to be written.
-   * @param jsonWriter    Output to write the attribute to.
    *
-   * @throws JSONException Thrown if error writing to output.
+   * @throws IOException Thrown if error writing to output.
    */
-  private void writeMultiValuedAttribute(final SCIMAttribute scimAttribute,
-                                         final JSONWriter jsonWriter)
-      throws JSONException
+  private void writeMultiValuedAttribute(final SCIMAttribute scimAttribute)
+      throws IOException
   {
 
     SCIMAttributeValue[] values = scimAttribute.getValues();
-    jsonWriter.key(scimAttribute.getName());
-    jsonWriter.array();
+    generator.writeKey(scimAttribute.getName());
+    generator.startArray();
     for (SCIMAttributeValue value : values)
     {
       if (value == null)
@@ -483,19 +493,19 @@ public class JsonStreamMarshaller implements StreamMarshaller
 
       if (value.isComplex())
       {
-        jsonWriter.object();
+        generator.startObject();
         for (SCIMAttribute attribute : value.getAttributes().values())
         {
           if (attribute.getAttributeDescriptor().isMultiValued())
           {
-            this.writeMultiValuedAttribute(attribute, jsonWriter);
+            writeMultiValuedAttribute(attribute);
           }
           else
           {
-            this.writeSingularAttribute(attribute, jsonWriter);
+            writeSingularAttribute(attribute);
           }
         }
-        jsonWriter.endObject();
+        generator.endObject();
       }
       else
       {
@@ -504,32 +514,32 @@ public class JsonStreamMarshaller implements StreamMarshaller
           switch (scimAttribute.getAttributeDescriptor().getDataType())
           {
             case BOOLEAN:
-              jsonWriter.value(value.getBooleanValue());
+              generator.writeValue(value.getBooleanValue());
               break;
 
             case DECIMAL:
-              jsonWriter.value(value.getDecimalValue());
+              generator.writeValue(value.getDecimalValue());
               break;
 
             case INTEGER:
-              jsonWriter.value(value.getIntegerValue());
+              generator.writeValue(value.getIntegerValue());
               break;
 
             case BINARY:
             case DATETIME:
             case STRING:
             default:
-              jsonWriter.value(value.getStringValue());
+              generator.writeValue(value.getStringValue());
               break;
           }
         }
         else
         {
-          jsonWriter.value(value.getStringValue());
+          generator.writeValue(value.getStringValue());
         }
       }
     }
-    jsonWriter.endArray();
+    generator.endArray();
   }
 
 
@@ -538,31 +548,29 @@ public class JsonStreamMarshaller implements StreamMarshaller
    * Write a singular attribute to an XML stream.
    *
    * @param scimAttribute The attribute to be written.
-   * @param jsonWriter    Output to write the attribute to.
    *
-   * @throws org.json.JSONException Thrown if error writing to output.
+   * @throws IOException Thrown if error writing to output.
    */
-  private void writeSingularAttribute(final SCIMAttribute scimAttribute,
-                                      final JSONWriter jsonWriter)
-      throws JSONException
+  private void writeSingularAttribute(final SCIMAttribute scimAttribute)
+      throws IOException
   {
-    jsonWriter.key(scimAttribute.getName());
+    generator.writeKey(scimAttribute.getName());
     SCIMAttributeValue val = scimAttribute.getValue();
     if (val.isComplex())
     {
-      jsonWriter.object();
+      generator.startObject();
       for (SCIMAttribute a : val.getAttributes().values())
       {
         if (a.getAttributeDescriptor().isMultiValued())
         {
-          this.writeMultiValuedAttribute(a, jsonWriter);
+          writeMultiValuedAttribute(a);
         }
         else
         {
-          this.writeSingularAttribute(a, jsonWriter);
+          writeSingularAttribute(a);
         }
       }
-      jsonWriter.endObject();
+      generator.endObject();
     }
     else
     {
@@ -571,28 +579,28 @@ public class JsonStreamMarshaller implements StreamMarshaller
         switch (scimAttribute.getAttributeDescriptor().getDataType())
         {
           case BOOLEAN:
-            jsonWriter.value(val.getBooleanValue());
+            generator.writeValue(val.getBooleanValue());
             break;
 
           case DECIMAL:
-            jsonWriter.value(val.getDecimalValue());
+            generator.writeValue(val.getDecimalValue());
             break;
 
           case INTEGER:
-            jsonWriter.value(val.getIntegerValue());
+            generator.writeValue(val.getIntegerValue());
             break;
 
           case BINARY:
           case DATETIME:
           case STRING:
           default:
-            jsonWriter.value(val.getStringValue());
+            generator.writeValue(val.getStringValue());
             break;
         }
       }
       else
       {
-        jsonWriter.value(val.getStringValue());
+        generator.writeValue(val.getStringValue());
       }
     }
   }
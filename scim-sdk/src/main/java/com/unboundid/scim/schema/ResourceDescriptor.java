@@ -27,6 +27,7 @@ import com.unboundid.scim.sdk.SCIMObject;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -68,6 +69,12 @@ public class ResourceDescriptor extends BaseResource
    */
   private volatile Map<String,Map<String,AttributeDescriptor>> attributesCache;
 
+  /**
+   * The attribute descriptors enforced by schema checking, computed from the
+   * attributesCache when first needed.
+   */
+  private volatile List<AttributeDescriptor> enforcedAttributesCache;
+
   /**
    * Whether to use "strict mode" when looking up an attribute
    * that doesn't exist in the attributesCache. Changed to false for better
@@ -186,6 +193,74 @@ public class ResourceDescriptor extends BaseResource
     return getAttributesCache().keySet();
   }
 
+  /**
+   * Retrieves the attribute descriptors whose presence is enforced by schema
+   * checking. These are the attributes that are not read-only and that are
+   * either required or have required sub-attributes. The list is computed
+   * once, so that checking a resource against the schema need not examine
+   * every attribute defined in the resource.
+   *
+   * @return The attribute descriptors enforced by schema checking. It is never
+   *         {@code null}.
+   */
+  public List<AttributeDescriptor> getEnforcedAttributes()
+  {
+    List<AttributeDescriptor> enforced = enforcedAttributesCache;
+    if (enforced == null)
+    {
+      synchronized (this)
+      {
+        enforced = enforcedAttributesCache;
+        if (enforced == null)
+        {
+          enforced = new ArrayList<AttributeDescriptor>();
+          for (Map<String, AttributeDescriptor> map :
+              getAttributesCache().values())
+          {
+            for (AttributeDescriptor attributeDescriptor : map.values())
+            {
+              if (!attributeDescriptor.isReadOnly() &&
+                  (attributeDescriptor.isRequired() ||
+                      hasRequiredSubAttribute(attributeDescriptor)))
+              {
+                enforced.add(attributeDescriptor);
+              }
+            }
+          }
+
+          enforced = Collections.unmodifiableList(enforced);
+          enforcedAttributesCache = enforced;
+        }
+      }
+    }
+    return enforced;
+  }
+
+  /**
+   * Determines whether an attribute has any required sub-attributes.
+   *
+   * @param attributeDescriptor The attribute descriptor.
+   *
+   * @return {@code true} if the attribute has a required sub-attribute.
+   */
+  private static boolean hasRequiredSubAttribute(
+      final AttributeDescriptor attributeDescriptor)
+  {
+    final Collection<AttributeDescriptor> subAttributes =
+        attributeDescriptor.getSubAttributes();
+    if (subAttributes != null)
+    {
+      for (AttributeDescriptor subAttribute : subAttributes)
+      {
+        if (subAttribute.isRequired())
+        {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
   /**
    * Retrieves the schema for a specified attribute name.
    *
@@ -328,6 +403,7 @@ public class ResourceDescriptor extends BaseResource
           "attributes", AttributeDescriptor.ATTRIBUTE_DESCRIPTOR_RESOLVER,
           attributes);
       attributesCache = null;
+      enforcedAttributesCache = null;
     } catch (InvalidResourceException e) {
       // This should never happen as these are core attributes...
       throw new RuntimeException(e);
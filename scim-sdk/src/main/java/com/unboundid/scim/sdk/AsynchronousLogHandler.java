@@ -0,0 +1,303 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.sdk;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+
+
+/**
+ * This class provides a log handler that queues log records and publishes
+ * them to another handler on a background thread, so that threads logging
+ * messages do not wait for the records to be formatted and written, or
+ * contend for the lock held by the other handler while it writes them.
+ * <BR><BR>
+ * The queue is bounded. When it is full, a new log record is either dropped
+ * or the logging thread waits for space in the queue, according to the
+ * policy chosen when the handler is created. The number of records dropped
+ * is available from {@link #getDroppedRecordCount}. The other handler is
+ * flushed whenever the queue has been emptied, so that records are written
+ * in batches.
+ * <BR><BR>
+ * <H2>Example</H2>
+ * The following example writes the SCIM SDK debug messages to a file named
+ * "/tmp/test.log" without blocking the threads that log them:
+ * <PRE>
+ *   Debug.setEnabled(true);
+ *   AsynchronousLogHandler handler = new AsynchronousLogHandler(
+ *       new FileHandler("/tmp/test.log"), 10000, false);
+ *   Debug.getLogger().addHandler(handler);
+ *   Debug.getLogger().setUseParentHandlers(false);
+ * </PRE>
+ */
+public class AsynchronousLogHandler
+    extends Handler
+{
+  /**
+   * The time in milliseconds that the writer thread waits for a log record
+   * before checking whether the handler has been closed.
+   */
+  private static final long POLL_INTERVAL_MILLIS = 100L;
+
+  // The handler to which the log records are published.
+  private final Handler handler;
+
+  // The log records waiting to be published.
+  private final BlockingQueue<LogRecord> queue;
+
+  // Indicates whether a thread logging a record should wait for space in the
+  // queue rather than drop the record.
+  private final boolean blockWhenFull;
+
+  // The number of log records that have been queued but not yet published.
+  private final AtomicLong pendingRecordCount = new AtomicLong();
+
+  // The number of log records dropped because the queue was full.
+  private final AtomicLong droppedRecordCount = new AtomicLong();
+
+  // The lock on which flushing threads wait for the queued log records to be
+  // published.
+  private final Object flushLock = new Object();
+
+  // The thread that publishes the log records.
+  private final Thread writerThread;
+
+  // Indicates whether this handler has been closed.
+  private volatile boolean closed;
+
+
+
+  /**
+   * Create a new asynchronous log handler.
+   *
+   * @param handler        The handler to which the log records are published.
+   *                       It is closed when this handler is closed.
+   * @param queueSize      The maximum number of log records waiting to be
+   *                       published.
+   * @param blockWhenFull  Indicates whether a thread logging a record should
+   *                       wait for space in the queue when it is full, rather
+   *                       than drop the record.
+   */
+  public AsynchronousLogHandler(final Handler handler, final int queueSize,
+                                final boolean blockWhenFull)
+  {
+    this.handler = handler;
+    this.queue = new ArrayBlockingQueue<LogRecord>(queueSize);
+    this.blockWhenFull = blockWhenFull;
+
+    writerThread = new Thread(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        writeRecords();
+      }
+    }, "SCIM Asynchronous Log Writer");
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void publish(final LogRecord record)
+  {
+    if (closed || !isLoggable(record))
+    {
+      return;
+    }
+
+    // The caller is found from the stack of the logging thread the first
+    // time it is requested, so it must be found before the record is queued.
+    record.getSourceClassName();
+
+    pendingRecordCount.incrementAndGet();
+    boolean queued;
+    if (blockWhenFull)
+    {
+      try
+      {
+        queue.put(record);
+        queued = true;
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+        queued = false;
+      }
+    }
+    else
+    {
+      queued = queue.offer(record);
+    }
+
+    if (!queued)
+    {
+      pendingRecordCount.decrementAndGet();
+      droppedRecordCount.incrementAndGet();
+    }
+  }
+
+
+
+  /**
+   * Waits for the log records queued so far to be published, then flushes the
+   * handler to which they are published.
+   */
+  @Override
+  public void flush()
+  {
+    try
+    {
+      synchronized (flushLock)
+      {
+        while (pendingRecordCount.get() > 0 && writerThread.isAlive())
+        {
+          flushLock.wait(POLL_INTERVAL_MILLIS);
+        }
+      }
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+    handler.flush();
+  }
+
+
+
+  /**
+   * Publishes the log records already queued, stops the writer thread and
+   * closes the handler to which the log records are published.
+   */
+  @Override
+  public void close()
+  {
+    stop();
+    handler.close();
+  }
+
+
+
+  /**
+   * Publishes the log records already queued and stops the writer thread,
+   * without closing the handler to which the log records are published. No
+   * further records are accepted by this handler.
+   */
+  void stop()
+  {
+    closed = true;
+    try
+    {
+      writerThread.join();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+    handler.flush();
+  }
+
+
+
+  /**
+   * Retrieves the handler to which the log records are published.
+   *
+   * @return  The handler to which the log records are published.
+   */
+  public Handler getHandler()
+  {
+    return handler;
+  }
+
+
+
+  /**
+   * Retrieves the number of log records that were dropped because the queue
+   * was full.
+   *
+   * @return  The number of log records that were dropped.
+   */
+  public long getDroppedRecordCount()
+  {
+    return droppedRecordCount.get();
+  }
+
+
+
+  /**
+   * Publishes queued log records until this handler is closed and the queue
+   * is empty.
+   */
+  private void writeRecords()
+  {
+    while (true)
+    {
+      final LogRecord record;
+      try
+      {
+        record = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+      }
+      catch (InterruptedException e)
+      {
+        continue;
+      }
+
+      if (record == null)
+      {
+        if (closed)
+        {
+          return;
+        }
+        continue;
+      }
+
+      try
+      {
+        handler.publish(record);
+        if (queue.isEmpty())
+        {
+          handler.flush();
+        }
+      }
+      catch (RuntimeException e)
+      {
+        reportError(null, e, ErrorManager.WRITE_FAILURE);
+      }
+      finally
+      {
+        if (pendingRecordCount.decrementAndGet() == 0)
+        {
+          synchronized (flushLock)
+          {
+            flushLock.notifyAll();
+          }
+        }
+      }
+    }
+  }
+}
@@ -29,6 +29,8 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Collections;
 import java.util.Set;
@@ -42,6 +44,11 @@ import java.util.logging.Level;
  */
 public class BulkStreamResponse implements SCIMResponse
 {
+  /**
+   * The size of the buffer used to copy the response to the output stream.
+   */
+  private static final int COPY_BUFFER_SIZE = 65536;
+
   private final File file;
   private final StreamMarshaller streamMarshaller;
 
@@ -185,11 +192,13 @@ public class BulkStreamResponse implements SCIMResponse
 
       // Copy the temporary file to the output stream.
       final FileInputStream inputStream = new FileInputStream(file);
-      final byte[] buffer = new byte[8192];
-      int bytesRead;
-      while ((bytesRead = inputStream.read(buffer)) != -1)
+      try
       {
-        outputStream.write(buffer, 0, bytesRead);
+        transfer(inputStream, outputStream);
+      }
+      finally
+      {
+        inputStream.close();
       }
     }
     finally
@@ -198,4 +207,30 @@ public class BulkStreamResponse implements SCIMResponse
       finalizeResponse();
     }
   }
+
+
+
+  /**
+   * Copy the entire content of an input stream to an output stream through a
+   * large buffer. The response is written to the servlet output stream, which
+   * is not backed by a channel, so the content always passes through the
+   * heap.
+   *
+   * @param inputStream   The input stream to be copied.
+   * @param outputStream  The output stream to which the content is copied.
+   *
+   * @throws IOException  If the input stream could not be read or the output
+   *                      stream could not be written.
+   */
+  static void transfer(final InputStream inputStream,
+                       final OutputStream outputStream)
+      throws IOException
+  {
+    final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+    int bytesRead;
+    while ((bytesRead = inputStream.read(buffer)) != -1)
+    {
+      outputStream.write(buffer, 0, bytesRead);
+    }
+  }
 }
@@ -22,6 +22,7 @@ import java.util.EnumSet;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -58,6 +59,11 @@ import static com.unboundid.scim.sdk.StaticUtils.*;
  *   fileHandler.setLevel(Level.WARNING);
  *   logger.addHandler(fileHandler);
  * </PRE>
+ * A handler attached to the logger writes each message on the thread that
+ * logged it. When debugging is enabled on a busy server, calling
+ * {@link Debug#setAsynchronous} after the handlers have been added wraps
+ * each of them in an {@link AsynchronousLogHandler}, so that messages are
+ * written on a background thread instead.
  */
 public final class Debug
        implements Serializable
@@ -118,6 +124,15 @@ public final class Debug
 
 
 
+  /**
+   * The maximum number of debug messages waiting to be written by each
+   * asynchronous handler installed by {@link Debug#setAsynchronous}. Further
+   * messages are dropped while the queue is full.
+   */
+  public static final int ASYNCHRONOUS_QUEUE_SIZE = 10000;
+
+
+
   /**
    * The logger that will be used to handle the debug messages if debugging is
    * enabled.
@@ -353,6 +368,47 @@ public final class Debug
 
 
 
+  /**
+   * Specifies whether the handlers attached to the debug logger should write
+   * messages on a background thread. Enabling it wraps each handler currently
+   * attached to the logger in an {@link AsynchronousLogHandler}, which drops
+   * messages rather than block the logging thread when more than
+   * {@link #ASYNCHRONOUS_QUEUE_SIZE} messages are waiting. Disabling it
+   * writes the queued messages and restores the original handlers. Handlers
+   * added to the logger afterwards are not affected.
+   *
+   * @param  asynchronous  Indicates whether the handlers attached to the
+   *                       debug logger should write messages on a background
+   *                       thread.
+   */
+  public static synchronized void setAsynchronous(final boolean asynchronous)
+  {
+    for (final Handler handler : logger.getHandlers())
+    {
+      if (asynchronous)
+      {
+        if (!(handler instanceof AsynchronousLogHandler))
+        {
+          final AsynchronousLogHandler asynchronousHandler =
+              new AsynchronousLogHandler(handler, ASYNCHRONOUS_QUEUE_SIZE,
+                                         false);
+          logger.addHandler(asynchronousHandler);
+          logger.removeHandler(handler);
+        }
+      }
+      else if (handler instanceof AsynchronousLogHandler)
+      {
+        final AsynchronousLogHandler asynchronousHandler =
+            (AsynchronousLogHandler) handler;
+        logger.removeHandler(asynchronousHandler);
+        asynchronousHandler.stop();
+        logger.addHandler(asynchronousHandler.getHandler());
+      }
+    }
+  }
+
+
+
   /**
    * Indicates whether log messages should include a stack trace of the thread
    * that invoked the debug method.
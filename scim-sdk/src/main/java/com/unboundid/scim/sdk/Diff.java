@@ -31,7 +31,6 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -160,242 +159,215 @@ public final class Diff<R extends BaseResource>
       {
         if(attr.getAttributeDescriptor().isMultiValued())
         {
-          //Go through and process all deleted values first
-          for(SCIMAttributeValue value : attr.getValues())
+          applyMultiValuedAttribute(scimObject, attr);
+        }
+        else //It's a single-valued attribute
+        {
+          if (scimObject.hasAttribute(attr.getSchema(), attr.getName()))
           {
-            SCIMAttribute currentAttribute =
-                    scimObject.getAttribute(attr.getSchema(), attr.getName());
-
-            if(value.isComplex())
+            SCIMAttributeValue value = attr.getValue();
+            if (value.isComplex())
             {
-              String operation = value.getSubAttributeValue("operation",
-                      AttributeValueResolver.STRING_RESOLVER);
-
-              if("delete".equalsIgnoreCase(operation))
-              {
-                //We are deleting a specific value from this
-                //multi-valued attribute
-                List<SCIMAttribute> subAttrs = new ArrayList<SCIMAttribute>();
-                Map<String, SCIMAttribute> subAttrMap = value.getAttributes();
-
-                for(String subAttrName : subAttrMap.keySet())
-                {
-                  if(!"operation".equalsIgnoreCase(subAttrName))
-                  {
-                    subAttrs.add(subAttrMap.get(subAttrName));
-                  }
-                }
-
-                SCIMAttributeValue valueToDelete =
-                        SCIMAttributeValue.createComplexValue(subAttrs);
-
-                if(currentAttribute != null)
-                {
-                  Set<SCIMAttributeValue> newValues =
-                          new HashSet<SCIMAttributeValue>();
-
-                  for(SCIMAttributeValue currentValue :
-                          currentAttribute.getValues())
-                  {
-                    if(!currentValue.equals(valueToDelete))
-                    {
-                      newValues.add(currentValue);
-                    }
-                  }
-
-                  if (!newValues.isEmpty())
-                  {
-                    SCIMAttribute finalAttribute = SCIMAttribute.create(
-                          attr.getAttributeDescriptor(), newValues.toArray(
-                                  new SCIMAttributeValue[newValues.size()]));
-
-                    scimObject.setAttribute(finalAttribute);
-                  }
-                  else
-                  {
-                    scimObject.removeAttribute(
-                            attr.getSchema(), attr.getName());
-                  }
-                }
-              }
+              SCIMAttribute existingAttr =
+                      scimObject.getAttribute(attr.getSchema(), attr.getName());
+              attr = SCIMAttribute.create(attr.getAttributeDescriptor(),
+                  mergeComplexValues(existingAttr.getValue(), value));
             }
           }
+          scimObject.setAttribute(attr);
+        }
+      }
+    }
 
-          //Now go through and merge in any new values
-          for (SCIMAttributeValue value : attr.getValues())
-          {
-            SCIMAttribute currentAttribute =
-                    scimObject.getAttribute(attr.getSchema(), attr.getName());
-
-            Set<SCIMAttributeValue> newValues =
-                    new HashSet<SCIMAttributeValue>();
+    return resourceFactory.createResource(resourceDescriptor, scimObject);
+  }
 
-            if(value.isComplex())
-            {
-              String operation = value.getSubAttributeValue("operation",
-                      AttributeValueResolver.STRING_RESOLVER);
+  /**
+   * Applies the modifications to a multi-valued attribute. The values of the
+   * attribute are held in a set, and indexed by their canonical type when
+   * needed, so that each modified value is applied in constant time rather
+   * than by rebuilding the attribute.
+   *
+   * @param scimObject The object to which the modifications are applied.
+   * @param attr The attribute holding the values to be added or deleted.
+   */
+  private static void applyMultiValuedAttribute(final SCIMObject scimObject,
+                                                final SCIMAttribute attr)
+  {
+    final SCIMAttribute currentAttribute =
+        scimObject.getAttribute(attr.getSchema(), attr.getName());
+    final Set<SCIMAttributeValue> values =
+        new LinkedHashSet<SCIMAttributeValue>();
+    if(currentAttribute != null)
+    {
+      Collections.addAll(values, currentAttribute.getValues());
+    }
 
-              if("delete".equalsIgnoreCase(operation))
-              {
-                continue; //handled earlier
-              }
+    //Go through and process all deleted values first
+    for(SCIMAttributeValue value : attr.getValues())
+    {
+      if(value.isComplex() && isDeleteOperation(value))
+      {
+        //We are deleting a specific value from this multi-valued attribute
+        List<SCIMAttribute> subAttrs = new ArrayList<SCIMAttribute>();
+        Map<String, SCIMAttribute> subAttrMap = value.getAttributes();
 
-              String type = value.getSubAttributeValue("type",
-                      AttributeValueResolver.STRING_RESOLVER);
+        for(String subAttrName : subAttrMap.keySet())
+        {
+          if(!"operation".equalsIgnoreCase(subAttrName))
+          {
+            subAttrs.add(subAttrMap.get(subAttrName));
+          }
+        }
 
-              //It's a complex multi-valued attribute. If a value with the same
-              //canonical type already exists, merge in the sub-attributes to
-              //that existing value. Otherwise, add a new complex value to the
-              //set of values.
-              if(currentAttribute != null)
-              {
-                SCIMAttributeValue valueToUpdate = null;
-                List<SCIMAttributeValue> finalValues =
-                        new LinkedList<SCIMAttributeValue>();
-
-                for(SCIMAttributeValue currentValue :
-                               currentAttribute.getValues())
-                {
-                  String currentType = currentValue.getSubAttributeValue(
-                          "type", AttributeValueResolver.STRING_RESOLVER);
-
-                  if (type != null && type.equalsIgnoreCase(currentType))
-                  {
-                    valueToUpdate = currentValue;
-                  }
-                  else if (!currentValue.equals(value))
-                  {
-                    finalValues.add(currentValue);
-                  }
-                }
-
-                if (valueToUpdate != null)
-                {
-                  Map<String, SCIMAttribute> subAttrMap = value.getAttributes();
-                  Map<String, SCIMAttribute> existingSubAttrMap =
-                          valueToUpdate.getAttributes();
-                  Map<String, SCIMAttribute> finalSubAttrs =
-                          new HashMap<String, SCIMAttribute>();
-
-                  for(String subAttrName : existingSubAttrMap.keySet())
-                  {
-                    if(subAttrMap.containsKey(subAttrName))
-                    {
-                      //Replace the subAttr with the incoming value
-                      finalSubAttrs.put(subAttrName,
-                              subAttrMap.get(subAttrName));
-                    }
-                    else
-                    {
-                      //Leave this subAttr as-is (it's not being modified)
-                      finalSubAttrs.put(subAttrName,
-                              existingSubAttrMap.get(subAttrName));
-                    }
-                  }
-
-                  //Add in any new sub-attributes that weren't in the
-                  //existing set
-                  for(String subAttrName : subAttrMap.keySet())
-                  {
-                    if(!finalSubAttrs.containsKey(subAttrName))
-                    {
-                      finalSubAttrs.put(subAttrName,
-                              subAttrMap.get(subAttrName));
-                    }
-                  }
-
-                  SCIMAttributeValue updatedValue = SCIMAttributeValue
-                          .createComplexValue(finalSubAttrs.values());
-                  finalValues.add(updatedValue);
-                }
-                else
-                {
-                  SCIMAttributeValue updatedValue = SCIMAttributeValue
-                          .createComplexValue(value.getAttributes().values());
-                  finalValues.add(updatedValue);
-                }
-
-                attr = SCIMAttribute.create(attr.getAttributeDescriptor(),
-                        finalValues.toArray(new SCIMAttributeValue[
-                                finalValues.size()]));
-              }
+        values.remove(SCIMAttributeValue.createComplexValue(subAttrs));
+      }
+    }
 
-              scimObject.setAttribute(attr);
-            }
-            else
-            {
-              //It's a simple multi-valued attribute. Merge this value into the
-              //existing values (if any) for the attribute
-              if(currentAttribute != null)
-              {
-                for(SCIMAttributeValue currentValue :
-                         currentAttribute.getValues())
-                {
-                  newValues.add(currentValue);
-                }
-              }
-              newValues.add(value);
+    //Now go through and merge in any new values
+    Map<String, Set<SCIMAttributeValue>> valuesByType = null;
+    for(SCIMAttributeValue value : attr.getValues())
+    {
+      if(!value.isComplex())
+      {
+        //It's a simple multi-valued attribute. Merge this value into the
+        //existing values.
+        values.add(value);
+        continue;
+      }
 
-              SCIMAttribute finalAttribute = SCIMAttribute.create(
-                      attr.getAttributeDescriptor(), newValues.toArray(
-                      new SCIMAttributeValue[newValues.size()]));
+      if(isDeleteOperation(value))
+      {
+        continue; //handled earlier
+      }
 
-              scimObject.setAttribute(finalAttribute);
-            }
-          }
+      //It's a complex multi-valued attribute. If values with the same
+      //canonical type already exist, merge in the sub-attributes to the last
+      //of those values and replace them all. Otherwise, add a new complex
+      //value to the set of values.
+      final String type = value.getSubAttributeValue("type",
+          AttributeValueResolver.STRING_RESOLVER);
+      SCIMAttributeValue valueToUpdate = null;
+      Set<SCIMAttributeValue> typedValues = null;
+      if(type != null)
+      {
+        if(valuesByType == null)
+        {
+          valuesByType = indexByType(values);
         }
-        else //It's a single-valued attribute
+        typedValues = valuesByType.get(toLowerCase(type));
+        if(typedValues == null)
         {
-          if (scimObject.hasAttribute(attr.getSchema(), attr.getName()))
-          {
-            SCIMAttributeValue value = attr.getValue();
-            if (value.isComplex())
-            {
-              SCIMAttribute existingAttr =
-                      scimObject.getAttribute(attr.getSchema(), attr.getName());
-              SCIMAttributeValue existingValue = existingAttr.getValue();
+          typedValues = new LinkedHashSet<SCIMAttributeValue>();
+          valuesByType.put(toLowerCase(type), typedValues);
+        }
 
-              Map<String,SCIMAttribute> subAttrMap = value.getAttributes();
-              Map<String,SCIMAttribute> existingSubAttrMap =
-                      existingValue.getAttributes();
-              Map<String,SCIMAttribute> finalSubAttrs =
-                      new HashMap<String,SCIMAttribute>();
+        for(SCIMAttributeValue typedValue : typedValues)
+        {
+          values.remove(typedValue);
+          valueToUpdate = typedValue;
+        }
+        typedValues.clear();
+      }
 
-              for (String subAttrName : existingSubAttrMap.keySet())
-              {
-                if (subAttrMap.containsKey(subAttrName))
-                {
-                  finalSubAttrs.put(subAttrName,
-                          subAttrMap.get(subAttrName));
-                }
-                else
-                {
-                  finalSubAttrs.put(subAttrName,
-                          existingSubAttrMap.get(subAttrName));
-                }
-              }
+      final SCIMAttributeValue updatedValue;
+      if(valueToUpdate != null)
+      {
+        updatedValue = mergeComplexValues(valueToUpdate, value);
+      }
+      else
+      {
+        updatedValue = SCIMAttributeValue.createComplexValue(
+            value.getAttributes().values());
+      }
 
-              //Add in any new sub-attributes that weren't in the existing set
-              for (String subAttrName : subAttrMap.keySet())
-              {
-                if (!finalSubAttrs.containsKey(subAttrName))
-                {
-                  finalSubAttrs.put(subAttrName, subAttrMap.get(subAttrName));
-                }
-              }
+      // A value that is added again moves to the end.
+      values.remove(updatedValue);
+      values.add(updatedValue);
+      if(typedValues != null)
+      {
+        typedValues.add(updatedValue);
+      }
+    }
 
-              SCIMAttributeValue finalValue = SCIMAttributeValue
-                      .createComplexValue(finalSubAttrs.values());
-              attr = SCIMAttribute.create(
-                      attr.getAttributeDescriptor(), finalValue);
-            }
-          }
-          scimObject.setAttribute(attr);
+    if(!values.isEmpty())
+    {
+      scimObject.setAttribute(SCIMAttribute.create(
+          attr.getAttributeDescriptor(),
+          values.toArray(new SCIMAttributeValue[values.size()])));
+    }
+    else
+    {
+      scimObject.removeAttribute(attr.getSchema(), attr.getName());
+    }
+  }
+
+  /**
+   * Determines whether a complex value in a multi-valued attribute of a diff
+   * is to be deleted.
+   *
+   * @param value The complex value.
+   * @return {@code true} if the value has the delete operation.
+   */
+  private static boolean isDeleteOperation(final SCIMAttributeValue value)
+  {
+    final String operation = value.getSubAttributeValue("operation",
+        AttributeValueResolver.STRING_RESOLVER);
+    return "delete".equalsIgnoreCase(operation);
+  }
+
+  /**
+   * Indexes the complex values of a multi-valued attribute by their lower
+   * case canonical type.
+   *
+   * @param values The values of the attribute.
+   * @return The values that have a type, keyed by type.
+   */
+  private static Map<String, Set<SCIMAttributeValue>> indexByType(
+      final Set<SCIMAttributeValue> values)
+  {
+    final Map<String, Set<SCIMAttributeValue>> valuesByType =
+        new HashMap<String, Set<SCIMAttributeValue>>();
+    for(SCIMAttributeValue value : values)
+    {
+      if(!value.isComplex())
+      {
+        continue;
+      }
+
+      final String type = value.getSubAttributeValue("type",
+          AttributeValueResolver.STRING_RESOLVER);
+      if(type != null)
+      {
+        Set<SCIMAttributeValue> typedValues =
+            valuesByType.get(toLowerCase(type));
+        if(typedValues == null)
+        {
+          typedValues = new LinkedHashSet<SCIMAttributeValue>();
+          valuesByType.put(toLowerCase(type), typedValues);
         }
+        typedValues.add(value);
       }
     }
+    return valuesByType;
+  }
 
-    return resourceFactory.createResource(resourceDescriptor, scimObject);
+  /**
+   * Merges the sub-attributes of a complex value into an existing complex
+   * value, replacing any existing sub-attributes with the same names.
+   *
+   * @param existingValue The existing complex value.
+   * @param value The complex value to merge in.
+   * @return The merged complex value.
+   */
+  private static SCIMAttributeValue mergeComplexValues(
+      final SCIMAttributeValue existingValue, final SCIMAttributeValue value)
+  {
+    final Map<String, SCIMAttribute> finalSubAttrs =
+        new LinkedHashMap<String, SCIMAttribute>(
+            existingValue.getAttributes());
+    finalSubAttrs.putAll(value.getAttributes());
+    return SCIMAttributeValue.createComplexValue(finalSubAttrs.values());
   }
 
   /**
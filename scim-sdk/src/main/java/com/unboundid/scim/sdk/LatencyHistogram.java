@@ -0,0 +1,315 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.sdk;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+
+/**
+ * This class provides a histogram of latency values with log-linear buckets.
+ * Each power of two is divided into 32 linear sub-buckets, so that recorded
+ * values are accurate to within about three percent across the full range of
+ * positive {@code long} values, using a fixed amount of memory.
+ * <BR><BR>
+ * Recording a value does not take any locks, so a histogram may be updated
+ * by one thread while it is read or merged by another.  The counts in each
+ * bucket only ever increase, which allows the counts for an interval to be
+ * obtained by subtracting a histogram taken at the start of the interval from
+ * one taken at the end.
+ */
+public class LatencyHistogram
+{
+  // The number of bits used for the linear sub-buckets of each power of two.
+  private static final int SUB_BUCKET_BITS = 5;
+
+  // The number of linear sub-buckets for each power of two.
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+  // The total number of buckets needed to cover all positive long values.
+  private static final int BUCKET_COUNT =
+      (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+  // The number of values recorded in each bucket.
+  private final AtomicLongArray counts;
+
+
+
+  /**
+   * Creates a new empty histogram.
+   */
+  public LatencyHistogram()
+  {
+    counts = new AtomicLongArray(BUCKET_COUNT);
+  }
+
+
+
+  /**
+   * Records a value in the histogram.  Negative values are recorded as zero.
+   *
+   * @param  value  The value to record.
+   */
+  public void recordValue(final long value)
+  {
+    counts.incrementAndGet(getBucketIndex(value));
+  }
+
+
+
+  /**
+   * Records a value in the histogram, correcting for coordinated omission.
+   * When requests are expected at a fixed interval and a request takes
+   * longer than that interval, the requests that would have been issued
+   * while it was outstanding are not measured.  This method records
+   * additional values for those missing requests, each one interval shorter
+   * than the last, so that the tail of the distribution is not understated.
+   *
+   * @param  value             The value to record.
+   * @param  expectedInterval  The expected interval between requests.  If
+   *                           this is not positive then no correction is
+   *                           made.
+   */
+  public void recordValueWithExpectedInterval(final long value,
+                                              final long expectedInterval)
+  {
+    recordValue(value);
+    if (expectedInterval <= 0)
+    {
+      return;
+    }
+
+    for (long missing = value - expectedInterval;
+         missing >= expectedInterval;
+         missing -= expectedInterval)
+    {
+      recordValue(missing);
+    }
+  }
+
+
+
+  /**
+   * Adds the counts from the provided histogram to this histogram.
+   *
+   * @param  other  The histogram whose counts should be added.
+   */
+  public void add(final LatencyHistogram other)
+  {
+    for (int i = 0; i < BUCKET_COUNT; i++)
+    {
+      final long count = other.counts.get(i);
+      if (count != 0L)
+      {
+        counts.addAndGet(i, count);
+      }
+    }
+  }
+
+
+
+  /**
+   * Subtracts the counts in the provided histogram from this histogram.  The
+   * provided histogram would typically be an earlier copy of this one.
+   *
+   * @param  other  The histogram whose counts should be subtracted.
+   */
+  public void subtract(final LatencyHistogram other)
+  {
+    for (int i = 0; i < BUCKET_COUNT; i++)
+    {
+      final long count = other.counts.get(i);
+      if (count != 0L)
+      {
+        counts.addAndGet(i, -count);
+      }
+    }
+  }
+
+
+
+  /**
+   * Creates a copy of this histogram.
+   *
+   * @return  A copy of this histogram.
+   */
+  public LatencyHistogram copy()
+  {
+    final LatencyHistogram copy = new LatencyHistogram();
+    copy.add(this);
+    return copy;
+  }
+
+
+
+  /**
+   * Retrieves the total number of values recorded in this histogram.
+   *
+   * @return  The total number of values recorded in this histogram.
+   */
+  public long getTotalCount()
+  {
+    long total = 0L;
+    for (int i = 0; i < BUCKET_COUNT; i++)
+    {
+      total += counts.get(i);
+    }
+    return total;
+  }
+
+
+
+  /**
+   * Retrieves the number of recorded values that are less than or equal to
+   * the given value, within the precision of the histogram. Values recorded
+   * in the same bucket as the given value are only included if the given
+   * value is the highest value of that bucket, so that the count never
+   * includes a value greater than the given value.
+   *
+   * @param  value  The value.
+   *
+   * @return  The number of recorded values that are less than or equal to
+   *          the given value.
+   */
+  public long getCountAtOrBelow(final long value)
+  {
+    if (value < 0L)
+    {
+      return 0L;
+    }
+
+    int index = getBucketIndex(value);
+    if (getBucketUpperBound(index) > value)
+    {
+      index--;
+    }
+
+    long count = 0L;
+    for (int i = 0; i <= index; i++)
+    {
+      count += counts.get(i);
+    }
+    return count;
+  }
+
+
+
+  /**
+   * Retrieves the value at the given percentile.  The value returned is the
+   * highest value that is equivalent, within the precision of the
+   * histogram, to the recorded value at that percentile.
+   *
+   * @param  percentile  The percentile, between 0 and 100.
+   *
+   * @return  The value at the given percentile, or zero if no values have
+   *          been recorded.
+   */
+  public long getValueAtPercentile(final double percentile)
+  {
+    final long[] snapshot = new long[BUCKET_COUNT];
+    long total = 0L;
+    for (int i = 0; i < BUCKET_COUNT; i++)
+    {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+
+    if (total == 0L)
+    {
+      return 0L;
+    }
+
+    final double fraction = Math.min(Math.max(percentile, 0.0d), 100.0d) / 100;
+    final long target = Math.max(1L, (long) Math.ceil(fraction * total));
+    long cumulative = 0L;
+    for (int i = 0; i < BUCKET_COUNT; i++)
+    {
+      cumulative += snapshot[i];
+      if (cumulative >= target)
+      {
+        return getBucketUpperBound(i);
+      }
+    }
+
+    return getMaxValue();
+  }
+
+
+
+  /**
+   * Retrieves the highest value recorded in this histogram, within the
+   * precision of the histogram.
+   *
+   * @return  The highest value recorded in this histogram, or zero if no
+   *          values have been recorded.
+   */
+  public long getMaxValue()
+  {
+    for (int i = BUCKET_COUNT - 1; i >= 0; i--)
+    {
+      if (counts.get(i) != 0L)
+      {
+        return getBucketUpperBound(i);
+      }
+    }
+    return 0L;
+  }
+
+
+
+  /**
+   * Retrieves the index of the bucket in which the given value is recorded.
+   *
+   * @param  value  The value.
+   *
+   * @return  The index of the bucket in which the given value is recorded.
+   */
+  static int getBucketIndex(final long value)
+  {
+    if (value < SUB_BUCKET_COUNT)
+    {
+      return (int) Math.max(value, 0L);
+    }
+
+    final int shift =
+        63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return ((shift + 1) << SUB_BUCKET_BITS) +
+           (int) ((value >>> shift) - SUB_BUCKET_COUNT);
+  }
+
+
+
+  /**
+   * Retrieves the highest value that is recorded in the given bucket.
+   *
+   * @param  index  The index of the bucket.
+   *
+   * @return  The highest value that is recorded in the given bucket.
+   */
+  static long getBucketUpperBound(final int index)
+  {
+    if (index < SUB_BUCKET_COUNT)
+    {
+      return index;
+    }
+
+    final int shift = (index >>> SUB_BUCKET_BITS) - 1;
+    final long subBucket = (index & (SUB_BUCKET_COUNT - 1)) + SUB_BUCKET_COUNT;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.sdk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+
+/**
+ * This class holds a family of metrics that a {@link SCIMBackend} reports
+ * through the metrics of the monitor resource. A family has a name, a type
+ * and a description, and one sample for each set of label values. The name
+ * of a counter family does not include the "_total" suffix of its samples.
+ */
+public final class MetricFamily
+{
+  /**
+   * The types of metric family.
+   */
+  public enum Type
+  {
+    /**
+     * A value that only ever increases, such as a number of operations.
+     */
+    COUNTER,
+
+    /**
+     * A value that may increase or decrease, such as a number of connections.
+     */
+    GAUGE
+  }
+
+
+
+  /**
+   * A sample of a metric family, which is a value with a set of labels.
+   */
+  public static final class Sample
+  {
+    // The label names and values, in the order they were provided.
+    private final Map<String, String> labels;
+
+    // The value of the sample.
+    private final Number value;
+
+
+
+    /**
+     * Create a new sample.
+     *
+     * @param labels  The label names and values.
+     * @param value   The value of the sample.
+     */
+    private Sample(final Map<String, String> labels, final Number value)
+    {
+      this.labels = labels;
+      this.value = value;
+    }
+
+
+
+    /**
+     * Retrieves the label names and values of this sample.
+     *
+     * @return  The label names and values of this sample, in the order they
+     *          were provided.
+     */
+    public Map<String, String> getLabels()
+    {
+      return labels;
+    }
+
+
+
+    /**
+     * Retrieves the value of this sample.
+     *
+     * @return  The value of this sample.
+     */
+    public Number getValue()
+    {
+      return value;
+    }
+  }
+
+
+
+  // The name of the metric family.
+  private final String name;
+
+  // The type of the metric family.
+  private final Type type;
+
+  // The description of the metric family.
+  private final String help;
+
+  // The samples of the metric family.
+  private final List<Sample> samples = new ArrayList<Sample>();
+
+
+
+  /**
+   * Create a new metric family without any samples.
+   *
+   * @param name  The name of the metric family, which must consist of
+   *              letters, digits and underscores.
+   * @param type  The type of the metric family.
+   * @param help  The description of the metric family.
+   */
+  public MetricFamily(final String name, final Type type, final String help)
+  {
+    this.name = name;
+    this.type = type;
+    this.help = help;
+  }
+
+
+
+  /**
+   * Adds a sample to this metric family.
+   *
+   * @param value                The value of the sample.
+   * @param labelNamesAndValues  The names and values of the labels of the
+   *                             sample, alternating a name and its value.
+   *
+   * @return  This metric family.
+   */
+  public MetricFamily addSample(final Number value,
+                                final String... labelNamesAndValues)
+  {
+    if (labelNamesAndValues.length % 2 != 0)
+    {
+      throw new IllegalArgumentException(
+          "Each label name must be followed by its value");
+    }
+
+    final Map<String, String> labels = new LinkedHashMap<String, String>();
+    for (int i = 0; i < labelNamesAndValues.length; i += 2)
+    {
+      labels.put(labelNamesAndValues[i], labelNamesAndValues[i + 1]);
+    }
+    samples.add(new Sample(Collections.unmodifiableMap(labels), value));
+    return this;
+  }
+
+
+
+  /**
+   * Retrieves the name of this metric family.
+   *
+   * @return  The name of this metric family.
+   */
+  public String getName()
+  {
+    return name;
+  }
+
+
+
+  /**
+   * Retrieves the type of this metric family.
+   *
+   * @return  The type of this metric family.
+   */
+  public Type getType()
+  {
+    return type;
+  }
+
+
+
+  /**
+   * Retrieves the description of this metric family.
+   *
+   * @return  The description of this metric family.
+   */
+  public String getHelp()
+  {
+    return help;
+  }
+
+
+
+  /**
+   * Retrieves the samples of this metric family.
+   *
+   * @return  The samples of this metric family, in the order they were
+   *          added.
+   */
+  public List<Sample> getSamples()
+  {
+    return Collections.unmodifiableList(samples);
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.sdk;
+
+import com.unboundid.scim.data.BaseResource;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+
+
+/**
+ * This class provides an iterator over all of the resources that match a
+ * query, retrieving them from the service provider one page at a time. The
+ * next page is requested asynchronously as soon as the current page has been
+ * received, so that it may be retrieved while the current page is being
+ * consumed. At most two pages are held in memory at any time.
+ * <p>
+ * The page size starts at the initial page size and is doubled, up to the
+ * maximum page size, whenever the consumer has to wait for the next page to
+ * arrive. This reduces the number of round trips when retrieving the results
+ * is slower than processing them.
+ * <p>
+ * Since the methods of the {@code Iterator} interface may not throw checked
+ * exceptions, a failure to retrieve a page is reported by a
+ * {@code RuntimeException} whose cause is the {@code SCIMException}.
+ *
+ * @param <R> The type of resource instances returned by this iterator.
+ */
+public class QueryResultIterator<R extends BaseResource>
+    implements Iterator<R>, Closeable
+{
+  private final SCIMEndpoint<R> endpoint;
+  private final String filter;
+  private final SortParameters sortParameters;
+  private final Map<String,String> additionalQueryParams;
+  private final String[] requestedAttributes;
+  private final int maxPageSize;
+
+  private int pageSize;
+  private int nextStartIndex = 1;
+  private Iterator<R> currentPage;
+  private Future<Resources<R>> nextPage;
+
+
+
+  /**
+   * Create a new iterator over the results of a query and request the first
+   * page of results.
+   *
+   * @param endpoint              The endpoint to query.
+   * @param filter                The filter that should be used.
+   * @param sortParameters        The sort parameters that should be used.
+   * @param pageSize              The number of resources to request in the
+   *                              first page.
+   * @param maxPageSize           The maximum number of resources to request
+   *                              in any page.
+   * @param additionalQueryParams A map of additional query parameters that
+   *                              should be included.
+   * @param requestedAttributes   The attributes of the resource to retrieve.
+   */
+  QueryResultIterator(final SCIMEndpoint<R> endpoint,
+                      final String filter,
+                      final SortParameters sortParameters,
+                      final int pageSize,
+                      final int maxPageSize,
+                      final Map<String,String> additionalQueryParams,
+                      final String... requestedAttributes)
+  {
+    if (pageSize <= 0)
+    {
+      throw new IllegalArgumentException("The page size must be positive");
+    }
+
+    this.endpoint = endpoint;
+    this.filter = filter;
+    this.sortParameters = sortParameters;
+    this.additionalQueryParams = additionalQueryParams;
+    this.requestedAttributes = requestedAttributes;
+    this.pageSize = pageSize;
+    this.maxPageSize = Math.max(pageSize, maxPageSize);
+
+    nextPage = requestNextPage();
+  }
+
+
+
+  /**
+   * Retrieves the number of resources that will be requested in the next
+   * page of results.
+   *
+   * @return The number of resources that will be requested in the next page
+   *         of results.
+   */
+  public synchronized int getPageSize()
+  {
+    return pageSize;
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  public synchronized boolean hasNext()
+  {
+    while ((currentPage == null || !currentPage.hasNext()) && nextPage != null)
+    {
+      currentPage = awaitNextPage();
+    }
+
+    return currentPage != null && currentPage.hasNext();
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  public synchronized R next()
+  {
+    if (!hasNext())
+    {
+      throw new NoSuchElementException();
+    }
+
+    return currentPage.next();
+  }
+
+
+
+  /**
+   * Resources may not be removed through this iterator.
+   */
+  public void remove()
+  {
+    throw new java.lang.UnsupportedOperationException();
+  }
+
+
+
+  /**
+   * Abandons the iteration, cancelling the request for the next page if it
+   * is still outstanding.
+   */
+  public synchronized void close()
+  {
+    if (nextPage != null)
+    {
+      nextPage.cancel(true);
+      nextPage = null;
+    }
+    currentPage = null;
+  }
+
+
+
+  /**
+   * Submit an asynchronous request for the next page of results.
+   *
+   * @return A Future that provides the next page of results.
+   */
+  private Future<Resources<R>> requestNextPage()
+  {
+    return endpoint.queryAsync(filter, sortParameters,
+        new PageParameters(nextStartIndex, pageSize),
+        additionalQueryParams, requestedAttributes);
+  }
+
+
+
+  /**
+   * Wait for the outstanding page of results and request the page after it,
+   * if there is one.
+   *
+   * @return An iterator over the resources in the page that was received.
+   */
+  private Iterator<R> awaitNextPage()
+  {
+    final Future<Resources<R>> pending = nextPage;
+    nextPage = null;
+
+    // The consumer is waiting on the network, so fewer and larger pages are
+    // preferable from here on.
+    if (!pending.isDone() && pageSize < maxPageSize)
+    {
+      pageSize = (int) Math.min((long) pageSize * 2, maxPageSize);
+    }
+
+    final Resources<R> page;
+    try
+    {
+      page = pending.get();
+    }
+    catch (ExecutionException e)
+    {
+      Debug.debugException(e);
+      throw new RuntimeException(e.getCause());
+    }
+    catch (InterruptedException e)
+    {
+      Debug.debugException(e);
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+
+    // Advance by the number of resources actually returned since the service
+    // provider may impose a smaller page size than the one requested.
+    final int itemsReturned = page.getItemsPerPage();
+    nextStartIndex += itemsReturned;
+    if (itemsReturned > 0 && nextStartIndex <= page.getTotalResults())
+    {
+      nextPage = requestNextPage();
+    }
+
+    return page.iterator();
+  }
+}
@@ -176,6 +176,21 @@ public abstract class SCIMBackend
 
 
 
+  /**
+   * Retrieves the metrics of this backend, which are reported along with the
+   * request metrics of the SCIM server by the metrics sub-resource of the
+   * monitor resource. Each family should have a distinct name that does not
+   * begin with the name of a SCIM server metric.
+   *
+   * @return The metrics of this backend, which are empty by default.
+   */
+  public Collection<MetricFamily> getMetrics()
+  {
+    return Collections.emptyList();
+  }
+
+
+
   /**
    * Retrieve the resource descriptors served by this backend.
    *
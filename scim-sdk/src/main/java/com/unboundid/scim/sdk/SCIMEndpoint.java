@@ -59,6 +59,8 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import static com.unboundid.scim.sdk.SCIMConstants.*;
 
@@ -381,6 +383,61 @@ public class SCIMEndpoint<R extends BaseResource>
   }
 
 
+  /**
+   * Retrieves all resource instances that match the provided filter by
+   * transparently requesting successive pages of results from the service
+   * provider. The next page is requested asynchronously while the current
+   * page is being consumed, and the page size grows up to four times the
+   * initial page size when the consumer has to wait for results.
+   *
+   * @param filter The filter that should be used.
+   * @param sortParameters The sort parameters that should be used.
+   * @param pageSize The number of resources to request in the first page.
+   * @param requestedAttributes The attributes of the resource to retrieve.
+   * @return An iterator over the resource instances that match the provided
+   *         filter.
+   */
+  public QueryResultIterator<R> queryAll(final String filter,
+                                         final SortParameters sortParameters,
+                                         final int pageSize,
+                                         final String... requestedAttributes)
+  {
+    return queryAll(filter, sortParameters, pageSize,
+                    (int) Math.min(Integer.MAX_VALUE, pageSize * 4L), null,
+                    requestedAttributes);
+  }
+
+  /**
+   * Retrieves all resource instances that match the provided filter by
+   * transparently requesting successive pages of results from the service
+   * provider. The next page is requested asynchronously while the current
+   * page is being consumed, and the page size grows up to the provided
+   * maximum when the consumer has to wait for results.
+   *
+   * @param filter The filter that should be used.
+   * @param sortParameters The sort parameters that should be used.
+   * @param pageSize The number of resources to request in the first page.
+   * @param maxPageSize The maximum number of resources to request in any
+   *                    page.
+   * @param additionalQueryParams A map of additional query parameters that
+   *                              should be included.
+   * @param requestedAttributes The attributes of the resource to retrieve.
+   * @return An iterator over the resource instances that match the provided
+   *         filter.
+   */
+  public QueryResultIterator<R> queryAll(
+      final String filter,
+      final SortParameters sortParameters,
+      final int pageSize,
+      final int maxPageSize,
+      final Map<String,String> additionalQueryParams,
+      final String... requestedAttributes)
+  {
+    return new QueryResultIterator<R>(this, filter, sortParameters, pageSize,
+        maxPageSize, additionalQueryParams, requestedAttributes);
+  }
+
+
   /**
    * Create the specified resource instance at the service provider and return
    * only the specified attributes from the newly inserted resource.
@@ -899,6 +956,195 @@ public class SCIMEndpoint<R extends BaseResource>
     }
   }
 
+  /**
+   * Asynchronously retrieves a resource instance given the ID, only if the
+   * current version has been modified. The request is processed by the
+   * asynchronous executor of the SCIMService from which this endpoint was
+   * obtained, and any SCIMException raised by the request is provided as the
+   * cause of the ExecutionException thrown by {@link Future#get}.
+   *
+   * @param id The ID of the resource to retrieve.
+   * @param etag The entity tag that indicates the entry should be returned
+   *             only if the entity tag of the current resource is different
+   *             from the provided value and a value of "*" will not return
+   *             an entry if the resource still exists. A value of
+   *             <code>null</code> indicates unconditional return.
+   * @param requestedAttributes The attributes of the resource to retrieve.
+   * @return A Future that provides the retrieved resource.
+   */
+  public Future<R> getAsync(final String id, final String etag,
+                            final String... requestedAttributes)
+  {
+    return submit(new Callable<R>()
+    {
+      public R call() throws SCIMException
+      {
+        return get(id, etag, requestedAttributes);
+      }
+    });
+  }
+
+  /**
+   * Asynchronously retrieves all resource instances that match the provided
+   * filter. The request is processed by the asynchronous executor of the
+   * SCIMService from which this endpoint was obtained, and any SCIMException
+   * raised by the request is provided as the cause of the ExecutionException
+   * thrown by {@link Future#get}.
+   *
+   * @param filter The filter that should be used.
+   * @param sortParameters The sort parameters that should be used.
+   * @param pageParameters The page parameters that should be used.
+   * @param additionalQueryParams A map of additional query parameters that
+   *                              should be included.
+   * @param requestedAttributes The attributes of the resource to retrieve.
+   * @return A Future that provides the resource instances that match the
+   *         provided filter.
+   */
+  public Future<Resources<R>> queryAsync(
+      final String filter,
+      final SortParameters sortParameters,
+      final PageParameters pageParameters,
+      final Map<String,String> additionalQueryParams,
+      final String... requestedAttributes)
+  {
+    return submit(new Callable<Resources<R>>()
+    {
+      public Resources<R> call() throws SCIMException
+      {
+        return query(filter, sortParameters, pageParameters,
+                     additionalQueryParams, requestedAttributes);
+      }
+    });
+  }
+
+  /**
+   * Asynchronously creates the specified resource instance at the service
+   * provider. The request is processed by the asynchronous executor of the
+   * SCIMService from which this endpoint was obtained, and any SCIMException
+   * raised by the request is provided as the cause of the ExecutionException
+   * thrown by {@link Future#get}.
+   *
+   * @param resource The resource to create.
+   * @param requestedAttributes The attributes of the newly inserted resource
+   *                            to retrieve.
+   * @return A Future that provides the newly inserted resource returned by
+   *         the service provider.
+   */
+  public Future<R> createAsync(final R resource,
+                               final String... requestedAttributes)
+  {
+    return submit(new Callable<R>()
+    {
+      public R call() throws SCIMException
+      {
+        return create(resource, requestedAttributes);
+      }
+    });
+  }
+
+  /**
+   * Asynchronously updates the existing resource with the one provided (using
+   * the HTTP PUT method). The request is processed by the asynchronous
+   * executor of the SCIMService from which this endpoint was obtained, and
+   * any SCIMException raised by the request is provided as the cause of the
+   * ExecutionException thrown by {@link Future#get}.
+   *
+   * @param id The ID of the resource to update.
+   * @param etag The entity tag value that is the expected value for the target
+   *             resource. A value of <code>null</code> will not set an
+   *             etag precondition and a value of "*" will perform an
+   *             unconditional update.
+   * @param resource The modified resource to be updated.
+   * @param requestedAttributes The attributes of updated resource
+   *                            to return.
+   * @return A Future that provides the updated resource returned by the
+   *         service provider.
+   */
+  public Future<R> updateAsync(final String id, final String etag,
+                               final R resource,
+                               final String... requestedAttributes)
+  {
+    return submit(new Callable<R>()
+    {
+      public R call() throws SCIMException
+      {
+        return update(id, etag, resource, requestedAttributes);
+      }
+    });
+  }
+
+  /**
+   * Asynchronously updates the existing resource with the one provided (using
+   * the HTTP PATCH method). The request is processed by the asynchronous
+   * executor of the SCIMService from which this endpoint was obtained, and
+   * any SCIMException raised by the request is provided as the cause of the
+   * ExecutionException thrown by {@link Future#get}.
+   *
+   * @param id The ID of the resource to update.
+   * @param etag The entity tag value that is the expected value for the target
+   *             resource. A value of <code>null</code> will not set an
+   *             etag precondition and a value of "*" will perform an
+   *             unconditional update.
+   * @param attributesToUpdate The list of attributes (and their new values) to
+   *                           update on the resource.
+   * @param attributesToDelete The list of attributes to delete on the resource.
+   * @param requestedAttributes The attributes of updated resource to return.
+   * @return A Future that provides the updated resource returned by the
+   *         service provider.
+   */
+  public Future<R> updateAsync(final String id, final String etag,
+                               final List<SCIMAttribute> attributesToUpdate,
+                               final List<String> attributesToDelete,
+                               final String... requestedAttributes)
+  {
+    return submit(new Callable<R>()
+    {
+      public R call() throws SCIMException
+      {
+        return update(id, etag, attributesToUpdate, attributesToDelete,
+                      requestedAttributes);
+      }
+    });
+  }
+
+  /**
+   * Asynchronously deletes the resource instance specified by the provided
+   * ID. The request is processed by the asynchronous executor of the
+   * SCIMService from which this endpoint was obtained, and any SCIMException
+   * raised by the request is provided as the cause of the ExecutionException
+   * thrown by {@link Future#get}.
+   *
+   * @param id The ID of the resource to delete.
+   * @param etag The entity tag value that is the expected value for the target
+   *             resource. A value of <code>null</code> will not set an
+   *             etag precondition and a value of "*" will perform an
+   *             unconditional delete.
+   * @return A Future that completes when the resource has been deleted.
+   */
+  public Future<Void> deleteAsync(final String id, final String etag)
+  {
+    return submit(new Callable<Void>()
+    {
+      public Void call() throws SCIMException
+      {
+        delete(id, etag);
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Submits a request to the asynchronous executor of the SCIMService.
+   *
+   * @param request The request to submit.
+   * @param <T> The type of result provided by the request.
+   * @return A Future that provides the result of the request.
+   */
+  private <T> Future<T> submit(final Callable<T> request)
+  {
+    return scimService.getAsyncExecutor().submit(request);
+  }
+
   /**
    * Add the attributes query parameter to the client resource request.
    *
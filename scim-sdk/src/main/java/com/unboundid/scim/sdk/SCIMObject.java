@@ -22,10 +22,10 @@ import com.unboundid.scim.schema.CoreSchema;
 import com.unboundid.scim.schema.ResourceDescriptor;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -42,12 +42,34 @@ import static com.unboundid.scim.sdk.StaticUtils.toLowerCase;
  */
 public class SCIMObject
 {
+  /**
+   * The attribute array of an object that has no attributes.
+   */
+  private static final SCIMAttribute[] NO_ATTRIBUTES = new SCIMAttribute[0];
+
+  /**
+   * The initial capacity of the attribute array.
+   */
+  private static final int INITIAL_CAPACITY = 8;
+
+  /**
+   * The attributes in this object in the order in which they were added. Only
+   * the first {@code size} elements are used. A resource has few enough
+   * attributes that searching this array is faster than hashing a lower-case
+   * copy of the schema and name on every access.
+   */
+  private SCIMAttribute[] attributes;
+
+  /**
+   * The number of attributes in this object.
+   */
+  private int size;
 
   /**
-   * The set of attributes in this object grouped by the URI of the schema to
-   * which they belong.
+   * Indicates whether the attribute array may be shared with a copy of this
+   * object, in which case it must be copied before it is modified.
    */
-  private final HashMap<String,LinkedHashMap<String,SCIMAttribute>> attributes;
+  private boolean shared;
 
 
 
@@ -57,27 +79,25 @@ public class SCIMObject
    */
   public SCIMObject()
   {
-    this.attributes =
-        new HashMap<String, LinkedHashMap<String, SCIMAttribute>>();
+    this.attributes = NO_ATTRIBUTES;
+    this.size = 0;
+    this.shared = false;
   }
 
 
   /**
-   * Create a new copy of the provided SCIM object.
+   * Create a new copy of the provided SCIM object. Since SCIMAttribute is
+   * immutable, the copy shares the attributes of the provided object until
+   * either of them is modified.
    *
    * @param scimObject The SCIMObject to copy.
    */
   public SCIMObject(final SCIMObject scimObject)
   {
-    // Since SCIMAttribute is immutable, just copy the maps.
-    this.attributes =
-        new HashMap<String, LinkedHashMap<String, SCIMAttribute>>();
-    for(Map.Entry<String, LinkedHashMap<String, SCIMAttribute>> entry :
-        scimObject.attributes.entrySet())
-    {
-      this.attributes.put(entry.getKey(),
-          new LinkedHashMap<String, SCIMAttribute>(entry.getValue()));
-    }
+    this.attributes = scimObject.attributes;
+    this.size = scimObject.size;
+    this.shared = true;
+    scimObject.shared = true;
   }
 
 
@@ -91,7 +111,24 @@ public class SCIMObject
    */
   public Set<String> getSchemas()
   {
-    return Collections.unmodifiableSet(attributes.keySet());
+    final Set<String> schemas = new HashSet<String>();
+    for (int i = 0; i < size; i++)
+    {
+      schemas.add(toLowerCase(attributes[i].getSchema()));
+    }
+    return Collections.unmodifiableSet(schemas);
+  }
+
+
+
+  /**
+   * Retrieves the number of attributes in this object.
+   *
+   * @return  The number of attributes in this object.
+   */
+  int getAttributeCount()
+  {
+    return size;
   }
 
 
@@ -108,7 +145,14 @@ public class SCIMObject
    */
   public boolean hasSchema(final String schema)
   {
-    return attributes.containsKey(toLowerCase(schema));
+    for (int i = 0; i < size; i++)
+    {
+      if (schemaMatches(attributes[i], schema))
+      {
+        return true;
+      }
+    }
+    return false;
   }
 
 
@@ -130,17 +174,8 @@ public class SCIMObject
    */
   public SCIMAttribute getAttribute(final String schema, final String name)
   {
-    final LinkedHashMap<String,SCIMAttribute> attrs =
-        attributes.get(toLowerCase(schema));
-
-    if (attrs == null)
-    {
-      return null;
-    }
-    else
-    {
-      return attrs.get(toLowerCase(name));
-    }
+    final int index = indexOf(schema, name);
+    return index < 0 ? null : attributes[index];
   }
 
 
@@ -156,8 +191,18 @@ public class SCIMObject
    */
   public Collection<SCIMAttribute> getAttributes(final String schema)
   {
-    final LinkedHashMap<String, SCIMAttribute> attrs =
-        attributes.get(toLowerCase(schema));
+    List<SCIMAttribute> attrs = null;
+    for (int i = 0; i < size; i++)
+    {
+      if (schemaMatches(attributes[i], schema))
+      {
+        if (attrs == null)
+        {
+          attrs = new ArrayList<SCIMAttribute>(size - i);
+        }
+        attrs.add(attributes[i]);
+      }
+    }
 
     if (attrs == null)
     {
@@ -165,7 +210,7 @@ public class SCIMObject
     }
     else
     {
-      return Collections.unmodifiableCollection(attrs.values());
+      return Collections.unmodifiableList(attrs);
     }
   }
 
@@ -186,18 +231,15 @@ public class SCIMObject
    */
   public boolean hasAttribute(final String schema, final String name)
   {
-    final LinkedHashMap<String, SCIMAttribute> attrs =
-        attributes.get(toLowerCase(schema));
-
     AttributePath path = AttributePath.parse(name, schema);
-    String attrName = toLowerCase(path.getAttributeName());
     String subAttrName = path.getSubAttributeName();
 
-    if (attrs != null && attrs.containsKey(attrName))
+    final int index = indexOf(schema, path.getAttributeName());
+    if (index >= 0)
     {
       if (subAttrName != null)
       {
-        SCIMAttribute attr = attrs.get(attrName);
+        SCIMAttribute attr = attributes[index];
         for (SCIMAttributeValue value : attr.getValues())
         {
           if (value.isComplex() && value.hasAttribute(subAttrName))
@@ -229,29 +271,13 @@ public class SCIMObject
    */
   public boolean addAttribute(final SCIMAttribute attribute)
   {
-    final String lowerCaseSchema = toLowerCase(attribute.getSchema());
-    final String lowerCaseName = toLowerCase(attribute.getName());
-
-    LinkedHashMap<String,SCIMAttribute> attrs = attributes.get(lowerCaseSchema);
-    if (attrs == null)
+    if (indexOf(attribute.getSchema(), attribute.getName()) >= 0)
     {
-      attrs = new LinkedHashMap<String, SCIMAttribute>();
-      attrs.put(lowerCaseName, attribute);
-      attributes.put(lowerCaseSchema, attrs);
-      return true;
-    }
-    else
-    {
-      if (attrs.containsKey(lowerCaseName))
-      {
-        return false;
-      }
-      else
-      {
-        attrs.put(lowerCaseName, attribute);
-        return true;
-      }
+      return false;
     }
+
+    append(attribute);
+    return true;
   }
 
 
@@ -264,19 +290,15 @@ public class SCIMObject
    */
   public void setAttribute(final SCIMAttribute attribute)
   {
-    final String lowerCaseSchema = toLowerCase(attribute.getSchema());
-    final String lowerCaseName = toLowerCase(attribute.getName());
-
-    LinkedHashMap<String,SCIMAttribute> attrs = attributes.get(lowerCaseSchema);
-    if (attrs == null)
+    final int index = indexOf(attribute.getSchema(), attribute.getName());
+    if (index < 0)
     {
-      attrs = new LinkedHashMap<String, SCIMAttribute>();
-      attrs.put(lowerCaseName, attribute);
-      attributes.put(lowerCaseSchema, attrs);
+      append(attribute);
     }
     else
     {
-      attrs.put(lowerCaseName, attribute);
+      prepareForUpdate();
+      attributes[index] = attribute;
     }
   }
 
@@ -296,98 +318,184 @@ public class SCIMObject
    */
   public boolean removeAttribute(final String schema, final String name)
   {
-    final String lowerCaseSchema = toLowerCase(schema);
-    LinkedHashMap<String,SCIMAttribute> attrs = attributes.get(lowerCaseSchema);
-    if (attrs == null)
+    AttributePath path = AttributePath.parse(name, schema);
+    String subAttrName = path.getSubAttributeName();
+
+    final int index = indexOf(schema, path.getAttributeName());
+    if (index < 0)
     {
       return false;
     }
-    else
+
+    if (subAttrName == null)
     {
-      AttributePath path = AttributePath.parse(name, schema);
-      String attrName = toLowerCase(path.getAttributeName());
-      String subAttrName = path.getSubAttributeName();
+      removeAt(index);
+      return true;
+    }
 
-      boolean removed = false;
+    //We are removing a sub-attribute
+    boolean removed = false;
+    SCIMAttribute attr = attributes[index];
+    List<SCIMAttributeValue> finalComplexValues =
+            new ArrayList<SCIMAttributeValue>(4);
 
-      if (subAttrName != null)
+    for(SCIMAttributeValue value : attr.getValues())
+    {
+      if(value.isComplex())
       {
-        //We are removing a sub-attribute
-        if (attrs.containsKey(attrName))
-        {
-          SCIMAttribute attr = attrs.get(attrName);
-          List<SCIMAttributeValue> finalComplexValues =
-                  new ArrayList<SCIMAttributeValue>(4);
+        Map<String, SCIMAttribute> subAttrMap = value.getAttributes();
+        List<SCIMAttribute> attrList = new ArrayList<SCIMAttribute>(10);
 
-          for(SCIMAttributeValue value : attr.getValues())
-          {
-            if(value.isComplex())
-            {
-              Map<String, SCIMAttribute> subAttrMap = value.getAttributes();
-              List<SCIMAttribute> attrList = new ArrayList<SCIMAttribute>(10);
+        //We need to keep track if only normative sub-attributes are left
+        //after the sub-attribute removal; if that is the case, then the
+        //entire attribute value should be removed since it no longer has
+        //a value.
+        boolean nonNormativeSubAttributeExists = false;
 
-              //We need to keep track if only normative sub-attributes are left
-              //after the sub-attribute removal; if that is the case, then the
-              //entire attribute value should be removed since it no longer has
-              //a value.
-              boolean nonNormativeSubAttributeExists = false;
-
-              for(String n : subAttrMap.keySet())
-              {
-                if(!n.equalsIgnoreCase(subAttrName))
-                {
-                  attrList.add(subAttrMap.get(n));
-
-                  if (!n.equals("type") && !n.equals("primary") &&
-                      !n.equals("operation") && !n.equals("display"))
-                  {
-                    nonNormativeSubAttributeExists = true;
-                  }
-                }
-                else
-                {
-                  removed = true;
-                }
-              }
+        for(String n : subAttrMap.keySet())
+        {
+          if(!n.equalsIgnoreCase(subAttrName))
+          {
+            attrList.add(subAttrMap.get(n));
 
-              if(!attrList.isEmpty() && nonNormativeSubAttributeExists)
-              {
-                SCIMAttributeValue newComplexValue =
-                        SCIMAttributeValue.createComplexValue(attrList);
-                finalComplexValues.add(newComplexValue);
-              }
+            if (!n.equals("type") && !n.equals("primary") &&
+                !n.equals("operation") && !n.equals("display"))
+            {
+              nonNormativeSubAttributeExists = true;
             }
           }
-
-          if (removed)
+          else
           {
-            if(!finalComplexValues.isEmpty())
-            {
-              SCIMAttribute finalAttr = SCIMAttribute.create(
-                      attr.getAttributeDescriptor(), finalComplexValues.toArray(
-                      new SCIMAttributeValue[finalComplexValues.size()]));
-              attrs.put(attrName, finalAttr);
-            }
-            else
-            {
-              //After removing the specified sub-attribute, there are no values
-              //left, so the entire attribute should be removed.
-              attrs.remove(attrName);
-            }
+            removed = true;
           }
         }
+
+        if(!attrList.isEmpty() && nonNormativeSubAttributeExists)
+        {
+          SCIMAttributeValue newComplexValue =
+                  SCIMAttributeValue.createComplexValue(attrList);
+          finalComplexValues.add(newComplexValue);
+        }
+      }
+    }
+
+    if (removed)
+    {
+      if(!finalComplexValues.isEmpty())
+      {
+        SCIMAttribute finalAttr = SCIMAttribute.create(
+                attr.getAttributeDescriptor(), finalComplexValues.toArray(
+                new SCIMAttributeValue[finalComplexValues.size()]));
+        prepareForUpdate();
+        attributes[index] = finalAttr;
       }
       else
       {
-        removed = (attrs.remove(attrName) != null);
+        //After removing the specified sub-attribute, there are no values
+        //left, so the entire attribute should be removed.
+        removeAt(index);
       }
+    }
+
+    return removed;
+  }
 
-      if(removed && attrs.isEmpty())
+
+
+  /**
+   * Find the position of an attribute in the attribute array. Schema URIs and
+   * attribute names are compared without regard to case.
+   *
+   * @param schema  The URI of the schema containing the attribute.
+   * @param name    The name of the attribute.
+   *
+   * @return  The position of the attribute, or -1 if this object does not
+   *          contain the attribute.
+   */
+  private int indexOf(final String schema, final String name)
+  {
+    for (int i = 0; i < size; i++)
+    {
+      final SCIMAttribute attribute = attributes[i];
+      if (attribute.getName().equalsIgnoreCase(name) &&
+          schemaMatches(attribute, schema))
       {
-        attributes.remove(lowerCaseSchema);
+        return i;
       }
+    }
+    return -1;
+  }
+
+
+
+  /**
+   * Determines whether an attribute belongs to a schema.
+   *
+   * @param attribute  The attribute.
+   * @param schema     The URI of the schema, which may be {@code null}.
+   *
+   * @return  {@code true} if the attribute belongs to the schema.
+   */
+  private static boolean schemaMatches(final SCIMAttribute attribute,
+                                       final String schema)
+  {
+    final String attributeSchema = attribute.getSchema();
+    if (attributeSchema == null)
+    {
+      return schema == null;
+    }
+    return attributeSchema.equalsIgnoreCase(schema);
+  }
+
+
+
+  /**
+   * Append an attribute to the attribute array.
+   *
+   * @param attribute  The attribute to be appended.
+   */
+  private void append(final SCIMAttribute attribute)
+  {
+    if (size == attributes.length)
+    {
+      attributes = Arrays.copyOf(attributes,
+          Math.max(INITIAL_CAPACITY, size * 2));
+      shared = false;
+    }
+    else
+    {
+      prepareForUpdate();
+    }
+    attributes[size++] = attribute;
+  }
+
+
+
+  /**
+   * Remove the attribute at a position in the attribute array.
+   *
+   * @param index  The position of the attribute to be removed.
+   */
+  private void removeAt(final int index)
+  {
+    prepareForUpdate();
+    System.arraycopy(attributes, index + 1, attributes, index,
+        size - index - 1);
+    attributes[--size] = null;
+  }
+
 
-      return removed;
+
+  /**
+   * Copy the attribute array if it may be shared with a copy of this object,
+   * so that it may be modified.
+   */
+  private void prepareForUpdate()
+  {
+    if (shared)
+    {
+      attributes = Arrays.copyOf(attributes, attributes.length);
+      shared = false;
     }
   }
 
@@ -452,66 +560,64 @@ public class SCIMObject
                           final boolean includeCommonAttributes)
       throws InvalidResourceException
   {
-    // Make sure all required attributes are present
-    for(String schema : resourceDescriptor.getAttributeSchemas())
+    // Make sure all required attributes are present. Only the attributes
+    // enforced by schema checking need be examined.
+    for(AttributeDescriptor attributeDescriptor :
+        resourceDescriptor.getEnforcedAttributes())
     {
-      for(AttributeDescriptor attributeDescriptor :
-          resourceDescriptor.getAttributes(schema))
+      if(!includeCommonAttributes &&
+          (attributeDescriptor.equals(CoreSchema.ID_DESCRIPTOR) ||
+              attributeDescriptor.equals(CoreSchema.META_DESCRIPTOR) ||
+              attributeDescriptor.equals(CoreSchema.EXTERNAL_ID_DESCRIPTOR)))
       {
-        if(!includeCommonAttributes &&
-            (attributeDescriptor.equals(CoreSchema.ID_DESCRIPTOR) ||
-                attributeDescriptor.equals(CoreSchema.META_DESCRIPTOR) ||
-                attributeDescriptor.equals(CoreSchema.EXTERNAL_ID_DESCRIPTOR)))
-        {
-          continue;
-        }
-
-        if (attributeDescriptor.isReadOnly())
-        {
-          continue;
-        }
+        continue;
+      }
 
-        SCIMAttribute attribute =
-            getAttribute(schema, attributeDescriptor.getName());
-        if(attributeDescriptor.isRequired() && attribute == null)
+      final String schema = toLowerCase(attributeDescriptor.getSchema());
+      SCIMAttribute attribute =
+          getAttribute(schema, attributeDescriptor.getName());
+      if(attribute == null)
+      {
+        if(attributeDescriptor.isRequired())
         {
           throw new InvalidResourceException("Attribute '" +
               schema + ":" + attributeDescriptor.getName() +
               "' is required");
         }
+        continue;
+      }
 
-        Collection<AttributeDescriptor> subAttributes =
-            attributeDescriptor.getSubAttributes();
-        if(subAttributes != null && attribute != null)
+      Collection<AttributeDescriptor> subAttributes =
+          attributeDescriptor.getSubAttributes();
+      if(subAttributes != null)
+      {
+        // Make sure all required sub-attributes are present as well
+        for(AttributeDescriptor subAttribute : subAttributes)
         {
-          // Make sure all required sub-attributes are present as well
-          for(AttributeDescriptor subAttribute : subAttributes)
+          if(subAttribute.isRequired())
           {
-            if(subAttribute.isRequired())
+            if(attributeDescriptor.isMultiValued())
             {
-              if(attributeDescriptor.isMultiValued())
+              for(SCIMAttributeValue value : attribute.getValues())
               {
-                for(SCIMAttributeValue value : attribute.getValues())
-                {
-                  if(!value.hasAttribute(subAttribute.getName()))
-                  {
-                    throw new InvalidResourceException("Sub-Attribute '" +
-                        schema + ":" + attributeDescriptor.getName() + "." +
-                        subAttribute.getName() + "' is required for all " +
-                        "values of the multi-valued attribute");
-                  }
-                }
-              }
-              else
-              {
-                if(!attribute.getValue().hasAttribute(subAttribute.getName()))
+                if(!value.hasAttribute(subAttribute.getName()))
                 {
                   throw new InvalidResourceException("Sub-Attribute '" +
                       schema + ":" + attributeDescriptor.getName() + "." +
-                      subAttribute.getName() + "' is required");
+                      subAttribute.getName() + "' is required for all " +
+                      "values of the multi-valued attribute");
                 }
               }
             }
+            else
+            {
+              if(!attribute.getValue().hasAttribute(subAttribute.getName()))
+              {
+                throw new InvalidResourceException("Sub-Attribute '" +
+                    schema + ":" + attributeDescriptor.getName() + "." +
+                    subAttribute.getName() + "' is required");
+              }
+            }
           }
         }
       }
@@ -533,9 +639,18 @@ public class SCIMObject
     }
 
     SCIMObject that = (SCIMObject) o;
+    if (size != that.size) {
+      return false;
+    }
 
-    return attributes.equals(that.attributes);
-
+    for (int i = 0; i < size; i++) {
+      final SCIMAttribute attribute = attributes[i];
+      if (!attribute.equals(
+          that.getAttribute(attribute.getSchema(), attribute.getName()))) {
+        return false;
+      }
+    }
+    return true;
   }
 
 
@@ -544,7 +659,12 @@ public class SCIMObject
    */
   @Override
   public int hashCode() {
-    return attributes.hashCode();
+    int hashCode = 0;
+    for (int i = 0; i < size; i++) {
+      hashCode += toLowerCase(attributes[i].getName()).hashCode() ^
+          attributes[i].hashCode();
+    }
+    return hashCode;
   }
 
 
@@ -554,7 +674,7 @@ public class SCIMObject
   @Override
   public String toString() {
     return "SCIMObject{" +
-      "attributes=" + attributes +
+      "attributes=" + Arrays.asList(attributes).subList(0, size) +
       '}';
   }
 }
@@ -222,11 +222,13 @@ public class SCIMQueryAttributes
 
 
   /**
-   * Pare down a SCIM object to its requested attributes.
+   * Pare down a SCIM object to its requested attributes. Attributes and values
+   * that do not need to be pared down are shared with the provided object.
    *
    * @param scimObject  The SCIM object to be pared down.
    *
-   * @return  The pared down SCIM object.
+   * @return  The pared down SCIM object, which is the provided object itself
+   *          if it contains only requested attributes and sub-attributes.
    */
   public SCIMObject pareObject(final SCIMObject scimObject)
   {
@@ -236,6 +238,7 @@ public class SCIMQueryAttributes
     }
 
     final SCIMObject paredObject = new SCIMObject();
+    boolean unchanged = true;
     for (final Map.Entry<AttributeDescriptor,Set<AttributeDescriptor>> entry :
         descriptors.entrySet())
     {
@@ -251,9 +254,16 @@ public class SCIMQueryAttributes
         {
           paredObject.addAttribute(paredAttribute);
         }
+        unchanged &= (paredAttribute == a);
       }
     }
 
+    if (unchanged &&
+        paredObject.getAttributeCount() == scimObject.getAttributeCount())
+    {
+      return scimObject;
+    }
+
     return paredObject;
   }
 
@@ -264,8 +274,9 @@ public class SCIMQueryAttributes
    *
    * @param attribute  The attribute to be pared down.
    *
-   * @return  The pared down attribute, or {@code null} if the attribute
-   *          should not be included at all.
+   * @return  The pared down attribute, which is the provided attribute itself
+   *          if it contains only requested sub-attributes, or {@code null} if
+   *          the attribute should not be included at all.
    */
   public SCIMAttribute pareAttribute(final SCIMAttribute attribute)
   {
@@ -289,43 +300,83 @@ public class SCIMQueryAttributes
 
     if (attribute.getAttributeDescriptor().isMultiValued())
     {
-      final ArrayList<SCIMAttributeValue> values =
-          new ArrayList<SCIMAttributeValue>();
-
-      for (final SCIMAttributeValue v : attribute.getValues())
+      final SCIMAttributeValue[] values = attribute.getValues();
+      SCIMAttributeValue[] paredValues = null;
+      for (int i = 0; i < values.length; i++)
       {
-        final ArrayList<SCIMAttribute> subAttributes =
-            new ArrayList<SCIMAttribute>();
-        for (final AttributeDescriptor d : subDescriptors)
+        final SCIMAttributeValue v = pareValue(values[i], subDescriptors);
+        if (v != values[i] && paredValues == null)
         {
-          final SCIMAttribute subAttribute = v.getAttribute(d.getName());
-          if (subAttribute != null)
-          {
-            subAttributes.add(subAttribute);
-          }
+          paredValues = values.clone();
+        }
+        if (paredValues != null)
+        {
+          paredValues[i] = v;
         }
-        values.add(SCIMAttributeValue.createComplexValue(subAttributes));
       }
 
-      return SCIMAttribute.create(
-          descriptor, values.toArray(new SCIMAttributeValue[values.size()]));
+      if (paredValues == null)
+      {
+        return attribute;
+      }
+      return SCIMAttribute.create(descriptor, paredValues);
     }
     else
     {
-      final ArrayList<SCIMAttribute> subAttributes =
-          new ArrayList<SCIMAttribute>();
+      final SCIMAttributeValue value = attribute.getValue();
+      final SCIMAttributeValue paredValue = pareValue(value, subDescriptors);
+      if (paredValue == value)
+      {
+        return attribute;
+      }
+      return SCIMAttribute.create(descriptor, paredValue);
+    }
+  }
+
+
+
+  /**
+   * Pare down a complex attribute value to its requested sub-attributes.
+   *
+   * @param value           The attribute value to be pared down.
+   * @param subDescriptors  The requested sub-attributes.
+   *
+   * @return  The pared down attribute value, which is the provided value
+   *          itself if it contains only requested sub-attributes.
+   */
+  private static SCIMAttributeValue pareValue(
+      final SCIMAttributeValue value,
+      final Set<AttributeDescriptor> subDescriptors)
+  {
+    final Map<String,SCIMAttribute> attributes = value.getAttributes();
+    if (attributes != null)
+    {
+      int numRequested = 0;
       for (final AttributeDescriptor d : subDescriptors)
       {
-        final SCIMAttribute subAttribute =
-            attribute.getValue().getAttribute(d.getName());
-        if (subAttribute != null)
+        if (value.getAttribute(d.getName()) != null)
         {
-          subAttributes.add(subAttribute);
+          numRequested++;
         }
       }
-      return SCIMAttribute.create(descriptor,
-          SCIMAttributeValue.createComplexValue(subAttributes));
+
+      if (numRequested == attributes.size())
+      {
+        return value;
+      }
+    }
+
+    final ArrayList<SCIMAttribute> subAttributes =
+        new ArrayList<SCIMAttribute>(subDescriptors.size());
+    for (final AttributeDescriptor d : subDescriptors)
+    {
+      final SCIMAttribute subAttribute = value.getAttribute(d.getName());
+      if (subAttribute != null)
+      {
+        subAttributes.add(subAttribute);
+      }
     }
+    return SCIMAttributeValue.createComplexValue(subAttributes);
   }
 
 
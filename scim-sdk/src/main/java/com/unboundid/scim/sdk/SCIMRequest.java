@@ -33,6 +33,14 @@ import java.util.List;
  */
 public abstract class SCIMRequest
 {
+  /**
+   * The name of the servlet request attribute holding the number of
+   * operations, such as LDAP operations, processed by the backend for the
+   * HTTP request. It is included in the access log.
+   */
+  public static final String BACKEND_OPERATION_COUNT_ATTRIBUTE =
+      "com.unboundid.scim.backendOperationCount";
+
   /**
    * The base URL for the SCIM service.
    */
@@ -189,6 +197,55 @@ public abstract class SCIMRequest
 
 
 
+  /**
+   * Add to the number of operations processed by the backend for the HTTP
+   * request that initiated this SCIM request. A bulk request may initiate
+   * several SCIM requests, so the counts of all of them are added together.
+   *
+   * @param operationCount  The number of operations processed by the backend
+   *                        for this SCIM request.
+   */
+  public void addBackendOperationCount(final int operationCount)
+  {
+    if (httpServletRequest == null)
+    {
+      return;
+    }
+
+    final Integer count = (Integer)
+        httpServletRequest.getAttribute(BACKEND_OPERATION_COUNT_ATTRIBUTE);
+    httpServletRequest.setAttribute(BACKEND_OPERATION_COUNT_ATTRIBUTE,
+        count == null ? operationCount : count + operationCount);
+  }
+
+
+
+  /**
+   * Get the value of the If-Match header of this request.
+   *
+   * @return The value of the If-Match header or {@code null} if the request
+   *         does not have one.
+   */
+  public String getIfMatchHeaderValue()
+  {
+    return ifMatchHeaderValue;
+  }
+
+
+
+  /**
+   * Get the value of the If-None-Match header of this request.
+   *
+   * @return The value of the If-None-Match header or {@code null} if the
+   *         request does not have one.
+   */
+  public String getIfNoneMatchHeaderValue()
+  {
+    return ifNoneMatchHeaderValue;
+  }
+
+
+
   /**
    * Evaluate request preconditions for a resource that does not currently
    * exist. The primary use of this method is to support the &lt;a
@@ -32,6 +32,10 @@ import com.unboundid.scim.facade.org.apache.wink.client.RestClient;
 import org.glassfish.jersey.apache.connector.ApacheClientProperties;
 import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
 import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.filter.EncodingFeature;
+import org.glassfish.jersey.message.DeflateEncoder;
+import org.glassfish.jersey.message.GZipEncoder;
 
 import javax.ws.rs.client.ClientRequestContext;
 import javax.ws.rs.client.ClientRequestFilter;
@@ -39,6 +43,10 @@ import javax.ws.rs.core.MediaType;
 import java.io.IOException;
 import java.net.URI;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.unboundid.scim.schema.CoreSchema
                  .createCustomGroupResourceDescriptor;
@@ -53,6 +61,12 @@ import static com.unboundid.scim.schema.CoreSchema
  */
 public class SCIMService
 {
+  /**
+   * The default maximum number of asynchronous requests that may be in
+   * progress at once when the default asynchronous executor is used.
+   */
+  public static final int DEFAULT_MAX_ASYNC_REQUESTS = 16;
+
   private final RestClient client;
   private final URI baseURL;
 
@@ -61,9 +75,15 @@ public class SCIMService
   private final boolean[] overrides = new boolean[3];
   private String userAgent;
   private boolean useUrlSuffix;
+  private boolean compressRequests;
+  private int maxAsyncRequests = DEFAULT_MAX_ASYNC_REQUESTS;
+  private ExecutorService asyncExecutor;
+  private boolean ownsAsyncExecutor;
 
   /**
    * Constructs a new SCIMService from a url and a jersey client config.
+   * The gzip and deflate content codings are registered with the client so
+   * that compressed responses are requested and decoded.
    * @param baseUrl The SCIM Service Provider URL.
   * @param clientConfig The client config object.
    */
@@ -72,6 +92,8 @@ public class SCIMService
   {
     this.baseURL = baseUrl;
     this.client = new RestClient(clientConfig);
+    this.client.getClient().register(
+        new EncodingFeature(GZipEncoder.class, DeflateEncoder.class));
   }
 
   /**
@@ -568,6 +590,133 @@ public class SCIMService
     this.useUrlSuffix = useUrlSuffix;
   }
 
+  /**
+   * Whether request entities are compressed using the gzip content coding.
+   *
+   * @return {@code true} if request entities are compressed, or
+   *         {@code false} if they are sent uncompressed.
+   */
+  public boolean isCompressRequests()
+  {
+    return compressRequests;
+  }
+
+  /**
+   * Sets whether request entities, such as resources to be created or
+   * updated and bulk requests, are compressed using the gzip content coding.
+   * This should only be enabled if the service provider accepts compressed
+   * requests. Unlike other settings, this applies to SCIMEndpoints that have
+   * already been obtained from this SCIMService.
+   *
+   * @param compressRequests {@code true} to compress request entities, or
+   *                         {@code false} to send them uncompressed.
+   */
+  public void setCompressRequests(final boolean compressRequests)
+  {
+    this.compressRequests = compressRequests;
+    client.getClient().property(ClientProperties.USE_ENCODING,
+        compressRequests ? "gzip" : null);
+  }
+
+  /**
+   * Retrieves the maximum number of asynchronous requests that may be in
+   * progress at once when the default asynchronous executor is used.
+   *
+   * @return The maximum number of asynchronous requests that may be in
+   *         progress at once.
+   */
+  public synchronized int getMaxAsyncRequests()
+  {
+    return maxAsyncRequests;
+  }
+
+  /**
+   * Sets the maximum number of asynchronous requests that may be in progress
+   * at once when the default asynchronous executor is used. Each request in
+   * progress occupies one thread of the executor for its whole duration,
+   * because the underlying HTTP connector is blocking, so this is also the
+   * number of threads that are created. Requests submitted beyond this limit
+   * are queued until an earlier request completes. This setting has no
+   * effect once the asynchronous executor has been created or if an executor
+   * has been provided with {@link #setAsyncExecutor}.
+   *
+   * @param maxAsyncRequests The maximum number of asynchronous requests that
+   *                         may be in progress at once.
+   */
+  public synchronized void setMaxAsyncRequests(final int maxAsyncRequests)
+  {
+    if (maxAsyncRequests <= 0)
+    {
+      throw new IllegalArgumentException(
+          "The maximum number of asynchronous requests must be positive");
+    }
+    this.maxAsyncRequests = maxAsyncRequests;
+  }
+
+  /**
+   * Retrieves the executor that is used to process the asynchronous requests
+   * of the SCIMEndpoints obtained from this SCIMService. If no executor has
+   * been provided, a fixed pool of daemon threads sized according to
+   * {@link #getMaxAsyncRequests} is created on first use. That pool is owned
+   * by this SCIMService and is shut down by {@link #shutdownAsyncExecutor}.
+   *
+   * @return The executor that is used to process asynchronous requests.
+   */
+  public synchronized ExecutorService getAsyncExecutor()
+  {
+    if (asyncExecutor == null)
+    {
+      final AtomicInteger threadNumber = new AtomicInteger();
+      asyncExecutor = Executors.newFixedThreadPool(maxAsyncRequests,
+          new ThreadFactory()
+          {
+            public Thread newThread(final Runnable r)
+            {
+              final Thread t = new Thread(r,
+                  "SCIM Async Request Thread " +
+                      threadNumber.incrementAndGet());
+              t.setDaemon(true);
+              return t;
+            }
+          });
+      ownsAsyncExecutor = true;
+    }
+    return asyncExecutor;
+  }
+
+  /**
+   * Shuts down the asynchronous executor if it was created by this
+   * SCIMService, after the requests that have already been submitted
+   * complete. An executor provided with {@link #setAsyncExecutor} is not
+   * shut down. A new executor is created if asynchronous requests are
+   * submitted afterwards.
+   */
+  public synchronized void shutdownAsyncExecutor()
+  {
+    if (ownsAsyncExecutor)
+    {
+      asyncExecutor.shutdown();
+    }
+    asyncExecutor = null;
+    ownsAsyncExecutor = false;
+  }
+
+  /**
+   * Sets the executor that is used to process the asynchronous requests of
+   * the SCIMEndpoints obtained from this SCIMService. The caller retains
+   * ownership of the provided executor and is responsible for shutting it
+   * down. The number of threads available to the executor bounds the number
+   * of asynchronous requests that may be in progress at once.
+   *
+   * @param asyncExecutor The executor that should be used to process
+   *                      asynchronous requests.
+   */
+  public synchronized void setAsyncExecutor(final ExecutorService asyncExecutor)
+  {
+    shutdownAsyncExecutor();
+    this.asyncExecutor = asyncExecutor;
+  }
+
   /**
    * Create a new ClientConfig with the default settings.
    *
@@ -580,6 +729,7 @@ public class SCIMService
     mgr.setDefaultMaxPerRoute(100);
 
     ClientConfig jerseyConfig = new ClientConfig();
+    jerseyConfig.property(ApacheClientProperties.CONNECTION_MANAGER, mgr);
     ApacheConnectorProvider connectorProvider = new ApacheConnectorProvider();
     jerseyConfig.connectorProvider(connectorProvider);
     return jerseyConfig;
@@ -52,8 +52,25 @@ public final class StaticUtils
     }
 
     final int length = s.length();
+
+    // Most strings are already lower case, and need not be copied.
+    int first = 0;
+    while (first < length)
+    {
+      final char c = s.charAt(first);
+      if ((c >= 'A' && c <= 'Z') || c > 0x7F)
+      {
+        break;
+      }
+      first++;
+    }
+    if (first == length)
+    {
+      return s;
+    }
+
     final char[] charArray = s.toCharArray();
-    for (int i=0; i < length; i++)
+    for (int i=first; i < length; i++)
     {
       switch (charArray[i])
       {
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.sdk;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+
+/**
+ * This class provides a counter that may be updated by many threads at once
+ * with little contention. The count is spread over a number of cells, each
+ * in its own cache line, and a thread always updates the same cell. Reading
+ * the counter sums the cells without locking, so the value read while the
+ * counter is being updated may not include the most recent updates.
+ */
+public final class StripedCounter
+{
+  /**
+   * The number of cells, which is a power of two.
+   */
+  private static final int CELLS;
+
+  /**
+   * The distance in longs between cells, so that each cell occupies its own
+   * cache line.
+   */
+  private static final int PADDING = 8;
+
+  static
+  {
+    final int processors = Runtime.getRuntime().availableProcessors();
+    int cells = 1;
+    while (cells < processors && cells < 64)
+    {
+      cells <<= 1;
+    }
+    CELLS = cells;
+  }
+
+  // The cells holding the count.
+  private final AtomicLongArray cells =
+      new AtomicLongArray(CELLS * PADDING);
+
+
+
+  /**
+   * Adds the given value to the counter.
+   *
+   * @param value  The value to add.
+   */
+  public void add(final long value)
+  {
+    final int cell = (int) Thread.currentThread().getId() & (CELLS - 1);
+    cells.addAndGet(cell * PADDING, value);
+  }
+
+
+
+  /**
+   * Increments the counter.
+   */
+  public void increment()
+  {
+    add(1L);
+  }
+
+
+
+  /**
+   * Retrieves the value of the counter.
+   *
+   * @return  The value of the counter.
+   */
+  public long sum()
+  {
+    long sum = 0L;
+    for (int i = 0; i < CELLS; i++)
+    {
+      sum += cells.get(i * PADDING);
+    }
+    return sum;
+  }
+}
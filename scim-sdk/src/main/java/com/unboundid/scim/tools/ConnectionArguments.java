@@ -0,0 +1,522 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.tools;
+
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.scim.sdk.Debug;
+import com.unboundid.scim.sdk.SCIMService;
+import com.unboundid.util.args.ArgumentException;
+import com.unboundid.util.args.ArgumentParser;
+import com.unboundid.util.args.BooleanArgument;
+import com.unboundid.util.args.FileArgument;
+import com.unboundid.util.args.IntegerArgument;
+import com.unboundid.util.args.StringArgument;
+import com.unboundid.util.ssl.KeyStoreKeyManager;
+import com.unboundid.util.ssl.PromptTrustManager;
+import com.unboundid.util.ssl.SSLUtil;
+import com.unboundid.util.ssl.TrustAllTrustManager;
+import com.unboundid.util.ssl.TrustStoreTrustManager;
+
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.TrustManager;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.unboundid.scim.tools.ToolMessages.*;
+import static com.unboundid.util.StaticUtils.getExceptionMessage;
+
+
+
+/**
+ * This class provides the command line arguments used by the SCIM load
+ * generation tools to communicate with a SCIM server, and creates the
+ * {@code SCIMService} described by those arguments.
+ */
+final class ConnectionArguments
+{
+  // Arguments used to communicate with a SCIM server.
+  private FileArgument    authPasswordFile;
+  private IntegerArgument port;
+  private StringArgument  authID;
+  private StringArgument  authPassword;
+  private StringArgument  bearerToken;
+  private StringArgument  contextPath;
+  private StringArgument  host;
+  private BooleanArgument trustAll;
+  private BooleanArgument useSSL;
+  private FileArgument    keyStorePasswordFile;
+  private FileArgument    trustStorePasswordFile;
+  private StringArgument  certificateNickname;
+  private StringArgument  keyStoreFormat;
+  private StringArgument  keyStorePath;
+  private StringArgument  keyStorePassword;
+  private StringArgument  trustStoreFormat;
+  private StringArgument  trustStorePath;
+  private StringArgument  trustStorePassword;
+
+  // The argument used to indicate whether to use XML format in requests rather
+  // than JSON format.
+  private BooleanArgument xmlFormat;
+
+  // The connection manager used by the service, or null if the service has
+  // not been created.
+  private PoolingHttpClientConnectionManager connectionManager;
+
+  // The prompt trust manager that will be shared by all connections created
+  // for which it is appropriate.  This will allow them to benefit from the
+  // common cache.
+  private final AtomicReference<PromptTrustManager> promptTrustManager =
+      new AtomicReference<PromptTrustManager>();
+
+
+
+  /**
+   * Adds the connection arguments to the provided argument parser.
+   *
+   * @param  parser  The argument parser to which the arguments should be
+   *                 added.
+   *
+   * @throws  ArgumentException  If a problem occurs while adding the
+   *                             arguments.
+   */
+  void addArguments(final ArgumentParser parser)
+         throws ArgumentException
+  {
+    host = new StringArgument(
+        'h', "hostname", true, 1,
+        INFO_QUERY_TOOL_ARG_PLACEHOLDER_HOSTNAME.get(),
+        INFO_QUERY_TOOL_ARG_DESC_HOSTNAME.get(),
+        "localhost");
+    parser.addArgument(host);
+
+
+    port = new IntegerArgument(
+        'p', "port", true, 1,
+        INFO_QUERY_TOOL_ARG_PLACEHOLDER_PORT.get(),
+        INFO_QUERY_TOOL_ARG_DESC_PORT.get(),
+        1, 65535, 80);
+    parser.addArgument(port);
+
+
+    contextPath = new StringArgument(null, "contextPath", false, 1,
+         INFO_QUERY_TOOL_ARG_PLACEHOLDER_CONTEXT_PATH.get(),
+         INFO_QUERY_TOOL_ARG_DESC_CONTEXT_PATH.get(),
+         Arrays.asList("/"));
+    parser.addArgument(contextPath);
+
+
+    authID = new StringArgument(
+        null, "authID", false, 1,
+        INFO_QUERY_TOOL_ARG_PLACEHOLDER_AUTHID.get(),
+        INFO_QUERY_TOOL_ARG_DESC_AUTHID.get());
+    parser.addArgument(authID);
+
+
+    authPassword = new StringArgument(
+        'w', "authPassword", false, 1,
+        INFO_QUERY_TOOL_ARG_PLACEHOLDER_AUTH_PASSWORD.get(),
+        INFO_QUERY_TOOL_ARG_DESC_AUTH_PASSWORD.get());
+    parser.addArgument(authPassword);
+
+
+    bearerToken = new StringArgument(
+            null, "bearerToken", false, 1,
+            INFO_QUERY_TOOL_ARG_PLACEHOLDER_BEARER_TOKEN.get(),
+            INFO_QUERY_TOOL_ARG_DESC_BEARER_TOKEN.get());
+    parser.addArgument(bearerToken);
+
+
+    authPasswordFile = new FileArgument(
+        'j', "authPasswordFile", false, 1,
+        INFO_QUERY_TOOL_ARG_PLACEHOLDER_AUTH_PASSWORD_FILE.get(),
+        INFO_QUERY_TOOL_ARG_DESC_AUTH_PASSWORD_FILE.get(),
+        true, true, true, false);
+    parser.addArgument(authPasswordFile);
+
+
+    xmlFormat = new BooleanArgument(
+        'x', "xml", 1,
+        INFO_QUERY_TOOL_ARG_DESC_XML_FORMAT.get());
+    parser.addArgument(xmlFormat);
+
+    useSSL = new BooleanArgument('Z', "useSSL", 1,
+         INFO_SCIM_TOOL_DESCRIPTION_USE_SSL.get());
+    parser.addArgument(useSSL);
+
+    trustAll = new BooleanArgument('X', "trustAll", 1,
+         INFO_SCIM_TOOL_DESCRIPTION_TRUST_ALL.get());
+    parser.addArgument(trustAll);
+
+    keyStorePath = new StringArgument('K', "keyStorePath", false, 1,
+         INFO_SCIM_TOOL_PLACEHOLDER_PATH.get(),
+         INFO_SCIM_TOOL_DESCRIPTION_KEY_STORE_PATH.get());
+    parser.addArgument(keyStorePath);
+
+    keyStorePassword = new StringArgument('W', "keyStorePassword", false, 1,
+         INFO_SCIM_TOOL_PLACEHOLDER_PASSWORD.get(),
+         INFO_SCIM_TOOL_DESCRIPTION_KEY_STORE_PASSWORD.get());
+    parser.addArgument(keyStorePassword);
+
+    keyStorePasswordFile = new FileArgument('u', "keyStorePasswordFile", false,
+         1, INFO_SCIM_TOOL_PLACEHOLDER_PATH.get(),
+         INFO_SCIM_TOOL_DESCRIPTION_KEY_STORE_PASSWORD_FILE.get());
+    parser.addArgument(keyStorePasswordFile);
+
+    keyStoreFormat = new StringArgument(null, "keyStoreFormat", false, 1,
+         INFO_SCIM_TOOL_PLACEHOLDER_FORMAT.get(),
+         INFO_SCIM_TOOL_DESCRIPTION_KEY_STORE_FORMAT.get());
+    parser.addArgument(keyStoreFormat);
+
+    trustStorePath = new StringArgument('P', "trustStorePath", false, 1,
+         INFO_SCIM_TOOL_PLACEHOLDER_PATH.get(),
+         INFO_SCIM_TOOL_DESCRIPTION_TRUST_STORE_PATH.get());
+    parser.addArgument(trustStorePath);
+
+    trustStorePassword = new StringArgument('T', "trustStorePassword", false, 1,
+         INFO_SCIM_TOOL_PLACEHOLDER_PASSWORD.get(),
+         INFO_SCIM_TOOL_DESCRIPTION_TRUST_STORE_PASSWORD.get());
+    parser.addArgument(trustStorePassword);
+
+    trustStorePasswordFile = new FileArgument('U', "trustStorePasswordFile",
+         false, 1, INFO_SCIM_TOOL_PLACEHOLDER_PATH.get(),
+         INFO_SCIM_TOOL_DESCRIPTION_TRUST_STORE_PASSWORD_FILE.get());
+    parser.addArgument(trustStorePasswordFile);
+
+    trustStoreFormat = new StringArgument(null, "trustStoreFormat", false, 1,
+         INFO_SCIM_TOOL_PLACEHOLDER_FORMAT.get(),
+         INFO_SCIM_TOOL_DESCRIPTION_TRUST_STORE_FORMAT.get());
+    parser.addArgument(trustStoreFormat);
+
+    certificateNickname = new StringArgument('N', "certNickname", false, 1,
+         INFO_SCIM_TOOL_PLACEHOLDER_CERT_NICKNAME.get(),
+         INFO_SCIM_TOOL_DESCRIPTION_CERT_NICKNAME.get());
+    parser.addArgument(certificateNickname);
+
+    parser.addDependentArgumentSet(authID, authPassword, authPasswordFile);
+    parser.addExclusiveArgumentSet(authPassword, authPasswordFile, bearerToken);
+    parser.addExclusiveArgumentSet(authID, bearerToken);
+    parser.addExclusiveArgumentSet(keyStorePassword, keyStorePasswordFile);
+    parser.addExclusiveArgumentSet(trustStorePassword, trustStorePasswordFile);
+    parser.addExclusiveArgumentSet(trustAll, trustStorePath);
+  }
+
+
+
+  /**
+   * Creates a SCIM service that communicates with the server described by
+   * the connection arguments.  We will use Apache's HttpClient library, with
+   * a connection pool large enough for the provided number of threads.
+   *
+   * @param  maxConnections  The maximum number of connections to the server.
+   *
+   * @return  The SCIM service.
+   *
+   * @throws  LDAPException  If a problem occurs while creating the service.
+   */
+  SCIMService createService(final int maxConnections)
+      throws LDAPException
+  {
+    final SSLUtil sslUtil = createSSLUtil();
+
+    RegistryBuilder<ConnectionSocketFactory> registryBuilder =
+        RegistryBuilder.create();
+    final String schemeName;
+    if (sslUtil != null)
+    {
+      try
+      {
+        SSLConnectionSocketFactory sslConnectionSocketFactory =
+            new SSLConnectionSocketFactory(sslUtil.createSSLContext("TLS"),
+                new NoopHostnameVerifier());
+        schemeName = "https";
+        registryBuilder.register(schemeName, sslConnectionSocketFactory);
+      }
+      catch (GeneralSecurityException e)
+      {
+        Debug.debugException(e);
+        throw new LDAPException(ResultCode.LOCAL_ERROR,
+            ERR_SCIM_TOOL_CANNOT_CREATE_SSL_CONTEXT.get(
+                getExceptionMessage(e)), e);
+      }
+    }
+    else
+    {
+      schemeName = "http";
+      registryBuilder.register(schemeName, new PlainConnectionSocketFactory());
+    }
+    final Registry<ConnectionSocketFactory> socketFactoryRegistry =
+        registryBuilder.build();
+
+    RequestConfig requestConfig = RequestConfig.custom()
+        .setConnectionRequestTimeout(30000)
+        .setExpectContinueEnabled(true).build();
+
+    SocketConfig socketConfig = SocketConfig.custom()
+        .setSoTimeout(30000)
+        .setSoReuseAddress(true)
+        .build();
+
+    final PoolingHttpClientConnectionManager mgr =
+        new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+    mgr.setMaxTotal(maxConnections);
+    mgr.setDefaultMaxPerRoute(maxConnections);
+    mgr.setDefaultSocketConfig(socketConfig);
+    mgr.setValidateAfterInactivity(-1);
+
+    ClientConfig jerseyConfig = new ClientConfig();
+
+    jerseyConfig.property(ApacheClientProperties.CONNECTION_MANAGER, mgr);
+    jerseyConfig.property(ApacheClientProperties.REQUEST_CONFIG, requestConfig);
+    ApacheConnectorProvider connectorProvider = new ApacheConnectorProvider();
+    jerseyConfig.connectorProvider(connectorProvider);
+
+    if (authID.isPresent())
+    {
+      try
+      {
+        final String password;
+        if (authPassword.isPresent())
+        {
+          password = authPassword.getValue();
+        }
+        else if (authPasswordFile.isPresent())
+        {
+          password = authPasswordFile.getNonBlankFileLines().get(0);
+        }
+        else
+        {
+          password = null;
+        }
+
+        BasicCredentialsProvider provider = new BasicCredentialsProvider();
+        provider.setCredentials(
+            new AuthScope(host.getValue(), port.getValue()),
+            new UsernamePasswordCredentials(authID.getValue(), password)
+        );
+
+        jerseyConfig.property(
+            ApacheClientProperties.CREDENTIALS_PROVIDER, provider);
+        jerseyConfig.property(
+            ApacheClientProperties.PREEMPTIVE_BASIC_AUTHENTICATION, true);
+      }
+      catch (IOException e)
+      {
+        Debug.debugException(e);
+        throw new LDAPException(ResultCode.LOCAL_ERROR,
+            ERR_QUERY_TOOL_SET_BASIC_AUTH.get(e.getMessage()), e);
+      }
+    }
+    else if (bearerToken.isPresent())
+    {
+      jerseyConfig.register(
+          new ClientRequestFilter()
+          {
+            public void filter(final ClientRequestContext clientRequestContext)
+                throws IOException
+            {
+              try
+              {
+                clientRequestContext.getHeaders().add(
+                    "Authorization", "Bearer " + bearerToken.getValue());
+              }
+              catch (Exception ex)
+              {
+                throw new RuntimeException(
+                    "Unable to add authorization handler", ex);
+              }
+            }
+          }
+      );
+    }
+
+    // Create the SCIM client to use for the requests.
+    final URI uri;
+    try
+    {
+      final String path;
+      if (contextPath.getValue().startsWith("/"))
+      {
+        path = contextPath.getValue();
+      }
+      else
+      {
+        path = "/" + contextPath.getValue();
+      }
+      uri = new URI(schemeName, null, host.getValue(), port.getValue(),
+                    path, null, null);
+    }
+    catch (URISyntaxException e)
+    {
+      Debug.debugException(e);
+      throw new LDAPException(ResultCode.OTHER,
+          ERR_QUERY_TOOL_CANNOT_CREATE_URL.get(e.getMessage()), e);
+    }
+    final SCIMService service = new SCIMService(uri, jerseyConfig);
+
+    if (xmlFormat.isPresent())
+    {
+      service.setContentType(MediaType.APPLICATION_XML_TYPE);
+      service.setAcceptType(MediaType.APPLICATION_XML_TYPE);
+    }
+
+    connectionManager = mgr;
+    return service;
+  }
+
+
+
+  /**
+   * Closes the connections held by the service created from these arguments.
+   * Any requests that are blocked waiting for a response will fail.
+   */
+  void shutdown()
+  {
+    if (connectionManager != null)
+    {
+      connectionManager.shutdown();
+    }
+  }
+
+
+
+  /**
+   * Creates the SSLUtil instance to use for secure communication.
+   *
+   * @return  The SSLUtil instance to use for secure communication, or
+   *          {@code null} if secure communication is not needed.
+   *
+   * @throws LDAPException   If a problem occurs while creating the SSLUtil
+   *                         instance.
+   */
+  private SSLUtil createSSLUtil()
+          throws LDAPException
+  {
+    if (useSSL.isPresent())
+    {
+      KeyManager keyManager = null;
+      if (keyStorePath.isPresent())
+      {
+        char[] pw = null;
+        if (keyStorePassword.isPresent())
+        {
+          pw = keyStorePassword.getValue().toCharArray();
+        }
+        else if (keyStorePasswordFile.isPresent())
+        {
+          try
+          {
+            pw = keyStorePasswordFile.getNonBlankFileLines().get(0).
+                      toCharArray();
+          }
+          catch (Exception e)
+          {
+            Debug.debugException(e);
+            throw new LDAPException(ResultCode.LOCAL_ERROR,
+                 ERR_SCIM_TOOL_CANNOT_READ_KEY_STORE_PASSWORD.get(
+                      getExceptionMessage(e)), e);
+          }
+        }
+
+        try
+        {
+          keyManager = new KeyStoreKeyManager(keyStorePath.getValue(), pw,
+               keyStoreFormat.getValue(), certificateNickname.getValue());
+        }
+        catch (Exception e)
+        {
+          Debug.debugException(e);
+          throw new LDAPException(ResultCode.LOCAL_ERROR,
+               ERR_SCIM_TOOL_CANNOT_CREATE_KEY_MANAGER.get(
+                    getExceptionMessage(e)), e);
+        }
+      }
+
+      TrustManager trustManager;
+      if (trustAll.isPresent())
+      {
+        trustManager = new TrustAllTrustManager(false);
+      }
+      else if (trustStorePath.isPresent())
+      {
+        char[] pw = null;
+        if (trustStorePassword.isPresent())
+        {
+          pw = trustStorePassword.getValue().toCharArray();
+        }
+        else if (trustStorePasswordFile.isPresent())
+        {
+          try
+          {
+            pw = trustStorePasswordFile.getNonBlankFileLines().get(0).
+                      toCharArray();
+          }
+          catch (Exception e)
+          {
+            Debug.debugException(e);
+            throw new LDAPException(ResultCode.LOCAL_ERROR,
+                 ERR_SCIM_TOOL_CANNOT_READ_TRUST_STORE_PASSWORD.get(
+                      getExceptionMessage(e)), e);
+          }
+        }
+
+        trustManager = new TrustStoreTrustManager(trustStorePath.getValue(), pw,
+             trustStoreFormat.getValue(), true);
+      }
+      else
+      {
+        trustManager = promptTrustManager.get();
+        if (trustManager == null)
+        {
+          final PromptTrustManager m = new PromptTrustManager();
+          promptTrustManager.compareAndSet(null, m);
+          trustManager = promptTrustManager.get();
+        }
+      }
+
+      return new SSLUtil(keyManager, trustManager);
+    }
+    else
+    {
+      return null;
+    }
+  }
+}
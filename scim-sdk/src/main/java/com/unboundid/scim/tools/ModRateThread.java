@@ -0,0 +1,628 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.tools;
+
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.scim.data.BaseResource;
+import com.unboundid.scim.marshal.json.JsonUnmarshaller;
+import com.unboundid.scim.schema.ResourceDescriptor;
+import com.unboundid.scim.sdk.BulkOperation;
+import com.unboundid.scim.sdk.BulkResponse;
+import com.unboundid.scim.sdk.Debug;
+import com.unboundid.scim.sdk.LatencyHistogram;
+import com.unboundid.scim.sdk.SCIMAttribute;
+import com.unboundid.scim.sdk.SCIMEndpoint;
+import com.unboundid.scim.sdk.SCIMException;
+import com.unboundid.scim.sdk.SCIMObject;
+import com.unboundid.scim.sdk.SCIMService;
+import com.unboundid.util.FixedRateBarrier;
+import com.unboundid.util.ValuePattern;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.unboundid.util.StaticUtils.getBytes;
+
+
+
+/**
+ * This class provides a thread that may be used to repeatedly perform a mix
+ * of requests that write resources.
+ */
+public class ModRateThread
+    extends Thread
+{
+  /**
+   * The types of request that may be performed.
+   */
+  enum OperationType
+  {
+    /**
+     * A POST request to create a resource from the resource template.
+     */
+    CREATE("Create"),
+
+    /**
+     * A PUT request to replace an existing resource with one created from the
+     * resource template.
+     */
+    REPLACE("Replace"),
+
+    /**
+     * A PATCH request to update an existing resource with the attributes in
+     * the modify template.
+     */
+    MODIFY("Modify"),
+
+    /**
+     * A DELETE request to remove a resource created by the same thread.
+     */
+    DELETE("Delete"),
+
+    /**
+     * A GET request to retrieve an existing resource.
+     */
+    GET("Get"),
+
+    /**
+     * A bulk request containing a mix of create, replace, modify and delete
+     * operations.
+     */
+    BULK("Bulk");
+
+    // The name of the request type to use in output.
+    private final String displayName;
+
+    /**
+     * Creates a new request type.
+     *
+     * @param  displayName  The name of the request type to use in output.
+     */
+    OperationType(final String displayName)
+    {
+      this.displayName = displayName;
+    }
+
+    /**
+     * Retrieves the name of the request type to use in output.
+     *
+     * @return  The name of the request type to use in output.
+     */
+    String getDisplayName()
+    {
+      return displayName;
+    }
+  }
+
+  // Indicates whether a request has been made to stop running.
+  private final AtomicBoolean stopRequested;
+
+  // The counters used to track the number of requests of each type.
+  private final AtomicLong[] operationCounters;
+
+  // The values that will be updated with total duration of the requests of
+  // each type.
+  private final AtomicLong[] operationDurations;
+
+  // The counter used to track the number of errors encountered.
+  private final AtomicLong errorCounter;
+
+  // The histograms of request durations in nanoseconds for this thread,
+  // indexed by request type.
+  private final LatencyHistogram[] latencyHistograms;
+
+  // The interval in nanoseconds at which this thread is expected to issue
+  // requests, or zero if durations should not be corrected for coordinated
+  // omission.
+  private final long expectedIntervalNanos;
+
+  // The thread that is actually performing the requests.
+  private final AtomicReference<Thread> modThread;
+
+  // The result code for this thread.
+  private final AtomicReference<ResultCode> resultCode;
+
+  // The service to use for bulk requests.
+  private final SCIMService service;
+
+  // The client to use for the requests.
+  private final SCIMEndpoint<BaseResource> client;
+
+  // The schema for the resources.
+  private final ResourceDescriptor resourceDescriptor;
+
+  // The barrier that will be used to coordinate starting among all the threads.
+  private final CyclicBarrier startBarrier;
+
+  // The value pattern to use for the resources to create or replace.
+  private final ValuePattern resourceTemplate;
+
+  // The value pattern to use for the attributes to modify.
+  private final ValuePattern modifyTemplate;
+
+  // The value pattern to use for the IDs of existing resources, or null if
+  // there are no requests targeting existing resources.
+  private final ValuePattern resourceIdPattern;
+
+  // The relative weights of each request type, indexed by request type.
+  private final int[] weights;
+
+  // The number of operations in each bulk request.
+  private final int bulkSize;
+
+  // The random number generator used to select the request types.
+  private final Random random;
+
+  // The IDs of the resources created by this thread that have not yet been
+  // deleted.
+  private final LinkedList<String> createdIds;
+
+  // The barrier to use for controlling the rate of requests.  null if no
+  // rate-limiting should be used.
+  private final FixedRateBarrier fixedRateBarrier;
+
+
+
+  /**
+   * Creates a new mod rate thread with the provided information.
+   *
+   * @param  threadNumber        The thread number for this thread.
+   * @param  service             The service to use for bulk requests.
+   * @param  client              The client to use for the requests.
+   * @param  resourceDescriptor  The schema for the resources.
+   * @param  resourceTemplate    The value pattern for the resources to
+   *                             create or replace.
+   * @param  modifyTemplate      The value pattern for the attributes to
+   *                             modify.
+   * @param  resourceIdPattern   The value pattern for the IDs of existing
+   *                             resources.  It may be {@code null} if no
+   *                             replace, modify or get requests are to be
+   *                             performed.
+   * @param  weights             The relative weights of each request type,
+   *                             indexed by the ordinal of the request type.
+   * @param  bulkSize            The number of operations in each bulk
+   *                             request.
+   * @param  seed                The seed for the random number generator
+   *                             used to select request types, or
+   *                             {@code null} if it should be seeded randomly.
+   * @param  startBarrier        A barrier used to coordinate starting between
+   *                             all of the threads.
+   * @param  operationCounters   Values that will be used to keep track of the
+   *                             total number of requests of each type.
+   * @param  operationDurations  Values that will be used to keep track of the
+   *                             total duration for requests of each type.
+   * @param  errorCounter        A value that will be used to keep track of the
+   *                             number of errors encountered.
+   * @param  rateBarrier         The barrier to use for controlling the rate of
+   *                             requests.  {@code null} if no rate-limiting
+   *                             should be used.
+   * @param  expectedIntervalNanos  The interval in nanoseconds at which this
+   *                             thread is expected to issue requests, or zero
+   *                             if recorded durations should not be corrected
+   *                             for coordinated omission.
+   */
+  ModRateThread(final int threadNumber,
+                final SCIMService service,
+                final SCIMEndpoint<BaseResource> client,
+                final ResourceDescriptor resourceDescriptor,
+                final ValuePattern resourceTemplate,
+                final ValuePattern modifyTemplate,
+                final ValuePattern resourceIdPattern,
+                final int[] weights,
+                final int bulkSize,
+                final Long seed,
+                final CyclicBarrier startBarrier,
+                final AtomicLong[] operationCounters,
+                final AtomicLong[] operationDurations,
+                final AtomicLong errorCounter,
+                final FixedRateBarrier rateBarrier,
+                final long expectedIntervalNanos)
+  {
+    setName("ModRate Thread " + threadNumber);
+    setDaemon(true);
+
+    this.service            = service;
+    this.client             = client;
+    this.resourceDescriptor = resourceDescriptor;
+    this.resourceTemplate   = resourceTemplate;
+    this.modifyTemplate     = modifyTemplate;
+    this.resourceIdPattern  = resourceIdPattern;
+    this.weights            = weights;
+    this.bulkSize           = bulkSize;
+    this.startBarrier       = startBarrier;
+    this.operationCounters  = operationCounters;
+    this.operationDurations = operationDurations;
+    this.errorCounter       = errorCounter;
+    fixedRateBarrier        = rateBarrier;
+
+    this.expectedIntervalNanos = expectedIntervalNanos;
+    latencyHistograms = new LatencyHistogram[OperationType.values().length];
+    for (int i = 0; i < latencyHistograms.length; i++)
+    {
+      latencyHistograms[i] = new LatencyHistogram();
+    }
+
+    if (seed == null)
+    {
+      random = new Random();
+    }
+    else
+    {
+      random = new Random(seed + threadNumber);
+    }
+
+    createdIds    = new LinkedList<String>();
+    resultCode    = new AtomicReference<ResultCode>(null);
+    modThread     = new AtomicReference<Thread>(null);
+    stopRequested = new AtomicBoolean(false);
+  }
+
+
+
+  /**
+   * Performs all processing for this thread.
+   */
+  @Override()
+  public void run()
+  {
+    modThread.set(currentThread());
+
+    try
+    {
+      startBarrier.await();
+    }
+    catch (Exception e)
+    {
+      Debug.debugException(e);
+    }
+
+    while (! stopRequested.get())
+    {
+      // If we're trying for a specific target rate, then we might need to
+      // wait until issuing the next request.
+      if (fixedRateBarrier != null)
+      {
+        fixedRateBarrier.await();
+      }
+
+      OperationType operationType = selectOperationType(false);
+      if (operationType == OperationType.DELETE && createdIds.isEmpty())
+      {
+        operationType = OperationType.CREATE;
+      }
+
+      final long startTime = System.nanoTime();
+
+      try
+      {
+        switch (operationType)
+        {
+          case CREATE:
+            createdIds.add(client.create(createResource(resourceTemplate),
+                                         "id").getId());
+            break;
+
+          case REPLACE:
+            client.update(resourceIdPattern.nextValue(), null,
+                          createResource(resourceTemplate));
+            break;
+
+          case MODIFY:
+            client.update(resourceIdPattern.nextValue(), null,
+                          getAttributes(createResource(modifyTemplate)),
+                          null);
+            break;
+
+          case DELETE:
+            client.delete(createdIds.removeFirst());
+            break;
+
+          case GET:
+            client.get(resourceIdPattern.nextValue());
+            break;
+
+          case BULK:
+            performBulkRequest();
+            break;
+        }
+      }
+      catch (SCIMException e)
+      {
+        Debug.debugException(e);
+        errorCounter.incrementAndGet();
+
+        final ResultCode rc = ResultCode.OTHER;
+        resultCode.compareAndSet(null, rc);
+      }
+      catch (RuntimeException e)
+      {
+        Debug.debugException(e);
+
+        // If we are shutting down then just ignore the error.
+        if (stopRequested.get())
+        {
+          break;
+        }
+
+        throw e;
+      }
+
+      final long duration = System.nanoTime() - startTime;
+      final int index = operationType.ordinal();
+      latencyHistograms[index].recordValueWithExpectedInterval(
+          duration, expectedIntervalNanos);
+      operationCounters[index].incrementAndGet();
+      operationDurations[index].addAndGet(duration);
+    }
+
+    modThread.set(null);
+  }
+
+
+
+  /**
+   * Performs a bulk request containing a mix of create, replace, modify and
+   * delete operations.  Each failed operation within the request is counted
+   * as an error.
+   *
+   * @throws  SCIMException  If the bulk request fails.
+   */
+  private void performBulkRequest()
+      throws SCIMException
+  {
+    final String endpointPath = "/" + resourceDescriptor.getEndpoint();
+    final List<BulkOperation> operations =
+        new ArrayList<BulkOperation>(bulkSize);
+    for (int i = 0; i < bulkSize; i++)
+    {
+      OperationType operationType = selectOperationType(true);
+      if (operationType == OperationType.DELETE && createdIds.isEmpty())
+      {
+        operationType = OperationType.CREATE;
+      }
+
+      switch (operationType)
+      {
+        case REPLACE:
+          operations.add(BulkOperation.createRequest(
+              BulkOperation.Method.PUT, null, null,
+              endpointPath + "/" + resourceIdPattern.nextValue(),
+              createResource(resourceTemplate)));
+          break;
+
+        case MODIFY:
+          operations.add(BulkOperation.createRequest(
+              BulkOperation.Method.PATCH, null, null,
+              endpointPath + "/" + resourceIdPattern.nextValue(),
+              createResource(modifyTemplate)));
+          break;
+
+        case DELETE:
+          operations.add(BulkOperation.createRequest(
+              BulkOperation.Method.DELETE, null, null,
+              endpointPath + "/" + createdIds.removeFirst(), null));
+          break;
+
+        default:
+          operations.add(BulkOperation.createRequest(
+              BulkOperation.Method.POST, "op" + i, null, endpointPath,
+              createResource(resourceTemplate)));
+          break;
+      }
+    }
+
+    final BulkResponse response = service.processBulkRequest(operations);
+    for (final BulkOperation operation : response)
+    {
+      if (operation.getStatus() == null ||
+          !operation.getStatus().getCode().startsWith("2"))
+      {
+        errorCounter.incrementAndGet();
+        resultCode.compareAndSet(null, ResultCode.OTHER);
+      }
+      else if (operation.getMethod() == BulkOperation.Method.POST &&
+               operation.getLocation() != null)
+      {
+        final String location = operation.getLocation();
+        createdIds.add(location.substring(location.lastIndexOf('/') + 1));
+      }
+    }
+  }
+
+
+
+  /**
+   * Selects the type of the next request at random according to the weights.
+   *
+   * @param  bulkOperation  Indicates whether the request is an operation
+   *                        within a bulk request, in which case only create,
+   *                        replace, modify and delete requests are
+   *                        considered.
+   *
+   * @return  The type of the next request.
+   */
+  private OperationType selectOperationType(final boolean bulkOperation)
+  {
+    final OperationType[] types = OperationType.values();
+    int total = 0;
+    for (final OperationType t : types)
+    {
+      if (!bulkOperation || isBulkOperationType(t))
+      {
+        total += weights[t.ordinal()];
+      }
+    }
+
+    int n = random.nextInt(total);
+    for (final OperationType t : types)
+    {
+      if (!bulkOperation || isBulkOperationType(t))
+      {
+        n -= weights[t.ordinal()];
+        if (n < 0)
+        {
+          return t;
+        }
+      }
+    }
+
+    return OperationType.CREATE;
+  }
+
+
+
+  /**
+   * Indicates whether requests of the given type may be included as
+   * operations within a bulk request.
+   *
+   * @param  operationType  The request type.
+   *
+   * @return  {@code true} if requests of the given type may be included in a
+   *          bulk request.
+   */
+  static boolean isBulkOperationType(final OperationType operationType)
+  {
+    return operationType != OperationType.GET &&
+           operationType != OperationType.BULK;
+  }
+
+
+
+  /**
+   * Creates a resource from the next value of a template.
+   *
+   * @param  template  The value pattern for the JSON representation of the
+   *                   resource.
+   *
+   * @return  The resource.
+   *
+   * @throws  SCIMException  If the template value is not a valid resource.
+   */
+  private BaseResource createResource(final ValuePattern template)
+      throws SCIMException
+  {
+    return createResource(template.nextValue(), resourceDescriptor);
+  }
+
+
+
+  /**
+   * Creates a resource from its JSON representation.
+   *
+   * @param  json                The JSON representation of the resource.
+   * @param  resourceDescriptor  The schema for the resource.
+   *
+   * @return  The resource.
+   *
+   * @throws  SCIMException  If the JSON is not a valid resource.
+   */
+  static BaseResource createResource(
+      final String json, final ResourceDescriptor resourceDescriptor)
+      throws SCIMException
+  {
+    return new JsonUnmarshaller().unmarshal(
+        new ByteArrayInputStream(getBytes(json)), resourceDescriptor,
+        BaseResource.BASE_RESOURCE_FACTORY);
+  }
+
+
+
+  /**
+   * Retrieves all of the attributes of a resource, for use in a modify
+   * request.
+   *
+   * @param  resource  The resource.
+   *
+   * @return  The attributes of the resource.
+   */
+  private static List<SCIMAttribute> getAttributes(final BaseResource resource)
+  {
+    final SCIMObject scimObject = resource.getScimObject();
+    final List<SCIMAttribute> attributes = new ArrayList<SCIMAttribute>();
+    for (final String schema : scimObject.getSchemas())
+    {
+      attributes.addAll(scimObject.getAttributes(schema));
+    }
+    return attributes;
+  }
+
+
+
+  /**
+   * Retrieves the histograms of request durations in nanoseconds for this
+   * thread, indexed by the ordinal of the request type.  The histograms are
+   * updated as requests complete and may be read while the thread is
+   * running.
+   *
+   * @return  The histograms of request durations for this thread.
+   */
+  LatencyHistogram[] getLatencyHistograms()
+  {
+    return latencyHistograms;
+  }
+
+
+
+  /**
+   * Indicates that this thread should stop running.  It will not wait for the
+   * thread to complete before returning.
+   */
+  void signalShutdown()
+  {
+    stopRequested.set(true);
+
+    if (fixedRateBarrier != null)
+    {
+      fixedRateBarrier.shutdownRequested();
+    }
+  }
+
+
+
+  /**
+   * Waits for this thread to stop running.
+   *
+   * @return  A result code that provides information about whether any errors
+   *          were encountered during processing.
+   */
+  ResultCode waitForShutdown()
+  {
+    final Thread t = modThread.get();
+    if (t != null)
+    {
+      try
+      {
+        t.join();
+      }
+      catch (Exception e)
+      {
+        Debug.debugException(e);
+      }
+    }
+
+    resultCode.compareAndSet(null, ResultCode.SUCCESS);
+    return resultCode.get();
+  }
+}
@@ -20,6 +20,7 @@ package com.unboundid.scim.tools;
 import com.unboundid.ldap.sdk.ResultCode;
 import com.unboundid.scim.data.BaseResource;
 import com.unboundid.scim.sdk.Debug;
+import com.unboundid.scim.sdk.LatencyHistogram;
 import com.unboundid.scim.sdk.Resources;
 import com.unboundid.scim.sdk.SCIMEndpoint;
 import com.unboundid.scim.sdk.SCIMException;
@@ -54,6 +55,14 @@ public class QueryRateThread
   // The value that will be updated with total duration of the queries.
   private final AtomicLong queryDurations;
 
+  // The histogram of query durations in nanoseconds for this thread.
+  private final LatencyHistogram latencyHistogram;
+
+  // The interval in nanoseconds at which this thread is expected to issue
+  // queries, or zero if durations should not be corrected for coordinated
+  // omission.
+  private final long expectedIntervalNanos;
+
   // The thread that is actually performing the queries.
   private final AtomicReference<Thread> queryThread;
 
@@ -103,6 +112,10 @@ public class QueryRateThread
    * @param  rateBarrier      The barrier to use for controlling the rate of
    *                          queries.  {@code null} if no rate-limiting
    *                          should be used.
+   * @param  expectedIntervalNanos  The interval in nanoseconds at which this
+   *                          thread is expected to issue queries, or zero if
+   *                          recorded durations should not be corrected for
+   *                          coordinated omission.
    */
   QueryRateThread(final int threadNumber,
                   final boolean isQuery,
@@ -114,7 +127,8 @@ public class QueryRateThread
                   final AtomicLong resourceCounter,
                   final AtomicLong queryDurations,
                   final AtomicLong errorCounter,
-                  final FixedRateBarrier rateBarrier)
+                  final FixedRateBarrier rateBarrier,
+                  final long expectedIntervalNanos)
   {
     setName("QueryRate Thread " + threadNumber);
     setDaemon(true);
@@ -130,6 +144,9 @@ public class QueryRateThread
     this.startBarrier    = startBarrier;
     fixedRateBarrier     = rateBarrier;
 
+    this.expectedIntervalNanos = expectedIntervalNanos;
+    latencyHistogram = new LatencyHistogram();
+
     resultCode    = new AtomicReference<ResultCode>(null);
     queryThread   = new AtomicReference<Thread>(null);
     stopRequested = new AtomicBoolean(false);
@@ -213,8 +230,11 @@ public class QueryRateThread
         throw e;
       }
 
+      final long duration = System.nanoTime() - startTime;
+      latencyHistogram.recordValueWithExpectedInterval(duration,
+                                                       expectedIntervalNanos);
       queryCounter.incrementAndGet();
-      queryDurations.addAndGet(System.nanoTime() - startTime);
+      queryDurations.addAndGet(duration);
     }
 
     queryThread.set(null);
@@ -222,6 +242,20 @@ public class QueryRateThread
 
 
 
+  /**
+   * Retrieves the histogram of query durations in nanoseconds for this
+   * thread.  The histogram is updated as queries complete and may be read
+   * while the thread is running.
+   *
+   * @return  The histogram of query durations for this thread.
+   */
+  LatencyHistogram getLatencyHistogram()
+  {
+    return latencyHistogram;
+  }
+
+
+
   /**
    * Indicates that this thread should stop running.  It will not wait for the
    * thread to complete before returning.
@@ -0,0 +1,990 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.tools;
+
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.scim.data.BaseResource;
+import com.unboundid.scim.schema.ResourceDescriptor;
+import com.unboundid.scim.sdk.Debug;
+import com.unboundid.scim.sdk.LatencyHistogram;
+import com.unboundid.scim.sdk.ResourceNotFoundException;
+import com.unboundid.scim.sdk.SCIMEndpoint;
+import com.unboundid.scim.sdk.SCIMException;
+import com.unboundid.scim.sdk.SCIMService;
+import com.unboundid.scim.tools.ModRateThread.OperationType;
+import com.unboundid.util.ColumnFormatter;
+import com.unboundid.util.CommandLineTool;
+import com.unboundid.util.FixedRateBarrier;
+import com.unboundid.util.FormattableColumn;
+import com.unboundid.util.HorizontalAlignment;
+import com.unboundid.util.OutputFormat;
+import com.unboundid.util.ValuePattern;
+import com.unboundid.util.WakeableSleeper;
+import com.unboundid.util.args.ArgumentException;
+import com.unboundid.util.args.ArgumentParser;
+import com.unboundid.util.args.BooleanArgument;
+import com.unboundid.util.args.IntegerArgument;
+import com.unboundid.util.args.StringArgument;
+
+import java.io.OutputStream;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ConsoleHandler;
+
+import static com.unboundid.scim.sdk.Debug.debugException;
+import static com.unboundid.scim.tools.ToolMessages.*;
+
+/**
+ * This class provides a tool that can be used to write resources to a SCIM
+ * server repeatedly using multiple threads.  It can help provide an estimate
+ * of the create, replace, modify, delete and bulk request performance that a
+ * SCIM server is able to achieve.  Resources are generated from a JSON
+ * template that may be a value pattern as described in the
+ * {@link com.unboundid.util.ValuePattern} class, and the mix of requests is
+ * controlled by a relative weight for each type of request.
+ * <BR><BR>
+ * All of the necessary information is provided using command line arguments.
+ * The arguments used to communicate with the server are the same as for the
+ * {@link SCIMQueryRate} tool.  Other supported arguments are as follows:
+ * <UL>
+ *   <LI>"--resourceName {resource-name}" -- specifies the name of resources to
+ *       be written.  If this isn't specified, then a default of "User" will
+ *       be used.</LI>
+ *   <LI>"--resourceTemplate {json}" -- specifies a value pattern for the JSON
+ *       representation of the resources to create and of the replacement
+ *       resources for replace requests.  Literal brackets in the JSON must be
+ *       doubled.</LI>
+ *   <LI>"--modifyTemplate {json}" -- specifies a value pattern for the JSON
+ *       representation of the attributes to update with modify requests.  If
+ *       this isn't specified, then the resource template will be used.</LI>
+ *   <LI>"-d {id}" or "--resourceID {id}" -- specifies the ID, or a value
+ *       pattern for the IDs, of the existing resources to target with
+ *       replace, modify and get requests.</LI>
+ *   <LI>"--createWeight {weight}", "--replaceWeight {weight}",
+ *       "--modifyWeight {weight}", "--deleteWeight {weight}",
+ *       "--getWeight {weight}" and "--bulkWeight {weight}" -- specify the
+ *       relative weight of each type of request in the mix of requests
+ *       performed.  If no weights are provided, then only create requests
+ *       will be performed.  Delete requests target resources previously
+ *       created by the same thread.</LI>
+ *   <LI>"--bulkSize {num}" -- specifies the number of operations in each bulk
+ *       request.  If this isn't specified, then a default of ten will be
+ *       used.</LI>
+ *   <LI>"-t {num}" or "--numThreads {num}" -- specifies the number of
+ *       concurrent threads to use when performing the requests.  If this is
+ *       not provided, then a default of one thread will be used.</LI>
+ *   <LI>"-i {sec}" or "--intervalDuration {sec}" -- specifies the length of
+ *       time in seconds between lines out output.  If this is not provided,
+ *       then a default interval duration of five seconds will be used.</LI>
+ *   <LI>"-I {num}" or "--numIntervals {num}" -- specifies the maximum number of
+ *       intervals for which to run.  If this is not provided, then it will
+ *       run forever.</LI>
+ *   <LI>"-r {requests-per-second}" or "--ratePerSecond {requests-per-second}"
+ *       -- specifies the target number of requests to perform per second.</LI>
+ *   <LI>"--correctCoordinatedOmission" -- indicates that the reported
+ *       percentiles should be corrected for requests that could not be issued
+ *       at the target rate because an earlier request was still
+ *       outstanding.</LI>
+ *   <LI>"--warmUpIntervals {num}" -- specifies the number of intervals to
+ *       complete before beginning overall statistics collection.</LI>
+ *   <LI>"--timestampFormat {format}" -- specifies the format to use for
+ *       timestamps included before each output line.</LI>
+ *   <LI>"-c" or "--csv" -- Generate output in CSV format rather than a
+ *       display-friendly format.</LI>
+ * </UL>
+ * Each output line includes the rate, average duration and 99th percentile
+ * duration of each type of request performed during the interval.  A summary
+ * of the overall rate and duration percentiles of each type of request is
+ * displayed when the tool completes.
+ */
+public class SCIMModRate
+    extends CommandLineTool
+{
+  // Arguments used to communicate with a SCIM server.
+  private final ConnectionArguments connectionArgs =
+      new ConnectionArguments();
+
+  // The argument used to indicate whether to generate output in CSV format.
+  private BooleanArgument csvFormat;
+
+  // The argument used to specify the collection interval.
+  private IntegerArgument collectionInterval;
+
+  // The argument used to specify the number of intervals.
+  private IntegerArgument numIntervals;
+
+  // The argument used to specify the number of threads.
+  private IntegerArgument numThreads;
+
+  // The argument used to specify the seed to use for the random number
+  // generator.
+  private IntegerArgument randomSeed;
+
+  // The target rate of requests per second.
+  private IntegerArgument ratePerSecond;
+
+  // The argument used to indicate whether request durations should be
+  // corrected for coordinated omission.
+  private BooleanArgument correctCoordinatedOmission;
+
+  // The number of warm-up intervals to perform.
+  private IntegerArgument warmUpIntervals;
+
+  // The arguments used to specify the relative weight of each request type.
+  private IntegerArgument createWeight;
+  private IntegerArgument replaceWeight;
+  private IntegerArgument modifyWeight;
+  private IntegerArgument deleteWeight;
+  private IntegerArgument getWeight;
+  private IntegerArgument bulkWeight;
+
+  // The argument used to specify the number of operations in a bulk request.
+  private IntegerArgument bulkSize;
+
+  // The argument used to specify the template for resources.
+  private StringArgument resourceTemplate;
+
+  // The argument used to specify the template for modify requests.
+  private StringArgument modifyTemplate;
+
+  // The argument used to specify a resource ID (or pattern).
+  private StringArgument resourceId;
+
+  // The argument used to specify the name of resources to be written.
+  private StringArgument resourceName;
+
+  // The argument used to specify the timestamp format.
+  private StringArgument timestampFormat;
+
+
+
+  /**
+   * Parse the provided command line arguments and make the appropriate set of
+   * changes.
+   *
+   * @param  args  The command line arguments provided to this program.
+   */
+  public static void main(final String[] args)
+  {
+    final ResultCode resultCode = main(args, System.out, System.err);
+    if (resultCode != ResultCode.SUCCESS)
+    {
+      System.exit(resultCode.intValue());
+    }
+  }
+
+
+
+  /**
+   * Parse the provided command line arguments and make the appropriate set of
+   * changes.
+   *
+   * @param  args       The command line arguments provided to this program.
+   * @param  outStream  The output stream to which standard out should be
+   *                    written.  It may be {@code null} if output should be
+   *                    suppressed.
+   * @param  errStream  The output stream to which standard error should be
+   *                    written.  It may be {@code null} if error messages
+   *                    should be suppressed.
+   *
+   * @return  A result code indicating whether the processing was successful.
+   */
+  public static ResultCode main(final String[] args,
+                                final OutputStream outStream,
+                                final OutputStream errStream)
+  {
+    final SCIMModRate modRate = new SCIMModRate(outStream, errStream);
+    return modRate.runTool(args);
+  }
+
+
+
+  /**
+   * Creates a new instance of this tool.
+   *
+   * @param  outStream  The output stream to which standard out should be
+   *                    written.  It may be {@code null} if output should be
+   *                    suppressed.
+   * @param  errStream  The output stream to which standard error should be
+   *                    written.  It may be {@code null} if error messages
+   *                    should be suppressed.
+   */
+  public SCIMModRate(final OutputStream outStream,
+                     final OutputStream errStream)
+  {
+    super(outStream, errStream);
+  }
+
+
+
+  /**
+   * Retrieves the name for this tool.
+   *
+   * @return  The name for this tool.
+   */
+  @Override()
+  public String getToolName()
+  {
+    return "scim-mod-rate";
+  }
+
+
+
+  /**
+   * Retrieves the description for this tool.
+   *
+   * @return  The description for this tool.
+   */
+  @Override()
+  public String getToolDescription()
+  {
+    return INFO_MOD_RATE_TOOL_DESC.get();
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  public void addToolArguments(final ArgumentParser parser)
+         throws ArgumentException
+  {
+    connectionArgs.addArguments(parser);
+
+
+    resourceName = new StringArgument(
+        null, "resourceName", false, 1,
+        INFO_QUERY_TOOL_ARG_PLACEHOLDER_RESOURCE_NAME.get(),
+        INFO_MOD_RATE_TOOL_ARG_DESC_RESOURCE_NAME.get(),
+        null, Arrays.asList("User"));
+    parser.addArgument(resourceName);
+
+
+    resourceTemplate = new StringArgument(
+        null, "resourceTemplate", true, 1,
+        INFO_MOD_RATE_TOOL_ARG_PLACEHOLDER_TEMPLATE.get(),
+        INFO_MOD_RATE_TOOL_ARG_DESC_RESOURCE_TEMPLATE.get());
+    parser.addArgument(resourceTemplate);
+
+
+    modifyTemplate = new StringArgument(
+        null, "modifyTemplate", false, 1,
+        INFO_MOD_RATE_TOOL_ARG_PLACEHOLDER_TEMPLATE.get(),
+        INFO_MOD_RATE_TOOL_ARG_DESC_MODIFY_TEMPLATE.get());
+    parser.addArgument(modifyTemplate);
+
+
+    resourceId = new StringArgument(
+        'd', "resourceID", false, 1,
+        INFO_QUERY_TOOL_ARG_PLACEHOLDER_RESOURCE_ID.get(),
+        INFO_MOD_RATE_TOOL_ARG_DESC_RESOURCE_ID.get());
+    parser.addArgument(resourceId);
+
+
+    createWeight = new IntegerArgument(
+        null, "createWeight", false, 1,
+        INFO_MOD_RATE_TOOL_ARG_PLACEHOLDER_WEIGHT.get(),
+        INFO_MOD_RATE_TOOL_ARG_DESC_CREATE_WEIGHT.get(),
+        0, Integer.MAX_VALUE);
+    parser.addArgument(createWeight);
+
+    replaceWeight = new IntegerArgument(
+        null, "replaceWeight", false, 1,
+        INFO_MOD_RATE_TOOL_ARG_PLACEHOLDER_WEIGHT.get(),
+        INFO_MOD_RATE_TOOL_ARG_DESC_REPLACE_WEIGHT.get(),
+        0, Integer.MAX_VALUE);
+    parser.addArgument(replaceWeight);
+
+    modifyWeight = new IntegerArgument(
+        null, "modifyWeight", false, 1,
+        INFO_MOD_RATE_TOOL_ARG_PLACEHOLDER_WEIGHT.get(),
+        INFO_MOD_RATE_TOOL_ARG_DESC_MODIFY_WEIGHT.get(),
+        0, Integer.MAX_VALUE);
+    parser.addArgument(modifyWeight);
+
+    deleteWeight = new IntegerArgument(
+        null, "deleteWeight", false, 1,
+        INFO_MOD_RATE_TOOL_ARG_PLACEHOLDER_WEIGHT.get(),
+        INFO_MOD_RATE_TOOL_ARG_DESC_DELETE_WEIGHT.get(),
+        0, Integer.MAX_VALUE);
+    parser.addArgument(deleteWeight);
+
+    getWeight = new IntegerArgument(
+        null, "getWeight", false, 1,
+        INFO_MOD_RATE_TOOL_ARG_PLACEHOLDER_WEIGHT.get(),
+        INFO_MOD_RATE_TOOL_ARG_DESC_GET_WEIGHT.get(),
+        0, Integer.MAX_VALUE);
+    parser.addArgument(getWeight);
+
+    bulkWeight = new IntegerArgument(
+        null, "bulkWeight", false, 1,
+        INFO_MOD_RATE_TOOL_ARG_PLACEHOLDER_WEIGHT.get(),
+        INFO_MOD_RATE_TOOL_ARG_DESC_BULK_WEIGHT.get(),
+        0, Integer.MAX_VALUE);
+    parser.addArgument(bulkWeight);
+
+    bulkSize = new IntegerArgument(
+        null, "bulkSize", true, 1,
+        INFO_MOD_RATE_TOOL_ARG_PLACEHOLDER_BULK_SIZE.get(),
+        INFO_MOD_RATE_TOOL_ARG_DESC_BULK_SIZE.get(),
+        1, Integer.MAX_VALUE, 10);
+    parser.addArgument(bulkSize);
+
+
+    numThreads = new IntegerArgument(
+        't', "numThreads", true, 1,
+        INFO_QUERY_TOOL_ARG_PLACEHOLDER_NUM_THREADS.get(),
+        INFO_MOD_RATE_TOOL_ARG_DESC_NUM_THREADS.get(),
+        1, Integer.MAX_VALUE, 1);
+    parser.addArgument(numThreads);
+
+
+    collectionInterval = new IntegerArgument(
+        'i', "intervalDuration", true, 1,
+        INFO_QUERY_TOOL_ARG_PLACEHOLDER_INTERVAL_DURATION.get(),
+        INFO_QUERY_TOOL_ARG_DESC_INTERVAL_DURATION.get(), 1,
+        Integer.MAX_VALUE, 5);
+    parser.addArgument(collectionInterval);
+
+
+    numIntervals = new IntegerArgument(
+        'I', "numIntervals", true, 1,
+        INFO_QUERY_TOOL_ARG_PLACEHOLDER_NUM_INTERVALS.get(),
+        INFO_QUERY_TOOL_ARG_DESC_NUM_INTERVALS.get(),
+        1, Integer.MAX_VALUE,
+        Integer.MAX_VALUE);
+    parser.addArgument(numIntervals);
+
+    ratePerSecond = new IntegerArgument(
+        'r', "ratePerSecond", false, 1,
+        INFO_MOD_RATE_TOOL_ARG_PLACEHOLDER_RATE_PER_SECOND.get(),
+        INFO_MOD_RATE_TOOL_ARG_DESC_RATE_PER_SECOND.get(),
+        1, Integer.MAX_VALUE);
+    parser.addArgument(ratePerSecond);
+
+    correctCoordinatedOmission = new BooleanArgument(
+        null, "correctCoordinatedOmission", 1,
+        INFO_QUERY_TOOL_ARG_DESC_CORRECT_COORDINATED_OMISSION.get());
+    parser.addArgument(correctCoordinatedOmission);
+
+    warmUpIntervals = new IntegerArgument(
+        null, "warmUpIntervals", true, 1,
+        INFO_QUERY_TOOL_ARG_PLACEHOLDER_WARM_UP_INTERVALS.get(),
+        INFO_QUERY_TOOL_ARG_DESC_WARM_UP_INTERVALS.get(),
+        0, Integer.MAX_VALUE, 0);
+    parser.addArgument(warmUpIntervals);
+
+    final LinkedHashSet<String> allowedFormats = new LinkedHashSet<String>(3);
+    allowedFormats.add("none");
+    allowedFormats.add("with-date");
+    allowedFormats.add("without-date");
+    timestampFormat = new StringArgument(
+        null, "timestampFormat", true, 1,
+        INFO_QUERY_TOOL_ARG_PLACEHOLDER_TIMESTAMP_FORMAT.get(),
+        INFO_QUERY_TOOL_ARG_DESC_TIMESTAMP_FORMAT.get(),
+        allowedFormats, "none");
+    parser.addArgument(timestampFormat);
+
+    csvFormat = new BooleanArgument(
+        'c', "csv", 1,
+        INFO_QUERY_TOOL_ARG_DESC_CSV_FORMAT.get());
+    parser.addArgument(csvFormat);
+
+    randomSeed = new IntegerArgument(
+        'R', "randomSeed", false, 1,
+        INFO_QUERY_TOOL_ARG_PLACEHOLDER_RANDOM_SEED.get(),
+        INFO_QUERY_TOOL_ARG_DESC_RANDOM_SEED.get());
+    parser.addArgument(randomSeed);
+
+    parser.addDependentArgumentSet(correctCoordinatedOmission, ratePerSecond);
+    parser.addDependentArgumentSet(bulkSize, bulkWeight);
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override()
+  public LinkedHashMap<String[],String> getExampleUsages()
+  {
+    final LinkedHashMap<String[],String> examples =
+         new LinkedHashMap<String[],String>();
+
+    final String[] args1 =
+    {
+      "--hostname", "server.example.com",
+      "--port", "80",
+      "--authID", "admin",
+      "--authPassword", "password",
+      "--resourceTemplate",
+      "{\"userName\":\"load.[1-1000000]\"," +
+          "\"name\":{\"familyName\":\"Load\",\"givenName\":\"Test\"}}",
+      "--resourceID", "uid=user.[1-1000000],ou=people,dc=example,dc=com",
+      "--createWeight", "1",
+      "--deleteWeight", "1",
+      "--replaceWeight", "2",
+      "--getWeight", "6",
+      "--numThreads", "8"
+    };
+    examples.put(args1, INFO_MOD_RATE_TOOL_EXAMPLE_1.get());
+
+    return examples;
+  }
+
+
+
+  /**
+   * Performs the actual processing for this tool.  In this case, it gets a
+   * connection to the SCIM server and uses it to perform the requested
+   * writes.
+   *
+   * @return  The result code for the processing that was performed.
+   */
+  @Override()
+  public ResultCode doToolProcessing()
+  {
+    //Initalize the Debugger
+    Debug.setEnabled(true);
+    Debug.getLogger().addHandler(new ConsoleHandler());
+    Debug.getLogger().setUseParentHandlers(false);
+
+    // Determine the random seed to use.
+    final Long seed;
+    if (randomSeed.isPresent())
+    {
+      seed = Long.valueOf(randomSeed.getValue());
+    }
+    else
+    {
+      seed = null;
+    }
+
+    // Determine the weight of each request type.  If no weights were
+    // provided, then only create requests are performed.
+    final int[] weights = new int[OperationType.values().length];
+    weights[OperationType.CREATE.ordinal()]  = getWeightValue(createWeight);
+    weights[OperationType.REPLACE.ordinal()] = getWeightValue(replaceWeight);
+    weights[OperationType.MODIFY.ordinal()]  = getWeightValue(modifyWeight);
+    weights[OperationType.DELETE.ordinal()]  = getWeightValue(deleteWeight);
+    weights[OperationType.GET.ordinal()]     = getWeightValue(getWeight);
+    weights[OperationType.BULK.ordinal()]    = getWeightValue(bulkWeight);
+
+    int totalWeight = 0;
+    int bulkOperationWeight = 0;
+    for (final OperationType t : OperationType.values())
+    {
+      totalWeight += weights[t.ordinal()];
+      if (ModRateThread.isBulkOperationType(t))
+      {
+        bulkOperationWeight += weights[t.ordinal()];
+      }
+    }
+    if (totalWeight == 0)
+    {
+      weights[OperationType.CREATE.ordinal()] = 1;
+      bulkOperationWeight = 1;
+    }
+
+    if (weights[OperationType.BULK.ordinal()] > 0 && bulkOperationWeight == 0)
+    {
+      err(ERR_MOD_RATE_TOOL_NO_BULK_OPERATIONS.get());
+      return ResultCode.PARAM_ERROR;
+    }
+
+    // Create the value patterns for the templates and resource IDs.
+    final ValuePattern resourcePattern;
+    final ValuePattern modifyPattern;
+    final ValuePattern resourceIdPattern;
+    final String sampleResource;
+    final String sampleModify;
+    try
+    {
+      resourcePattern = new ValuePattern(resourceTemplate.getValue(), seed);
+      sampleResource =
+          new ValuePattern(resourceTemplate.getValue()).nextValue();
+      if (modifyTemplate.isPresent())
+      {
+        modifyPattern = new ValuePattern(modifyTemplate.getValue(), seed);
+        sampleModify = new ValuePattern(modifyTemplate.getValue()).nextValue();
+      }
+      else
+      {
+        modifyPattern = resourcePattern;
+        sampleModify = sampleResource;
+      }
+    }
+    catch (ParseException pe)
+    {
+      Debug.debugException(pe);
+      err(ERR_MOD_RATE_TOOL_BAD_TEMPLATE.get(pe.getMessage()));
+      return ResultCode.PARAM_ERROR;
+    }
+
+    if (resourceId.isPresent())
+    {
+      try
+      {
+        resourceIdPattern = new ValuePattern(resourceId.getValue(), seed);
+      }
+      catch (ParseException pe)
+      {
+        Debug.debugException(pe);
+        err(ERR_QUERY_TOOL_BAD_RESOURCE_ID_PATTERN.get(pe.getMessage()));
+        return ResultCode.PARAM_ERROR;
+      }
+    }
+    else if (weights[OperationType.REPLACE.ordinal()] > 0 ||
+             weights[OperationType.MODIFY.ordinal()] > 0 ||
+             weights[OperationType.GET.ordinal()] > 0)
+    {
+      err(ERR_MOD_RATE_TOOL_RESOURCE_ID_REQUIRED.get());
+      return ResultCode.PARAM_ERROR;
+    }
+    else
+    {
+      resourceIdPattern = null;
+    }
+
+
+    // If the --ratePerSecond option was specified, then limit the rate
+    // accordingly.
+    FixedRateBarrier fixedRateBarrier = null;
+    if (ratePerSecond.isPresent())
+    {
+      final int intervalSeconds = collectionInterval.getValue();
+      final int ratePerInterval = ratePerSecond.getValue() * intervalSeconds;
+
+      fixedRateBarrier =
+           new FixedRateBarrier(1000L * intervalSeconds, ratePerInterval);
+    }
+
+
+    // If durations are to be corrected for coordinated omission, then
+    // determine the interval at which each thread is expected to issue
+    // requests at the target rate.
+    final long expectedIntervalNanos;
+    if (correctCoordinatedOmission.isPresent())
+    {
+      expectedIntervalNanos =
+           1000000000L * numThreads.getValue() / ratePerSecond.getValue();
+    }
+    else
+    {
+      expectedIntervalNanos = 0L;
+    }
+
+
+    // Determine whether to include timestamps in the output and if so what
+    // format should be used for them.
+    final boolean includeTimestamp;
+    final String timeFormat;
+    if (timestampFormat.getValue().equalsIgnoreCase("with-date"))
+    {
+      includeTimestamp = true;
+      timeFormat       = "dd/MM/yyyy HH:mm:ss";
+    }
+    else if (timestampFormat.getValue().equalsIgnoreCase("without-date"))
+    {
+      includeTimestamp = true;
+      timeFormat       = "HH:mm:ss";
+    }
+    else
+    {
+      includeTimestamp = false;
+      timeFormat       = null;
+    }
+
+
+    // Determine the request types to report.  Creates are also reported when
+    // deletes are performed, since a create is performed when there is no
+    // resource to delete.
+    final List<OperationType> reportedTypes = new ArrayList<OperationType>();
+    for (final OperationType t : OperationType.values())
+    {
+      if (weights[t.ordinal()] > 0 ||
+          (t == OperationType.CREATE &&
+           weights[OperationType.DELETE.ordinal()] > 0))
+      {
+        reportedTypes.add(t);
+      }
+    }
+
+
+    // Create the table that will be used to format the output.
+    final OutputFormat outputFormat;
+    if (csvFormat.isPresent())
+    {
+      outputFormat = OutputFormat.CSV;
+    }
+    else
+    {
+      outputFormat = OutputFormat.COLUMNS;
+    }
+
+    final List<FormattableColumn> columns = new ArrayList<FormattableColumn>();
+    for (final OperationType t : reportedTypes)
+    {
+      columns.add(new FormattableColumn(12, HorizontalAlignment.RIGHT,
+          t.getDisplayName(), "Req/Sec"));
+      columns.add(new FormattableColumn(12, HorizontalAlignment.RIGHT,
+          t.getDisplayName(), "Avg Dur ms"));
+      columns.add(new FormattableColumn(10, HorizontalAlignment.RIGHT,
+          t.getDisplayName(), "P99 ms"));
+    }
+    columns.add(new FormattableColumn(12, HorizontalAlignment.RIGHT, "Recent",
+        "Errors/Sec"));
+    columns.add(new FormattableColumn(12, HorizontalAlignment.RIGHT, "Overall",
+        "Req/Sec"));
+
+    final ColumnFormatter formatter = new ColumnFormatter(includeTimestamp,
+         timeFormat, outputFormat, " ",
+         columns.toArray(new FormattableColumn[columns.size()]));
+
+
+    // Create values to use for statistics collection.
+    final int numTypes = OperationType.values().length;
+    final AtomicLong[] operationCounters = new AtomicLong[numTypes];
+    final AtomicLong[] operationDurations = new AtomicLong[numTypes];
+    for (int i = 0; i < numTypes; i++)
+    {
+      operationCounters[i]  = new AtomicLong(0L);
+      operationDurations[i] = new AtomicLong(0L);
+    }
+    final AtomicLong errorCounter = new AtomicLong(0L);
+
+
+    // Determine the length of each interval in milliseconds.
+    final long intervalMillis = 1000L * collectionInterval.getValue();
+
+
+    final SCIMService service;
+    try
+    {
+      service = connectionArgs.createService(numThreads.getValue());
+    }
+    catch (LDAPException e)
+    {
+      debugException(e);
+      err(e.getMessage());
+      return e.getResultCode();
+    }
+
+    // Retrieve the resource schema.
+    final ResourceDescriptor resourceDescriptor;
+    try
+    {
+      resourceDescriptor =
+        service.getResourceDescriptor(resourceName.getValue(), null);
+      if(resourceDescriptor == null)
+      {
+        throw new ResourceNotFoundException("Resource " +
+            resourceName.getValue() +
+            " is not defined by the service provider");
+      }
+    }
+    catch (SCIMException e)
+    {
+      Debug.debugException(e);
+      err(ERR_QUERY_TOOL_RETRIEVE_RESOURCE_SCHEMA.get(e.getMessage()));
+      connectionArgs.shutdown();
+      return ResultCode.OTHER;
+    }
+
+    // Make sure that the templates produce valid resources before starting.
+    try
+    {
+      ModRateThread.createResource(sampleResource, resourceDescriptor);
+      ModRateThread.createResource(sampleModify, resourceDescriptor);
+    }
+    catch (SCIMException e)
+    {
+      Debug.debugException(e);
+      err(ERR_MOD_RATE_TOOL_BAD_TEMPLATE.get(e.getMessage()));
+      connectionArgs.shutdown();
+      return ResultCode.PARAM_ERROR;
+    }
+
+    final SCIMEndpoint<BaseResource> endpoint =
+        service.getEndpoint(resourceDescriptor,
+            BaseResource.BASE_RESOURCE_FACTORY);
+
+    // Create the threads to use for the requests.
+    final CyclicBarrier barrier = new CyclicBarrier(numThreads.getValue() + 1);
+    final ModRateThread[] threads = new ModRateThread[numThreads.getValue()];
+    for (int i=0; i < threads.length; i++)
+    {
+      threads[i] =
+          new ModRateThread(i, service, endpoint, resourceDescriptor,
+              resourcePattern, modifyPattern, resourceIdPattern, weights,
+              bulkSize.getValue(), seed, barrier, operationCounters,
+              operationDurations, errorCounter, fixedRateBarrier,
+              expectedIntervalNanos);
+      threads[i].start();
+    }
+
+
+    // Display the table header.
+    for (final String headerLine : formatter.getHeaderLines(true))
+    {
+      out(headerLine);
+    }
+
+
+    // Indicate that the threads can start running.
+    try
+    {
+      barrier.await();
+    }
+    catch (Exception e)
+    {
+      Debug.debugException(e);
+    }
+    long overallStartTime = System.nanoTime();
+    long nextIntervalStartTime = System.currentTimeMillis() + intervalMillis;
+
+
+    int remainingWarmUpIntervals = warmUpIntervals.getValue();
+    final long totalIntervals =
+        0L + numIntervals.getValue() + remainingWarmUpIntervals;
+    boolean setOverallStartTime = false;
+    long    lastNumErrors       = 0L;
+    long    lastEndTime         = System.nanoTime();
+    final long[] lastCounts    = new long[numTypes];
+    final long[] lastDurations = new long[numTypes];
+    final long[] baseCounts    = new long[numTypes];
+    final long[] baseDurations = new long[numTypes];
+    LatencyHistogram[] lastHistograms = new LatencyHistogram[numTypes];
+    LatencyHistogram[] baseHistograms = new LatencyHistogram[numTypes];
+    for (int i = 0; i < numTypes; i++)
+    {
+      lastHistograms[i] = new LatencyHistogram();
+      baseHistograms[i] = lastHistograms[i];
+    }
+    for (long i=0; i < totalIntervals; i++)
+    {
+      final long startTimeMillis = System.currentTimeMillis();
+      final long sleepTimeMillis = nextIntervalStartTime - startTimeMillis;
+      nextIntervalStartTime += intervalMillis;
+      try
+      {
+        if (sleepTimeMillis > 0)
+        {
+          Thread.sleep(sleepTimeMillis);
+        }
+      }
+      catch (Exception e)
+      {
+        Debug.debugException(e);
+      }
+
+      final long endTime          = System.nanoTime();
+      final long intervalDuration = endTime - lastEndTime;
+      final double numSeconds = intervalDuration / 1000000000.0d;
+
+      // The counters and histograms are never reset, so the values for the
+      // interval are the differences from those at the end of the last one.
+      final LatencyHistogram[] histograms = mergeHistograms(threads);
+      final List<Object> row = new ArrayList<Object>();
+      long totalCount = 0L;
+      for (final OperationType t : reportedTypes)
+      {
+        final int index = t.ordinal();
+        final long count = operationCounters[index].get();
+        final long duration = operationDurations[index].get();
+        final long recentCount = count - lastCounts[index];
+        final long recentDuration = duration - lastDurations[index];
+        final LatencyHistogram recentHistogram = histograms[index].copy();
+        recentHistogram.subtract(lastHistograms[index]);
+
+        row.add(recentCount / numSeconds);
+        if (recentCount > 0L)
+        {
+          row.add(1.0d * recentDuration / recentCount / 1000000);
+        }
+        else
+        {
+          row.add(0.0d);
+        }
+        row.add(getMillisAtPercentile(recentHistogram, 99.0d));
+
+        totalCount += count - baseCounts[index];
+        lastCounts[index] = count;
+        lastDurations[index] = duration;
+      }
+      lastHistograms = histograms;
+
+      final long numErrors = errorCounter.get();
+      row.add((numErrors - lastNumErrors) / numSeconds);
+      lastNumErrors = numErrors;
+
+      if (remainingWarmUpIntervals > 0)
+      {
+        row.add("warming up");
+        out(formatter.formatRow(row.toArray()));
+
+        remainingWarmUpIntervals--;
+        if (remainingWarmUpIntervals == 0)
+        {
+          out(INFO_QUERY_TOOL_WARM_UP_COMPLETED.get());
+          setOverallStartTime = true;
+          baseHistograms = histograms;
+          System.arraycopy(lastCounts, 0, baseCounts, 0, numTypes);
+          System.arraycopy(lastDurations, 0, baseDurations, 0, numTypes);
+        }
+      }
+      else
+      {
+        if (setOverallStartTime)
+        {
+          overallStartTime    = lastEndTime;
+          setOverallStartTime = false;
+        }
+
+        final double numOverallSeconds =
+             (endTime - overallStartTime) / 1000000000.0d;
+        row.add(totalCount / numOverallSeconds);
+        out(formatter.formatRow(row.toArray()));
+      }
+
+      lastEndTime = endTime;
+    }
+
+
+    // Stop all of the threads.
+    ResultCode resultCode = ResultCode.SUCCESS;
+    for (final ModRateThread t : threads)
+    {
+      t.signalShutdown();
+    }
+
+    // Display the overall statistics for each request type.
+    final double numOverallSeconds =
+         (lastEndTime - overallStartTime) / 1000000000.0d;
+    for (final OperationType t : reportedTypes)
+    {
+      final int index = t.ordinal();
+      final long count = lastCounts[index] - baseCounts[index];
+      final long duration = lastDurations[index] - baseDurations[index];
+      final LatencyHistogram histogram = lastHistograms[index].copy();
+      histogram.subtract(baseHistograms[index]);
+
+      final double avgDuration;
+      if (count > 0L)
+      {
+        avgDuration = 1.0d * duration / count / 1000000;
+      }
+      else
+      {
+        avgDuration = 0.0d;
+      }
+
+      out(INFO_MOD_RATE_TOOL_SUMMARY.get(t.getDisplayName(), count,
+          String.format("%.1f", count / numOverallSeconds),
+          String.format("%.3f", avgDuration),
+          String.format("%.3f", getMillisAtPercentile(histogram, 95.0d)),
+          String.format("%.3f", getMillisAtPercentile(histogram, 99.0d)),
+          String.format("%.3f", getMillisAtPercentile(histogram, 99.9d))));
+    }
+
+    // Interrupt any blocked threads after a grace period.
+    final WakeableSleeper sleeper = new WakeableSleeper();
+    sleeper.sleep(1000);
+    connectionArgs.shutdown();
+
+    for (final ModRateThread t : threads)
+    {
+      final ResultCode r = t.waitForShutdown();
+      if (resultCode == ResultCode.SUCCESS)
+      {
+        resultCode = r;
+      }
+    }
+
+    return resultCode;
+  }
+
+
+
+  /**
+   * Retrieves the value of a request weight argument.
+   *
+   * @param  argument  The request weight argument.
+   *
+   * @return  The value of the argument, or zero if it was not provided.
+   */
+  private static int getWeightValue(final IntegerArgument argument)
+  {
+    if (argument.isPresent())
+    {
+      return argument.getValue();
+    }
+    return 0;
+  }
+
+
+
+  /**
+   * Merges the histograms of request durations for all of the threads.
+   *
+   * @param  threads  The threads performing the requests.
+   *
+   * @return  The merged histograms, indexed by the ordinal of the request
+   *          type.
+   */
+  private static LatencyHistogram[] mergeHistograms(
+      final ModRateThread[] threads)
+  {
+    final LatencyHistogram[] histograms =
+        new LatencyHistogram[OperationType.values().length];
+    for (int i = 0; i < histograms.length; i++)
+    {
+      histograms[i] = new LatencyHistogram();
+      for (final ModRateThread t : threads)
+      {
+        histograms[i].add(t.getLatencyHistograms()[i]);
+      }
+    }
+    return histograms;
+  }
+
+
+
+  /**
+   * Retrieves the duration at the given percentile from a histogram of
+   * durations in nanoseconds.
+   *
+   * @param  histogram   The histogram of durations in nanoseconds.
+   * @param  percentile  The percentile, between 0 and 100.
+   *
+   * @return  The duration at the given percentile in milliseconds.
+   */
+  private static double getMillisAtPercentile(final LatencyHistogram histogram,
+                                              final double percentile)
+  {
+    return histogram.getValueAtPercentile(percentile) / 1000000.0d;
+  }
+}
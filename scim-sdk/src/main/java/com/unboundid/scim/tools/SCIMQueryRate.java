@@ -22,6 +22,7 @@ import com.unboundid.ldap.sdk.ResultCode;
 import com.unboundid.scim.data.BaseResource;
 import com.unboundid.scim.schema.ResourceDescriptor;
 import com.unboundid.scim.sdk.Debug;
+import com.unboundid.scim.sdk.LatencyHistogram;
 import com.unboundid.scim.sdk.ResourceNotFoundException;
 import com.unboundid.scim.sdk.SCIMEndpoint;
 import com.unboundid.scim.sdk.SCIMException;
@@ -37,41 +38,10 @@ import com.unboundid.util.WakeableSleeper;
 import com.unboundid.util.args.ArgumentException;
 import com.unboundid.util.args.ArgumentParser;
 import com.unboundid.util.args.BooleanArgument;
-import com.unboundid.util.args.FileArgument;
 import com.unboundid.util.args.IntegerArgument;
 import com.unboundid.util.args.StringArgument;
-import com.unboundid.util.ssl.KeyStoreKeyManager;
-import com.unboundid.util.ssl.PromptTrustManager;
-import com.unboundid.util.ssl.SSLUtil;
-import com.unboundid.util.ssl.TrustAllTrustManager;
-import com.unboundid.util.ssl.TrustStoreTrustManager;
-
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.config.RequestConfig;
-import org.apache.http.config.Registry;
-import org.apache.http.config.RegistryBuilder;
-import org.apache.http.config.SocketConfig;
-import org.apache.http.conn.socket.ConnectionSocketFactory;
-import org.apache.http.conn.socket.PlainConnectionSocketFactory;
-import org.apache.http.conn.ssl.NoopHostnameVerifier;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
-import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
-import org.glassfish.jersey.apache.connector.ApacheClientProperties;
-import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
-import org.glassfish.jersey.client.ClientConfig;
-
-import javax.net.ssl.KeyManager;
-import javax.net.ssl.TrustManager;
-import javax.ws.rs.client.ClientRequestContext;
-import javax.ws.rs.client.ClientRequestFilter;
-import javax.ws.rs.core.MediaType;
-import java.io.IOException;
+
 import java.io.OutputStream;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.security.GeneralSecurityException;
 import java.text.ParseException;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
@@ -79,13 +49,11 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.ConsoleHandler;
 
 import static com.unboundid.scim.sdk.Debug.debugException;
 import static com.unboundid.util.StaticUtils.NO_STRINGS;
 import static com.unboundid.scim.tools.ToolMessages.*;
-import static com.unboundid.util.StaticUtils.getExceptionMessage;
 
 /**
  * This class provides a tool that can be used to query a SCIM server repeatedly
@@ -142,6 +110,10 @@ import static com.unboundid.util.StaticUtils.getExceptionMessage;
  *       is still necessary to specify a sufficient number of threads for
  *       achieving this rate.  If this option is not provided, then the tool
  *       will run at the maximum rate for the specified number of threads.</LI>
+ *   <LI>"--correctCoordinatedOmission" -- indicates that the reported
+ *       percentiles should be corrected for queries that could not be issued
+ *       at the target rate because an earlier query was still outstanding.
+ *       This may only be used with the "--ratePerSecond" argument.</LI>
  *   <LI>"--warmUpIntervals {num}" -- specifies the number of intervals to
  *       complete before beginning overall statistics collection.</LI>
  *   <LI>"--timestampFormat {format}" -- specifies the format to use for
@@ -156,32 +128,12 @@ public class SCIMQueryRate
     extends CommandLineTool
 {
   // Arguments used to communicate with a SCIM server.
-  private FileArgument    authPasswordFile;
-  private IntegerArgument port;
-  private StringArgument  authID;
-  private StringArgument  authPassword;
-  private StringArgument  bearerToken;
-  private StringArgument  contextPath;
-  private StringArgument  host;
-  private BooleanArgument trustAll;
-  private BooleanArgument useSSL;
-  private FileArgument    keyStorePasswordFile;
-  private FileArgument    trustStorePasswordFile;
-  private StringArgument  certificateNickname;
-  private StringArgument  keyStoreFormat;
-  private StringArgument  keyStorePath;
-  private StringArgument  keyStorePassword;
-  private StringArgument  trustStoreFormat;
-  private StringArgument  trustStorePath;
-  private StringArgument  trustStorePassword;
+  private final ConnectionArguments connectionArgs =
+      new ConnectionArguments();
 
   // The argument used to indicate whether to generate output in CSV format.
   private BooleanArgument csvFormat;
 
-  // The argument used to indicate whether to use XML format in requests rather
-  // than JSON format.
-  private BooleanArgument xmlFormat;
-
   // The argument used to specify the collection interval.
   private IntegerArgument collectionInterval;
 
@@ -198,6 +150,10 @@ public class SCIMQueryRate
   // The target rate of searches per second.
   private IntegerArgument ratePerSecond;
 
+  // The argument used to indicate whether query durations should be corrected
+  // for coordinated omission.
+  private BooleanArgument correctCoordinatedOmission;
+
   // The number of warm-up intervals to perform.
   private IntegerArgument warmUpIntervals;
 
@@ -216,13 +172,6 @@ public class SCIMQueryRate
   // The argument used to specify the timestamp format.
   private StringArgument timestampFormat;
 
-  // The prompt trust manager that will be shared by all connections created
-  // for which it is appropriate.  This will allow them to benefit from the
-  // common cache.
-  private final AtomicReference<PromptTrustManager> promptTrustManager =
-      new AtomicReference<PromptTrustManager>();
-
-
   /**
    * Parse the provided command line arguments and make the appropriate set of
    * changes.
@@ -315,56 +264,7 @@ public class SCIMQueryRate
   public void addToolArguments(final ArgumentParser parser)
          throws ArgumentException
   {
-    host = new StringArgument(
-        'h', "hostname", true, 1,
-        INFO_QUERY_TOOL_ARG_PLACEHOLDER_HOSTNAME.get(),
-        INFO_QUERY_TOOL_ARG_DESC_HOSTNAME.get(),
-        "localhost");
-    parser.addArgument(host);
-
-
-    port = new IntegerArgument(
-        'p', "port", true, 1,
-        INFO_QUERY_TOOL_ARG_PLACEHOLDER_PORT.get(),
-        INFO_QUERY_TOOL_ARG_DESC_PORT.get(),
-        1, 65535, 80);
-    parser.addArgument(port);
-
-
-    contextPath = new StringArgument(null, "contextPath", false, 1,
-         INFO_QUERY_TOOL_ARG_PLACEHOLDER_CONTEXT_PATH.get(),
-         INFO_QUERY_TOOL_ARG_DESC_CONTEXT_PATH.get(),
-         Arrays.asList("/"));
-    parser.addArgument(contextPath);
-
-
-    authID = new StringArgument(
-        null, "authID", false, 1,
-        INFO_QUERY_TOOL_ARG_PLACEHOLDER_AUTHID.get(),
-        INFO_QUERY_TOOL_ARG_DESC_AUTHID.get());
-    parser.addArgument(authID);
-
-
-    authPassword = new StringArgument(
-        'w', "authPassword", false, 1,
-        INFO_QUERY_TOOL_ARG_PLACEHOLDER_AUTH_PASSWORD.get(),
-        INFO_QUERY_TOOL_ARG_DESC_AUTH_PASSWORD.get());
-    parser.addArgument(authPassword);
-
-
-    bearerToken = new StringArgument(
-            null, "bearerToken", false, 1,
-            INFO_QUERY_TOOL_ARG_PLACEHOLDER_BEARER_TOKEN.get(),
-            INFO_QUERY_TOOL_ARG_DESC_BEARER_TOKEN.get());
-    parser.addArgument(bearerToken);
-
-
-    authPasswordFile = new FileArgument(
-        'j', "authPasswordFile", false, 1,
-        INFO_QUERY_TOOL_ARG_PLACEHOLDER_AUTH_PASSWORD_FILE.get(),
-        INFO_QUERY_TOOL_ARG_DESC_AUTH_PASSWORD_FILE.get(),
-        true, true, true, false);
-    parser.addArgument(authPasswordFile);
+    connectionArgs.addArguments(parser);
 
 
     resourceName = new StringArgument(
@@ -375,11 +275,6 @@ public class SCIMQueryRate
     parser.addArgument(resourceName);
 
 
-    xmlFormat = new BooleanArgument(
-        'x', "xml", 1,
-        INFO_QUERY_TOOL_ARG_DESC_XML_FORMAT.get());
-    parser.addArgument(xmlFormat);
-
     filter = new StringArgument(
         'f', "filter", false, 1,
         INFO_QUERY_TOOL_ARG_PLACEHOLDER_FILTER.get(),
@@ -432,6 +327,11 @@ public class SCIMQueryRate
         1, Integer.MAX_VALUE);
     parser.addArgument(ratePerSecond);
 
+    correctCoordinatedOmission = new BooleanArgument(
+        null, "correctCoordinatedOmission", 1,
+        INFO_QUERY_TOOL_ARG_DESC_CORRECT_COORDINATED_OMISSION.get());
+    parser.addArgument(correctCoordinatedOmission);
+
     warmUpIntervals = new IntegerArgument(
         null, "warmUpIntervals", true, 1,
         INFO_QUERY_TOOL_ARG_PLACEHOLDER_WARM_UP_INTERVALS.get(),
@@ -461,66 +361,8 @@ public class SCIMQueryRate
         INFO_QUERY_TOOL_ARG_DESC_RANDOM_SEED.get());
     parser.addArgument(randomSeed);
 
-    useSSL = new BooleanArgument('Z', "useSSL", 1,
-         INFO_SCIM_TOOL_DESCRIPTION_USE_SSL.get());
-    parser.addArgument(useSSL);
-
-    trustAll = new BooleanArgument('X', "trustAll", 1,
-         INFO_SCIM_TOOL_DESCRIPTION_TRUST_ALL.get());
-    parser.addArgument(trustAll);
-
-    keyStorePath = new StringArgument('K', "keyStorePath", false, 1,
-         INFO_SCIM_TOOL_PLACEHOLDER_PATH.get(),
-         INFO_SCIM_TOOL_DESCRIPTION_KEY_STORE_PATH.get());
-    parser.addArgument(keyStorePath);
-
-    keyStorePassword = new StringArgument('W', "keyStorePassword", false, 1,
-         INFO_SCIM_TOOL_PLACEHOLDER_PASSWORD.get(),
-         INFO_SCIM_TOOL_DESCRIPTION_KEY_STORE_PASSWORD.get());
-    parser.addArgument(keyStorePassword);
-
-    keyStorePasswordFile = new FileArgument('u', "keyStorePasswordFile", false,
-         1, INFO_SCIM_TOOL_PLACEHOLDER_PATH.get(),
-         INFO_SCIM_TOOL_DESCRIPTION_KEY_STORE_PASSWORD_FILE.get());
-    parser.addArgument(keyStorePasswordFile);
-
-    keyStoreFormat = new StringArgument(null, "keyStoreFormat", false, 1,
-         INFO_SCIM_TOOL_PLACEHOLDER_FORMAT.get(),
-         INFO_SCIM_TOOL_DESCRIPTION_KEY_STORE_FORMAT.get());
-    parser.addArgument(keyStoreFormat);
-
-    trustStorePath = new StringArgument('P', "trustStorePath", false, 1,
-         INFO_SCIM_TOOL_PLACEHOLDER_PATH.get(),
-         INFO_SCIM_TOOL_DESCRIPTION_TRUST_STORE_PATH.get());
-    parser.addArgument(trustStorePath);
-
-    trustStorePassword = new StringArgument('T', "trustStorePassword", false, 1,
-         INFO_SCIM_TOOL_PLACEHOLDER_PASSWORD.get(),
-         INFO_SCIM_TOOL_DESCRIPTION_TRUST_STORE_PASSWORD.get());
-    parser.addArgument(trustStorePassword);
-
-    trustStorePasswordFile = new FileArgument('U', "trustStorePasswordFile",
-         false, 1, INFO_SCIM_TOOL_PLACEHOLDER_PATH.get(),
-         INFO_SCIM_TOOL_DESCRIPTION_TRUST_STORE_PASSWORD_FILE.get());
-    parser.addArgument(trustStorePasswordFile);
-
-    trustStoreFormat = new StringArgument(null, "trustStoreFormat", false, 1,
-         INFO_SCIM_TOOL_PLACEHOLDER_FORMAT.get(),
-         INFO_SCIM_TOOL_DESCRIPTION_TRUST_STORE_FORMAT.get());
-    parser.addArgument(trustStoreFormat);
-
-    certificateNickname = new StringArgument('N', "certNickname", false, 1,
-         INFO_SCIM_TOOL_PLACEHOLDER_CERT_NICKNAME.get(),
-         INFO_SCIM_TOOL_DESCRIPTION_CERT_NICKNAME.get());
-    parser.addArgument(certificateNickname);
-
-    parser.addDependentArgumentSet(authID, authPassword, authPasswordFile);
-    parser.addExclusiveArgumentSet(authPassword, authPasswordFile, bearerToken);
-    parser.addExclusiveArgumentSet(authID, bearerToken);
-    parser.addExclusiveArgumentSet(keyStorePassword, keyStorePasswordFile);
-    parser.addExclusiveArgumentSet(trustStorePassword, trustStorePasswordFile);
-    parser.addExclusiveArgumentSet(trustAll, trustStorePath);
     parser.addExclusiveArgumentSet(filter, resourceId);
+    parser.addDependentArgumentSet(correctCoordinatedOmission, ratePerSecond);
   }
 
 
@@ -654,6 +496,21 @@ public class SCIMQueryRate
     }
 
 
+    // If durations are to be corrected for coordinated omission, then
+    // determine the interval at which each thread is expected to issue
+    // queries at the target rate.
+    final long expectedIntervalNanos;
+    if (correctCoordinatedOmission.isPresent())
+    {
+      expectedIntervalNanos =
+           1000000000L * numThreads.getValue() / ratePerSecond.getValue();
+    }
+    else
+    {
+      expectedIntervalNanos = 0L;
+    }
+
+
     // Determine whether to include timestamps in the output and if so what
     // format should be used for them.
     final boolean includeTimestamp;
@@ -712,10 +569,22 @@ public class SCIMQueryRate
                   "Resources/Query"),
          new FormattableColumn(15, HorizontalAlignment.RIGHT, "Recent",
                   "Errors/Sec"),
+         new FormattableColumn(10, HorizontalAlignment.RIGHT, "Recent",
+                  "P95 ms"),
+         new FormattableColumn(10, HorizontalAlignment.RIGHT, "Recent",
+                  "P99 ms"),
+         new FormattableColumn(10, HorizontalAlignment.RIGHT, "Recent",
+                  "P99.9 ms"),
          new FormattableColumn(15, HorizontalAlignment.RIGHT, "Overall",
                   "Queries/Sec"),
          new FormattableColumn(15, HorizontalAlignment.RIGHT, "Overall",
-                  "Avg Dur ms"));
+                  "Avg Dur ms"),
+         new FormattableColumn(10, HorizontalAlignment.RIGHT, "Overall",
+                  "P95 ms"),
+         new FormattableColumn(10, HorizontalAlignment.RIGHT, "Overall",
+                  "P99 ms"),
+         new FormattableColumn(10, HorizontalAlignment.RIGHT, "Overall",
+                  "P99.9 ms"));
 
 
     // Create values to use for statistics collection.
@@ -729,11 +598,10 @@ public class SCIMQueryRate
     final long intervalMillis = 1000L * collectionInterval.getValue();
 
 
-    // We will use Apache's HttpClient library for this tool.
-    SSLUtil sslUtil;
+    final SCIMService service;
     try
     {
-      sslUtil = createSSLUtil();
+      service = connectionArgs.createService(numThreads.getValue());
     }
     catch (LDAPException e)
     {
@@ -742,147 +610,6 @@ public class SCIMQueryRate
       return e.getResultCode();
     }
 
-    RegistryBuilder<ConnectionSocketFactory> registryBuilder =
-        RegistryBuilder.create();
-    final String schemeName;
-    if (sslUtil != null)
-    {
-      try
-      {
-        SSLConnectionSocketFactory sslConnectionSocketFactory =
-            new SSLConnectionSocketFactory(sslUtil.createSSLContext("TLS"),
-                new NoopHostnameVerifier());
-        schemeName = "https";
-        registryBuilder.register(schemeName, sslConnectionSocketFactory);
-      }
-      catch (GeneralSecurityException e)
-      {
-        debugException(e);
-        err(ERR_SCIM_TOOL_CANNOT_CREATE_SSL_CONTEXT.get(
-            getExceptionMessage(e)));
-        return ResultCode.LOCAL_ERROR;
-      }
-    }
-    else
-    {
-      schemeName = "http";
-      registryBuilder.register(schemeName, new PlainConnectionSocketFactory());
-    }
-    final Registry<ConnectionSocketFactory> socketFactoryRegistry =
-        registryBuilder.build();
-
-    RequestConfig requestConfig = RequestConfig.custom()
-        .setConnectionRequestTimeout(30000)
-        .setExpectContinueEnabled(true).build();
-
-    SocketConfig socketConfig = SocketConfig.custom()
-        .setSoTimeout(30000)
-        .setSoReuseAddress(true)
-        .build();
-
-    final PoolingHttpClientConnectionManager mgr =
-        new PoolingHttpClientConnectionManager(socketFactoryRegistry);
-    mgr.setMaxTotal(numThreads.getValue());
-    mgr.setDefaultMaxPerRoute(numThreads.getValue());
-    mgr.setDefaultSocketConfig(socketConfig);
-    mgr.setValidateAfterInactivity(-1);
-
-    ClientConfig jerseyConfig = new ClientConfig();
-
-    jerseyConfig.property(ApacheClientProperties.CONNECTION_MANAGER, mgr);
-    jerseyConfig.property(ApacheClientProperties.REQUEST_CONFIG, requestConfig);
-    ApacheConnectorProvider connectorProvider = new ApacheConnectorProvider();
-    jerseyConfig.connectorProvider(connectorProvider);
-
-    if (authID.isPresent())
-    {
-      try
-      {
-        final String password;
-        if (authPassword.isPresent())
-        {
-          password = authPassword.getValue();
-        }
-        else if (authPasswordFile.isPresent())
-        {
-          password = authPasswordFile.getNonBlankFileLines().get(0);
-        }
-        else
-        {
-          password = null;
-        }
-
-        BasicCredentialsProvider provider = new BasicCredentialsProvider();
-        provider.setCredentials(
-            new AuthScope(host.getValue(), port.getValue()),
-            new UsernamePasswordCredentials(authID.getValue(), password)
-        );
-
-        jerseyConfig.property(
-            ApacheClientProperties.CREDENTIALS_PROVIDER, provider);
-        jerseyConfig.property(
-            ApacheClientProperties.PREEMPTIVE_BASIC_AUTHENTICATION, true);
-      }
-      catch (IOException e)
-      {
-        Debug.debugException(e);
-        err(ERR_QUERY_TOOL_SET_BASIC_AUTH.get(e.getMessage()));
-        return ResultCode.LOCAL_ERROR;
-      }
-    }
-    else if (bearerToken.isPresent())
-    {
-      jerseyConfig.register(
-          new ClientRequestFilter()
-          {
-            public void filter(final ClientRequestContext clientRequestContext)
-                throws IOException
-            {
-              try
-              {
-                clientRequestContext.getHeaders().add(
-                    "Authorization", "Bearer " + bearerToken.getValue());
-              }
-              catch (Exception ex)
-              {
-                throw new RuntimeException(
-                    "Unable to add authorization handler", ex);
-              }
-            }
-          }
-      );
-    }
-
-    // Create the SCIM client to use for the queries.
-    final URI uri;
-    try
-    {
-      final String path;
-      if (contextPath.getValue().startsWith("/"))
-      {
-        path = contextPath.getValue();
-      }
-      else
-      {
-        path = "/" + contextPath.getValue();
-      }
-      uri = new URI(schemeName, null, host.getValue(), port.getValue(),
-                    path, null, null);
-    }
-    catch (URISyntaxException e)
-    {
-      Debug.debugException(e);
-      err(ERR_QUERY_TOOL_CANNOT_CREATE_URL.get(e.getMessage()));
-      return ResultCode.OTHER;
-    }
-    final SCIMService service = new SCIMService(uri, jerseyConfig);
-
-    if (xmlFormat.isPresent())
-    {
-      service.setContentType(MediaType.APPLICATION_XML_TYPE);
-      service.setAcceptType(MediaType.APPLICATION_XML_TYPE);
-    }
-
     // Retrieve the resource schema.
     final ResourceDescriptor resourceDescriptor;
     try
@@ -916,7 +643,7 @@ public class SCIMQueryRate
       threads[i] =
           new QueryRateThread(i, isQuery, endpoint, filterPattern, attrs,
               barrier, queryCounter, resourceCounter, queryDurations,
-              errorCounter, fixedRateBarrier);
+              errorCounter, fixedRateBarrier, expectedIntervalNanos);
       threads[i].start();
     }
 
@@ -947,6 +674,8 @@ public class SCIMQueryRate
     long    lastNumErrors       = 0L;
     long    lastNumSearches     = 0L;
     long    lastEndTime         = System.nanoTime();
+    LatencyHistogram lastHistogram   = new LatencyHistogram();
+    LatencyHistogram overallBaseline = new LatencyHistogram();
     for (long i=0; i < totalIntervals; i++)
     {
       final long startTimeMillis = System.currentTimeMillis();
@@ -991,6 +720,17 @@ public class SCIMQueryRate
       final long recentNumErrors = numErrors - lastNumErrors;
       final long recentDuration = totalDuration - lastDuration;
 
+      // The thread histograms are never reset, so the durations for the
+      // interval are the difference from those at the end of the last one.
+      final LatencyHistogram histogram = new LatencyHistogram();
+      for (final QueryRateThread t : threads)
+      {
+        histogram.add(t.getLatencyHistogram());
+      }
+      final LatencyHistogram recentHistogram = histogram.copy();
+      recentHistogram.subtract(lastHistogram);
+      lastHistogram = histogram;
+
       final double numSeconds = intervalDuration / 1000000000.0d;
       final double recentSearchRate = recentNumSearches / numSeconds;
       final double recentErrorRate  = recentNumErrors / numSeconds;
@@ -1012,7 +752,11 @@ public class SCIMQueryRate
       if (warmUp && (remainingWarmUpIntervals > 0))
       {
         out(formatter.formatRow(recentSearchRate, recentAvgDuration,
-             recentEntriesPerSearch, recentErrorRate, "warming up",
+             recentEntriesPerSearch, recentErrorRate,
+             getMillisAtPercentile(recentHistogram, 95.0d),
+             getMillisAtPercentile(recentHistogram, 99.0d),
+             getMillisAtPercentile(recentHistogram, 99.9d),
+             "warming up", "warming up", "warming up", "warming up",
              "warming up"));
 
         remainingWarmUpIntervals--;
@@ -1020,6 +764,7 @@ public class SCIMQueryRate
         {
           out(INFO_QUERY_TOOL_WARM_UP_COMPLETED.get());
           setOverallStartTime = true;
+          overallBaseline     = histogram;
         }
       }
       else
@@ -1044,9 +789,18 @@ public class SCIMQueryRate
           overallAvgDuration = 0.0d;
         }
 
+        final LatencyHistogram overallHistogram = histogram.copy();
+        overallHistogram.subtract(overallBaseline);
+
         out(formatter.formatRow(recentSearchRate, recentAvgDuration,
-             recentEntriesPerSearch, recentErrorRate, overallSearchRate,
-             overallAvgDuration));
+             recentEntriesPerSearch, recentErrorRate,
+             getMillisAtPercentile(recentHistogram, 95.0d),
+             getMillisAtPercentile(recentHistogram, 99.0d),
+             getMillisAtPercentile(recentHistogram, 99.9d),
+             overallSearchRate, overallAvgDuration,
+             getMillisAtPercentile(overallHistogram, 95.0d),
+             getMillisAtPercentile(overallHistogram, 99.0d),
+             getMillisAtPercentile(overallHistogram, 99.9d)));
 
         lastNumSearches = numSearches;
         lastNumEntries  = numEntries;
@@ -1068,7 +822,7 @@ public class SCIMQueryRate
     // Interrupt any blocked threads after a grace period.
     final WakeableSleeper sleeper = new WakeableSleeper();
     sleeper.sleep(1000);
-    mgr.shutdown();
+    connectionArgs.shutdown();
 
     for (final QueryRateThread t : threads)
     {
@@ -1085,104 +839,17 @@ public class SCIMQueryRate
 
 
   /**
-   * Creates the SSLUtil instance to use for secure communication.
+   * Retrieves the duration at the given percentile from a histogram of
+   * durations in nanoseconds.
    *
-   * @return  The SSLUtil instance to use for secure communication, or
-   *          {@code null} if secure communication is not needed.
+   * @param  histogram   The histogram of durations in nanoseconds.
+   * @param  percentile  The percentile, between 0 and 100.
    *
-   * @throws LDAPException   If a problem occurs while creating the SSLUtil
-   *                         instance.
+   * @return  The duration at the given percentile in milliseconds.
    */
-  private SSLUtil createSSLUtil()
-          throws LDAPException
+  private static double getMillisAtPercentile(final LatencyHistogram histogram,
+                                              final double percentile)
   {
-    if (useSSL.isPresent())
-    {
-      KeyManager keyManager = null;
-      if (keyStorePath.isPresent())
-      {
-        char[] pw = null;
-        if (keyStorePassword.isPresent())
-        {
-          pw = keyStorePassword.getValue().toCharArray();
-        }
-        else if (keyStorePasswordFile.isPresent())
-        {
-          try
-          {
-            pw = keyStorePasswordFile.getNonBlankFileLines().get(0).
-                      toCharArray();
-          }
-          catch (Exception e)
-          {
-            Debug.debugException(e);
-            throw new LDAPException(ResultCode.LOCAL_ERROR,
-                 ERR_SCIM_TOOL_CANNOT_READ_KEY_STORE_PASSWORD.get(
-                      getExceptionMessage(e)), e);
-          }
-        }
-
-        try
-        {
-          keyManager = new KeyStoreKeyManager(keyStorePath.getValue(), pw,
-               keyStoreFormat.getValue(), certificateNickname.getValue());
-        }
-        catch (Exception e)
-        {
-          Debug.debugException(e);
-          throw new LDAPException(ResultCode.LOCAL_ERROR,
-               ERR_SCIM_TOOL_CANNOT_CREATE_KEY_MANAGER.get(
-                    getExceptionMessage(e)), e);
-        }
-      }
-
-      TrustManager trustManager;
-      if (trustAll.isPresent())
-      {
-        trustManager = new TrustAllTrustManager(false);
-      }
-      else if (trustStorePath.isPresent())
-      {
-        char[] pw = null;
-        if (trustStorePassword.isPresent())
-        {
-          pw = trustStorePassword.getValue().toCharArray();
-        }
-        else if (trustStorePasswordFile.isPresent())
-        {
-          try
-          {
-            pw = trustStorePasswordFile.getNonBlankFileLines().get(0).
-                      toCharArray();
-          }
-          catch (Exception e)
-          {
-            Debug.debugException(e);
-            throw new LDAPException(ResultCode.LOCAL_ERROR,
-                 ERR_SCIM_TOOL_CANNOT_READ_TRUST_STORE_PASSWORD.get(
-                      getExceptionMessage(e)), e);
-          }
-        }
-
-        trustManager = new TrustStoreTrustManager(trustStorePath.getValue(), pw,
-             trustStoreFormat.getValue(), true);
-      }
-      else
-      {
-        trustManager = promptTrustManager.get();
-        if (trustManager == null)
-        {
-          final PromptTrustManager m = new PromptTrustManager();
-          promptTrustManager.compareAndSet(null, m);
-          trustManager = promptTrustManager.get();
-        }
-      }
-
-      return new SSLUtil(keyManager, trustManager);
-    }
-    else
-    {
-      return null;
-    }
+    return histogram.getValueAtPercentile(percentile) / 1000000.0d;
   }
 }
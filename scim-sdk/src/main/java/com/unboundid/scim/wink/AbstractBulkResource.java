@@ -117,7 +117,9 @@ public class AbstractBulkResource
         throw new UnauthorizedException("Invalid credentials");
       }
 
-      // Check the Content-Length against the maxPayloadSize.
+      // Check the Content-Length against the maxPayloadSize. The request
+      // content may be compressed, so the size of the decompressed content
+      // is also checked as it is read.
       final ServiceProviderConfig serviceProviderConfig =
           application.getServiceProviderConfig();
       final BulkConfig bulkConfig = serviceProviderConfig.getBulkConfig();
@@ -208,6 +210,10 @@ public class AbstractBulkResource
       {
         throw e;
       }
+      catch (ContentEncodingFilter.DecompressedSizeExceededException e)
+      {
+        throw SCIMException.createException(413, e.getMessage());
+      }
       catch (Exception e)
       {
         Debug.debugException(e);
@@ -226,8 +232,8 @@ public class AbstractBulkResource
       responseBuilder = Response.status(e.getStatusCode());
       setResponseEntity(responseBuilder, requestContext.getProduceMediaType(),
                         e);
-      application.getStatsForResource(RESOURCE_NAME).incrementStat(
-          "post-" + e.getStatusCode());
+      application.getStatsForResource(RESOURCE_NAME).incrementStatusStat(
+          ResourceStats.Operation.POST, e.getStatusCode());
     }
 
     if (requestContext.getProduceMediaType() == MediaType.APPLICATION_JSON_TYPE)
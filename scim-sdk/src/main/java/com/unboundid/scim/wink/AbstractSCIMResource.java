@@ -145,6 +145,7 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
                    final String endpoint, final String userID)
   {
     logIgnoredQueryParams(requestContext, COMMON_REQUEST_PARAMS);
+    final long startTime = System.nanoTime();
 
     SCIMBackend backend;
     ResourceDescriptor resourceDescriptor = null;
@@ -177,11 +178,13 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
       {
         AtomicReference<String> authIDRef = new AtomicReference<String>();
         Response response = validateOAuthToken(requestContext,
-                              getResourceRequest, authIDRef, tokenHandler);
+                              getResourceRequest, authIDRef, tokenHandler,
+                              application.getOAuthTokenCache());
         if (response != null)
         {
           application.getStatsForResource(resourceDescriptor.getName()).
-              incrementStat("get-" + response.getStatus());
+              incrementStatusStat(
+                  ResourceStats.Operation.GET, response.getStatus());
           return response;
         }
         else
@@ -226,7 +229,16 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
       if(resourceDescriptor != null)
       {
         application.getStatsForResource(resourceDescriptor.getName()).
-            incrementStat("get-" + e.getStatusCode());
+            incrementStatusStat(ResourceStats.Operation.GET, e.getStatusCode());
+      }
+    }
+    finally
+    {
+      if(resourceDescriptor != null)
+      {
+        application.getStatsForResource(resourceDescriptor.getName()).
+            recordLatency(ResourceStats.Operation.GET,
+                          System.nanoTime() - startTime);
       }
     }
 
@@ -262,6 +274,7 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
                               final String pageSize)
   {
     logIgnoredQueryParams(requestContext, SEARCH_REQUEST_PARAMS);
+    final long startTime = System.nanoTime();
 
     SCIMBackend backend;
     ResourceDescriptor resourceDescriptor = null;
@@ -376,11 +389,13 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
       {
         AtomicReference<String> authIDRef = new AtomicReference<String>();
         Response response = validateOAuthToken(requestContext,
-                              getResourcesRequest, authIDRef, tokenHandler);
+                              getResourcesRequest, authIDRef, tokenHandler,
+                              application.getOAuthTokenCache());
         if (response != null)
         {
           application.getStatsForResource(resourceDescriptor.getName()).
-              incrementStat("query-" + response.getStatus());
+              incrementStatusStat(
+                  ResourceStats.Operation.QUERY, response.getStatus());
           return response;
         }
         else
@@ -426,7 +441,17 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
       if(resourceDescriptor != null)
       {
         application.getStatsForResource(resourceDescriptor.getName()).
-            incrementStat("query-" + e.getStatusCode());
+            incrementStatusStat(
+                ResourceStats.Operation.QUERY, e.getStatusCode());
+      }
+    }
+    finally
+    {
+      if(resourceDescriptor != null)
+      {
+        application.getStatsForResource(resourceDescriptor.getName()).
+            recordLatency(ResourceStats.Operation.QUERY,
+                          System.nanoTime() - startTime);
       }
     }
 
@@ -448,6 +473,7 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
                     final InputStream inputStream)
   {
     logIgnoredQueryParams(requestContext, COMMON_REQUEST_PARAMS);
+    final long startTime = System.nanoTime();
 
     SCIMBackend backend;
     ResourceDescriptor resourceDescriptor = null;
@@ -501,11 +527,13 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
       {
         AtomicReference<String> authIDRef = new AtomicReference<String>();
         Response response = validateOAuthToken(requestContext,
-                              postResourceRequest, authIDRef, tokenHandler);
+                              postResourceRequest, authIDRef, tokenHandler,
+                              application.getOAuthTokenCache());
         if (response != null)
         {
           application.getStatsForResource(resourceDescriptor.getName()).
-              incrementStat("post-" + response.getStatus());
+              incrementStatusStat(
+                  ResourceStats.Operation.POST, response.getStatus());
           return response;
         }
         else
@@ -547,7 +575,17 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
       if(resourceDescriptor != null)
       {
         application.getStatsForResource(resourceDescriptor.getName()).
-            incrementStat("post-" + e.getStatusCode());
+            incrementStatusStat(
+                ResourceStats.Operation.POST, e.getStatusCode());
+      }
+    }
+    finally
+    {
+      if(resourceDescriptor != null)
+      {
+        application.getStatsForResource(resourceDescriptor.getName()).
+            recordLatency(ResourceStats.Operation.POST,
+                          System.nanoTime() - startTime);
       }
     }
 
@@ -572,6 +610,7 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
                    final InputStream inputStream)
   {
     logIgnoredQueryParams(requestContext, COMMON_REQUEST_PARAMS);
+    final long startTime = System.nanoTime();
 
     SCIMBackend backend;
     ResourceDescriptor resourceDescriptor = null;
@@ -625,11 +664,13 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
       {
         AtomicReference<String> authIDRef = new AtomicReference<String>();
         Response response = validateOAuthToken(requestContext,
-                              putResourceRequest, authIDRef, tokenHandler);
+                              putResourceRequest, authIDRef, tokenHandler,
+                              application.getOAuthTokenCache());
         if (response != null)
         {
           application.getStatsForResource(resourceDescriptor.getName()).
-              incrementStat("put-" + response.getStatus());
+              incrementStatusStat(
+                  ResourceStats.Operation.PUT, response.getStatus());
           return response;
         }
         else
@@ -673,7 +714,16 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
       if(resourceDescriptor != null)
       {
         application.getStatsForResource(resourceDescriptor.getName()).
-            incrementStat("put-" + e.getStatusCode());
+            incrementStatusStat(ResourceStats.Operation.PUT, e.getStatusCode());
+      }
+    }
+    finally
+    {
+      if(resourceDescriptor != null)
+      {
+        application.getStatsForResource(resourceDescriptor.getName()).
+            recordLatency(ResourceStats.Operation.PUT,
+                          System.nanoTime() - startTime);
       }
     }
 
@@ -698,6 +748,7 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
                      final InputStream inputStream)
   {
     logIgnoredQueryParams(requestContext, COMMON_REQUEST_PARAMS);
+    final long startTime = System.nanoTime();
 
     SCIMBackend backend;
     ResourceDescriptor resourceDescriptor = null;
@@ -750,11 +801,13 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
       {
         AtomicReference<String> authIDRef = new AtomicReference<String>();
         Response response = validateOAuthToken(requestContext,
-                              patchResourceRequest, authIDRef, tokenHandler);
+                              patchResourceRequest, authIDRef, tokenHandler,
+                              application.getOAuthTokenCache());
         if (response != null)
         {
           application.getStatsForResource(resourceDescriptor.getName()).
-              incrementStat("patch-" + response.getStatus());
+              incrementStatusStat(
+                  ResourceStats.Operation.PATCH, response.getStatus());
           return response;
         }
         else
@@ -808,7 +861,17 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
       if(resourceDescriptor != null)
       {
         application.getStatsForResource(resourceDescriptor.getName()).
-            incrementStat("patch-" + e.getStatusCode());
+            incrementStatusStat(
+                ResourceStats.Operation.PATCH, e.getStatusCode());
+      }
+    }
+    finally
+    {
+      if(resourceDescriptor != null)
+      {
+        application.getStatsForResource(resourceDescriptor.getName()).
+            recordLatency(ResourceStats.Operation.PATCH,
+                          System.nanoTime() - startTime);
       }
     }
 
@@ -830,6 +893,8 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
                       final String endpoint,
                       final String userID)
   {
+    final long startTime = System.nanoTime();
+
     SCIMBackend backend;
     ResourceDescriptor resourceDescriptor = null;
     // Process the request.
@@ -857,11 +922,13 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
       {
         AtomicReference<String> authIDRef = new AtomicReference<String>();
         Response response = validateOAuthToken(requestContext,
-                              deleteResourceRequest, authIDRef, tokenHandler);
+                              deleteResourceRequest, authIDRef, tokenHandler,
+                              application.getOAuthTokenCache());
         if (response != null)
         {
           application.getStatsForResource(resourceDescriptor.getName()).
-              incrementStat("delete-" + response.getStatus());
+              incrementStatusStat(
+                  ResourceStats.Operation.DELETE, response.getStatus());
           return response;
         }
         else
@@ -885,7 +952,17 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
       if(resourceDescriptor != null)
       {
         application.getStatsForResource(resourceDescriptor.getName()).
-            incrementStat("delete-" + e.getStatusCode());
+            incrementStatusStat(
+                ResourceStats.Operation.DELETE, e.getStatusCode());
+      }
+    }
+    finally
+    {
+      if(resourceDescriptor != null)
+      {
+        application.getStatsForResource(resourceDescriptor.getName()).
+            recordLatency(ResourceStats.Operation.DELETE,
+                          System.nanoTime() - startTime);
       }
     }
 
@@ -912,6 +989,9 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
    * @param authIDRef    An output parameter to contain the DN of the
    *                     authorization entry.
    * @param tokenHandlerImpl The OAuthTokenHandler to use.
+   * @param cache        The cache of validation results to consult before
+   *                     calling the token handler, or {@code null} if
+   *                     validation results are not cached.
    * @return             {@code null} if the token was successfully validated,
    *                     otherwise a Response instance containing the error
    *                     information.
@@ -919,7 +999,8 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
   static Response validateOAuthToken(final RequestContext context,
                                      final SCIMRequest request,
                                      final AtomicReference<String> authIDRef,
-                                     final OAuthTokenHandler tokenHandlerImpl)
+                                     final OAuthTokenHandler tokenHandlerImpl,
+                                     final OAuthTokenCache cache)
   {
     HttpHeaders headers = context.getHeaders();
     List<String> headerList = headers.getRequestHeader("Authorization");
@@ -946,6 +1027,34 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
     {
       try
       {
+        String cacheKey = null;
+        if (cache != null)
+        {
+          cacheKey = OAuthTokenCache.getKey(authorization[1], request);
+          OAuthTokenCache.Entry entry = cache.get(cacheKey);
+          if (entry != null && entry.getAuthzDN() == null)
+          {
+            if (entry.isInsufficientScope())
+            {
+              return insufficientScope(entry.getScope(),
+                  entry.getErrorDescription(), context.getProduceMediaType());
+            }
+            return invalidToken(entry.getErrorDescription(),
+                context.getProduceMediaType());
+          }
+          else if (entry != null)
+          {
+            // The token handler still decides whether the token has expired,
+            // since the cache has no way of knowing when that happens.
+            if (!tokenHandlerImpl.isTokenExpired(entry.getToken()))
+            {
+              authIDRef.set(entry.getAuthzDN());
+              return null;
+            }
+            cache.remove(cacheKey);
+          }
+        }
+
         OAuthToken token = tokenHandlerImpl.decodeOAuthToken(authorization[1]);
 
         if (token == null)
@@ -956,20 +1065,21 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
 
         if (!tokenHandlerImpl.isTokenAuthentic(token))
         {
-          return invalidToken("The access token is not authentic",
+          return invalidToken(cache, cacheKey,
+                  "The access token is not authentic",
                   context.getProduceMediaType());
         }
 
         if (!tokenHandlerImpl.isTokenForThisServer(token))
         {
-          return invalidToken(
+          return invalidToken(cache, cacheKey,
                   "The access token is not intended for this server",
                   context.getProduceMediaType());
         }
 
         if (tokenHandlerImpl.isTokenExpired(token))
         {
-          return invalidToken("The access token is expired",
+          return invalidToken(cache, cacheKey, "The access token is expired",
                   context.getProduceMediaType());
         }
 
@@ -980,13 +1090,18 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
                 OAuthTokenStatus.ErrorCode.INVALID_TOKEN))
         {
           String errorDescription = status.getErrorDescription();
-          return invalidToken(errorDescription, context.getProduceMediaType());
+          return invalidToken(cache, cacheKey, errorDescription,
+                  context.getProduceMediaType());
         }
         else if (status.getErrorCode().equals(
                 OAuthTokenStatus.ErrorCode.INSUFFICIENT_SCOPE))
         {
           String errorDescription = status.getErrorDescription();
           String scope = status.getScope();
+          if (cache != null)
+          {
+            cache.putFailure(cacheKey, true, errorDescription, scope);
+          }
           return insufficientScope(scope, errorDescription,
                   context.getProduceMediaType());
         }
@@ -994,12 +1109,16 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
         String authID = tokenHandlerImpl.getAuthzDN(token);
         if (authID == null)
         {
-          return invalidToken(
+          return invalidToken(cache, cacheKey,
                   "The access token did not contain an authorization DN",
                   context.getProduceMediaType());
         }
         else
         {
+          if (cache != null)
+          {
+            cache.putSuccess(cacheKey, token, authID);
+          }
           authIDRef.set(authID);
           return null;
         }
@@ -1077,6 +1196,29 @@ public abstract class AbstractSCIMResource extends AbstractStaticResource
     return builder.build();
   }
 
+  /**
+   * Creates an invalid_token Response with the specified error description,
+   * and records the failure in the provided cache.
+   *
+   * @param cache The cache of validation results, or {@code null} if
+   *              validation results are not cached.
+   * @param cacheKey The cache key for the token and request.
+   * @param errorDescription The description of the validation error.
+   * @param mediaType The accept-type for SCIMRequest.
+   * @return a Response instance.
+   */
+  private static Response invalidToken(final OAuthTokenCache cache,
+                                       final String cacheKey,
+                                       final String errorDescription,
+                                       final MediaType mediaType)
+  {
+    if (cache != null)
+    {
+      cache.putFailure(cacheKey, false, errorDescription, null);
+    }
+    return invalidToken(errorDescription, mediaType);
+  }
+
   /**
    * Creates an insufficient_scope Response with the specified error
    * description and scope.
@@ -0,0 +1,345 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.wink;
+
+import com.unboundid.scim.sdk.SCIMRequest;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+
+/**
+ * This class writes one compact record for each SCIM request to the access
+ * logger when access logging has been enabled in the {@link SCIMApplication}.
+ * A record looks like this:
+ * <PRE>
+ *   method="GET" path="Users/1234" status=200 millis=3 bytes=512
+ *   backendOperations=2
+ * </PRE>
+ * all on one line, where {@code bytes} is the number of bytes of the response
+ * entity as sent to the client, after any content coding, and
+ * {@code backendOperations} is the number of operations, such as LDAP
+ * operations, processed by the backend for the request. The path is logged
+ * as received, without decoding percent-encoded characters, and any quote,
+ * backslash or control character in it is escaped with a backslash, so that
+ * a client cannot forge the fields of a record. The access logger
+ * may be given an {@code AsynchronousLogHandler} so that the records are
+ * written on a background thread.
+ * <BR><BR>
+ * The priority of this filter is lower than that of the
+ * {@link ContentEncodingFilter}, so that its writer interceptor runs first
+ * and counts the bytes written by the compressing stream of the content
+ * encoding filter, rather than the bytes written to it.
+ * <BR><BR>
+ * Whether or not access logging is enabled, the writer interceptor also
+ * records the time taken to marshal, encode and send each response entity
+ * in the metrics of the {@link SCIMApplication}.
+ */
+@PreMatching
+@Priority(AccessLogFilter.PRIORITY)
+public class AccessLogFilter
+    implements ContainerRequestFilter, ContainerResponseFilter,
+    WriterInterceptor
+{
+  /**
+   * The name of the logger to which access log records are written.
+   */
+  public static final String ACCESS_LOGGER_NAME = "com.unboundid.scim.access";
+
+  /**
+   * The priority of this filter, which places its writer interceptor outside
+   * that of the {@link ContentEncodingFilter}.
+   */
+  static final int PRIORITY = Priorities.ENTITY_CODER - 100;
+
+  /**
+   * The logger to which access log records are written.
+   */
+  private static final Logger ACCESS_LOGGER =
+      Logger.getLogger(ACCESS_LOGGER_NAME);
+
+  /**
+   * The name of the request property holding the time at which the request
+   * was received.
+   */
+  private static final String START_TIME_PROPERTY =
+      AccessLogFilter.class.getName() + ".startTime";
+
+  /**
+   * The name of the request property holding the access log record of a
+   * request whose response entity has not yet been written.
+   */
+  private static final String RECORD_PROPERTY =
+      AccessLogFilter.class.getName() + ".record";
+
+  private final SCIMApplication application;
+
+
+
+  /**
+   * Create a new access log filter.
+   *
+   * @param application  The SCIM JAX-RS application associated with this
+   *                     filter.
+   */
+  public AccessLogFilter(final SCIMApplication application)
+  {
+    this.application = application;
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  public void filter(final ContainerRequestContext requestContext)
+      throws IOException
+  {
+    if (application.isAccessLogEnabled())
+    {
+      requestContext.setProperty(START_TIME_PROPERTY, System.nanoTime());
+    }
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  public void filter(final ContainerRequestContext requestContext,
+                     final ContainerResponseContext responseContext)
+      throws IOException
+  {
+    final Long startTime =
+        (Long) requestContext.getProperty(START_TIME_PROPERTY);
+    if (startTime == null)
+    {
+      return;
+    }
+
+    final StringBuilder record = new StringBuilder();
+    record.append("method=\"");
+    record.append(requestContext.getMethod());
+    record.append("\" path=\"");
+    appendEscaped(record, requestContext.getUriInfo().getPath(false));
+    record.append("\" status=");
+    record.append(responseContext.getStatus());
+
+    if (responseContext.hasEntity())
+    {
+      // Complete the record when the entity has been written.
+      requestContext.setProperty(RECORD_PROPERTY, record);
+    }
+    else
+    {
+      log(record, startTime, 0L,
+          requestContext.getProperty(
+              SCIMRequest.BACKEND_OPERATION_COUNT_ATTRIBUTE));
+    }
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  public void aroundWriteTo(final WriterInterceptorContext context)
+      throws IOException, WebApplicationException
+  {
+    final StringBuilder record =
+        (StringBuilder) context.getProperty(RECORD_PROPERTY);
+    final long writeStartTime = System.nanoTime();
+    if (record == null)
+    {
+      try
+      {
+        context.proceed();
+      }
+      finally
+      {
+        application.recordResponseWrite(System.nanoTime() - writeStartTime);
+      }
+      return;
+    }
+
+    final CountingOutputStream outputStream =
+        new CountingOutputStream(context.getOutputStream());
+    context.setOutputStream(outputStream);
+    try
+    {
+      context.proceed();
+    }
+    finally
+    {
+      application.recordResponseWrite(System.nanoTime() - writeStartTime);
+      log(record, (Long) context.getProperty(START_TIME_PROPERTY),
+          outputStream.getCount(),
+          context.getProperty(SCIMRequest.BACKEND_OPERATION_COUNT_ATTRIBUTE));
+    }
+  }
+
+
+
+  /**
+   * Appends a value to an access log record, escaping any quote, backslash
+   * or control character with a backslash.
+   *
+   * @param record  The record to which the value is appended.
+   * @param value   The value to append.
+   */
+  static void appendEscaped(final StringBuilder record, final String value)
+  {
+    for (int i = 0; i < value.length(); i++)
+    {
+      final char c = value.charAt(i);
+      switch (c)
+      {
+        case '"':
+        case '\\':
+          record.append('\\');
+          record.append(c);
+          break;
+        case '\n':
+          record.append("\\n");
+          break;
+        case '\r':
+          record.append("\\r");
+          break;
+        case '\t':
+          record.append("\\t");
+          break;
+        default:
+          if (Character.isISOControl(c))
+          {
+            record.append(String.format("\\u%04x", (int) c));
+          }
+          else
+          {
+            record.append(c);
+          }
+          break;
+      }
+    }
+  }
+
+
+
+  /**
+   * Complete an access log record and write it to the access logger.
+   *
+   * @param record               The record holding the request method, path
+   *                             and response status.
+   * @param startTime            The time at which the request was received.
+   * @param bytes                The number of bytes of the response entity
+   *                             sent to the client.
+   * @param backendOperations    The number of backend operations processed
+   *                             for the request, or {@code null} if the
+   *                             backend did not provide it.
+   */
+  private static void log(final StringBuilder record, final long startTime,
+                          final long bytes, final Object backendOperations)
+  {
+    record.append(" millis=");
+    record.append((System.nanoTime() - startTime) / 1000000L);
+    record.append(" bytes=");
+    record.append(bytes);
+    if (backendOperations != null)
+    {
+      record.append(" backendOperations=");
+      record.append(backendOperations);
+    }
+
+    ACCESS_LOGGER.log(Level.INFO, record.toString());
+  }
+
+
+
+  /**
+   * An output stream that counts the bytes written to it.
+   */
+  private static final class CountingOutputStream
+      extends FilterOutputStream
+  {
+    // The number of bytes written.
+    private long count;
+
+
+
+    /**
+     * Create a new counting output stream.
+     *
+     * @param out  The output stream to which the bytes are written.
+     */
+    private CountingOutputStream(final OutputStream out)
+    {
+      super(out);
+    }
+
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final int b)
+        throws IOException
+    {
+      out.write(b);
+      count++;
+    }
+
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final byte[] b, final int off, final int len)
+        throws IOException
+    {
+      out.write(b, off, len);
+      count += len;
+    }
+
+
+
+    /**
+     * Retrieve the number of bytes written.
+     *
+     * @return  The number of bytes written.
+     */
+    private long getCount()
+    {
+      return count;
+    }
+  }
+}
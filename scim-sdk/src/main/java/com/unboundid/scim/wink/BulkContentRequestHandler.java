@@ -491,7 +491,8 @@ public class BulkContentRequestHandler extends BulkContentHandler
           {
             AtomicReference<String> authIDRef = new AtomicReference<String>();
             Response response = validateOAuthToken(requestContext,
-                                  postResourceRequest, authIDRef, tokenHandler);
+                                  postResourceRequest, authIDRef, tokenHandler,
+                                  application.getOAuthTokenCache());
             if (response != null)
             {
               throw new UnauthorizedException("Invalid credentials");
@@ -532,7 +533,8 @@ public class BulkContentRequestHandler extends BulkContentHandler
           {
             AtomicReference<String> authIDRef = new AtomicReference<String>();
             Response response = validateOAuthToken(requestContext,
-                                   putResourceRequest, authIDRef, tokenHandler);
+                                   putResourceRequest, authIDRef, tokenHandler,
+                                  application.getOAuthTokenCache());
             if (response != null)
             {
               throw new UnauthorizedException("Invalid credentials");
@@ -568,7 +570,8 @@ public class BulkContentRequestHandler extends BulkContentHandler
           {
             AtomicReference<String> authIDRef = new AtomicReference<String>();
             Response response = validateOAuthToken(requestContext,
-                                 patchResourceRequest, authIDRef, tokenHandler);
+                                 patchResourceRequest, authIDRef, tokenHandler,
+                                  application.getOAuthTokenCache());
             if (response != null)
             {
               throw new UnauthorizedException("Invalid credentials");
@@ -602,7 +605,8 @@ public class BulkContentRequestHandler extends BulkContentHandler
           {
             AtomicReference<String> authIDRef = new AtomicReference<String>();
             Response response = validateOAuthToken(requestContext,
-                                deleteResourceRequest, authIDRef, tokenHandler);
+                                deleteResourceRequest, authIDRef, tokenHandler,
+                                  application.getOAuthTokenCache());
             if (response != null)
             {
               throw new UnauthorizedException("Invalid credentials");
@@ -632,16 +636,20 @@ public class BulkContentRequestHandler extends BulkContentHandler
       switch (method)
       {
         case POST:
-          resourceStats.incrementStat("post-" + e.getStatusCode());
+          resourceStats.incrementStatusStat(
+              ResourceStats.Operation.POST, e.getStatusCode());
           break;
         case PUT:
-          resourceStats.incrementStat("put-" + e.getStatusCode());
+          resourceStats.incrementStatusStat(
+              ResourceStats.Operation.PUT, e.getStatusCode());
           break;
         case PATCH:
-          resourceStats.incrementStat("patch-" + e.getStatusCode());
+          resourceStats.incrementStatusStat(
+              ResourceStats.Operation.PATCH, e.getStatusCode());
           break;
         case DELETE:
-          resourceStats.incrementStat("delete-" + e.getStatusCode());
+          resourceStats.incrementStatusStat(
+              ResourceStats.Operation.DELETE, e.getStatusCode());
           break;
       }
       throw new BulkException(e, method, bulkId, path);
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.wink;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+
+
+/**
+ * This class is an output stream that compresses a response entity once its
+ * size reaches a threshold. Content is buffered until the threshold is
+ * reached, at which point the Content-Encoding header is set and the buffered
+ * content and all further content are compressed. Content smaller than the
+ * threshold is written unmodified when the stream is finished. Since nothing
+ * is written to the underlying stream before the decision is made, the
+ * response headers may still be modified at that point.
+ */
+class CompressingOutputStream extends OutputStream
+{
+  /**
+   * The name of the gzip content coding.
+   */
+  static final String ENCODING_GZIP = "gzip";
+
+  /**
+   * The name of the deflate content coding.
+   */
+  static final String ENCODING_DEFLATE = "deflate";
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final OutputStream target;
+  private final MultivaluedMap<String, Object> headers;
+  private final String encoding;
+  private final int level;
+  private final int threshold;
+  private final ByteArrayOutputStream buffer;
+  private DeflaterOutputStream compressor;
+  private Deflater deflater;
+  private boolean finished;
+
+
+
+  /**
+   * Create a new compressing output stream.
+   *
+   * @param target     The stream to which content is written.
+   * @param headers    The mutable response headers.
+   * @param encoding   The content coding to apply, either {@code gzip} or
+   *                   {@code deflate}.
+   * @param level      The compression level, from 0 to 9, or -1 for the
+   *                   default level.
+   * @param threshold  The minimum number of bytes of content for which
+   *                   compression is applied.
+   */
+  CompressingOutputStream(final OutputStream target,
+                          final MultivaluedMap<String, Object> headers,
+                          final String encoding,
+                          final int level,
+                          final int threshold)
+  {
+    this.target = target;
+    this.headers = headers;
+    this.encoding = encoding;
+    this.level = level;
+    this.threshold = threshold;
+    this.buffer = new ByteArrayOutputStream(Math.min(threshold, BUFFER_SIZE));
+  }
+
+
+
+  /**
+   * Indicates whether the content is being compressed.
+   *
+   * @return {@code true} if the content is being compressed, or
+   *         {@code false} if it is still being buffered or was written
+   *         unmodified.
+   */
+  boolean isCompressing()
+  {
+    return compressor != null;
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void write(final int b) throws IOException
+  {
+    write(new byte[] { (byte) b }, 0, 1);
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void write(final byte[] b, final int off, final int len)
+      throws IOException
+  {
+    if (finished)
+    {
+      throw new IOException("The stream has been finished");
+    }
+
+    if (compressor != null)
+    {
+      compressor.write(b, off, len);
+    }
+    else if (buffer.size() + len < threshold)
+    {
+      buffer.write(b, off, len);
+    }
+    else
+    {
+      startCompression();
+      compressor.write(b, off, len);
+    }
+  }
+
+
+
+  /**
+   * Flushes any compressed content. Buffered content below the threshold is
+   * retained so that the response headers are not committed before it is
+   * known whether compression will be applied.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Override
+  public void flush() throws IOException
+  {
+    if (compressor != null)
+    {
+      compressor.flush();
+    }
+  }
+
+
+
+  /**
+   * Writes any buffered or remaining compressed content to the underlying
+   * stream without closing it.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  void finish() throws IOException
+  {
+    if (finished)
+    {
+      return;
+    }
+    finished = true;
+
+    if (compressor != null)
+    {
+      try
+      {
+        compressor.finish();
+      }
+      finally
+      {
+        deflater.end();
+      }
+    }
+    else if (buffer.size() > 0)
+    {
+      buffer.writeTo(target);
+    }
+    target.flush();
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void close() throws IOException
+  {
+    try
+    {
+      finish();
+    }
+    finally
+    {
+      target.close();
+    }
+  }
+
+
+
+  /**
+   * Set the response headers for the compressed content and write the
+   * buffered content through the compressor.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  private void startCompression() throws IOException
+  {
+    headers.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+    headers.remove(HttpHeaders.CONTENT_LENGTH);
+
+    if (encoding.equals(ENCODING_GZIP))
+    {
+      compressor = new GZIPOutputStream(target, BUFFER_SIZE)
+      {
+        {
+          // No content has been deflated yet so the level may be changed.
+          def.setLevel(level);
+          deflater = def;
+        }
+      };
+    }
+    else
+    {
+      deflater = new Deflater(level);
+      compressor = new DeflaterOutputStream(target, deflater, BUFFER_SIZE);
+    }
+
+    buffer.writeTo(compressor);
+    buffer.reset();
+  }
+}
@@ -0,0 +1,391 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.wink;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static com.unboundid.scim.wink.CompressingOutputStream.ENCODING_DEFLATE;
+import static com.unboundid.scim.wink.CompressingOutputStream.ENCODING_GZIP;
+
+
+
+/**
+ * This class provides HTTP content coding support for the SCIM resources.
+ * Request entities with a gzip or deflate Content-Encoding are decompressed
+ * before they are read, and reading fails once more bytes than the maximum
+ * decompressed request size of the {@link SCIMApplication} have been
+ * decompressed. Response entities are compressed when the client
+ * accepts a supported coding and response compression has been enabled in
+ * the {@link SCIMApplication}.
+ * <BR><BR>
+ * This filter has the entity coder priority, so that its writer interceptor
+ * runs inside that of the {@link AccessLogFilter}, and its reader
+ * interceptor decodes a request entity before any interceptor with a
+ * higher priority reads it.
+ */
+@Priority(Priorities.ENTITY_CODER)
+public class ContentEncodingFilter
+    implements ContainerResponseFilter, ReaderInterceptor, WriterInterceptor
+{
+  /**
+   * The name of the request property holding the coding selected for the
+   * response entity.
+   */
+  private static final String RESPONSE_ENCODING_PROPERTY =
+      ContentEncodingFilter.class.getName() + ".responseEncoding";
+
+  private final SCIMApplication application;
+
+
+
+  /**
+   * Create a new content encoding filter.
+   *
+   * @param application  The SCIM JAX-RS application associated with this
+   *                     filter.
+   */
+  public ContentEncodingFilter(final SCIMApplication application)
+  {
+    this.application = application;
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  public void filter(final ContainerRequestContext requestContext,
+                     final ContainerResponseContext responseContext)
+      throws IOException
+  {
+    if (application.getResponseCompressionThreshold() < 0 ||
+        !responseContext.hasEntity())
+    {
+      return;
+    }
+
+    responseContext.getHeaders().add(HttpHeaders.VARY,
+                                     HttpHeaders.ACCEPT_ENCODING);
+    if (responseContext.getHeaders().containsKey(
+        HttpHeaders.CONTENT_ENCODING))
+    {
+      return;
+    }
+
+    final String encoding = selectEncoding(
+        requestContext.getHeaderString(HttpHeaders.ACCEPT_ENCODING));
+    if (encoding != null)
+    {
+      requestContext.setProperty(RESPONSE_ENCODING_PROPERTY, encoding);
+    }
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  public Object aroundReadFrom(final ReaderInterceptorContext context)
+      throws IOException, WebApplicationException
+  {
+    final String encoding =
+        context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+    if (encoding == null || encoding.equalsIgnoreCase("identity"))
+    {
+      return context.proceed();
+    }
+
+    if (encoding.equalsIgnoreCase(ENCODING_GZIP) ||
+        encoding.equalsIgnoreCase("x-gzip"))
+    {
+      context.setInputStream(new GZIPInputStream(context.getInputStream()));
+    }
+    else if (encoding.equalsIgnoreCase(ENCODING_DEFLATE))
+    {
+      context.setInputStream(
+          new InflaterInputStream(context.getInputStream()));
+    }
+    else
+    {
+      throw new WebApplicationException(
+          Response.Status.UNSUPPORTED_MEDIA_TYPE);
+    }
+
+    context.setInputStream(new LimitedInputStream(
+        context.getInputStream(),
+        application.getMaxDecompressedRequestSize()));
+
+    // The entity is no longer encoded, and its length is not known.
+    context.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+    context.getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+    return context.proceed();
+  }
+
+
+
+  /**
+   * {@inheritDoc}
+   */
+  public void aroundWriteTo(final WriterInterceptorContext context)
+      throws IOException, WebApplicationException
+  {
+    final String encoding =
+        (String) context.getProperty(RESPONSE_ENCODING_PROPERTY);
+    if (encoding == null)
+    {
+      context.proceed();
+      return;
+    }
+
+    final CompressingOutputStream outputStream =
+        new CompressingOutputStream(
+            context.getOutputStream(), context.getHeaders(), encoding,
+            application.getResponseCompressionLevel(),
+            application.getResponseCompressionThreshold());
+    context.setOutputStream(outputStream);
+    context.proceed();
+    outputStream.finish();
+  }
+
+
+
+  /**
+   * Select the content coding to apply to a response entity from the value
+   * of an Accept-Encoding request header. The gzip coding is preferred over
+   * the deflate coding when both are equally acceptable.
+   *
+   * @param acceptEncoding  The value of the Accept-Encoding header, or
+   *                        {@code null} if the header was not provided.
+   *
+   * @return  The selected content coding, or {@code null} if the response
+   *          entity should not be compressed.
+   */
+  static String selectEncoding(final String acceptEncoding)
+  {
+    if (acceptEncoding == null)
+    {
+      return null;
+    }
+
+    double gzipQuality = -1;
+    double deflateQuality = -1;
+    double wildcardQuality = -1;
+    for (final String element : acceptEncoding.split(","))
+    {
+      final String[] parts = element.split(";");
+      final String coding = parts[0].trim();
+      double quality = 1;
+      for (int i = 1; i < parts.length; i++)
+      {
+        final String param = parts[i].trim();
+        if (param.startsWith("q="))
+        {
+          try
+          {
+            quality = Double.parseDouble(param.substring(2));
+          }
+          catch (NumberFormatException e)
+          {
+            quality = 0;
+          }
+        }
+      }
+
+      if (coding.equalsIgnoreCase(ENCODING_GZIP) ||
+          coding.equalsIgnoreCase("x-gzip"))
+      {
+        gzipQuality = quality;
+      }
+      else if (coding.equalsIgnoreCase(ENCODING_DEFLATE))
+      {
+        deflateQuality = quality;
+      }
+      else if (coding.equals("*"))
+      {
+        wildcardQuality = quality;
+      }
+    }
+
+    if (gzipQuality < 0)
+    {
+      gzipQuality = wildcardQuality;
+    }
+    if (deflateQuality < 0)
+    {
+      deflateQuality = wildcardQuality;
+    }
+
+    if (gzipQuality > 0 && gzipQuality >= deflateQuality)
+    {
+      return ENCODING_GZIP;
+    }
+    else if (deflateQuality > 0)
+    {
+      return ENCODING_DEFLATE;
+    }
+    return null;
+  }
+
+
+
+  /**
+   * The exception thrown when a compressed request entity decompresses to
+   * more than the maximum decompressed request size.
+   */
+  static final class DecompressedSizeExceededException
+      extends IOException
+  {
+    /**
+     * The serial version UID for this serializable class.
+     */
+    private static final long serialVersionUID = 4785139402857201647L;
+
+
+
+    /**
+     * Create a new exception.
+     *
+     * @param maxSize  The maximum decompressed request size.
+     */
+    DecompressedSizeExceededException(final long maxSize)
+    {
+      super("The decompressed request entity exceeds the maximum size of " +
+            maxSize + " bytes");
+    }
+  }
+
+
+
+  /**
+   * An input stream that fails once more than a maximum number of bytes have
+   * been read from it.
+   */
+  private static final class LimitedInputStream
+      extends FilterInputStream
+  {
+    // The maximum number of bytes that may be read.
+    private final long maxSize;
+
+    // The number of bytes read so far.
+    private long count;
+
+
+
+    /**
+     * Create a new limited input stream.
+     *
+     * @param inputStream  The stream from which bytes are read.
+     * @param maxSize      The maximum number of bytes that may be read.
+     */
+    private LimitedInputStream(final InputStream inputStream,
+                               final long maxSize)
+    {
+      super(inputStream);
+      this.maxSize = maxSize;
+    }
+
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read()
+        throws IOException
+    {
+      final int b = super.read();
+      if (b != -1)
+      {
+        checkSize(1);
+      }
+      return b;
+    }
+
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read(final byte[] b, final int off, final int len)
+        throws IOException
+    {
+      final int bytesRead = super.read(b, off, len);
+      if (bytesRead > 0)
+      {
+        checkSize(bytesRead);
+      }
+      return bytesRead;
+    }
+
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long skip(final long n)
+        throws IOException
+    {
+      final long skipped = super.skip(n);
+      if (skipped > 0)
+      {
+        checkSize(skipped);
+      }
+      return skipped;
+    }
+
+
+
+    /**
+     * Counts bytes that have been read, and fails if the maximum has been
+     * exceeded.
+     *
+     * @param bytes  The number of bytes that have been read.
+     *
+     * @throws DecompressedSizeExceededException  If more than the maximum
+     *                                            number of bytes have been
+     *                                            read.
+     */
+    private void checkSize(final long bytes)
+        throws DecompressedSizeExceededException
+    {
+      count += bytes;
+      if (count > maxSize)
+      {
+        throw new DecompressedSizeExceededException(maxSize);
+      }
+    }
+  }
+}
@@ -18,6 +18,7 @@
 package com.unboundid.scim.wink;
 
 import com.unboundid.scim.sdk.Debug;
+import com.unboundid.scim.sdk.LatencyHistogram;
 import com.unboundid.scim.sdk.Version;
 import org.json.JSONException;
 import org.json.JSONStringer;
@@ -82,6 +83,35 @@ public class MonitorResource
 
 
 
+  /**
+   * Implement the GET operation on the metrics sub-resource to fetch the
+   * monitor data in the OpenMetrics text format.
+   *
+   * @return  The response to the request.
+   */
+  @GET
+  @Path("metrics")
+  @Produces(OpenMetricsWriter.MEDIA_TYPE)
+  public Response doMetricsGet()
+  {
+    final OpenMetricsWriter writer = new OpenMetricsWriter();
+    writer.writeResourceStats(application.getResourceStats());
+    writer.writeGauge("scim_bulk_requests_in_progress",
+        "Bulk requests currently being processed.",
+        application.getBulkRequestsInProgress());
+    writer.writeGauge("scim_bulk_max_concurrent_requests",
+        "Maximum number of bulk requests that may be processed concurrently.",
+        application.getBulkMaxConcurrentRequests());
+    writer.writeResponseWriteHistogram(application.getResponseWriteHistogram(),
+        application.getResponseWriteTotal());
+    writer.writeMetricFamilies(application.getBackend().getMetrics());
+    application.getStatsForResource(RESOURCE_NAME).incrementStat(
+        ResourceStats.GET_OK);
+    return Response.ok(writer.finish(), OpenMetricsWriter.MEDIA_TYPE).build();
+  }
+
+
+
   /**
    * Write the monitor data in JSON format.
    *
@@ -112,9 +142,57 @@ public class MonitorResource
         writer.key(stat.getKey());
         writer.value(stat.getValue());
       }
+      writeLatencyData(writer, stats);
       writer.endObject();
     }
     writer.endArray();
     writer.endObject();
   }
+
+
+
+  /**
+   * Write the processing time data for the operations on a resource in JSON
+   * format. The times are in microseconds.
+   *
+   * @param writer  A JSON writer where the data is to be written.
+   * @param stats   The statistics for the resource.
+   *
+   * @throws JSONException  If an error occurs while formatting the data.
+   */
+  private static void writeLatencyData(final JSONWriter writer,
+                                       final ResourceStats stats)
+      throws JSONException
+  {
+    writer.key("latency");
+    writer.object();
+    for (final ResourceStats.Operation operation :
+        ResourceStats.Operation.values())
+    {
+      final LatencyHistogram histogram =
+          stats.getLatencyHistogram(operation).copy();
+      final long count = histogram.getTotalCount();
+      if (count == 0)
+      {
+        continue;
+      }
+
+      writer.key(operation.getPrefix());
+      writer.object();
+      writer.key("count");
+      writer.value(count);
+      writer.key("total-micros");
+      writer.value(stats.getLatencyTotal(operation) / 1000L);
+      writer.key("p50-micros");
+      writer.value(histogram.getValueAtPercentile(50.0d) / 1000L);
+      writer.key("p95-micros");
+      writer.value(histogram.getValueAtPercentile(95.0d) / 1000L);
+      writer.key("p99-micros");
+      writer.value(histogram.getValueAtPercentile(99.0d) / 1000L);
+      writer.key("max-micros");
+      writer.value(histogram.getMaxValue() / 1000L);
+      writer.endObject();
+    }
+    writer.endObject();
+  }
 }
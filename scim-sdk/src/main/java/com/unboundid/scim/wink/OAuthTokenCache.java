@@ -0,0 +1,463 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.wink;
+
+import com.unboundid.scim.sdk.OAuthToken;
+import com.unboundid.scim.sdk.SCIMRequest;
+import com.unboundid.util.StaticUtils;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+
+/**
+ * This class provides a bounded cache of the results of OAuth bearer token
+ * validation, so that a client presenting the same token on many requests
+ * does not require the token handler to decode and validate it every time.
+ * Entries are keyed by a SHA-256 digest of the raw token value together with
+ * the type of request and the resource it targets, since the token handler
+ * may grant a token access to some requests and not others.
+ * <BR><BR>
+ * A successful validation is retained for a limited time, and the token
+ * handler must still confirm that the cached token has not expired before
+ * the entry is used. Validation failures are retained for a shorter time.
+ * <BR><BR>
+ * The cache is divided into stripes by the hash of the key, each with its
+ * own lock, so that concurrent requests presenting different tokens rarely
+ * contend. Within a stripe, successful and failed validations are held in
+ * separate maps, each bounded to an equal share of the maximum number of
+ * entries and evicting its least recently used entry when full, so adding an
+ * entry takes constant time. A client presenting many distinct invalid
+ * tokens can therefore only displace other failures, and never the cached
+ * validations of valid tokens.
+ */
+class OAuthTokenCache
+{
+  /**
+   * The number of stripes, which is a power of two.
+   */
+  static final int STRIPES = 64;
+
+
+
+  /**
+   * A cached validation result.
+   */
+  static final class Entry
+  {
+    // The decoded token, or null if the token was rejected.
+    private final OAuthToken token;
+
+    // The authorization DN, or null if the token was rejected.
+    private final String authzDN;
+
+    // Whether the token was rejected for insufficient scope.
+    private final boolean insufficientScope;
+
+    // The description of the validation error.
+    private final String errorDescription;
+
+    // The scope required to access the resource.
+    private final String scope;
+
+    // The time in milliseconds at which the entry expires.
+    private final long expirationTime;
+
+
+
+    /**
+     * Create a new cache entry.
+     *
+     * @param token              The decoded token, or {@code null} if the
+     *                           token was rejected.
+     * @param authzDN            The authorization DN, or {@code null} if the
+     *                           token was rejected.
+     * @param insufficientScope  Whether the token was rejected for
+     *                           insufficient scope.
+     * @param errorDescription   The description of the validation error.
+     * @param scope              The scope required to access the resource.
+     * @param expirationTime     The time in milliseconds at which the entry
+     *                           expires.
+     */
+    private Entry(final OAuthToken token, final String authzDN,
+                  final boolean insufficientScope,
+                  final String errorDescription, final String scope,
+                  final long expirationTime)
+    {
+      this.token = token;
+      this.authzDN = authzDN;
+      this.insufficientScope = insufficientScope;
+      this.errorDescription = errorDescription;
+      this.scope = scope;
+      this.expirationTime = expirationTime;
+    }
+
+
+
+    /**
+     * Retrieves the decoded token.
+     *
+     * @return  The decoded token, or {@code null} if the token was rejected.
+     */
+    OAuthToken getToken()
+    {
+      return token;
+    }
+
+
+
+    /**
+     * Retrieves the authorization DN.
+     *
+     * @return  The authorization DN, or {@code null} if the token was
+     *          rejected.
+     */
+    String getAuthzDN()
+    {
+      return authzDN;
+    }
+
+
+
+    /**
+     * Indicates whether the token was rejected for insufficient scope rather
+     * than as an invalid token.
+     *
+     * @return  {@code true} if the token was rejected for insufficient scope.
+     */
+    boolean isInsufficientScope()
+    {
+      return insufficientScope;
+    }
+
+
+
+    /**
+     * Retrieves the description of the validation error.
+     *
+     * @return  The description of the validation error, or {@code null} if
+     *          the token was accepted.
+     */
+    String getErrorDescription()
+    {
+      return errorDescription;
+    }
+
+
+
+    /**
+     * Retrieves the scope required to access the resource.
+     *
+     * @return  The scope required to access the resource, or {@code null} if
+     *          it is not known.
+     */
+    String getScope()
+    {
+      return scope;
+    }
+  }
+
+
+
+  /**
+   * A map of cache entries in access order, which removes its least recently
+   * used entry when it grows beyond a maximum size.
+   */
+  private static final class BoundedMap
+      extends LinkedHashMap<String,Entry>
+  {
+    /**
+     * The serial version UID required for this serializable class.
+     */
+    private static final long serialVersionUID = 4196337413541127306L;
+
+    // The maximum number of entries to retain.
+    private final int maxEntries;
+
+
+
+    /**
+     * Create a new bounded map.
+     *
+     * @param maxEntries  The maximum number of entries to retain.
+     */
+    BoundedMap(final int maxEntries)
+    {
+      super(16, 0.75f, true);
+      this.maxEntries = maxEntries;
+    }
+
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<String,Entry> eldest)
+    {
+      return size() > maxEntries;
+    }
+  }
+
+
+
+  /**
+   * A stripe of the cache. Its fields are guarded by its own lock.
+   */
+  private static final class Stripe
+  {
+    // The cached successful validations.
+    private final BoundedMap successes;
+
+    // The cached failed validations.
+    private final BoundedMap failures;
+
+
+
+    /**
+     * Create a new stripe.
+     *
+     * @param maxEntries  The maximum number of successful validations, and
+     *                    of failed validations, in the stripe.
+     */
+    private Stripe(final int maxEntries)
+    {
+      successes = new BoundedMap(maxEntries);
+      failures = new BoundedMap(maxEntries);
+    }
+  }
+
+
+
+  // The stripes holding the cached validations.
+  private final Stripe[] stripes = new Stripe[STRIPES];
+
+  // The time in milliseconds to retain a successful validation.
+  private final long ttlMillis;
+
+  // The time in milliseconds to retain a failed validation.
+  private final long negativeTTLMillis;
+
+
+
+  /**
+   * Create a new token cache.
+   *
+   * @param maxEntries         The maximum number of successful validations,
+   *                           and of failed validations, to retain, which is
+   *                           rounded up to a multiple of the number of
+   *                           stripes.
+   * @param ttlMillis          The time in milliseconds to retain a successful
+   *                           validation.
+   * @param negativeTTLMillis  The time in milliseconds to retain a failed
+   *                           validation, or zero if failures should not be
+   *                           cached.
+   */
+  OAuthTokenCache(final int maxEntries, final long ttlMillis,
+                  final long negativeTTLMillis)
+  {
+    this.ttlMillis = ttlMillis;
+    this.negativeTTLMillis = negativeTTLMillis;
+
+    final int maxStripeEntries =
+        Math.max(1, (int) ((maxEntries + STRIPES - 1L) / STRIPES));
+    for (int i = 0; i < STRIPES; i++)
+    {
+      stripes[i] = new Stripe(maxStripeEntries);
+    }
+  }
+
+
+
+  /**
+   * Retrieves the cache key for a token presented on a request.
+   *
+   * @param tokenValue  The raw token value from the Authorization header.
+   * @param request     The request on which the token was presented.
+   *
+   * @return  The cache key.
+   */
+  static String getKey(final String tokenValue, final SCIMRequest request)
+  {
+    final MessageDigest digest;
+    try
+    {
+      digest = MessageDigest.getInstance("SHA-256");
+    }
+    catch (NoSuchAlgorithmException e)
+    {
+      // Every Java platform is required to support SHA-256.
+      throw new IllegalStateException(e);
+    }
+
+    final StringBuilder builder = new StringBuilder();
+    builder.append(StaticUtils.toHex(
+        digest.digest(StaticUtils.getBytes(tokenValue))));
+    builder.append(' ');
+    builder.append(request.getClass().getName());
+    if (request.getResourceDescriptor() != null)
+    {
+      builder.append(' ');
+      builder.append(request.getResourceDescriptor().getName());
+    }
+    return builder.toString();
+  }
+
+
+
+  /**
+   * Retrieves the unexpired entry with the given key.
+   *
+   * @param key  The cache key.
+   *
+   * @return  The unexpired entry with the given key, or {@code null} if
+   *          there is none.
+   */
+  Entry get(final String key)
+  {
+    final Stripe stripe = stripes[getStripe(key)];
+    synchronized (stripe)
+    {
+      final BoundedMap map =
+          stripe.successes.containsKey(key) ? stripe.successes :
+              stripe.failures;
+      final Entry entry = map.get(key);
+      if (entry == null)
+      {
+        return null;
+      }
+
+      if (entry.expirationTime - System.currentTimeMillis() <= 0)
+      {
+        map.remove(key);
+        return null;
+      }
+
+      return entry;
+    }
+  }
+
+
+
+  /**
+   * Records a successful validation.
+   *
+   * @param key      The cache key.
+   * @param token    The decoded token.
+   * @param authzDN  The authorization DN for the token.
+   */
+  void putSuccess(final String key, final OAuthToken token,
+                  final String authzDN)
+  {
+    final Entry entry = new Entry(token, authzDN, false, null, null,
+                                  System.currentTimeMillis() + ttlMillis);
+    final Stripe stripe = stripes[getStripe(key)];
+    synchronized (stripe)
+    {
+      stripe.failures.remove(key);
+      stripe.successes.put(key, entry);
+    }
+  }
+
+
+
+  /**
+   * Records a failed validation.
+   *
+   * @param key                The cache key.
+   * @param insufficientScope  Whether the token was rejected for
+   *                           insufficient scope rather than as an invalid
+   *                           token.
+   * @param errorDescription   The description of the validation error.
+   * @param scope              The scope required to access the resource.
+   */
+  void putFailure(final String key, final boolean insufficientScope,
+                  final String errorDescription, final String scope)
+  {
+    if (negativeTTLMillis <= 0)
+    {
+      return;
+    }
+
+    final Entry entry = new Entry(null, null, insufficientScope,
+                                  errorDescription, scope,
+                                  System.currentTimeMillis() +
+                                      negativeTTLMillis);
+    final Stripe stripe = stripes[getStripe(key)];
+    synchronized (stripe)
+    {
+      stripe.successes.remove(key);
+      stripe.failures.put(key, entry);
+    }
+  }
+
+
+
+  /**
+   * Removes the entry with the given key.
+   *
+   * @param key  The cache key.
+   */
+  void remove(final String key)
+  {
+    final Stripe stripe = stripes[getStripe(key)];
+    synchronized (stripe)
+    {
+      stripe.successes.remove(key);
+      stripe.failures.remove(key);
+    }
+  }
+
+
+
+  /**
+   * Retrieves the number of entries in the cache, including any that have
+   * expired but have not yet been removed.
+   *
+   * @return  The number of entries in the cache.
+   */
+  int size()
+  {
+    int size = 0;
+    for (final Stripe stripe : stripes)
+    {
+      synchronized (stripe)
+      {
+        size += stripe.successes.size() + stripe.failures.size();
+      }
+    }
+    return size;
+  }
+
+
+
+  /**
+   * Retrieves the index of the stripe holding the entry with the given key.
+   *
+   * @param key  The cache key.
+   *
+   * @return  The index of the stripe holding the entry.
+   */
+  static int getStripe(final String key)
+  {
+    return key.hashCode() & (STRIPES - 1);
+  }
+}
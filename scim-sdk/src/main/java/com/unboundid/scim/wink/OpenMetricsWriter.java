@@ -0,0 +1,399 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.wink;
+
+import com.unboundid.scim.sdk.LatencyHistogram;
+import com.unboundid.scim.sdk.MetricFamily;
+
+import java.util.Collection;
+import java.util.Map;
+
+
+
+/**
+ * This class formats server metrics in the OpenMetrics text format, which
+ * may be scraped by Prometheus and compatible monitoring systems. Each
+ * metric family must be written in full before the next one is started.
+ */
+final class OpenMetricsWriter
+{
+  /**
+   * The media type of the OpenMetrics text format.
+   */
+  static final String MEDIA_TYPE =
+      "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+  /**
+   * The upper bounds of the request duration histogram buckets, in seconds,
+   * as they appear in the output.
+   */
+  private static final String[] DURATION_BUCKET_LABELS =
+      { "0.0005", "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05", "0.1",
+        "0.25", "0.5", "1.0", "2.5", "5.0", "10.0" };
+
+  /**
+   * The upper bounds of the request duration histogram buckets, in
+   * nanoseconds.
+   */
+  private static final long[] DURATION_BUCKET_NANOS =
+      { 500000L, 1000000L, 2500000L, 5000000L, 10000000L, 25000000L,
+        50000000L, 100000000L, 250000000L, 500000000L, 1000000000L,
+        2500000000L, 5000000000L, 10000000000L };
+
+  // The buffer holding the formatted metrics.
+  private final StringBuilder buffer = new StringBuilder();
+
+
+
+  /**
+   * Writes the request counters and request duration histograms for the
+   * provided resources.
+   *
+   * @param resourceStats  The statistics for each resource.
+   */
+  void writeResourceStats(final Collection<ResourceStats> resourceStats)
+  {
+    writeMetadata("scim_requests", "counter",
+        "SCIM requests completed, by resource, operation and outcome.");
+    for (final ResourceStats stats : resourceStats)
+    {
+      for (final Map.Entry<String,Long> e : stats.getStats().entrySet())
+      {
+        final String[] parts = splitStatName(e.getKey());
+        if (parts != null && !isFormatStat(parts[1]))
+        {
+          buffer.append("scim_requests_total{resource=\"");
+          appendLabelValue(stats.getName());
+          buffer.append("\",operation=\"").append(parts[0]);
+          buffer.append("\",outcome=\"");
+          appendLabelValue(parts[1]);
+          buffer.append("\"} ").append(e.getValue()).append('\n');
+        }
+      }
+    }
+
+    writeMetadata("scim_request_formats", "counter",
+        "SCIM request and response entities, by resource, operation and " +
+        "format.");
+    for (final ResourceStats stats : resourceStats)
+    {
+      for (final Map.Entry<String,Long> e : stats.getStats().entrySet())
+      {
+        final String[] parts = splitStatName(e.getKey());
+        if (parts != null && isFormatStat(parts[1]))
+        {
+          buffer.append("scim_request_formats_total{resource=\"");
+          appendLabelValue(stats.getName());
+          buffer.append("\",operation=\"").append(parts[0]);
+          buffer.append("\",format=\"").append(parts[1]);
+          buffer.append("\"} ").append(e.getValue()).append('\n');
+        }
+      }
+    }
+
+    writeMetadata("scim_request_duration_seconds", "histogram",
+        "Time taken to process SCIM requests, by resource and operation.");
+    buffer.append("# UNIT scim_request_duration_seconds seconds\n");
+    for (final ResourceStats stats : resourceStats)
+    {
+      for (final ResourceStats.Operation operation :
+          ResourceStats.Operation.values())
+      {
+        writeDurationHistogram(stats, operation);
+      }
+    }
+  }
+
+
+
+  /**
+   * Writes the histogram of the times taken to write response entities.
+   *
+   * @param histogram   The histogram of the times taken, in nanoseconds.
+   * @param totalNanos  The total time taken, in nanoseconds.
+   */
+  void writeResponseWriteHistogram(final LatencyHistogram histogram,
+                                   final long totalNanos)
+  {
+    writeMetadata("scim_response_write_seconds", "histogram",
+        "Time taken to marshal, encode and send SCIM response entities.");
+    buffer.append("# UNIT scim_response_write_seconds seconds\n");
+    writeHistogram("scim_response_write_seconds", "", histogram.copy(),
+                   totalNanos);
+  }
+
+
+
+  /**
+   * Writes metric families provided by a backend.
+   *
+   * @param families  The metric families.
+   */
+  void writeMetricFamilies(final Collection<MetricFamily> families)
+  {
+    for (final MetricFamily family : families)
+    {
+      final boolean counter = family.getType() == MetricFamily.Type.COUNTER;
+      writeMetadata(family.getName(), counter ? "counter" : "gauge",
+                    family.getHelp());
+      for (final MetricFamily.Sample sample : family.getSamples())
+      {
+        buffer.append(family.getName());
+        if (counter)
+        {
+          buffer.append("_total");
+        }
+        if (!sample.getLabels().isEmpty())
+        {
+          char separator = '{';
+          for (final Map.Entry<String,String> label :
+              sample.getLabels().entrySet())
+          {
+            buffer.append(separator).append(label.getKey()).append("=\"");
+            appendLabelValue(label.getValue());
+            buffer.append('"');
+            separator = ',';
+          }
+          buffer.append('}');
+        }
+        buffer.append(' ').append(sample.getValue()).append('\n');
+      }
+    }
+  }
+
+
+
+  /**
+   * Writes a gauge with a single value.
+   *
+   * @param name   The name of the gauge.
+   * @param help   The description of the gauge.
+   * @param value  The value of the gauge.
+   */
+  void writeGauge(final String name, final String help, final long value)
+  {
+    writeMetadata(name, "gauge", help);
+    buffer.append(name).append(' ').append(value).append('\n');
+  }
+
+
+
+  /**
+   * Completes the metrics and retrieves them.
+   *
+   * @return  The formatted metrics.
+   */
+  String finish()
+  {
+    buffer.append("# EOF\n");
+    return buffer.toString();
+  }
+
+
+
+  /**
+   * Writes the request duration histogram for an operation on a resource, if
+   * any requests have been recorded.
+   *
+   * @param stats      The statistics for the resource.
+   * @param operation  The operation.
+   */
+  private void writeDurationHistogram(final ResourceStats stats,
+                                      final ResourceStats.Operation operation)
+  {
+    final LatencyHistogram histogram =
+        stats.getLatencyHistogram(operation).copy();
+    if (histogram.getTotalCount() == 0)
+    {
+      return;
+    }
+
+    final StringBuilder labels = new StringBuilder();
+    labels.append("resource=\"");
+    appendLabelValue(labels, stats.getName());
+    labels.append("\",operation=\"").append(operation.getPrefix());
+    labels.append("\",");
+    writeHistogram("scim_request_duration_seconds", labels.toString(),
+                   histogram, stats.getLatencyTotal(operation));
+  }
+
+
+
+  /**
+   * Writes the series of a histogram of durations. A bucket only counts the
+   * values that are at or below its upper bound, within the precision of
+   * the histogram.
+   *
+   * @param name        The name of the histogram.
+   * @param labels      The labels that identify the histogram, each
+   *                    followed by a comma, or an empty string.
+   * @param histogram   The durations, in nanoseconds.
+   * @param totalNanos  The sum of the durations, in nanoseconds.
+   */
+  private void writeHistogram(final String name, final String labels,
+                              final LatencyHistogram histogram,
+                              final long totalNanos)
+  {
+    final long count = histogram.getTotalCount();
+    for (int i = 0; i < DURATION_BUCKET_NANOS.length; i++)
+    {
+      buffer.append(name).append("_bucket{").append(labels);
+      buffer.append("le=\"").append(DURATION_BUCKET_LABELS[i]);
+      buffer.append("\"} ");
+      buffer.append(histogram.getCountAtOrBelow(DURATION_BUCKET_NANOS[i]));
+      buffer.append('\n');
+    }
+    buffer.append(name).append("_bucket{").append(labels);
+    buffer.append("le=\"+Inf\"} ").append(count).append('\n');
+
+    buffer.append(name).append("_count");
+    appendLabels(labels);
+    buffer.append(' ').append(count).append('\n');
+
+    buffer.append(name).append("_sum");
+    appendLabels(labels);
+    buffer.append(' ').append(totalNanos / 1.0e9d).append('\n');
+  }
+
+
+
+  /**
+   * Appends a label set, if it is not empty.
+   *
+   * @param labels  The labels, each followed by a comma, or an empty string.
+   */
+  private void appendLabels(final String labels)
+  {
+    if (labels.length() > 0)
+    {
+      buffer.append('{');
+      buffer.append(labels, 0, labels.length() - 1);
+      buffer.append('}');
+    }
+  }
+
+
+
+  /**
+   * Writes the type and help metadata for a metric family.
+   *
+   * @param name  The name of the metric family.
+   * @param type  The type of the metric family.
+   * @param help  The description of the metric family.
+   */
+  private void writeMetadata(final String name, final String type,
+                             final String help)
+  {
+    buffer.append("# TYPE ").append(name).append(' ').append(type);
+    buffer.append('\n');
+    buffer.append("# HELP ").append(name).append(' ').append(help);
+    buffer.append('\n');
+  }
+
+
+
+  /**
+   * Appends a label value, escaping the characters that have special
+   * meaning in the OpenMetrics text format.
+   *
+   * @param value  The label value.
+   */
+  private void appendLabelValue(final String value)
+  {
+    appendLabelValue(buffer, value);
+  }
+
+
+
+  /**
+   * Appends a label value to the provided buffer, escaping the characters
+   * that have special meaning in the OpenMetrics text format.
+   *
+   * @param builder  The buffer to which the label value is appended.
+   * @param value    The label value.
+   */
+  private static void appendLabelValue(final StringBuilder builder,
+                                       final String value)
+  {
+    for (int i = 0; i < value.length(); i++)
+    {
+      final char c = value.charAt(i);
+      switch (c)
+      {
+        case '\\':
+          builder.append("\\\\");
+          break;
+        case '"':
+          builder.append("\\\"");
+          break;
+        case '\n':
+          builder.append("\\n");
+          break;
+        default:
+          builder.append(c);
+          break;
+      }
+    }
+  }
+
+
+
+  /**
+   * Splits the name of a resource statistic into the operation and the
+   * outcome or format, such as "get" and "404" for "get-404".
+   *
+   * @param statName  The name of the statistic.
+   *
+   * @return  The operation and the outcome or format, or {@code null} if the
+   *          name is not that of a known operation.
+   */
+  private static String[] splitStatName(final String statName)
+  {
+    final int dash = statName.indexOf('-');
+    if (dash < 0)
+    {
+      return null;
+    }
+
+    final String prefix = statName.substring(0, dash);
+    for (final ResourceStats.Operation operation :
+        ResourceStats.Operation.values())
+    {
+      if (operation.getPrefix().equals(prefix))
+      {
+        return new String[] { prefix, statName.substring(dash + 1) };
+      }
+    }
+    return null;
+  }
+
+
+
+  /**
+   * Indicates whether the suffix of a resource statistic name identifies a
+   * request or response format rather than an outcome.
+   *
+   * @param suffix  The suffix of the statistic name.
+   *
+   * @return  {@code true} if the suffix identifies a format.
+   */
+  private static boolean isFormatStat(final String suffix)
+  {
+    return suffix.startsWith("response-") || suffix.startsWith("content-");
+  }
+}
@@ -17,13 +17,18 @@
 
 package com.unboundid.scim.wink;
 
+import com.unboundid.scim.sdk.LatencyHistogram;
+import com.unboundid.scim.sdk.StripedCounter;
+
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * This class holds various statistics of each SCIM resource being served.
+ * Statistics may be updated by many request threads at once, and read, without
+ * locking.
  */
 public class ResourceStats
 {
@@ -361,9 +366,144 @@ public class ResourceStats
    */
   public static final String DELETE_NOT_IMPLEMENTED = "delete-505";
 
+  /**
+   * The operations for which statistics are kept.
+   */
+  enum Operation
+  {
+    /**
+     * Query requests.
+     */
+    QUERY("query"),
+
+    /**
+     * Get requests.
+     */
+    GET("get"),
+
+    /**
+     * Post requests.
+     */
+    POST("post"),
+
+    /**
+     * Put requests.
+     */
+    PUT("put"),
+
+    /**
+     * Patch requests.
+     */
+    PATCH("patch"),
+
+    /**
+     * Delete requests.
+     */
+    DELETE("delete");
+
+    // The prefix of the names of statistics for this operation.
+    private final String prefix;
+
+
+
+    /**
+     * Create a new operation.
+     *
+     * @param prefix  The prefix of the names of statistics for this
+     *                operation.
+     */
+    private Operation(final String prefix)
+    {
+      this.prefix = prefix;
+    }
+
+
+
+    /**
+     * Retrieves the prefix of the names of statistics for this operation.
+     *
+     * @return  The prefix of the names of statistics for this operation.
+     */
+    String getPrefix()
+    {
+      return prefix;
+    }
+  }
+
+  /**
+   * The suffixes of the statistics for each operation that are not status
+   * codes, in the order of their slots.
+   */
+  private static final String[] FIXED_SUFFIXES =
+      { "successful", "response-xml", "response-json", "content-xml",
+        "content-json" };
+
+  /**
+   * The lowest status code that is counted.
+   */
+  private static final int MIN_STATUS_CODE = 100;
+
+  /**
+   * The highest status code that is counted.
+   */
+  private static final int MAX_STATUS_CODE = 599;
+
+  /**
+   * The number of counter slots for each operation.
+   */
+  private static final int SLOTS_PER_OPERATION =
+      FIXED_SUFFIXES.length + MAX_STATUS_CODE - MIN_STATUS_CODE + 1;
+
+  /**
+   * The names of the statistics for each counter slot.
+   */
+  private static final String[] SLOT_NAMES =
+      new String[Operation.values().length * SLOTS_PER_OPERATION];
+
+  /**
+   * The counter slots for each statistic name.
+   */
+  private static final Map<String,Integer> SLOT_INDEXES;
+
+  static
+  {
+    final Map<String,Integer> indexes = new HashMap<String,Integer>();
+    for (final Operation operation : Operation.values())
+    {
+      final int base = operation.ordinal() * SLOTS_PER_OPERATION;
+      for (int i = 0; i < SLOTS_PER_OPERATION; i++)
+      {
+        final String suffix;
+        if (i < FIXED_SUFFIXES.length)
+        {
+          suffix = FIXED_SUFFIXES[i];
+        }
+        else
+        {
+          suffix = String.valueOf(i - FIXED_SUFFIXES.length + MIN_STATUS_CODE);
+        }
+        SLOT_NAMES[base + i] = operation.getPrefix() + "-" + suffix;
+        indexes.put(SLOT_NAMES[base + i], base + i);
+      }
+    }
+    SLOT_INDEXES = indexes;
+  }
+
   private final String name;
-  private final ConcurrentHashMap<String, AtomicLong> stats =
-      new ConcurrentHashMap<String, AtomicLong>();
+
+  // The counters for each slot, which are created when first incremented.
+  private final AtomicReferenceArray<StripedCounter> counters =
+      new AtomicReferenceArray<StripedCounter>(SLOT_NAMES.length);
+
+  // The counters for any statistics that do not have a slot.
+  private final ConcurrentHashMap<String,StripedCounter> otherCounters =
+      new ConcurrentHashMap<String,StripedCounter>();
+
+  // The processing time histograms for each operation, in nanoseconds.
+  private final LatencyHistogram[] latencyHistograms;
+
+  // The total processing times for each operation, in nanoseconds.
+  private final StripedCounter[] latencyTotals;
 
   /**
    * Create a new ResourceStats instance with the provided name.
@@ -373,6 +513,14 @@ public class ResourceStats
    */
   public ResourceStats(final String name) {
     this.name = name;
+    final int operations = Operation.values().length;
+    latencyHistograms = new LatencyHistogram[operations];
+    latencyTotals = new StripedCounter[operations];
+    for (int i = 0; i < operations; i++)
+    {
+      latencyHistograms[i] = new LatencyHistogram();
+      latencyTotals[i] = new StripedCounter();
+    }
   }
 
   /**
@@ -382,17 +530,79 @@ public class ResourceStats
    */
   void incrementStat(final String stat)
   {
-    AtomicLong num = stats.get(stat);
-    if(num == null)
+    final Integer index = SLOT_INDEXES.get(stat);
+    if (index != null)
+    {
+      getCounter(index).increment();
+      return;
+    }
+
+    StripedCounter counter = otherCounters.get(stat);
+    if(counter == null)
     {
-      num = new AtomicLong();
-      AtomicLong prev = stats.putIfAbsent(stat, num);
+      counter = new StripedCounter();
+      StripedCounter prev = otherCounters.putIfAbsent(stat, counter);
       if(prev != null)
       {
-        num = prev;
+        counter = prev;
       }
     }
-    num.getAndIncrement();
+    counter.increment();
+  }
+
+  /**
+   * Increments the number of requests for an operation that completed with
+   * the given status code.
+   *
+   * @param operation  The operation.
+   * @param statusCode The HTTP status code of the response.
+   */
+  void incrementStatusStat(final Operation operation, final int statusCode)
+  {
+    if (statusCode < MIN_STATUS_CODE || statusCode > MAX_STATUS_CODE)
+    {
+      incrementStat(operation.getPrefix() + "-" + statusCode);
+      return;
+    }
+
+    getCounter(operation.ordinal() * SLOTS_PER_OPERATION +
+        FIXED_SUFFIXES.length + statusCode - MIN_STATUS_CODE).increment();
+  }
+
+  /**
+   * Records the time taken to process a request.
+   *
+   * @param operation     The operation.
+   * @param durationNanos The time taken to process the request, in
+   *                      nanoseconds.
+   */
+  void recordLatency(final Operation operation, final long durationNanos)
+  {
+    latencyHistograms[operation.ordinal()].recordValue(durationNanos);
+    latencyTotals[operation.ordinal()].add(durationNanos);
+  }
+
+  /**
+   * Retrieves the histogram of processing times for an operation. The
+   * histogram may be read while it is being updated.
+   *
+   * @param operation The operation.
+   * @return The histogram of processing times, in nanoseconds.
+   */
+  LatencyHistogram getLatencyHistogram(final Operation operation)
+  {
+    return latencyHistograms[operation.ordinal()];
+  }
+
+  /**
+   * Retrieves the total processing time for an operation.
+   *
+   * @param operation The operation.
+   * @return The total processing time, in nanoseconds.
+   */
+  long getLatencyTotal(final Operation operation)
+  {
+    return latencyTotals[operation.ordinal()].sum();
   }
 
   /**
@@ -403,10 +613,12 @@ public class ResourceStats
    */
   public long getStat(final String stat)
   {
-    AtomicLong i = stats.get(stat);
-    if(i != null)
+    final Integer index = SLOT_INDEXES.get(stat);
+    final StripedCounter counter = (index != null) ?
+        counters.get(index) : otherCounters.get(stat);
+    if(counter != null)
     {
-      return i.get();
+      return counter.sum();
     }
     return 0;
   }
@@ -418,10 +630,18 @@ public class ResourceStats
    */
   public Map<String, Long> getStats()
   {
-    Map<String, Long> map = new HashMap<String, Long>(stats.size());
-    for(Map.Entry<String, AtomicLong> entry : stats.entrySet())
+    Map<String, Long> map = new HashMap<String, Long>();
+    for (int i = 0; i < SLOT_NAMES.length; i++)
     {
-      map.put(entry.getKey(), entry.getValue().get());
+      final StripedCounter counter = counters.get(i);
+      if (counter != null)
+      {
+        map.put(SLOT_NAMES[i], counter.sum());
+      }
+    }
+    for(Map.Entry<String, StripedCounter> entry : otherCounters.entrySet())
+    {
+      map.put(entry.getKey(), entry.getValue().sum());
     }
     return map;
   }
@@ -436,4 +656,21 @@ public class ResourceStats
   public String getName() {
     return name;
   }
+
+  /**
+   * Retrieves the counter in the given slot, creating it if necessary.
+   *
+   * @param index The index of the slot.
+   * @return The counter in the given slot.
+   */
+  private StripedCounter getCounter(final int index)
+  {
+    StripedCounter counter = counters.get(index);
+    if (counter == null)
+    {
+      counters.compareAndSet(index, null, new StripedCounter());
+      counter = counters.get(index);
+    }
+    return counter;
+  }
 }
@@ -26,11 +26,13 @@ import com.unboundid.scim.data.PatchConfig;
 import com.unboundid.scim.data.ServiceProviderConfig;
 import com.unboundid.scim.data.SortConfig;
 import com.unboundid.scim.data.XmlDataFormatConfig;
+import com.unboundid.scim.sdk.LatencyHistogram;
 import com.unboundid.scim.sdk.OAuthTokenHandler;
 import com.unboundid.scim.schema.CoreSchema;
 import com.unboundid.scim.sdk.SCIMBackend;
 import com.unboundid.scim.sdk.SCIMException;
 import com.unboundid.scim.sdk.SCIMObject;
+import com.unboundid.scim.sdk.StripedCounter;
 import com.unboundid.scim.facade.org.apache.wink.common.WinkApplication;
 import org.glassfish.jersey.server.filter.HttpMethodOverrideFilter;
 
@@ -38,9 +40,9 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
 
 import static com.unboundid.scim.sdk.SCIMConstants.SCHEMA_URI_CORE;
 
@@ -51,14 +53,31 @@ import static com.unboundid.scim.sdk.SCIMConstants.SCHEMA_URI_CORE;
  */
 public class SCIMApplication extends WinkApplication
 {
-  private final Map<String,ResourceStats> resourceStats;
+  /**
+   * The default maximum size in bytes of a compressed request entity once
+   * it has been decompressed.
+   */
+  public static final long DEFAULT_MAX_DECOMPRESSED_REQUEST_SIZE =
+      64L * 1024L * 1024L;
+
+  private final ConcurrentHashMap<String,ResourceStats> resourceStats;
   private final SCIMBackend backend;
   private final boolean supportsOAuth;
   private volatile long bulkMaxOperations = Long.MAX_VALUE;
   private volatile long bulkMaxPayloadSize = Long.MAX_VALUE;
   private volatile File tmpDataDir = null;
+  private volatile int responseCompressionThreshold = -1;
+  private volatile int responseCompressionLevel =
+      Deflater.DEFAULT_COMPRESSION;
+  private volatile long maxDecompressedRequestSize =
+      DEFAULT_MAX_DECOMPRESSED_REQUEST_SIZE;
+  private volatile OAuthTokenCache oauthTokenCache = null;
+  private volatile boolean accessLogEnabled = false;
   private AdjustableSemaphore bulkMaxConcurrentRequestsSemaphore =
       new AdjustableSemaphore(Integer.MAX_VALUE);
+  private final LatencyHistogram responseWriteHistogram =
+      new LatencyHistogram();
+  private final StripedCounter responseWriteTotal = new StripedCounter();
 
 
   /**
@@ -92,8 +111,10 @@ public class SCIMApplication extends WinkApplication
 
     register(new HttpMethodOverrideFilter());
     register(new RequestParamFilter());
+    register(new ContentEncodingFilter(this));
+    register(new AccessLogFilter(this));
 
-    this.resourceStats = new HashMap<String, ResourceStats>();
+    this.resourceStats = new ConcurrentHashMap<String, ResourceStats>();
     this.backend = backend;
 
     if (tokenHandler != null)
@@ -133,7 +154,11 @@ public class SCIMApplication extends WinkApplication
     if(stats == null)
     {
       stats = new ResourceStats(resourceName);
-      resourceStats.put(resourceName, stats);
+      ResourceStats prev = resourceStats.putIfAbsent(resourceName, stats);
+      if(prev != null)
+      {
+        stats = prev;
+      }
     }
     return stats;
   }
@@ -261,6 +286,274 @@ public class SCIMApplication extends WinkApplication
 
 
 
+  /**
+   * Retrieves the minimum size in bytes of a response entity for which
+   * compression is applied.
+   *
+   * @return  The minimum size in bytes of a response entity for which
+   *          compression is applied, or a negative value if response
+   *          compression is disabled.
+   */
+  public int getResponseCompressionThreshold()
+  {
+    return responseCompressionThreshold;
+  }
+
+
+
+  /**
+   * Specify the minimum size in bytes of a response entity for which
+   * compression is applied. Response entities are compressed using the gzip
+   * or deflate coding when the client indicates support for it in the
+   * Accept-Encoding header. Entities smaller than the threshold are buffered
+   * and sent uncompressed. Response compression is disabled by default.
+   * Compressed request entities are always accepted.
+   *
+   * @param responseCompressionThreshold  The minimum size in bytes of a
+   *                                      response entity for which
+   *                                      compression is applied, or a
+   *                                      negative value to disable response
+   *                                      compression.
+   */
+  public void setResponseCompressionThreshold(
+      final int responseCompressionThreshold)
+  {
+    this.responseCompressionThreshold = responseCompressionThreshold;
+  }
+
+
+
+  /**
+   * Retrieves the compression level used for response entities.
+   *
+   * @return  The compression level used for response entities, from 0 to 9,
+   *          or -1 for the default level.
+   */
+  public int getResponseCompressionLevel()
+  {
+    return responseCompressionLevel;
+  }
+
+
+
+  /**
+   * Specify the compression level used for response entities. Lower levels
+   * use less CPU at the expense of larger responses.
+   *
+   * @param responseCompressionLevel  The compression level used for response
+   *                                  entities, from 0 to 9, or -1 for the
+   *                                  default level.
+   */
+  public void setResponseCompressionLevel(final int responseCompressionLevel)
+  {
+    if (responseCompressionLevel < Deflater.DEFAULT_COMPRESSION ||
+        responseCompressionLevel > Deflater.BEST_COMPRESSION)
+    {
+      throw new IllegalArgumentException(
+          "Invalid compression level " + responseCompressionLevel);
+    }
+    this.responseCompressionLevel = responseCompressionLevel;
+  }
+
+
+
+  /**
+   * Retrieves the maximum size in bytes of a compressed request entity once
+   * it has been decompressed.
+   *
+   * @return  The maximum size in bytes of a compressed request entity once
+   *          it has been decompressed.
+   */
+  public long getMaxDecompressedRequestSize()
+  {
+    return maxDecompressedRequestSize;
+  }
+
+
+
+  /**
+   * Specify the maximum size in bytes of a compressed request entity once
+   * it has been decompressed, which protects every endpoint from small
+   * request entities that decompress to a very large size. A request whose
+   * entity exceeds the maximum is rejected. The default is
+   * {@link #DEFAULT_MAX_DECOMPRESSED_REQUEST_SIZE}. Bulk requests are also
+   * limited by their maximum payload size.
+   *
+   * @param maxDecompressedRequestSize  The maximum size in bytes of a
+   *                                    compressed request entity once it
+   *                                    has been decompressed.
+   */
+  public void setMaxDecompressedRequestSize(
+      final long maxDecompressedRequestSize)
+  {
+    if (maxDecompressedRequestSize < 0)
+    {
+      throw new IllegalArgumentException(
+          "Invalid maximum decompressed request size " +
+          maxDecompressedRequestSize);
+    }
+    this.maxDecompressedRequestSize = maxDecompressedRequestSize;
+  }
+
+
+
+  /**
+   * Indicates whether a record of each request is written to the access
+   * logger.
+   *
+   * @return  {@code true} if access logging is enabled.
+   */
+  public boolean isAccessLogEnabled()
+  {
+    return accessLogEnabled;
+  }
+
+
+
+  /**
+   * Specify whether a record of each request is written to the access logger
+   * named {@link AccessLogFilter#ACCESS_LOGGER_NAME}. Access logging is
+   * disabled by default.
+   *
+   * @param accessLogEnabled  {@code true} if access logging is enabled.
+   */
+  public void setAccessLogEnabled(final boolean accessLogEnabled)
+  {
+    this.accessLogEnabled = accessLogEnabled;
+  }
+
+
+
+  /**
+   * Enable caching of OAuth bearer token validation results, so that the
+   * OAuthTokenHandler is not asked to decode and validate the same token on
+   * every request. A successful validation for a token is only reused for
+   * requests of the same type on the same resource, and the token handler is
+   * still asked whether the cached token has expired. Tokens that are
+   * rejected are remembered for a shorter time. The cache should not be
+   * enabled if the token handler's decision depends on anything other than
+   * the token, the type of request and the resource. Any previously cached
+   * results are discarded.
+   *
+   * @param maxEntries         The maximum number of successful
+   *                           validations, and of rejected tokens, to
+   *                           cache. The cache is divided into stripes that
+   *                           each hold an equal share of this limit, and
+   *                           the least recently used result in a stripe is
+   *                           discarded when its share is reached.
+   * @param ttlMillis          The time in milliseconds for which a
+   *                           successful validation is cached.
+   * @param negativeTTLMillis  The time in milliseconds for which a rejected
+   *                           token is cached, or zero if rejected tokens
+   *                           should not be cached.
+   */
+  public void enableOAuthTokenCache(final int maxEntries,
+                                    final long ttlMillis,
+                                    final long negativeTTLMillis)
+  {
+    if (maxEntries <= 0 || ttlMillis <= 0 || negativeTTLMillis < 0)
+    {
+      throw new IllegalArgumentException(
+          "Invalid OAuth token cache configuration");
+    }
+    oauthTokenCache =
+        new OAuthTokenCache(maxEntries, ttlMillis, negativeTTLMillis);
+  }
+
+
+
+  /**
+   * Disable caching of OAuth bearer token validation results and discard any
+   * cached results. Caching is disabled by default.
+   */
+  public void disableOAuthTokenCache()
+  {
+    oauthTokenCache = null;
+  }
+
+
+
+  /**
+   * Retrieves the cache of OAuth bearer token validation results.
+   *
+   * @return  The cache of OAuth bearer token validation results, or
+   *          {@code null} if caching is disabled.
+   */
+  OAuthTokenCache getOAuthTokenCache()
+  {
+    return oauthTokenCache;
+  }
+
+
+
+  /**
+   * Retrieves the maximum number of bulk requests that may be processed
+   * concurrently.
+   *
+   * @return  The maximum number of bulk requests that may be processed
+   *          concurrently.
+   */
+  int getBulkMaxConcurrentRequests()
+  {
+    return bulkMaxConcurrentRequestsSemaphore.getMaxPermits();
+  }
+
+
+
+  /**
+   * Retrieves the number of bulk requests currently being processed.
+   *
+   * @return  The number of bulk requests currently being processed.
+   */
+  int getBulkRequestsInProgress()
+  {
+    return Math.max(0, bulkMaxConcurrentRequestsSemaphore.getMaxPermits() -
+                       bulkMaxConcurrentRequestsSemaphore.availablePermits());
+  }
+
+
+
+  /**
+   * Records the time taken to write a response entity.
+   *
+   * @param durationNanos  The time taken to write the response entity, in
+   *                       nanoseconds.
+   */
+  void recordResponseWrite(final long durationNanos)
+  {
+    responseWriteHistogram.recordValue(durationNanos);
+    responseWriteTotal.add(durationNanos);
+  }
+
+
+
+  /**
+   * Retrieves the histogram of the times taken to write response entities.
+   * The histogram may be read while it is being updated.
+   *
+   * @return  The histogram of the times taken to write response entities, in
+   *          nanoseconds.
+   */
+  LatencyHistogram getResponseWriteHistogram()
+  {
+    return responseWriteHistogram;
+  }
+
+
+
+  /**
+   * Retrieves the total time taken to write response entities.
+   *
+   * @return  The total time taken to write response entities, in
+   *          nanoseconds.
+   */
+  long getResponseWriteTotal()
+  {
+    return responseWriteTotal.sum();
+  }
+
+
+
   /**
    * Attempt to acquire a permit to process a bulk request.
    *
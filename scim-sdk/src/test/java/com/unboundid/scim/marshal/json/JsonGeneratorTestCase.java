@@ -0,0 +1,163 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.marshal.json;
+
+import com.unboundid.scim.SCIMTestCase;
+import org.json.JSONObject;
+import org.json.JSONWriter;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+
+import static org.testng.Assert.assertEquals;
+
+
+
+/**
+ * This class provides test coverage for the {@code JsonGenerator} class,
+ * comparing its output with that of {@code org.json.JSONWriter}.
+ */
+@Test
+public class JsonGeneratorTestCase
+    extends SCIMTestCase
+{
+  /**
+   * Tests that strings are escaped and encoded in the same way as
+   * {@code JSONObject.quote}.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testStrings()
+      throws Exception
+  {
+    final StringBuilder allChars = new StringBuilder();
+    for (char c = 0; c < 0x2200; c++)
+    {
+      allChars.append(c);
+    }
+
+    final String[] values =
+        {
+            "",
+            "plain",
+            "quote \" backslash \\ slash / tag </script>",
+            "\b\t\n\f\r\u0000\u001f\u007f\u0080\u009f\u00a0",
+            "caf\u00e9 \u20ac \u2028 \u4e2d\u6587",
+            "surrogate pair \ud83d\ude00",
+            "unpaired \ud83d and \ude00",
+            allChars.toString()
+        };
+
+    for (final String value : values)
+    {
+      final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+      final OutputStreamWriter writer =
+          new OutputStreamWriter(expected, "UTF-8");
+      final JSONWriter jsonWriter = new JSONWriter(writer);
+      jsonWriter.object();
+      jsonWriter.key(value);
+      jsonWriter.array();
+      jsonWriter.value(value);
+      jsonWriter.value(value);
+      jsonWriter.endArray();
+      jsonWriter.endObject();
+      writer.close();
+
+      final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+      final JsonGenerator generator = new JsonGenerator(actual);
+      generator.startObject();
+      generator.writeKey(value);
+      generator.startArray();
+      generator.writeValue(value);
+      generator.writeValue(value);
+      generator.endArray();
+      generator.endObject();
+      generator.close();
+
+      assertEquals(actual.toByteArray(), expected.toByteArray(), value);
+    }
+  }
+
+
+
+  /**
+   * Tests that numbers and booleans are written in the same way as
+   * {@code JSONWriter}.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testNumbers()
+      throws Exception
+  {
+    final long[] longs =
+        { 0L, 1L, -1L, 9L, 10L, 1234567890L, Long.MAX_VALUE, Long.MIN_VALUE };
+    for (final long value : longs)
+    {
+      assertEquals(write(value), Long.toString(value));
+    }
+
+    final double[] doubles =
+        { 0.0d, -0.0d, 1.0d, 1.5d, 100.0d, 0.001d, 1.0e-10d, 1.25e20d,
+          Double.MAX_VALUE, Double.MIN_VALUE };
+    for (final double value : doubles)
+    {
+      assertEquals(write(value), JSONObject.numberToString(value));
+    }
+
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    final JsonGenerator generator = new JsonGenerator(output);
+    generator.startArray();
+    generator.writeValue(true);
+    generator.writeValue(false);
+    generator.writeValue((String) null);
+    generator.endArray();
+    generator.close();
+    assertEquals(output.toString("UTF-8"), "[true,false,null]");
+  }
+
+
+
+  /**
+   * Writes a single number using a JSON generator.
+   *
+   * @param value  The number to write.
+   *
+   * @return  The JSON text.
+   *
+   * @throws Exception  If an error occurs.
+   */
+  private static String write(final Number value)
+      throws Exception
+  {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    final JsonGenerator generator = new JsonGenerator(output);
+    if (value instanceof Long)
+    {
+      generator.writeValue(value.longValue());
+    }
+    else
+    {
+      generator.writeValue(value.doubleValue());
+    }
+    generator.close();
+    return output.toString("UTF-8");
+  }
+}
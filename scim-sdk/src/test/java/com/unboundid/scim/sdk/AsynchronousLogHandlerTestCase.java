@@ -0,0 +1,206 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.sdk;
+
+import com.unboundid.scim.SCIMTestCase;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+
+
+/**
+ * This class provides test coverage for the {@code AsynchronousLogHandler}
+ * class.
+ */
+@Test
+public class AsynchronousLogHandlerTestCase
+    extends SCIMTestCase
+{
+  /**
+   * Tests that records are published on the writer thread, and that records
+   * are dropped when the queue is full.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testDropWhenFull()
+      throws Exception
+  {
+    final List<String> messages =
+        Collections.synchronizedList(new ArrayList<String>());
+    final CountDownLatch publishing = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final Handler target = new Handler()
+    {
+      @Override
+      public void publish(final LogRecord record)
+      {
+        publishing.countDown();
+        try
+        {
+          release.await();
+        }
+        catch (InterruptedException e)
+        {
+          Thread.currentThread().interrupt();
+        }
+        messages.add(record.getMessage());
+      }
+
+      @Override
+      public void flush()
+      {
+        // No implementation required.
+      }
+
+      @Override
+      public void close()
+      {
+        // No implementation required.
+      }
+    };
+
+    final AsynchronousLogHandler handler =
+        new AsynchronousLogHandler(target, 1, false);
+    handler.publish(new LogRecord(Level.INFO, "one"));
+    assertTrue(publishing.await(10, TimeUnit.SECONDS));
+
+    // The writer thread is busy with the first record, so the second fills
+    // the queue and the third is dropped.
+    handler.publish(new LogRecord(Level.INFO, "two"));
+    handler.publish(new LogRecord(Level.INFO, "three"));
+    assertEquals(handler.getDroppedRecordCount(), 1L);
+    assertTrue(messages.isEmpty());
+
+    release.countDown();
+    handler.flush();
+    assertEquals(messages.size(), 2);
+    assertEquals(messages.get(0), "one");
+    assertEquals(messages.get(1), "two");
+
+    handler.close();
+    handler.publish(new LogRecord(Level.INFO, "four"));
+    assertEquals(messages.size(), 2);
+  }
+
+
+
+
+  /**
+   * Tests that the handlers of the debug logger are wrapped and unwrapped by
+   * {@code Debug.setAsynchronous}, and that messages queued before they are
+   * unwrapped are written.
+   */
+  @Test
+  public void testDebugAsynchronous()
+  {
+    final List<String> messages =
+        Collections.synchronizedList(new ArrayList<String>());
+    final Handler target = new Handler()
+    {
+      @Override
+      public void publish(final LogRecord record)
+      {
+        messages.add(record.getMessage());
+      }
+
+      @Override
+      public void flush()
+      {
+        // No implementation required.
+      }
+
+      @Override
+      public void close()
+      {
+        // No implementation required.
+      }
+    };
+
+    final Logger logger = Debug.getLogger();
+    logger.addHandler(target);
+    try
+    {
+      Debug.setAsynchronous(true);
+      AsynchronousLogHandler asynchronousHandler = null;
+      for (final Handler handler : logger.getHandlers())
+      {
+        assertFalse(handler == target);
+        if (handler instanceof AsynchronousLogHandler &&
+            ((AsynchronousLogHandler) handler).getHandler() == target)
+        {
+          asynchronousHandler = (AsynchronousLogHandler) handler;
+        }
+      }
+      assertTrue(asynchronousHandler != null);
+
+      // Enabling it again does not wrap the handler twice.
+      final int handlerCount = logger.getHandlers().length;
+      Debug.setAsynchronous(true);
+      assertEquals(logger.getHandlers().length, handlerCount);
+      assertSame(find(logger, asynchronousHandler), asynchronousHandler);
+
+      asynchronousHandler.publish(new LogRecord(Level.INFO, "one"));
+      Debug.setAsynchronous(false);
+      assertEquals(messages, Collections.singletonList("one"));
+      assertSame(find(logger, target), target);
+      assertTrue(find(logger, asynchronousHandler) == null);
+    }
+    finally
+    {
+      Debug.setAsynchronous(false);
+      logger.removeHandler(target);
+    }
+  }
+
+
+
+  /**
+   * Finds a handler attached to a logger.
+   *
+   * @param logger   The logger.
+   * @param handler  The handler to find.
+   *
+   * @return  The handler, or {@code null} if it is not attached to the logger.
+   */
+  private static Handler find(final Logger logger, final Handler handler)
+  {
+    for (final Handler h : logger.getHandlers())
+    {
+      if (h == handler)
+      {
+        return h;
+      }
+    }
+    return null;
+  }
+}
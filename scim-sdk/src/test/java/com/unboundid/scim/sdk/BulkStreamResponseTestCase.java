@@ -0,0 +1,126 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.sdk;
+
+import com.unboundid.scim.SCIMTestCase;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.testng.Assert.assertTrue;
+
+
+
+/**
+ * This class provides test coverage for the {@code BulkStreamResponse} class.
+ */
+@Test
+public class BulkStreamResponseTestCase
+    extends SCIMTestCase
+{
+  /**
+   * Tests that the response content is copied intact both to a byte array
+   * output stream and to a file output stream.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testTransfer()
+      throws Exception
+  {
+    // Larger than the copy buffer, so that several reads are needed.
+    final byte[] content = new byte[200000];
+    new Random(0).nextBytes(content);
+
+    final File source = File.createTempFile("scim-bulk-", ".tmp");
+    source.deleteOnExit();
+    final FileOutputStream sourceStream = new FileOutputStream(source);
+    try
+    {
+      sourceStream.write(content);
+    }
+    finally
+    {
+      sourceStream.close();
+    }
+
+    final ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+    final FileInputStream inputStream = new FileInputStream(source);
+    try
+    {
+      BulkStreamResponse.transfer(inputStream, byteStream);
+    }
+    finally
+    {
+      inputStream.close();
+    }
+    assertTrue(Arrays.equals(byteStream.toByteArray(), content));
+
+    final File target = File.createTempFile("scim-bulk-", ".tmp");
+    target.deleteOnExit();
+    final FileInputStream fileInputStream = new FileInputStream(source);
+    final FileOutputStream fileStream = new FileOutputStream(target);
+    try
+    {
+      BulkStreamResponse.transfer(fileInputStream, fileStream);
+    }
+    finally
+    {
+      fileStream.close();
+      fileInputStream.close();
+    }
+    assertTrue(Arrays.equals(read(target), content));
+
+    source.delete();
+    target.delete();
+  }
+
+
+
+  /**
+   * Read the content of a file.
+   *
+   * @param file  The file to be read.
+   *
+   * @return  The content of the file.
+   *
+   * @throws Exception  If the file could not be read.
+   */
+  private static byte[] read(final File file)
+      throws Exception
+  {
+    final byte[] content = new byte[(int) file.length()];
+    final DataInputStream inputStream =
+        new DataInputStream(new FileInputStream(file));
+    try
+    {
+      inputStream.readFully(content);
+    }
+    finally
+    {
+      inputStream.close();
+    }
+    return content;
+  }
+}
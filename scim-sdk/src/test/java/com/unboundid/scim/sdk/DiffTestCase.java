@@ -1034,6 +1034,52 @@ public class DiffTestCase extends SCIMTestCase
         .getValue().getStringValue().equals("mygroupid"));
   }
 
+  /**
+   * Test generating and applying a diff of a group with many members, of
+   * which some have been replaced.
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Test
+  public void testDiffManyMembers() throws Exception
+  {
+    final Collection<Entry<String>> sourceMembers =
+        new ArrayList<Entry<String>>();
+    final Collection<Entry<String>> targetMembers =
+        new ArrayList<Entry<String>>();
+    for (int i = 0; i < 2000; i++)
+    {
+      sourceMembers.add(new Entry<String>("member" + i, null, false));
+      if (i % 4 != 0)
+      {
+        targetMembers.add(new Entry<String>("member" + i, null, false));
+      }
+    }
+    for (int i = 0; i < 500; i++)
+    {
+      targetMembers.add(new Entry<String>("new" + i, null, false));
+    }
+
+    final GroupResource source =
+        new GroupResource(CoreSchema.GROUP_DESCRIPTOR);
+    source.setDisplayName("mygroup");
+    source.setMembers(sourceMembers);
+    final GroupResource target =
+        new GroupResource(CoreSchema.GROUP_DESCRIPTOR);
+    target.setDisplayName("mygroup");
+    target.setMembers(targetMembers);
+
+    final Diff<GroupResource> diff = Diff.generate(source, target);
+    assertTrue(diff.getAttributesToDelete().isEmpty());
+    assertEquals(diff.getAttributesToUpdate().size(), 1);
+    assertEquals(diff.getAttributesToUpdate().get(0).getValues().length, 1000);
+
+    final GroupResource result =
+        diff.apply(source, GroupResource.GROUP_RESOURCE_FACTORY);
+    assertEquals(result.getMembers().size(), targetMembers.size());
+    assertTrue(result.getMembers().containsAll(targetMembers));
+  }
+
   /**
    * Test the fromPartialResource() and toPartialResource() methods to make
    * sure they behave consistently.
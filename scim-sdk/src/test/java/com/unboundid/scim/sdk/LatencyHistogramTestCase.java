@@ -0,0 +1,172 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.sdk;
+
+import com.unboundid.scim.SCIMTestCase;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+
+
+/**
+ * This class provides test coverage for the {@code LatencyHistogram} class.
+ */
+@Test
+public class LatencyHistogramTestCase
+    extends SCIMTestCase
+{
+  /**
+   * Tests that every value falls within its bucket and that the bucket
+   * upper bounds are within the expected precision.
+   */
+  @Test
+  public void testBucketBounds()
+  {
+    final long[] values = { 0L, 1L, 31L, 32L, 33L, 63L, 64L, 65L, 1000L,
+                            123456789L, 1L << 40, Long.MAX_VALUE };
+    for (final long value : values)
+    {
+      final int index = LatencyHistogram.getBucketIndex(value);
+      final long upperBound = LatencyHistogram.getBucketUpperBound(index);
+      assertTrue(upperBound >= value);
+      assertTrue(upperBound - value <= value / 32, String.valueOf(value));
+      if (index > 0)
+      {
+        assertTrue(LatencyHistogram.getBucketUpperBound(index - 1) < value);
+      }
+    }
+
+    assertEquals(LatencyHistogram.getBucketIndex(-5L), 0);
+  }
+
+
+
+  /**
+   * Tests percentiles over a uniform distribution of values.
+   */
+  @Test
+  public void testPercentiles()
+  {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(histogram.getValueAtPercentile(99.0d), 0L);
+    assertEquals(histogram.getMaxValue(), 0L);
+
+    for (long i = 1; i <= 10000; i++)
+    {
+      histogram.recordValue(i * 1000L);
+    }
+
+    assertEquals(histogram.getTotalCount(), 10000L);
+    assertWithinPrecision(histogram.getValueAtPercentile(50.0d), 5000000L);
+    assertWithinPrecision(histogram.getValueAtPercentile(99.0d), 9900000L);
+    assertWithinPrecision(histogram.getValueAtPercentile(99.9d), 9990000L);
+    assertWithinPrecision(histogram.getValueAtPercentile(100.0d), 10000000L);
+    assertWithinPrecision(histogram.getMaxValue(), 10000000L);
+  }
+
+
+
+  /**
+   * Tests that the count of values at or below a value never includes a
+   * greater value.
+   */
+  @Test
+  public void testCountAtOrBelow()
+  {
+    final long bound = 1000000L;
+    final long above = LatencyHistogram.getBucketUpperBound(
+        LatencyHistogram.getBucketIndex(bound));
+    assertTrue(above > bound);
+
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.recordValue(above);
+    assertEquals(histogram.getCountAtOrBelow(bound), 0L);
+    assertEquals(histogram.getCountAtOrBelow(above), 1L);
+    assertEquals(histogram.getCountAtOrBelow(-1L), 0L);
+
+    histogram.recordValue(bound / 2);
+    assertEquals(histogram.getCountAtOrBelow(bound), 1L);
+  }
+
+
+
+  /**
+   * Tests the counts for an interval obtained by subtracting an earlier copy
+   * of a histogram.
+   */
+  @Test
+  public void testSubtract()
+  {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < 100; i++)
+    {
+      histogram.recordValue(1000L);
+    }
+    final LatencyHistogram start = histogram.copy();
+
+    for (int i = 0; i < 10; i++)
+    {
+      histogram.recordValue(1000000L);
+    }
+
+    final LatencyHistogram interval = histogram.copy();
+    interval.subtract(start);
+    assertEquals(interval.getTotalCount(), 10L);
+    assertWithinPrecision(interval.getValueAtPercentile(1.0d), 1000000L);
+    assertEquals(histogram.getTotalCount(), 110L);
+  }
+
+
+
+  /**
+   * Tests the correction for coordinated omission.
+   */
+  @Test
+  public void testExpectedInterval()
+  {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.recordValueWithExpectedInterval(1000L, 0L);
+    histogram.recordValueWithExpectedInterval(1000L, 10000L);
+    assertEquals(histogram.getTotalCount(), 2L);
+
+    // A value of ten intervals stands in for the nine requests that were
+    // held back while it was outstanding.
+    histogram.recordValueWithExpectedInterval(100000L, 10000L);
+    assertEquals(histogram.getTotalCount(), 12L);
+    assertWithinPrecision(histogram.getMaxValue(), 100000L);
+    assertWithinPrecision(histogram.getValueAtPercentile(50.0d), 40000L);
+  }
+
+
+
+  /**
+   * Asserts that a value read from a histogram is equivalent to the expected
+   * value within the precision of the histogram.
+   *
+   * @param  actual    The value read from the histogram.
+   * @param  expected  The expected value.
+   */
+  private static void assertWithinPrecision(final long actual,
+                                            final long expected)
+  {
+    assertTrue(actual >= expected && actual - expected <= expected / 32,
+               "Expected " + expected + " but found " + actual);
+  }
+}
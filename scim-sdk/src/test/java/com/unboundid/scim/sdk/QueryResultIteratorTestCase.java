@@ -0,0 +1,188 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.sdk;
+
+import com.unboundid.scim.SCIMTestCase;
+import com.unboundid.scim.data.UserResource;
+import com.unboundid.scim.schema.CoreSchema;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+
+
+/**
+ * This class provides test coverage for the {@code QueryResultIterator}
+ * class.
+ */
+@Test
+public class QueryResultIteratorTestCase
+    extends SCIMTestCase
+{
+  /**
+   * An endpoint that serves query results from memory, returning at most a
+   * fixed number of resources per page like a service provider that imposes
+   * its own page size limit.
+   */
+  private static class InMemoryEndpoint extends SCIMEndpoint<UserResource>
+  {
+    private final List<UserResource> users;
+    private final int serverPageSize;
+    private final List<Integer> requestedCounts = new ArrayList<Integer>();
+
+    /**
+     * Create a new in-memory endpoint.
+     *
+     * @param numUsers       The number of users to serve.
+     * @param serverPageSize The maximum number of users in a page.
+     */
+    InMemoryEndpoint(final int numUsers, final int serverPageSize)
+    {
+      super(new SCIMService(URI.create("http://localhost:1/")), null,
+            CoreSchema.USER_DESCRIPTOR, UserResource.USER_RESOURCE_FACTORY);
+      this.serverPageSize = serverPageSize;
+      this.users = new ArrayList<UserResource>(numUsers);
+      for (int i = 0; i < numUsers; i++)
+      {
+        final UserResource user = newResource();
+        user.setId(String.valueOf(i));
+        users.add(user);
+      }
+    }
+
+    @Override
+    public Resources<UserResource> query(
+        final String filter, final SortParameters sortParameters,
+        final PageParameters pageParameters,
+        final Map<String, String> additionalQueryParams,
+        final String... requestedAttributes)
+        throws SCIMException
+    {
+      if (filter != null && filter.equals("fail"))
+      {
+        throw new ServerErrorException("query failed");
+      }
+
+      synchronized (requestedCounts)
+      {
+        requestedCounts.add(pageParameters.getCount());
+      }
+      final int start = pageParameters.getStartIndex() - 1;
+      final int count = Math.min(pageParameters.getCount(), serverPageSize);
+      final int end = Math.min(start + count, users.size());
+      return new Resources<UserResource>(
+          new ArrayList<UserResource>(users.subList(start, end)),
+          users.size(), start + 1);
+    }
+  }
+
+
+
+  /**
+   * Tests that all results are returned in order when the service provider
+   * returns fewer results per page than requested.
+   */
+  @Test
+  public void testAllResultsReturned()
+  {
+    final InMemoryEndpoint endpoint = new InMemoryEndpoint(103, 7);
+    final QueryResultIterator<UserResource> iterator =
+        endpoint.queryAll(null, null, 10);
+
+    int expected = 0;
+    while (iterator.hasNext())
+    {
+      assertEquals(iterator.next().getId(), String.valueOf(expected++));
+    }
+    assertEquals(expected, 103);
+    assertFalse(iterator.hasNext());
+  }
+
+
+
+  /**
+   * Tests iteration over a query that matches no resources.
+   */
+  @Test
+  public void testEmptyResults()
+  {
+    final InMemoryEndpoint endpoint = new InMemoryEndpoint(0, 10);
+    final QueryResultIterator<UserResource> iterator =
+        endpoint.queryAll(null, null, 10);
+
+    assertFalse(iterator.hasNext());
+    assertEquals(endpoint.requestedCounts.size(), 1);
+  }
+
+
+
+  /**
+   * Tests that the page size never exceeds the provided maximum.
+   */
+  @Test
+  public void testPageSizeBounded()
+  {
+    final InMemoryEndpoint endpoint = new InMemoryEndpoint(1000, 1000);
+    final QueryResultIterator<UserResource> iterator =
+        endpoint.queryAll(null, null, 5, 40, null);
+
+    int count = 0;
+    while (iterator.hasNext())
+    {
+      iterator.next();
+      count++;
+    }
+    assertEquals(count, 1000);
+    assertTrue(iterator.getPageSize() <= 40);
+    for (final int requested : endpoint.requestedCounts)
+    {
+      assertTrue(requested >= 5 && requested <= 40);
+    }
+  }
+
+
+
+  /**
+   * Tests that a failure to retrieve a page is reported to the consumer.
+   */
+  @Test
+  public void testQueryFailure()
+  {
+    final InMemoryEndpoint endpoint = new InMemoryEndpoint(10, 10);
+    final QueryResultIterator<UserResource> iterator =
+        endpoint.queryAll("fail", null, 10);
+
+    try
+    {
+      iterator.hasNext();
+      fail("Expected a RuntimeException");
+    }
+    catch (RuntimeException e)
+    {
+      assertTrue(e.getCause() instanceof ServerErrorException);
+    }
+  }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.sdk;
+
+import com.unboundid.scim.SCIMTestCase;
+import com.unboundid.scim.data.UserResource;
+import com.unboundid.scim.schema.CoreSchema;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+
+
+/**
+ * This class provides test coverage for the asynchronous request methods of
+ * the {@code SCIMEndpoint} class.
+ */
+@Test
+public class SCIMEndpointAsyncTestCase
+    extends SCIMTestCase
+{
+  /**
+   * An endpoint that serves users from memory. Requests for the ID "block"
+   * wait until the gate is opened, and record how many such requests are in
+   * progress at once.
+   */
+  private static class InMemoryEndpoint extends SCIMEndpoint<UserResource>
+  {
+    private final Map<String, UserResource> users =
+        new ConcurrentHashMap<String, UserResource>();
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private final AtomicInteger inProgress = new AtomicInteger();
+    private final AtomicInteger maxInProgress = new AtomicInteger();
+
+    /**
+     * Create a new in-memory endpoint.
+     *
+     * @param service  The SCIM service providing the asynchronous executor.
+     */
+    InMemoryEndpoint(final SCIMService service)
+    {
+      super(service, null, CoreSchema.USER_DESCRIPTOR,
+            UserResource.USER_RESOURCE_FACTORY);
+    }
+
+    @Override
+    public UserResource get(final String id, final String etag,
+                            final String... requestedAttributes)
+        throws SCIMException
+    {
+      if (id.equals("block"))
+      {
+        final int n = inProgress.incrementAndGet();
+        synchronized (maxInProgress)
+        {
+          maxInProgress.set(Math.max(maxInProgress.get(), n));
+        }
+        try
+        {
+          gate.await();
+        }
+        catch (InterruptedException e)
+        {
+          throw new ServerErrorException("interrupted");
+        }
+        finally
+        {
+          inProgress.decrementAndGet();
+        }
+      }
+
+      final UserResource user = users.get(id);
+      if (user == null)
+      {
+        throw new ResourceNotFoundException("No user " + id);
+      }
+      return user;
+    }
+
+    @Override
+    public Resources<UserResource> query(
+        final String filter, final SortParameters sortParameters,
+        final PageParameters pageParameters,
+        final Map<String, String> additionalQueryParams,
+        final String... requestedAttributes)
+        throws SCIMException
+    {
+      if (filter != null)
+      {
+        throw new InvalidResourceException("Invalid filter " + filter);
+      }
+      return new Resources<UserResource>(
+          new ArrayList<UserResource>(users.values()));
+    }
+
+    @Override
+    public UserResource create(final UserResource resource,
+                               final String... requestedAttributes)
+        throws SCIMException
+    {
+      if (users.containsKey(resource.getId()))
+      {
+        throw new ResourceConflictException("Duplicate " + resource.getId());
+      }
+      users.put(resource.getId(), resource);
+      return resource;
+    }
+
+    @Override
+    public UserResource update(final String id, final String etag,
+                               final UserResource resource,
+                               final String... requestedAttributes)
+        throws SCIMException
+    {
+      get(id, null);
+      users.put(id, resource);
+      return resource;
+    }
+
+    @Override
+    public UserResource update(final String id, final String etag,
+                               final List<SCIMAttribute> attributesToUpdate,
+                               final List<String> attributesToDelete,
+                               final String... requestedAttributes)
+        throws SCIMException
+    {
+      final UserResource user = get(id, null);
+      if (attributesToDelete != null &&
+          attributesToDelete.contains("displayName"))
+      {
+        user.setDisplayName(null);
+      }
+      return user;
+    }
+
+    @Override
+    public void delete(final String id, final String etag)
+        throws SCIMException
+    {
+      if (users.remove(id) == null)
+      {
+        throw new ResourceNotFoundException("No user " + id);
+      }
+    }
+  }
+
+
+
+  /**
+   * Tests that the futures provide the same results as the synchronous
+   * methods.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testResults()
+      throws Exception
+  {
+    final InMemoryEndpoint endpoint = new InMemoryEndpoint(
+        new SCIMService(URI.create("http://localhost:1/")));
+
+    final UserResource user = createUser(endpoint, "1");
+    assertEquals(endpoint.createAsync(user).get(), user);
+    assertEquals(endpoint.getAsync("1", null).get(), endpoint.get("1", null));
+    assertEquals(
+        endpoint.queryAsync(null, null, null, null).get().getTotalResults(),
+        endpoint.query(null).getTotalResults());
+
+    final UserResource updated = createUser(endpoint, "1");
+    updated.setDisplayName("Updated");
+    assertEquals(endpoint.updateAsync("1", null, updated).get(), updated);
+    assertEquals(endpoint.get("1", null).getDisplayName(), "Updated");
+
+    final UserResource patched = endpoint.updateAsync("1", null,
+        Collections.<SCIMAttribute>emptyList(),
+        Collections.singletonList("displayName")).get();
+    assertNull(patched.getDisplayName());
+
+    assertNull(endpoint.deleteAsync("1", null).get());
+    assertEquals(endpoint.query(null).getTotalResults(), 0);
+  }
+
+
+
+  /**
+   * Tests that the futures fail with the same exceptions as the synchronous
+   * methods.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testExceptions()
+      throws Exception
+  {
+    final InMemoryEndpoint endpoint = new InMemoryEndpoint(
+        new SCIMService(URI.create("http://localhost:1/")));
+    final UserResource user = createUser(endpoint, "1");
+    endpoint.create(user);
+
+    assertCause(endpoint.getAsync("2", null),
+                ResourceNotFoundException.class);
+    assertCause(endpoint.queryAsync("bad", null, null, null),
+                InvalidResourceException.class);
+    assertCause(endpoint.createAsync(user), ResourceConflictException.class);
+    assertCause(endpoint.updateAsync("2", null, user),
+                ResourceNotFoundException.class);
+    assertCause(endpoint.updateAsync("2", null,
+                    Collections.<SCIMAttribute>emptyList(),
+                    Collections.<String>emptyList()),
+                ResourceNotFoundException.class);
+    assertCause(endpoint.deleteAsync("2", null),
+                ResourceNotFoundException.class);
+  }
+
+
+
+  /**
+   * Tests that no more than the maximum number of asynchronous requests are
+   * in progress at once.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testMaxAsyncRequests()
+      throws Exception
+  {
+    final SCIMService service =
+        new SCIMService(URI.create("http://localhost:1/"));
+    try
+    {
+      service.setMaxAsyncRequests(0);
+      fail("Expected a non-positive maximum to be rejected");
+    }
+    catch (IllegalArgumentException e)
+    {
+      // Expected.
+    }
+    service.setMaxAsyncRequests(2);
+
+    final InMemoryEndpoint endpoint = new InMemoryEndpoint(service);
+    final UserResource user = createUser(endpoint, "block");
+    endpoint.create(user);
+
+    final List<Future<UserResource>> futures =
+        new ArrayList<Future<UserResource>>();
+    for (int i = 0; i < 6; i++)
+    {
+      futures.add(endpoint.getAsync("block", null));
+    }
+
+    // Wait for the first requests to start, then check that the others are
+    // queued rather than in progress.
+    final long deadline = System.currentTimeMillis() + 10000L;
+    while (endpoint.inProgress.get() < 2 &&
+           System.currentTimeMillis() < deadline)
+    {
+      Thread.sleep(10L);
+    }
+    Thread.sleep(100L);
+    assertEquals(endpoint.inProgress.get(), 2);
+
+    endpoint.gate.countDown();
+    for (final Future<UserResource> future : futures)
+    {
+      assertEquals(future.get(10L, TimeUnit.SECONDS), user);
+    }
+    assertEquals(endpoint.maxInProgress.get(), 2);
+    assertTrue(service.getAsyncExecutor() == service.getAsyncExecutor());
+
+    // The default executor is shut down, but a provided one is not.
+    final ExecutorService executor = service.getAsyncExecutor();
+    service.shutdownAsyncExecutor();
+    assertTrue(executor.isShutdown());
+    assertFalse(service.getAsyncExecutor() == executor);
+
+    final ExecutorService provided = Executors.newSingleThreadExecutor();
+    service.setAsyncExecutor(provided);
+    service.shutdownAsyncExecutor();
+    assertFalse(provided.isShutdown());
+    provided.shutdown();
+  }
+
+
+
+  /**
+   * Create a user resource.
+   *
+   * @param endpoint  The endpoint providing new resources.
+   * @param id        The ID of the user.
+   *
+   * @return  The user resource.
+   */
+  private static UserResource createUser(final InMemoryEndpoint endpoint,
+                                         final String id)
+  {
+    final UserResource user = endpoint.newResource();
+    user.setId(id);
+    user.setUserName("user." + id);
+    return user;
+  }
+
+
+
+  /**
+   * Asserts that a future fails with an exception of the expected type.
+   *
+   * @param future    The future.
+   * @param expected  The expected type of the cause of the
+   *                  ExecutionException.
+   *
+   * @throws Exception  If the future was interrupted.
+   */
+  private static void assertCause(final Future<?> future,
+                                  final Class<? extends SCIMException> expected)
+      throws Exception
+  {
+    try
+    {
+      future.get();
+      fail("Expected " + expected.getSimpleName());
+    }
+    catch (ExecutionException e)
+    {
+      assertEquals(e.getCause().getClass(), expected);
+    }
+  }
+}
@@ -22,6 +22,7 @@ import com.unboundid.scim.data.Entry;
 import com.unboundid.scim.data.Name;
 import com.unboundid.scim.schema.AttributeDescriptor;
 import com.unboundid.scim.schema.CoreSchema;
+import com.unboundid.scim.schema.ResourceDescriptor;
 import org.testng.annotations.Test;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
@@ -229,4 +230,105 @@ public class SCIMObjectTestCase
 
     assertTrue(user.getSchemas().isEmpty());
   }
+
+
+
+  /**
+   * Tests that attribute names and schemas are matched without regard to
+   * case, and that a copy of an object is not affected by changes to the
+   * original and vice versa.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testCopy() throws Exception
+  {
+    final String coreSchema = SCIMConstants.SCHEMA_URI_CORE;
+    final SCIMAttribute userName = SCIMAttribute.create(
+        CoreSchema.USER_DESCRIPTOR.getAttribute(coreSchema, "userName"),
+        SCIMAttributeValue.createStringValue("bjensen"));
+    final SCIMAttribute displayName = SCIMAttribute.create(
+        CoreSchema.USER_DESCRIPTOR.getAttribute(coreSchema, "displayName"),
+        SCIMAttributeValue.createStringValue("Babs"));
+    final SCIMAttribute newDisplayName = SCIMAttribute.create(
+        CoreSchema.USER_DESCRIPTOR.getAttribute(coreSchema, "displayName"),
+        SCIMAttributeValue.createStringValue("Barbara"));
+
+    final SCIMObject original = new SCIMObject();
+    original.addAttribute(userName);
+    original.addAttribute(displayName);
+    assertEquals(original.getAttribute(coreSchema.toUpperCase(), "USERNAME"),
+                 userName);
+    assertFalse(original.addAttribute(SCIMAttribute.create(
+        CoreSchema.USER_DESCRIPTOR.getAttribute(coreSchema, "DisplayName"),
+        SCIMAttributeValue.createStringValue("Other"))));
+
+    final SCIMObject copy = new SCIMObject(original);
+    assertEquals(copy, original);
+    assertEquals(copy.hashCode(), original.hashCode());
+
+    copy.setAttribute(newDisplayName);
+    assertTrue(copy.removeAttribute(coreSchema, "userName"));
+    assertEquals(original.getAttribute(coreSchema, "displayName"),
+                 displayName);
+    assertEquals(original.getAttribute(coreSchema, "userName"), userName);
+
+    assertTrue(original.removeAttribute(coreSchema, "displayName"));
+    assertEquals(copy.getAttribute(coreSchema, "displayName"),
+                 newDisplayName);
+    assertFalse(copy.equals(original));
+  }
+
+
+
+  /**
+   * Tests that schema checking enforces required attributes and
+   * sub-attributes.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testCheckSchema() throws Exception
+  {
+    final String coreSchema = SCIMConstants.SCHEMA_URI_CORE;
+    final ResourceDescriptor users = CoreSchema.USER_DESCRIPTOR;
+    for (final AttributeDescriptor descriptor : users.getEnforcedAttributes())
+    {
+      assertFalse(descriptor.isReadOnly());
+    }
+
+    final SCIMObject user = new SCIMObject();
+    user.addAttribute(SCIMAttribute.create(
+        users.getAttribute(coreSchema, "displayName"),
+        SCIMAttributeValue.createStringValue("Babs")));
+    try
+    {
+      user.checkSchema(users, false);
+      fail("Expected the missing userName to be rejected");
+    }
+    catch (InvalidResourceException e)
+    {
+      // Expected.
+    }
+
+    user.addAttribute(SCIMAttribute.create(
+        users.getAttribute(coreSchema, "userName"),
+        SCIMAttributeValue.createStringValue("bjensen")));
+    user.checkSchema(users, false);
+
+    final AttributeDescriptor emails = users.getAttribute(coreSchema, "emails");
+    user.addAttribute(SCIMAttribute.create(emails,
+        SCIMAttributeValue.createComplexValue(SCIMAttribute.create(
+            emails.getSubAttribute("type"),
+            SCIMAttributeValue.createStringValue("work")))));
+    try
+    {
+      user.checkSchema(users, false);
+      fail("Expected the missing email value to be rejected");
+    }
+    catch (InvalidResourceException e)
+    {
+      // Expected.
+    }
+  }
 }
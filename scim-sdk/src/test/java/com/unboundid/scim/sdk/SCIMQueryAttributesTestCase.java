@@ -0,0 +1,91 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.sdk;
+
+import com.unboundid.scim.SCIMTestCase;
+import com.unboundid.scim.data.Entry;
+import com.unboundid.scim.schema.AttributeDescriptor;
+import com.unboundid.scim.schema.CoreSchema;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+
+
+/**
+ * This class provides test coverage for the {@code SCIMQueryAttributes}
+ * class.
+ */
+@Test
+public class SCIMQueryAttributesTestCase
+    extends SCIMTestCase
+{
+  /**
+   * Tests that paring shares the attributes and values that do not need to be
+   * pared down.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testPareObject()
+      throws Exception
+  {
+    final String coreSchema = SCIMConstants.SCHEMA_URI_CORE;
+    final SCIMAttribute userName = SCIMAttribute.create(
+        CoreSchema.USER_DESCRIPTOR.getAttribute(coreSchema, "userName"),
+        SCIMAttributeValue.createStringValue("bjensen"));
+    final AttributeDescriptor emailsDescriptor =
+        CoreSchema.USER_DESCRIPTOR.getAttribute(coreSchema, "emails");
+    final SCIMAttribute emails = SCIMAttribute.create(emailsDescriptor,
+        Entry.STRINGS_RESOLVER.fromInstance(emailsDescriptor,
+            new Entry<String>("bjensen@example.com", null, false)),
+        Entry.STRINGS_RESOLVER.fromInstance(emailsDescriptor,
+            new Entry<String>("babs@jensen.org", "home", false)));
+
+    final SCIMObject user = new SCIMObject();
+    user.addAttribute(userName);
+    user.addAttribute(emails);
+
+    // Everything present was requested.
+    assertSame(new SCIMQueryAttributes(CoreSchema.USER_DESCRIPTOR,
+        "userName,emails").pareObject(user), user);
+
+    // An attribute was not requested.
+    SCIMObject pared = new SCIMQueryAttributes(CoreSchema.USER_DESCRIPTOR,
+        "emails").pareObject(user);
+    assertNull(pared.getAttribute(coreSchema, "userName"));
+    assertSame(pared.getAttribute(coreSchema, "emails"), emails);
+
+    // A sub-attribute was not requested, so only the second value is pared.
+    pared = new SCIMQueryAttributes(CoreSchema.USER_DESCRIPTOR,
+        "userName,emails.value,emails.primary").pareObject(user);
+    assertSame(pared.getAttribute(coreSchema, "userName"), userName);
+    final SCIMAttributeValue[] values =
+        pared.getAttribute(coreSchema, "emails").getValues();
+    assertEquals(values.length, 2);
+    assertSame(values[0], emails.getValues()[0]);
+    assertFalse(values[1].hasAttribute("type"));
+    assertEquals(values[1].getAttribute("value").getValue().getStringValue(),
+                 "babs@jensen.org");
+    assertEquals(emails.getValues()[1].getAttribute("type").getValue().
+        getStringValue(), "home");
+  }
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.wink;
+
+import com.unboundid.scim.SCIMTestCase;
+import com.unboundid.scim.sdk.SCIMRequest;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.spi.ContainerResponseWriter;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.SecurityContext;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+
+
+/**
+ * This class provides test coverage for the {@code AccessLogFilter} class.
+ */
+@Test
+public class AccessLogFilterTestCase
+    extends SCIMTestCase
+{
+  /**
+   * The size of the response entity of the test resource.
+   */
+  private static final int ENTITY_SIZE = 10000;
+
+  /**
+   * The pattern of an access log record.
+   */
+  private static final Pattern RECORD_PATTERN = Pattern.compile(
+      "method=\"(\\w+)\" path=\"([^\"]*)\" status=(\\d+) millis=(\\d+) " +
+          "bytes=(\\d+)( backendOperations=(\\d+))?");
+
+  /**
+   * The security context of an unauthenticated request.
+   */
+  private static final SecurityContext SECURITY_CONTEXT =
+      new SecurityContext()
+  {
+    public Principal getUserPrincipal()
+    {
+      return null;
+    }
+
+    public boolean isUserInRole(final String role)
+    {
+      return false;
+    }
+
+    public boolean isSecure()
+    {
+      return false;
+    }
+
+    public String getAuthenticationScheme()
+    {
+      return null;
+    }
+  };
+
+  /**
+   * The access log records written by each test.
+   */
+  private final List<String> records =
+      Collections.synchronizedList(new ArrayList<String>());
+
+  /**
+   * The handler that collects the access log records.
+   */
+  private final Handler handler = new Handler()
+  {
+    @Override
+    public void publish(final LogRecord record)
+    {
+      records.add(record.getMessage());
+    }
+
+    @Override
+    public void flush()
+    {
+      // No implementation required.
+    }
+
+    @Override
+    public void close()
+    {
+      // No implementation required.
+    }
+  };
+
+
+
+  /**
+   * A resource that returns a repetitive entity, or no entity.
+   */
+  @Path("test")
+  public static class TestResource
+  {
+    /**
+     * Retrieve the entity.
+     *
+     * @return  The entity.
+     */
+    @GET
+    @Produces(MediaType.TEXT_PLAIN)
+    public String get()
+    {
+      final StringBuilder builder = new StringBuilder(ENTITY_SIZE);
+      while (builder.length() < ENTITY_SIZE)
+      {
+        builder.append('a');
+      }
+      return builder.toString();
+    }
+
+
+
+    /**
+     * Respond without an entity.
+     */
+    @DELETE
+    public void delete()
+    {
+      // No implementation required.
+    }
+  }
+
+
+
+  /**
+   * Registers the handler that collects the access log records.
+   */
+  @BeforeMethod
+  public void addHandler()
+  {
+    records.clear();
+    Logger.getLogger(AccessLogFilter.ACCESS_LOGGER_NAME).addHandler(handler);
+  }
+
+
+
+  /**
+   * Removes the handler that collects the access log records.
+   */
+  @AfterMethod
+  public void removeHandler()
+  {
+    Logger.getLogger(AccessLogFilter.ACCESS_LOGGER_NAME)
+        .removeHandler(handler);
+  }
+
+
+
+  /**
+   * Tests the fields of the records written for responses with and without
+   * an entity.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testRecordFields()
+      throws Exception
+  {
+    final SCIMApplication application = new SCIMApplication(null, null);
+    application.register(TestResource.class);
+    application.setAccessLogEnabled(true);
+    final ApplicationHandler handler = new ApplicationHandler(application);
+
+    assertEquals(process(handler, "GET", null, 3).length, ENTITY_SIZE);
+    Matcher matcher = getRecord();
+    assertEquals(matcher.group(1), "GET");
+    assertEquals(matcher.group(2), "test");
+    assertEquals(matcher.group(3), "200");
+    assertEquals(matcher.group(5), String.valueOf(ENTITY_SIZE));
+    assertEquals(matcher.group(7), "3");
+
+    // The backend operation count is omitted when it is not known.
+    assertEquals(process(handler, "DELETE", null, null).length, 0);
+    matcher = getRecord();
+    assertEquals(matcher.group(1), "DELETE");
+    assertEquals(matcher.group(3), "204");
+    assertEquals(matcher.group(5), "0");
+    assertEquals(matcher.group(6), null);
+
+    // Nothing is logged when access logging is disabled.
+    application.setAccessLogEnabled(false);
+    process(handler, "GET", null, 3);
+    assertTrue(records.isEmpty());
+  }
+
+
+
+  /**
+   * Tests that the size logged for a compressed response is the number of
+   * bytes sent, after compression.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testCompressedBytes()
+      throws Exception
+  {
+    final SCIMApplication application = new SCIMApplication(null, null);
+    application.register(TestResource.class);
+    application.setAccessLogEnabled(true);
+    application.setResponseCompressionThreshold(0);
+    final ApplicationHandler handler = new ApplicationHandler(application);
+
+    final byte[] sent = process(handler, "GET", "gzip", 1);
+    assertTrue(sent.length < ENTITY_SIZE);
+    final Matcher matcher = getRecord();
+    assertEquals(matcher.group(5), String.valueOf(sent.length));
+    assertEquals(matcher.group(7), "1");
+  }
+
+
+
+  /**
+   * Tests that quotes, backslashes and control characters are escaped in the
+   * values written to a record.
+   */
+  @Test
+  public void testAppendEscaped()
+  {
+    final StringBuilder record = new StringBuilder();
+    AccessLogFilter.appendEscaped(record, "Users/a%20b");
+    assertEquals(record.toString(), "Users/a%20b");
+
+    record.setLength(0);
+    AccessLogFilter.appendEscaped(record,
+        "x\" status=200\\\n\r\t\0");
+    assertEquals(record.toString(),
+        "x\\\" status=200\\\\\\n\\r\\t\\u0000");
+  }
+
+
+
+  /**
+   * Process a request for the test resource.
+   *
+   * @param handler            The application handler.
+   * @param method             The request method.
+   * @param acceptEncoding     The Accept-Encoding header value, or
+   *                           {@code null} if there is none.
+   * @param backendOperations  The number of backend operations to report for
+   *                           the request, or {@code null} if none should be
+   *                           reported.
+   *
+   * @return  The bytes of the response entity sent to the client.
+   *
+   * @throws Exception  If the request could not be processed.
+   */
+  private static byte[] process(final ApplicationHandler handler,
+                                final String method,
+                                final String acceptEncoding,
+                                final Integer backendOperations)
+      throws Exception
+  {
+    final MapPropertiesDelegate properties = new MapPropertiesDelegate();
+    if (backendOperations != null)
+    {
+      properties.setProperty(SCIMRequest.BACKEND_OPERATION_COUNT_ATTRIBUTE,
+                             backendOperations);
+    }
+
+    final ContainerRequest request = new ContainerRequest(
+        URI.create("http://localhost/"), URI.create("http://localhost/test"),
+        method, SECURITY_CONTEXT, properties);
+    if (acceptEncoding != null)
+    {
+      request.header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+    }
+
+    final ByteArrayOutputStream entity = new ByteArrayOutputStream();
+    request.setWriter(new ContainerResponseWriter()
+    {
+      public OutputStream writeResponseStatusAndHeaders(
+          final long contentLength, final ContainerResponse response)
+      {
+        return entity;
+      }
+
+      public boolean suspend(final long timeOut, final TimeUnit timeUnit,
+                             final TimeoutHandler timeoutHandler)
+      {
+        return false;
+      }
+
+      public void setSuspendTimeout(final long timeOut,
+                                    final TimeUnit timeUnit)
+      {
+        // No implementation required.
+      }
+
+      public void commit()
+      {
+        // No implementation required.
+      }
+
+      public void failure(final Throwable error)
+      {
+        throw new AssertionError(error);
+      }
+
+      public boolean enableResponseBuffering()
+      {
+        return false;
+      }
+    });
+
+    handler.handle(request);
+    return entity.toByteArray();
+  }
+
+
+
+  /**
+   * Retrieve the only access log record written since the last call.
+   *
+   * @return  A matcher for the access log record.
+   */
+  private Matcher getRecord()
+  {
+    assertEquals(records.size(), 1, records.toString());
+    final Matcher matcher = RECORD_PATTERN.matcher(records.remove(0));
+    assertTrue(matcher.matches(), matcher.toString());
+    return matcher;
+  }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.wink;
+
+import com.unboundid.scim.SCIMTestCase;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+
+
+/**
+ * This class provides test coverage for the {@code ContentEncodingFilter}
+ * and {@code CompressingOutputStream} classes.
+ */
+@Test
+public class ContentEncodingTestCase
+    extends SCIMTestCase
+{
+  /**
+   * A resource that counts the bytes of the request entity.
+   */
+  @Path("count")
+  public static class CountResource
+  {
+    /**
+     * Count the bytes of the request entity.
+     *
+     * @param inputStream  The request entity.
+     *
+     * @return  The number of bytes of the request entity, or a response with
+     *          status 413 if the decompressed entity is too large.
+     *
+     * @throws IOException  If the entity could not be read.
+     */
+    @POST
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response post(final InputStream inputStream)
+        throws IOException
+    {
+      final byte[] buffer = new byte[100];
+      long count = 0;
+      try
+      {
+        int bytesRead;
+        while ((bytesRead = inputStream.read(buffer)) != -1)
+        {
+          count += bytesRead;
+        }
+      }
+      catch (ContentEncodingFilter.DecompressedSizeExceededException e)
+      {
+        return Response.status(413).build();
+      }
+      return Response.ok(String.valueOf(count)).build();
+    }
+  }
+
+
+
+  /**
+   * Tests selection of the response content coding from the Accept-Encoding
+   * request header.
+   */
+  @Test
+  public void testSelectEncoding()
+  {
+    assertNull(ContentEncodingFilter.selectEncoding(null));
+    assertNull(ContentEncodingFilter.selectEncoding("identity"));
+    assertNull(ContentEncodingFilter.selectEncoding("gzip;q=0"));
+    assertNull(ContentEncodingFilter.selectEncoding("*;q=0"));
+    assertEquals(ContentEncodingFilter.selectEncoding("gzip"), "gzip");
+    assertEquals(ContentEncodingFilter.selectEncoding("deflate, gzip"),
+                 "gzip");
+    assertEquals(ContentEncodingFilter.selectEncoding("gzip;q=0.5, deflate"),
+                 "deflate");
+    assertEquals(ContentEncodingFilter.selectEncoding("x-gzip"), "gzip");
+    assertEquals(ContentEncodingFilter.selectEncoding("*"), "gzip");
+    assertEquals(ContentEncodingFilter.selectEncoding("gzip;q=0, *"),
+                 "deflate");
+  }
+
+
+
+  /**
+   * Tests that content smaller than the threshold is written unmodified.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testBelowThreshold()
+      throws Exception
+  {
+    final ByteArrayOutputStream target = new ByteArrayOutputStream();
+    final MultivaluedMap<String, Object> headers =
+        new MultivaluedHashMap<String, Object>();
+    final CompressingOutputStream outputStream =
+        new CompressingOutputStream(target, headers, "gzip", -1, 1024);
+
+    final byte[] content = createContent(1000);
+    outputStream.write(content);
+    outputStream.flush();
+    assertEquals(target.size(), 0);
+    outputStream.finish();
+
+    assertFalse(outputStream.isCompressing());
+    assertFalse(headers.containsKey(HttpHeaders.CONTENT_ENCODING));
+    assertEquals(target.toByteArray(), content);
+  }
+
+
+
+  /**
+   * Tests that content reaching the threshold is compressed with each of the
+   * supported content codings.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testAboveThreshold()
+      throws Exception
+  {
+    for (final String encoding : new String[] { "gzip", "deflate" })
+    {
+      final ByteArrayOutputStream target = new ByteArrayOutputStream();
+      final MultivaluedMap<String, Object> headers =
+          new MultivaluedHashMap<String, Object>();
+      headers.putSingle(HttpHeaders.CONTENT_LENGTH, "100000");
+      final CompressingOutputStream outputStream =
+          new CompressingOutputStream(target, headers, encoding, 1, 1024);
+
+      final byte[] content = createContent(100000);
+      for (int i = 0; i < content.length; i += 100)
+      {
+        outputStream.write(content, i, 100);
+      }
+      outputStream.finish();
+
+      assertTrue(outputStream.isCompressing());
+      assertEquals(headers.getFirst(HttpHeaders.CONTENT_ENCODING), encoding);
+      assertFalse(headers.containsKey(HttpHeaders.CONTENT_LENGTH));
+      assertTrue(target.size() < content.length);
+
+      final InputStream inputStream;
+      if (encoding.equals("gzip"))
+      {
+        inputStream =
+            new GZIPInputStream(new ByteArrayInputStream(target.toByteArray()));
+      }
+      else
+      {
+        inputStream = new InflaterInputStream(
+            new ByteArrayInputStream(target.toByteArray()));
+      }
+      final ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[4096];
+      int bytesRead;
+      while ((bytesRead = inputStream.read(buffer)) != -1)
+      {
+        decoded.write(buffer, 0, bytesRead);
+      }
+      assertEquals(decoded.toByteArray(), content);
+    }
+  }
+
+
+
+  /**
+   * Tests that a compressed request entity is rejected once it decompresses
+   * to more than the maximum decompressed request size.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testMaxDecompressedRequestSize()
+      throws Exception
+  {
+    final SCIMApplication application = new SCIMApplication(null, null);
+    application.register(CountResource.class);
+    assertEquals(application.getMaxDecompressedRequestSize(),
+                 SCIMApplication.DEFAULT_MAX_DECOMPRESSED_REQUEST_SIZE);
+    application.setMaxDecompressedRequestSize(1000);
+    final ApplicationHandler handler = new ApplicationHandler(application);
+
+    for (final String encoding : new String[] { "gzip", "deflate" })
+    {
+      ContainerResponse response =
+          postCompressed(handler, encoding, createContent(1000));
+      assertEquals(response.getStatus(), 200);
+      assertEquals(response.getEntity(), "1000");
+
+      response = postCompressed(handler, encoding, createContent(1001));
+      assertEquals(response.getStatus(), 413);
+    }
+  }
+
+
+
+  /**
+   * Post a compressed entity to the count resource.
+   *
+   * @param handler   The application handler.
+   * @param encoding  The content coding to apply to the entity.
+   * @param content   The entity before it is compressed.
+   *
+   * @return  The response.
+   *
+   * @throws Exception  If the request could not be processed.
+   */
+  private static ContainerResponse postCompressed(
+      final ApplicationHandler handler, final String encoding,
+      final byte[] content)
+      throws Exception
+  {
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    final OutputStream outputStream = encoding.equals("gzip") ?
+        new GZIPOutputStream(compressed) :
+        new DeflaterOutputStream(compressed);
+    outputStream.write(content);
+    outputStream.close();
+
+    final ContainerRequest request = new ContainerRequest(
+        URI.create("http://localhost/"), URI.create("http://localhost/count"),
+        "POST", null, new MapPropertiesDelegate());
+    request.header(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN);
+    request.header(HttpHeaders.CONTENT_ENCODING, encoding);
+    request.setEntityStream(
+        new ByteArrayInputStream(compressed.toByteArray()));
+    return handler.apply(request).get();
+  }
+
+
+
+  /**
+   * Create some repetitive content resembling a list response.
+   *
+   * @param size  The number of bytes of content.
+   *
+   * @return  The content.
+   */
+  private static byte[] createContent(final int size)
+  {
+    final byte[] pattern =
+        "{\"userName\":\"user.0\",\"active\":true},".getBytes();
+    final byte[] content = new byte[size];
+    for (int i = 0; i < size; i++)
+    {
+      content[i] = pattern[i % pattern.length];
+    }
+    return content;
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.wink;
+
+import com.unboundid.scim.SCIMTestCase;
+import com.unboundid.scim.schema.CoreSchema;
+import com.unboundid.scim.sdk.DeleteResourceRequest;
+import com.unboundid.scim.sdk.GetResourceRequest;
+import com.unboundid.scim.sdk.OAuthToken;
+import com.unboundid.scim.sdk.SCIMQueryAttributes;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+
+
+/**
+ * This class provides test coverage for the {@code OAuthTokenCache} class.
+ */
+@Test
+public class OAuthTokenCacheTestCase
+    extends SCIMTestCase
+{
+  /**
+   * Tests that the cache key depends on the token, the type of request and
+   * the resource, and does not contain the raw token.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testKey()
+      throws Exception
+  {
+    final URI baseURI = new URI("http://localhost/");
+    final DeleteResourceRequest deleteUser = new DeleteResourceRequest(
+        baseURI, null, CoreSchema.USER_DESCRIPTOR, "1");
+    final DeleteResourceRequest deleteGroup = new DeleteResourceRequest(
+        baseURI, null, CoreSchema.GROUP_DESCRIPTOR, "1");
+    final GetResourceRequest getUser = new GetResourceRequest(
+        baseURI, null, CoreSchema.USER_DESCRIPTOR, "1",
+        new SCIMQueryAttributes(CoreSchema.USER_DESCRIPTOR, null));
+
+    final String key = OAuthTokenCache.getKey("secret", deleteUser);
+    assertFalse(key.contains("secret"));
+    assertEquals(OAuthTokenCache.getKey("secret", new DeleteResourceRequest(
+        baseURI, null, CoreSchema.USER_DESCRIPTOR, "2")), key);
+    assertNotEquals(OAuthTokenCache.getKey("other", deleteUser), key);
+    assertNotEquals(OAuthTokenCache.getKey("secret", deleteGroup), key);
+    assertNotEquals(OAuthTokenCache.getKey("secret", getUser), key);
+  }
+
+
+
+  /**
+   * Tests caching of successful and failed validations.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testSuccessAndFailure()
+      throws Exception
+  {
+    final OAuthToken token = new OAuthToken("secret");
+    OAuthTokenCache cache = new OAuthTokenCache(10, 60000L, 60000L);
+    assertNull(cache.get("a"));
+
+    cache.putSuccess("a", token, "uid=test");
+    OAuthTokenCache.Entry entry = cache.get("a");
+    assertNotNull(entry);
+    assertEquals(entry.getToken(), token);
+    assertEquals(entry.getAuthzDN(), "uid=test");
+
+    cache.putFailure("b", true, "denied", "scim");
+    entry = cache.get("b");
+    assertNotNull(entry);
+    assertNull(entry.getAuthzDN());
+    assertTrue(entry.isInsufficientScope());
+    assertEquals(entry.getErrorDescription(), "denied");
+    assertEquals(entry.getScope(), "scim");
+
+    cache.remove("a");
+    assertNull(cache.get("a"));
+
+    // Failures are not cached without a negative TTL.
+    cache = new OAuthTokenCache(10, 60000L, 0L);
+    cache.putFailure("b", false, "invalid", null);
+    assertNull(cache.get("b"));
+  }
+
+
+
+  /**
+   * Tests that entries expire and that the cache size is bounded.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testExpirationAndBound()
+      throws Exception
+  {
+    final OAuthToken token = new OAuthToken("secret");
+    OAuthTokenCache cache = new OAuthTokenCache(10, 1L, 1L);
+    cache.putSuccess("a", token, "uid=test");
+    cache.putFailure("b", false, "invalid", null);
+    Thread.sleep(20L);
+    assertNull(cache.get("a"));
+    assertNull(cache.get("b"));
+
+    // Each stripe holds at least one entry.
+    cache = new OAuthTokenCache(5, 60000L, 60000L);
+    for (int i = 0; i < 20 * OAuthTokenCache.STRIPES; i++)
+    {
+      cache.putSuccess(String.valueOf(i), token, "uid=test");
+      assertTrue(cache.size() <= OAuthTokenCache.STRIPES);
+    }
+    assertNotNull(cache.get(String.valueOf(20 * OAuthTokenCache.STRIPES - 1)));
+  }
+
+
+
+  /**
+   * Tests that a full stripe evicts its least recently used entry, and that
+   * failed validations do not evict successful validations.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testEviction()
+      throws Exception
+  {
+    final OAuthToken token = new OAuthToken("secret");
+    final OAuthTokenCache cache =
+        new OAuthTokenCache(3 * OAuthTokenCache.STRIPES, 60000L, 60000L);
+    final List<String> keys = getKeysInStripe(1004);
+    final String a = keys.get(0);
+    final String b = keys.get(1);
+    final String c = keys.get(2);
+    final String d = keys.get(3);
+    cache.putSuccess(a, token, "uid=a");
+    cache.putSuccess(b, token, "uid=b");
+    cache.putSuccess(c, token, "uid=c");
+
+    // Using "a" makes "b" the least recently used entry.
+    assertNotNull(cache.get(a));
+    cache.putSuccess(d, token, "uid=d");
+    assertNull(cache.get(b));
+    assertNotNull(cache.get(a));
+    assertNotNull(cache.get(c));
+    assertNotNull(cache.get(d));
+
+    // Entries in other stripes are not evicted.
+    cache.putSuccess("other", token, "uid=other");
+    assertTrue(OAuthTokenCache.getStripe("other") != 0);
+    assertEquals(cache.size(), 4);
+    cache.remove("other");
+
+    final String first = keys.get(4);
+    final String last = keys.get(1003);
+    for (final String key : keys.subList(4, 1004))
+    {
+      cache.putFailure(key, false, "invalid", null);
+    }
+    assertEquals(cache.size(), 6);
+    assertNotNull(cache.get(a));
+    assertNotNull(cache.get(c));
+    assertNotNull(cache.get(d));
+    assertNotNull(cache.get(last));
+    assertNull(cache.get(first));
+
+    // A key holds either a success or a failure, never both.
+    cache.putFailure(a, true, "denied", "scim");
+    assertNull(cache.get(a).getAuthzDN());
+    cache.putSuccess(last, token, "uid=e");
+    assertEquals(cache.get(last).getAuthzDN(), "uid=e");
+    assertEquals(cache.size(), 5);
+  }
+
+
+
+  /**
+   * Retrieves distinct keys in the first stripe of the cache.
+   *
+   * @param count  The number of keys to retrieve.
+   *
+   * @return  The keys.
+   */
+  private static List<String> getKeysInStripe(final int count)
+  {
+    final List<String> keys = new ArrayList<String>(count);
+    for (int i = 0; keys.size() < count; i++)
+    {
+      final String key = "key" + i;
+      if (OAuthTokenCache.getStripe(key) == 0)
+      {
+        keys.add(key);
+      }
+    }
+    return keys;
+  }
+}
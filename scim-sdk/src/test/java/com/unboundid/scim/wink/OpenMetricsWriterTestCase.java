@@ -0,0 +1,147 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.wink;
+
+import com.unboundid.scim.SCIMTestCase;
+import com.unboundid.scim.sdk.LatencyHistogram;
+import com.unboundid.scim.sdk.MetricFamily;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+
+
+/**
+ * This class provides test coverage for the {@code OpenMetricsWriter} class.
+ */
+@Test
+public class OpenMetricsWriterTestCase
+    extends SCIMTestCase
+{
+  /**
+   * Tests the metrics written for the statistics of a resource.
+   */
+  @Test
+  public void testResourceStats()
+  {
+    final ResourceStats stats = new ResourceStats("Us\"ers");
+    stats.incrementStat(ResourceStats.GET_OK);
+    stats.incrementStat(ResourceStats.GET_RESPONSE_JSON);
+    stats.incrementStatusStat(ResourceStats.Operation.GET, 404);
+    stats.incrementStat("custom-stat");
+    stats.recordLatency(ResourceStats.Operation.GET, 2000000L);
+    stats.recordLatency(ResourceStats.Operation.GET, 20000000000L);
+
+    final OpenMetricsWriter writer = new OpenMetricsWriter();
+    writer.writeResourceStats(Collections.singleton(stats));
+    writer.writeGauge("scim_bulk_requests_in_progress", "In progress.", 3);
+    final String metrics = writer.finish();
+
+    assertTrue(metrics.contains("# TYPE scim_requests counter\n"));
+    assertTrue(metrics.contains("scim_requests_total{resource=\"Us\\\"ers\"," +
+        "operation=\"get\",outcome=\"successful\"} 1\n"));
+    assertTrue(metrics.contains("scim_requests_total{resource=\"Us\\\"ers\"," +
+        "operation=\"get\",outcome=\"404\"} 1\n"));
+    assertTrue(metrics.contains("scim_request_formats_total{" +
+        "resource=\"Us\\\"ers\",operation=\"get\"," +
+        "format=\"response-json\"} 1\n"));
+    assertFalse(metrics.contains("custom"));
+
+    assertTrue(metrics.contains("# UNIT scim_request_duration_seconds " +
+        "seconds\n"));
+    assertTrue(metrics.contains("scim_request_duration_seconds_bucket{" +
+        "resource=\"Us\\\"ers\",operation=\"get\",le=\"0.001\"} 0\n"));
+    assertTrue(metrics.contains("scim_request_duration_seconds_bucket{" +
+        "resource=\"Us\\\"ers\",operation=\"get\",le=\"10.0\"} 1\n"));
+    assertTrue(metrics.contains("scim_request_duration_seconds_bucket{" +
+        "resource=\"Us\\\"ers\",operation=\"get\",le=\"+Inf\"} 2\n"));
+    assertTrue(metrics.contains("scim_request_duration_seconds_count{" +
+        "resource=\"Us\\\"ers\",operation=\"get\"} 2\n"));
+    assertTrue(metrics.contains("scim_request_duration_seconds_sum{" +
+        "resource=\"Us\\\"ers\",operation=\"get\"} 20.002\n"));
+    assertFalse(metrics.contains("operation=\"post\""));
+
+    assertTrue(metrics.contains("# TYPE scim_bulk_requests_in_progress " +
+        "gauge\n"));
+    assertTrue(metrics.contains("scim_bulk_requests_in_progress 3\n"));
+    assertTrue(metrics.endsWith("# EOF\n"));
+  }
+
+
+
+  /**
+   * Tests that a histogram bucket does not count values above its bound,
+   * using the response write histogram, which has no labels.
+   */
+  @Test
+  public void testResponseWriteHistogram()
+  {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.recordValue(1000001L);
+    histogram.recordValue(2000000L);
+
+    final OpenMetricsWriter writer = new OpenMetricsWriter();
+    writer.writeResponseWriteHistogram(histogram, 3000001L);
+    final String metrics = writer.finish();
+
+    assertTrue(metrics.contains("# TYPE scim_response_write_seconds " +
+        "histogram\n"));
+    assertTrue(metrics.contains(
+        "scim_response_write_seconds_bucket{le=\"0.001\"} 0\n"));
+    assertTrue(metrics.contains(
+        "scim_response_write_seconds_bucket{le=\"0.0025\"} 2\n"));
+    assertTrue(metrics.contains(
+        "scim_response_write_seconds_bucket{le=\"+Inf\"} 2\n"));
+    assertTrue(metrics.contains("scim_response_write_seconds_count 2\n"));
+    assertTrue(metrics.contains(
+        "scim_response_write_seconds_sum 0.003000001\n"));
+  }
+
+
+
+  /**
+   * Tests the metrics written for the metric families of a backend.
+   */
+  @Test
+  public void testMetricFamilies()
+  {
+    final MetricFamily counter = new MetricFamily("scim_ldap_operations",
+        MetricFamily.Type.COUNTER, "Operations.");
+    counter.addSample(3L, "request", "get");
+    counter.addSample(5L, "request", "qu\"ery");
+    final MetricFamily gauge = new MetricFamily("scim_ldap_connections",
+        MetricFamily.Type.GAUGE, "Connections.");
+    gauge.addSample(2);
+
+    final OpenMetricsWriter writer = new OpenMetricsWriter();
+    writer.writeMetricFamilies(Arrays.asList(counter, gauge));
+    final String metrics = writer.finish();
+
+    assertTrue(metrics.contains("# TYPE scim_ldap_operations counter\n" +
+        "# HELP scim_ldap_operations Operations.\n" +
+        "scim_ldap_operations_total{request=\"get\"} 3\n" +
+        "scim_ldap_operations_total{request=\"qu\\\"ery\"} 5\n"));
+    assertTrue(metrics.contains("# TYPE scim_ldap_connections gauge\n" +
+        "# HELP scim_ldap_connections Connections.\n" +
+        "scim_ldap_connections 2\n"));
+  }
+}
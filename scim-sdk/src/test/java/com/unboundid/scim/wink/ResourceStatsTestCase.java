@@ -0,0 +1,116 @@
+/*
+ * Copyright 2011-2016 UnboundID Corp.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License (GPLv2 only)
+ * or the terms of the GNU Lesser General Public License (LGPLv2.1 only)
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see <http://www.gnu.org/licenses>.
+ */
+
+package com.unboundid.scim.wink;
+
+import com.unboundid.scim.SCIMTestCase;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+
+
+/**
+ * This class provides test coverage for the {@code ResourceStats} class.
+ */
+@Test
+public class ResourceStatsTestCase
+    extends SCIMTestCase
+{
+  /**
+   * Tests that statistics are reported under the same names whether they
+   * are incremented by name or by operation and status code.
+   */
+  @Test
+  public void testStatNames()
+  {
+    final ResourceStats stats = new ResourceStats("Users");
+    assertTrue(stats.getStats().isEmpty());
+
+    stats.incrementStat(ResourceStats.GET_OK);
+    stats.incrementStat(ResourceStats.GET_NOT_FOUND);
+    stats.incrementStatusStat(ResourceStats.Operation.GET, 404);
+    stats.incrementStatusStat(ResourceStats.Operation.QUERY, 999);
+    stats.incrementStat("custom-stat");
+
+    assertEquals(stats.getStat(ResourceStats.GET_OK), 1L);
+    assertEquals(stats.getStat(ResourceStats.GET_NOT_FOUND), 2L);
+    assertEquals(stats.getStat("query-999"), 1L);
+    assertEquals(stats.getStat("custom-stat"), 1L);
+    assertEquals(stats.getStat(ResourceStats.PUT_OK), 0L);
+
+    final Map<String, Long> map = stats.getStats();
+    assertEquals(map.size(), 4);
+    assertEquals(map.get("get-successful"), Long.valueOf(1L));
+    assertEquals(map.get("get-404"), Long.valueOf(2L));
+    assertFalse(map.containsKey(ResourceStats.PUT_OK));
+  }
+
+
+
+  /**
+   * Tests that no updates are lost when many threads increment the same
+   * statistics, and that processing times are recorded.
+   *
+   * @throws Exception  If the test fails.
+   */
+  @Test
+  public void testConcurrentUpdates()
+      throws Exception
+  {
+    final ResourceStats stats = new ResourceStats("Users");
+    final List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 8; i++)
+    {
+      threads.add(new Thread()
+      {
+        @Override
+        public void run()
+        {
+          for (int j = 0; j < 10000; j++)
+          {
+            stats.incrementStat(ResourceStats.POST_OK);
+            stats.recordLatency(ResourceStats.Operation.POST, 1000L);
+          }
+        }
+      });
+    }
+
+    for (final Thread thread : threads)
+    {
+      thread.start();
+    }
+    for (final Thread thread : threads)
+    {
+      thread.join();
+    }
+
+    assertEquals(stats.getStat(ResourceStats.POST_OK), 80000L);
+    assertEquals(stats.getLatencyHistogram(
+        ResourceStats.Operation.POST).getTotalCount(), 80000L);
+    assertEquals(stats.getLatencyTotal(ResourceStats.Operation.POST),
+                 80000000L);
+    assertEquals(stats.getLatencyHistogram(
+        ResourceStats.Operation.GET).getTotalCount(), 0L);
+  }
+}